@@ -0,0 +1,49 @@
+/*****************************************************************************************
+ * 
+ * Copyright 2019 Gregory Brown. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ ***************************************************************************************** 
+ */
+
+package com.gabstudios.manager;
+
+/**
+ * 
+ * This exception is thrown when the dependencies declared between children
+ * form a cycle, so there is no order to initialize them in.
+ * 
+ * @author Gregory Brown (sysdevone)
+ */
+public class DependencyCycleException extends ManagerException
+{
+    
+    /*
+     * Comment for <code>serialVersionUID</code>
+     */
+    private static final long serialVersionUID = -3180977523402611283L;
+    
+    /**
+     * Constructor with a message.
+     * 
+     * @param message
+     *            A <code>String</code> message.
+     */
+    public DependencyCycleException(final String message)
+    {
+        super(message);
+    }
+    
+    
+}
@@ -0,0 +1,42 @@
+/*****************************************************************************************
+ *
+ * Copyright 2019 Gregory Brown. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ *****************************************************************************************
+ */
+
+package com.gabstudios.manager;
+
+/**
+ *
+ * An optional interface a <code>Manageable</code> can implement to have its
+ * liveness checked periodically by the health checks of its manager.
+ *
+ * @author Gregory Brown (sysdevone)
+ */
+public abstract interface HealthCheckable
+{
+
+    /**
+     * Checks whether this child is working. Called on a thread of the health
+     * check executor, together with the checks of other children, so it
+     * should return quickly and must not block for long.
+     *
+     * @return True if the child is healthy. A check that throws is treated as
+     *         unhealthy.
+     */
+    public abstract boolean checkHealth();
+
+}
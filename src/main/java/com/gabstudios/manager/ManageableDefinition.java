@@ -0,0 +1,137 @@
+/*****************************************************************************************
+ * 
+ * Copyright 2019 Gregory Brown. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ ***************************************************************************************** 
+ */
+
+package com.gabstudios.manager;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * 
+ * Describes a child to create: the key, the fully qualified class name and the
+ * keys of the children it depends on. A child is initialized after the
+ * children it depends on and closed before them.
+ * 
+ * @author Gregory Brown (sysdevone)
+ */
+public final class ManageableDefinition
+{
+    
+    /*
+     * The fully qualified class name of the child.
+     */
+    private final String      _className;
+    
+    /*
+     * The keys of the children this child depends on.
+     */
+    private final Set<String> _dependencies;
+    
+    /*
+     * The key to bind to the child.
+     */
+    private final String      _key;
+    
+    /**
+     * Constructor with the keys of the dependencies.
+     * 
+     * @param key
+     *            A <code>String</code> instance. The key to bind to the child.
+     * @param className
+     *            A <code>String</code> instance of the fully qualified
+     *            classname.
+     * @param dependencies
+     *            The keys of the children this child depends on.
+     */
+    public ManageableDefinition(final String key, final String className, final Collection<String> dependencies)
+    {
+        this._key = key;
+        this._className = className;
+        this._dependencies = Collections.unmodifiableSet(new LinkedHashSet<>(dependencies));
+    }
+    
+    /**
+     * Constructor with the keys of the dependencies.
+     * 
+     * @param key
+     *            A <code>String</code> instance. The key to bind to the child.
+     * @param className
+     *            A <code>String</code> instance of the fully qualified
+     *            classname.
+     * @param dependencies
+     *            The keys of the children this child depends on.
+     */
+    public ManageableDefinition(final String key, final String className, final String... dependencies)
+    {
+        this(key, className, Arrays.asList(dependencies));
+    }
+    
+    /**
+     * Gets the fully qualified class name of the child.
+     * 
+     * @return A <code>String</code> instance.
+     */
+    public String getClassName()
+    {
+        return (this._className);
+    }
+    
+    /**
+     * Gets the keys of the children this child depends on.
+     * 
+     * @return An unmodifiable <code>Set</code> of <code>String</code> keys.
+     */
+    public Set<String> getDependencies()
+    {
+        return (this._dependencies);
+    }
+    
+    /**
+     * Gets the key to bind to the child.
+     * 
+     * @return A <code>String</code> instance.
+     */
+    public String getKey()
+    {
+        return (this._key);
+    }
+    
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString()
+    {
+        final StringBuilder builder = new StringBuilder();
+        builder.append("ManageableDefinition [key=");
+        builder.append(this._key);
+        builder.append(", className=");
+        builder.append(this._className);
+        builder.append(", dependencies=");
+        builder.append(this._dependencies);
+        builder.append("]");
+        return builder.toString();
+    }
+    
+}
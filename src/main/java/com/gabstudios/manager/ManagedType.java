@@ -0,0 +1,54 @@
+/*****************************************************************************************
+ *
+ * Copyright 2019 Gregory Brown. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ *****************************************************************************************
+ */
+
+package com.gabstudios.manager;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 
+ * Marks a <code>Manageable</code> implementation so that the
+ * <code>ManagedTypeProcessor</code> generates a <code>ManagedTypeRegistry</code>
+ * entry for it at compile time. The manager then creates the child through a
+ * direct constructor reference instead of looking the class up by name.
+ * 
+ * The annotated class must be public, not abstract, and have a public no
+ * argument constructor.
+ * 
+ * @author Gregory Brown (sysdevone)
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface ManagedType
+{
+    
+    /**
+     * An optional alias that may be used in place of the fully qualified class
+     * name when calling Manager.create(className).
+     * 
+     * @return A <code>String</code> alias, or an empty string for none.
+     */
+    String value() default "";
+    
+}
@@ -0,0 +1,45 @@
+/*****************************************************************************************
+ *
+ * Copyright 2019 Gregory Brown. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ *****************************************************************************************
+ */
+
+package com.gabstudios.manager;
+
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * 
+ * A registry of <code>Manageable</code> constructors, usually generated at
+ * compile time for classes marked with <code>ManagedType</code>.
+ * Implementations are found with the <code>java.util.ServiceLoader</code>.
+ * 
+ * @author Gregory Brown (sysdevone)
+ */
+public abstract interface ManagedTypeRegistry
+{
+    
+    /**
+     * Adds the constructors this registry knows about to the table.
+     * 
+     * @param types
+     *            A <code>Map</code> of fully qualified class names and aliases
+     *            to constructor references.
+     */
+    public abstract void registerTypes(final Map<String, Supplier<? extends Manageable>> types);
+    
+}
@@ -45,5 +45,19 @@ public class ManagerClosedException extends ManagerException
         super(message);
     }
     
+    /**
+     * Constructor with a message and whether a stack trace is filled in.
+     * 
+     * @param message
+     *            A <code>String</code> message.
+     * @param writableStackTrace
+     *            True to fill in the stack trace, false for a stackless
+     *            exception.
+     */
+    public ManagerClosedException(final String message, final boolean writableStackTrace)
+    {
+        super(message, null, writableStackTrace);
+    }
+    
     
 }
@@ -58,6 +58,24 @@ public class ManagerException extends RuntimeException
     {
         super(message, null);
     }
+    
+    /**
+     * Constructor with a message, a throwable and whether a stack trace is
+     * filled in. An exception without a stack trace is cheap to create, which
+     * matters when it is thrown on a hot path.
+     * 
+     * @param message
+     *            A <code>String</code> message.
+     * @param throwable
+     *            An instance of <code>Throwable</code>. May be null.
+     * @param writableStackTrace
+     *            True to fill in the stack trace, false for a stackless
+     *            exception.
+     */
+    public ManagerException(final String message, final Throwable throwable, final boolean writableStackTrace)
+    {
+        super(message, throwable, writableStackTrace, writableStackTrace);
+    }
    
     
 }
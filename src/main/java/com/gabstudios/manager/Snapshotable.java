@@ -0,0 +1,54 @@
+/*****************************************************************************************
+ *
+ * Copyright 2019 Gregory Brown. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ *****************************************************************************************
+ */
+
+package com.gabstudios.manager;
+
+import java.nio.ByteBuffer;
+
+/**
+ *
+ * An optional interface a <code>Manageable</code> can implement to have its
+ * state written into, and read back from, a registry snapshot.
+ *
+ * @author Gregory Brown (sysdevone)
+ */
+public abstract interface Snapshotable
+{
+
+    /**
+     * Restores the state previously returned by Snapshotable.saveState(). This
+     * is called after the child is instantiated and before
+     * Manageable.initialize(parent,key) is called.
+     *
+     * @param state
+     *            A read only <code>ByteBuffer</code> positioned at the start of
+     *            the saved state. The buffer may be backed by a memory-mapped
+     *            file and should not be retained after this call returns.
+     */
+    public abstract void restoreState(final ByteBuffer state);
+
+    /**
+     * Saves the state of this child so it can be restored on a warm restart.
+     *
+     * @return A <code>byte</code> array holding the state, or null if there is
+     *         no state to save.
+     */
+    public abstract byte[] saveState();
+
+}
@@ -0,0 +1,90 @@
+/*****************************************************************************************
+ *
+ * Copyright 2019 Gregory Brown. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ *****************************************************************************************
+ */
+
+package com.gabstudios.manager.impl;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * <pre>
+ * The access statistics of one key of a manager.  The count is updated with ordered writes and no compare and set,
+ * so a lookup never waits on, or retries against, another thread.  Two threads recording at the same moment may
+ * lose one of the updates; the count is an estimate.
+ *
+ * Only a sample of the lookups are recorded, each with the weight of the lookups it stands for.
+ * </pre>
+ *
+ * @author Gregory Brown (sysdevone)
+ */
+final class AccessCounter
+{
+	/*
+	 * Updates the _count field.
+	 */
+	private static final AtomicLongFieldUpdater<AccessCounter>	COUNT		= AtomicLongFieldUpdater
+	        .newUpdater(AccessCounter.class, "_count");
+
+	/*
+	 * Updates the _lastAccess field.
+	 */
+	private static final AtomicLongFieldUpdater<AccessCounter>	LAST_ACCESS	= AtomicLongFieldUpdater
+	        .newUpdater(AccessCounter.class, "_lastAccess");
+
+	/*
+	 * The time the key was bound, in milliseconds since the epoch.
+	 */
+	private final long		_createTime;
+
+	/*
+	 * The estimated number of lookups.
+	 */
+	private volatile long	_count;
+
+	/*
+	 * The time of the last recorded lookup, in milliseconds since the epoch, or 0 if none.
+	 */
+	private volatile long	_lastAccess;
+
+	/*
+	 * Creates a counter with no lookups.
+	 */
+	AccessCounter(final long createTime)
+	{
+		this._createTime = createTime;
+	}
+
+	/*
+	 * Records a sampled lookup.
+	 *
+	 * @param weight The number of lookups the sample stands for.
+	 *
+	 * @param now The current time in milliseconds since the epoch.
+	 */
+	void record(final long weight, final long now)
+	{
+		AccessCounter.COUNT.lazySet(this, this._count + weight);
+		AccessCounter.LAST_ACCESS.lazySet(this, now);
+	}
+
+	/*
+	 * Takes a snapshot of the counter for the key.
+	 */
+	AccessStatistics snapshot(final String key)
+	{
+		return (new AccessStatistics(key, this._count, this._lastAccess, this._createTime));
+	}
+
+}
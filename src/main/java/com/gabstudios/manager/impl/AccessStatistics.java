@@ -0,0 +1,120 @@
+/*****************************************************************************************
+ *
+ * Copyright 2019 Gregory Brown. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ *****************************************************************************************
+ */
+
+package com.gabstudios.manager.impl;
+
+import java.util.Comparator;
+
+/**
+ * A snapshot of the access statistics of one key, from ManagerImpl.getAccessStatistics(key), getHottest(count) or
+ * getColdest(count). The access count is an estimate made from a sample of the lookups.
+ *
+ * @author Gregory Brown (sysdevone)
+ */
+public final class AccessStatistics
+{
+	/*
+	 * Orders the statistics from the least to the most used: by count, then by the time of the last access.
+	 */
+	static final Comparator<AccessStatistics>	BY_USE	= Comparator
+	        .comparingLong(AccessStatistics::getAccessCount).thenComparingLong(AccessStatistics::getLastAccessTime);
+
+	/*
+	 * The estimated number of lookups.
+	 */
+	private final long		_accessCount;
+
+	/*
+	 * The time the key was bound.
+	 */
+	private final long		_createTime;
+
+	/*
+	 * The key.
+	 */
+	private final String	_key;
+
+	/*
+	 * The time of the last recorded lookup.
+	 */
+	private final long		_lastAccessTime;
+
+	/*
+	 * Creates a snapshot.
+	 */
+	AccessStatistics(final String key, final long accessCount, final long lastAccessTime, final long createTime)
+	{
+		assert (key != null) : "AccessStatistics() - the parameter 'key' should not be null.";
+
+		this._key = key;
+		this._accessCount = accessCount;
+		this._lastAccessTime = lastAccessTime;
+		this._createTime = createTime;
+	}
+
+	/**
+	 * Gets the estimated number of times the key was looked up with get(key) or containsChild(key).
+	 *
+	 * @return The estimated count.
+	 */
+	public long getAccessCount()
+	{
+		return (this._accessCount);
+	}
+
+	/**
+	 * Gets the time the key was bound, or the time statistics were enabled if it was bound before then.
+	 *
+	 * @return The time in milliseconds since the epoch.
+	 */
+	public long getCreateTime()
+	{
+		return (this._createTime);
+	}
+
+	/**
+	 * Gets the key the statistics are for.
+	 *
+	 * @return A <code>String</code> instance.
+	 */
+	public String getKey()
+	{
+		return (this._key);
+	}
+
+	/**
+	 * Gets the time of the last recorded lookup of the key.
+	 *
+	 * @return The time in milliseconds since the epoch, or 0 if no lookup has been recorded.
+	 */
+	public long getLastAccessTime()
+	{
+		return (this._lastAccessTime);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString()
+	{
+		return ("AccessStatistics [key=" + this._key + ", accessCount=" + this._accessCount + ", lastAccessTime="
+		        + this._lastAccessTime + ", createTime=" + this._createTime + "]");
+	}
+
+}
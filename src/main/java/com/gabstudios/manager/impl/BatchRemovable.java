@@ -0,0 +1,45 @@
+/*****************************************************************************************
+ *
+ * Copyright 2019 Gregory Brown. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ *****************************************************************************************
+ */
+
+
+package com.gabstudios.manager.impl;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * <pre>
+ * A child table whose writes are serialized by one lock, and which can remove many keys for the price of a few
+ * acquisitions of it.  Used by ManagerImpl.closeChildren(keys) and ManagerImpl.closeChildren(matcher).
+ * </pre>
+ *
+ * @author Gregory Brown (sysdevone)
+ *
+ * @param <V>
+ *            The type of the values.
+ */
+interface BatchRemovable<V>
+{
+	/**
+	 * Removes the keys, taking the write lock once for each batch of keys rather than once for each key.
+	 *
+	 * @param keys
+	 *            The keys to remove. Keys that are not in the table are skipped.
+	 *
+	 * @return A <code>Map</code> of the keys that were removed to their values, in the order of the keys.
+	 */
+	public abstract Map<String, V> removeAll(Collection<String> keys);
+}
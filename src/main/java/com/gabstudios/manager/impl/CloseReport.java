@@ -0,0 +1,120 @@
+/*****************************************************************************************
+ *
+ * Copyright 2019 Gregory Brown. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ *****************************************************************************************
+ */
+
+package com.gabstudios.manager.impl;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The outcome of a close with a deadline, from ManagerImpl.close(deadline) or ManagerImpl.closeChild(key,deadline).
+ * Every child that was asked to close is listed in exactly one of closed, failed or overran.
+ *
+ * @author Gregory Brown (sysdevone)
+ */
+public final class CloseReport
+{
+	/*
+	 * The keys of the children that closed in time.
+	 */
+	private final List<String>				_closed;
+
+	/*
+	 * The keys of the children whose close threw, and what was thrown.
+	 */
+	private final Map<String, Throwable>	_failed;
+
+	/*
+	 * The keys of the children that had not finished closing by the deadline.
+	 */
+	private final List<String>				_overran;
+
+	/*
+	 * Creates a report. The collections are not copied.
+	 */
+	CloseReport(final List<String> closed, final Map<String, Throwable> failed, final List<String> overran)
+	{
+		assert (closed != null) : "CloseReport() - the parameter 'closed' should not be null.";
+		assert (failed != null) : "CloseReport() - the parameter 'failed' should not be null.";
+		assert (overran != null) : "CloseReport() - the parameter 'overran' should not be null.";
+
+		this._closed = Collections.unmodifiableList(closed);
+		this._failed = Collections.unmodifiableMap(failed);
+		this._overran = Collections.unmodifiableList(overran);
+	}
+
+	/**
+	 * Gets the keys of the children that closed before the deadline, in the order they were closed in.
+	 *
+	 * @return An unmodifiable <code>List</code> of keys.
+	 */
+	public List<String> getClosed()
+	{
+		return (this._closed);
+	}
+
+	/**
+	 * Gets the children whose Manageable.close() threw before the deadline.
+	 *
+	 * @return An unmodifiable <code>Map</code> of keys to what was thrown.
+	 */
+	public Map<String, Throwable> getFailed()
+	{
+		return (this._failed);
+	}
+
+	/**
+	 * Gets the keys of the children that had not finished closing by the deadline. Their keys are unbound, but
+	 * Manageable.close() may still be running, or may not have started if a child that must close first overran.
+	 *
+	 * @return An unmodifiable <code>List</code> of keys.
+	 */
+	public List<String> getOverran()
+	{
+		return (this._overran);
+	}
+
+	/**
+	 * Returns true if every child closed before the deadline without failing.
+	 *
+	 * @return A boolean value.
+	 */
+	public boolean isClean()
+	{
+		return (this._failed.isEmpty() && this._overran.isEmpty());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString()
+	{
+		final StringBuilder builder = new StringBuilder();
+		builder.append("CloseReport [closed=");
+		builder.append(this._closed.size());
+		builder.append(", failed=");
+		builder.append(this._failed.keySet());
+		builder.append(", overran=");
+		builder.append(this._overran);
+		builder.append("]");
+		return builder.toString();
+	}
+
+}
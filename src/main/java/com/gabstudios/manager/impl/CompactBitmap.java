@@ -0,0 +1,668 @@
+/*****************************************************************************************
+ *
+ * Copyright 2019 Gregory Brown. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ *****************************************************************************************
+ */
+
+package com.gabstudios.manager.impl;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * <pre>
+ * A compressed bitmap of non-negative ints, laid out the way roaring bitmaps are.
+ *
+ * The ints are split by their high 16 bits into chunks.  Each chunk holds its low 16 bits in one of two containers:
+ *
+ *   array  - a sorted char[] of the values, used while the chunk holds at most 4096 values.
+ *   bitmap - a long[1024] with one bit per value, used once the chunk holds more.
+ *
+ * So a sparse set costs about two bytes per value and a dense one an eighth of a byte, and an intersection of two
+ * chunks is a merge of two short arrays, a probe of an array into a bitmap, or an AND of 1024 words.
+ *
+ * A bitmap is not thread safe.  The results of and, or and andNot are new bitmaps; the operands are not changed.
+ * </pre>
+ *
+ * @author Gregory Brown (sysdevone)
+ */
+final class CompactBitmap
+{
+	/*
+	 * The most values an array container holds before it becomes a bitmap container.
+	 */
+	private static final int	ARRAY_MAX		= 4096;
+
+	/*
+	 * The number of words in a bitmap container.
+	 */
+	private static final int	BITMAP_WORDS	= 1024;
+
+	/*
+	 * Intersects two containers.
+	 */
+	private static Object and(final Object a, final int aCardinality, final Object b, final int bCardinality,
+	        final int[] cardinality)
+	{
+		if ((a instanceof char[]) && (b instanceof char[]))
+		{
+			final char[] left = (char[]) a;
+			final char[] right = (char[]) b;
+			final char[] result = new char[Math.min(aCardinality, bCardinality)];
+			int i = 0;
+			int j = 0;
+			int count = 0;
+			while ((i < aCardinality) && (j < bCardinality))
+			{
+				if (left[i] < right[j])
+				{
+					i++;
+				}
+				else if (left[i] > right[j])
+				{
+					j++;
+				}
+				else
+				{
+					result[count++] = left[i];
+					i++;
+					j++;
+				}
+			}
+			cardinality[0] = count;
+			return (result);
+		}
+		else if ((a instanceof char[]) || (b instanceof char[]))
+		{
+			final char[] array = (char[]) ((a instanceof char[]) ? a : b);
+			final int arrayCardinality = (a instanceof char[]) ? aCardinality : bCardinality;
+			final long[] bitmap = (long[]) ((a instanceof char[]) ? b : a);
+			final char[] result = new char[arrayCardinality];
+			int count = 0;
+			for (int i = 0; i < arrayCardinality; i++)
+			{
+				if (CompactBitmap.contains(bitmap, array[i]))
+				{
+					result[count++] = array[i];
+				}
+			}
+			cardinality[0] = count;
+			return (result);
+		}
+		else
+		{
+			final long[] left = (long[]) a;
+			final long[] right = (long[]) b;
+			final long[] result = new long[CompactBitmap.BITMAP_WORDS];
+			int count = 0;
+			for (int i = 0; i < CompactBitmap.BITMAP_WORDS; i++)
+			{
+				result[i] = left[i] & right[i];
+				count += Long.bitCount(result[i]);
+			}
+			cardinality[0] = count;
+			return ((count <= CompactBitmap.ARRAY_MAX) ? CompactBitmap.toArray(result, count) : result);
+		}
+	}
+
+	/*
+	 * Intersects two bitmaps.
+	 */
+	static CompactBitmap and(final CompactBitmap a, final CompactBitmap b)
+	{
+		final CompactBitmap result = new CompactBitmap();
+		final int[] cardinality = new int[1];
+		int i = 0;
+		int j = 0;
+		while ((i < a._size) && (j < b._size))
+		{
+			if (a._highs[i] < b._highs[j])
+			{
+				i++;
+			}
+			else if (a._highs[i] > b._highs[j])
+			{
+				j++;
+			}
+			else
+			{
+				final Object container = CompactBitmap.and(a._containers[i], a._cardinalities[i], b._containers[j],
+				        b._cardinalities[j], cardinality);
+				if (cardinality[0] > 0)
+				{
+					result.append(a._highs[i], container, cardinality[0]);
+				}
+				i++;
+				j++;
+			}
+		}
+		return (result);
+	}
+
+	/*
+	 * Removes the values of one container from another.
+	 */
+	private static Object andNot(final Object a, final int aCardinality, final Object b, final int bCardinality,
+	        final int[] cardinality)
+	{
+		if (a instanceof char[])
+		{
+			final char[] array = (char[]) a;
+			final char[] result = new char[aCardinality];
+			int count = 0;
+			for (int i = 0; i < aCardinality; i++)
+			{
+				if (!CompactBitmap.contains(b, bCardinality, array[i]))
+				{
+					result[count++] = array[i];
+				}
+			}
+			cardinality[0] = count;
+			return (result);
+		}
+		else
+		{
+			final long[] result = Arrays.copyOf((long[]) a, CompactBitmap.BITMAP_WORDS);
+			if (b instanceof char[])
+			{
+				final char[] array = (char[]) b;
+				for (int i = 0; i < bCardinality; i++)
+				{
+					result[array[i] >>> 6] &= ~(1L << array[i]);
+				}
+			}
+			else
+			{
+				final long[] bitmap = (long[]) b;
+				for (int i = 0; i < CompactBitmap.BITMAP_WORDS; i++)
+				{
+					result[i] &= ~bitmap[i];
+				}
+			}
+			int count = 0;
+			for (final long word : result)
+			{
+				count += Long.bitCount(word);
+			}
+			cardinality[0] = count;
+			return ((count <= CompactBitmap.ARRAY_MAX) ? CompactBitmap.toArray(result, count) : result);
+		}
+	}
+
+	/*
+	 * Returns the values of the first bitmap that are not in the second.
+	 */
+	static CompactBitmap andNot(final CompactBitmap a, final CompactBitmap b)
+	{
+		final CompactBitmap result = new CompactBitmap();
+		final int[] cardinality = new int[1];
+		int j = 0;
+		for (int i = 0; i < a._size; i++)
+		{
+			while ((j < b._size) && (b._highs[j] < a._highs[i]))
+			{
+				j++;
+			}
+			if ((j < b._size) && (b._highs[j] == a._highs[i]))
+			{
+				final Object container = CompactBitmap.andNot(a._containers[i], a._cardinalities[i],
+				        b._containers[j], b._cardinalities[j], cardinality);
+				if (cardinality[0] > 0)
+				{
+					result.append(a._highs[i], container, cardinality[0]);
+				}
+			}
+			else
+			{
+				result.append(a._highs[i], CompactBitmap.copy(a._containers[i]), a._cardinalities[i]);
+			}
+		}
+		return (result);
+	}
+
+	/*
+	 * Returns true if the bitmap container holds the value.
+	 */
+	private static boolean contains(final long[] bitmap, final char value)
+	{
+		return ((bitmap[value >>> 6] & (1L << value)) != 0);
+	}
+
+	/*
+	 * Returns true if the container holds the value.
+	 */
+	private static boolean contains(final Object container, final int cardinality, final char value)
+	{
+		if (container instanceof long[])
+		{
+			return (CompactBitmap.contains((long[]) container, value));
+		}
+		return (Arrays.binarySearch((char[]) container, 0, cardinality, value) >= 0);
+	}
+
+	/*
+	 * Copies a container.
+	 */
+	private static Object copy(final Object container)
+	{
+		if (container instanceof char[])
+		{
+			return (((char[]) container).clone());
+		}
+		return (((long[]) container).clone());
+	}
+
+	/*
+	 * Unites two containers.
+	 */
+	private static Object or(final Object a, final int aCardinality, final Object b, final int bCardinality,
+	        final int[] cardinality)
+	{
+		if ((a instanceof char[]) && (b instanceof char[]))
+		{
+			final char[] left = (char[]) a;
+			final char[] right = (char[]) b;
+			final char[] result = new char[aCardinality + bCardinality];
+			int i = 0;
+			int j = 0;
+			int count = 0;
+			while ((i < aCardinality) || (j < bCardinality))
+			{
+				if ((j >= bCardinality) || ((i < aCardinality) && (left[i] < right[j])))
+				{
+					result[count++] = left[i++];
+				}
+				else if ((i >= aCardinality) || (left[i] > right[j]))
+				{
+					result[count++] = right[j++];
+				}
+				else
+				{
+					result[count++] = left[i];
+					i++;
+					j++;
+				}
+			}
+			cardinality[0] = count;
+			return ((count > CompactBitmap.ARRAY_MAX) ? CompactBitmap.toBitmap(result, count) : result);
+		}
+		else
+		{
+			final long[] result;
+			if (a instanceof long[])
+			{
+				result = ((long[]) a).clone();
+				CompactBitmap.or(result, b, bCardinality);
+			}
+			else
+			{
+				result = ((long[]) b).clone();
+				CompactBitmap.or(result, a, aCardinality);
+			}
+			int count = 0;
+			for (final long word : result)
+			{
+				count += Long.bitCount(word);
+			}
+			cardinality[0] = count;
+			return (result);
+		}
+	}
+
+	/*
+	 * Unites two bitmaps.
+	 */
+	static CompactBitmap or(final CompactBitmap a, final CompactBitmap b)
+	{
+		final CompactBitmap result = new CompactBitmap();
+		final int[] cardinality = new int[1];
+		int i = 0;
+		int j = 0;
+		while ((i < a._size) || (j < b._size))
+		{
+			if ((j >= b._size) || ((i < a._size) && (a._highs[i] < b._highs[j])))
+			{
+				result.append(a._highs[i], CompactBitmap.copy(a._containers[i]), a._cardinalities[i]);
+				i++;
+			}
+			else if ((i >= a._size) || (a._highs[i] > b._highs[j]))
+			{
+				result.append(b._highs[j], CompactBitmap.copy(b._containers[j]), b._cardinalities[j]);
+				j++;
+			}
+			else
+			{
+				final Object container = CompactBitmap.or(a._containers[i], a._cardinalities[i], b._containers[j],
+				        b._cardinalities[j], cardinality);
+				result.append(a._highs[i], container, cardinality[0]);
+				i++;
+				j++;
+			}
+		}
+		return (result);
+	}
+
+	/*
+	 * Sets the bits of a container in a bitmap container.
+	 */
+	private static void or(final long[] bitmap, final Object container, final int cardinality)
+	{
+		if (container instanceof char[])
+		{
+			final char[] array = (char[]) container;
+			for (int i = 0; i < cardinality; i++)
+			{
+				bitmap[array[i] >>> 6] |= 1L << array[i];
+			}
+		}
+		else
+		{
+			final long[] other = (long[]) container;
+			for (int i = 0; i < CompactBitmap.BITMAP_WORDS; i++)
+			{
+				bitmap[i] |= other[i];
+			}
+		}
+	}
+
+	/*
+	 * Converts a bitmap container to an array container.
+	 */
+	private static char[] toArray(final long[] bitmap, final int cardinality)
+	{
+		final char[] array = new char[cardinality];
+		int count = 0;
+		for (int i = 0; i < CompactBitmap.BITMAP_WORDS; i++)
+		{
+			long word = bitmap[i];
+			while (word != 0)
+			{
+				array[count++] = (char) ((i << 6) + Long.numberOfTrailingZeros(word));
+				word &= word - 1;
+			}
+		}
+		return (array);
+	}
+
+	/*
+	 * Converts an array container to a bitmap container.
+	 */
+	private static long[] toBitmap(final char[] array, final int cardinality)
+	{
+		final long[] bitmap = new long[CompactBitmap.BITMAP_WORDS];
+		for (int i = 0; i < cardinality; i++)
+		{
+			bitmap[array[i] >>> 6] |= 1L << array[i];
+		}
+		return (bitmap);
+	}
+
+	/*
+	 * The number of values in each container.
+	 */
+	private int[]		_cardinalities;
+
+	/*
+	 * The containers, a char[] or a long[] each, in the order of their high bits.
+	 */
+	private Object[]	_containers;
+
+	/*
+	 * The high 16 bits of each container, sorted.
+	 */
+	private char[]		_highs;
+
+	/*
+	 * The number of containers.
+	 */
+	private int			_size;
+
+	/*
+	 * Creates an empty bitmap.
+	 */
+	CompactBitmap()
+	{
+		this._highs = new char[4];
+		this._containers = new Object[4];
+		this._cardinalities = new int[4];
+	}
+
+	/*
+	 * Adds a value.
+	 *
+	 * @return True if the value was not already in the bitmap.
+	 */
+	boolean add(final int value)
+	{
+		assert (value >= 0) : "add() - the value should not be negative.";
+
+		final char high = (char) (value >>> 16);
+		final char low = (char) value;
+		int index = this.indexOf(high);
+		if (index < 0)
+		{
+			index = -index - 1;
+			this.insert(index, high, new char[4], 0);
+		}
+
+		final Object container = this._containers[index];
+		final int cardinality = this._cardinalities[index];
+		if (container instanceof long[])
+		{
+			final long[] bitmap = (long[]) container;
+			if (CompactBitmap.contains(bitmap, low))
+			{
+				return (false);
+			}
+			bitmap[low >>> 6] |= 1L << low;
+		}
+		else
+		{
+			char[] array = (char[]) container;
+			final int position = Arrays.binarySearch(array, 0, cardinality, low);
+			if (position >= 0)
+			{
+				return (false);
+			}
+			if (cardinality == CompactBitmap.ARRAY_MAX)
+			{
+				final long[] bitmap = CompactBitmap.toBitmap(array, cardinality);
+				bitmap[low >>> 6] |= 1L << low;
+				this._containers[index] = bitmap;
+			}
+			else
+			{
+				final int insertion = -position - 1;
+				if (cardinality == array.length)
+				{
+					array = Arrays.copyOf(array, Math.min(CompactBitmap.ARRAY_MAX, cardinality * 2));
+					this._containers[index] = array;
+				}
+				System.arraycopy(array, insertion, array, insertion + 1, cardinality - insertion);
+				array[insertion] = low;
+			}
+		}
+		this._cardinalities[index] = cardinality + 1;
+		return (true);
+	}
+
+	/*
+	 * Appends a container after the last one.  The container must not be empty; an array container is trimmed to
+	 * its values.
+	 */
+	private void append(final char high, final Object container, final int cardinality)
+	{
+		assert ((this._size == 0) || (this._highs[this._size - 1] < high)) : "append() - the containers are out of order.";
+		this.insert(this._size, high, (container instanceof char[]) && (((char[]) container).length != cardinality)
+		        ? Arrays.copyOf((char[]) container, cardinality) : container, cardinality);
+	}
+
+	/*
+	 * Returns true if the bitmap holds the value.
+	 */
+	boolean contains(final int value)
+	{
+		final int index = this.indexOf((char) (value >>> 16));
+		if (index < 0)
+		{
+			return (false);
+		}
+		final char low = (char) value;
+		final Object container = this._containers[index];
+		if (container instanceof long[])
+		{
+			return (CompactBitmap.contains((long[]) container, low));
+		}
+		return (Arrays.binarySearch((char[]) container, 0, this._cardinalities[index], low) >= 0);
+	}
+
+	/*
+	 * Calls the consumer with each value, in increasing order.
+	 */
+	void forEach(final IntConsumer consumer)
+	{
+		for (int i = 0; i < this._size; i++)
+		{
+			final int high = this._highs[i] << 16;
+			final Object container = this._containers[i];
+			if (container instanceof char[])
+			{
+				final char[] array = (char[]) container;
+				for (int j = 0; j < this._cardinalities[i]; j++)
+				{
+					consumer.accept(high | array[j]);
+				}
+			}
+			else
+			{
+				final long[] bitmap = (long[]) container;
+				for (int j = 0; j < CompactBitmap.BITMAP_WORDS; j++)
+				{
+					long word = bitmap[j];
+					while (word != 0)
+					{
+						consumer.accept(high | ((j << 6) + Long.numberOfTrailingZeros(word)));
+						word &= word - 1;
+					}
+				}
+			}
+		}
+	}
+
+	/*
+	 * Returns the number of values in the bitmap.
+	 */
+	int getCardinality()
+	{
+		int cardinality = 0;
+		for (int i = 0; i < this._size; i++)
+		{
+			cardinality += this._cardinalities[i];
+		}
+		return (cardinality);
+	}
+
+	/*
+	 * Finds the container of the high bits, as Arrays.binarySearch does.
+	 */
+	private int indexOf(final char high)
+	{
+		return (Arrays.binarySearch(this._highs, 0, this._size, high));
+	}
+
+	/*
+	 * Inserts a container at an index.
+	 */
+	private void insert(final int index, final char high, final Object container, final int cardinality)
+	{
+		if (this._size == this._highs.length)
+		{
+			final int capacity = this._size * 2;
+			this._highs = Arrays.copyOf(this._highs, capacity);
+			this._containers = Arrays.copyOf(this._containers, capacity);
+			this._cardinalities = Arrays.copyOf(this._cardinalities, capacity);
+		}
+		System.arraycopy(this._highs, index, this._highs, index + 1, this._size - index);
+		System.arraycopy(this._containers, index, this._containers, index + 1, this._size - index);
+		System.arraycopy(this._cardinalities, index, this._cardinalities, index + 1, this._size - index);
+		this._highs[index] = high;
+		this._containers[index] = container;
+		this._cardinalities[index] = cardinality;
+		this._size++;
+	}
+
+	/*
+	 * Returns true if the bitmap holds no values.
+	 */
+	boolean isEmpty()
+	{
+		return (this._size == 0);
+	}
+
+	/*
+	 * Removes a value.
+	 *
+	 * @return True if the value was in the bitmap.
+	 */
+	boolean remove(final int value)
+	{
+		final int index = this.indexOf((char) (value >>> 16));
+		if (index < 0)
+		{
+			return (false);
+		}
+
+		final char low = (char) value;
+		final Object container = this._containers[index];
+		final int cardinality = this._cardinalities[index];
+		if (container instanceof long[])
+		{
+			final long[] bitmap = (long[]) container;
+			if (!CompactBitmap.contains(bitmap, low))
+			{
+				return (false);
+			}
+			bitmap[low >>> 6] &= ~(1L << low);
+			if ((cardinality - 1) <= (CompactBitmap.ARRAY_MAX / 2))
+			{
+				// shrink only well below the limit, so a chunk at the limit does not convert back and forth.
+				this._containers[index] = CompactBitmap.toArray(bitmap, cardinality - 1);
+			}
+		}
+		else
+		{
+			final char[] array = (char[]) container;
+			final int position = Arrays.binarySearch(array, 0, cardinality, low);
+			if (position < 0)
+			{
+				return (false);
+			}
+			System.arraycopy(array, position + 1, array, position, cardinality - position - 1);
+		}
+
+		if (cardinality == 1)
+		{
+			System.arraycopy(this._highs, index + 1, this._highs, index, this._size - index - 1);
+			System.arraycopy(this._containers, index + 1, this._containers, index, this._size - index - 1);
+			System.arraycopy(this._cardinalities, index + 1, this._cardinalities, index, this._size - index - 1);
+			this._size--;
+			this._containers[this._size] = null;
+		}
+		else
+		{
+			this._cardinalities[index] = cardinality - 1;
+		}
+		return (true);
+	}
+
+}
@@ -0,0 +1,1257 @@
+/*****************************************************************************************
+ *
+ * Copyright 2019 Gregory Brown. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ *****************************************************************************************
+ */
+
+package com.gabstudios.manager.impl;
+
+import java.lang.management.ManagementFactory;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+
+/**
+ * <pre>
+ * A child table for managers with millions of children, where the String keys and the nodes of a hash map would
+ * cost more memory than the children.
+ *
+ * The keys are stored as length prefixed UTF-8 bytes, packed one after the other in large shared slabs.  The table
+ * is open addressed with linear probing over three parallel arrays: the hash of each key, a reference to its bytes
+ * in a slab, and the value.  A lookup compares the hash, then decodes the stored bytes against the characters of the
+ * key it was given, so no String is created.  A removed key leaves its bytes in the slab until the table is
+ * resized or enough bytes are dead to be worth copying the live keys into new slabs.
+ *
+ * The class of each value is stored in the table as a small id, in a fourth array, so the children of a type are
+ * found without a separate index of their keys.
+ *
+ * Reads are optimistic and do not block or write shared memory; writes are serialized by one lock.  The table is
+ * meant for managers whose memory matters more than the rate children are created at.
+ *
+ * The bytes are a generalized UTF-8 in which a lone surrogate is encoded like any other character, so every String
+ * round trips.
+ * </pre>
+ *
+ * @author Gregory Brown (sysdevone)
+ */
+final class CompactChildMap<V> extends AbstractMap<String, V> implements ConcurrentMap<String, V>, BatchRemovable<V>
+{
+	/*
+	 * The size of an array header, in bytes.
+	 */
+	static final int			ARRAY_HEADER		= 16;
+
+	/*
+	 * The number of slots a table starts with, a power of two.
+	 */
+	private static final int	INITIAL_CAPACITY	= 16;
+
+	/*
+	 * The size of the first slab.  Each new slab is twice the size of the last, up to MAX_SLAB.
+	 */
+	private static final int	INITIAL_SLAB		= 4 * 1024;
+
+	/*
+	 * The largest key, in encoded bytes.
+	 */
+	static final int			MAX_KEY_BYTES		= 0xffff;
+
+	/*
+	 * The number of low bits of a key reference that hold the offset in the slab.  The high bits hold the slab.
+	 */
+	private static final int	OFFSET_BITS			= 20;
+
+	/*
+	 * The size of the largest slab.
+	 */
+	private static final int	MAX_SLAB			= 1 << CompactChildMap.OFFSET_BITS;
+
+	/*
+	 * The most slabs a key reference can address.
+	 */
+	private static final int	MAX_SLABS			= 1 << (31 - CompactChildMap.OFFSET_BITS);
+
+	/*
+	 * The number of slots read by forEach(action) and the entry set under one hold of the lock.
+	 */
+	private static final int	PASS				= 256;
+
+	/*
+	 * The size of a reference, in bytes.
+	 */
+	static final int			REFERENCE			= CompactChildMap.referenceSize();
+
+	/*
+	 * The id of each class in the table.
+	 */
+	private final Map<Class<?>, Integer>	_classIds	= new HashMap<>();
+
+	/*
+	 * The class of each id, or null for an id that is free.
+	 */
+	private Class<?>[]			_classes;
+
+	/*
+	 * The number of values of each class id.
+	 */
+	private int[]				_classUses;
+
+	/*
+	 * The bytes of the keys that were removed and are still in the slabs.
+	 */
+	private long				_deadBytes;
+
+	/*
+	 * The hash of the key in each slot, or 0 for an empty slot.
+	 */
+	private int[]				_hashes;
+
+	/*
+	 * The slab of the key in each slot in the high bits, and its offset in the slab in the low OFFSET_BITS bits.
+	 */
+	private int[]				_keys;
+
+	/*
+	 * Guards the table.  Reads are optimistic.
+	 */
+	private final StampedLock	_lock				= new StampedLock();
+
+	/*
+	 * The number of slabs in use.
+	 */
+	private int					_slabCount;
+
+	/*
+	 * The next free byte of the last slab.
+	 */
+	private int					_slabPosition;
+
+	/*
+	 * The slabs the keys are stored in.
+	 */
+	private byte[][]			_slabs;
+
+	/*
+	 * The number of keys.
+	 */
+	private int					_size;
+
+	/*
+	 * The class id of the value in each slot.
+	 */
+	private char[]				_types;
+
+	/*
+	 * The value in each slot.
+	 */
+	private Object[]			_values;
+
+	/*
+	 * Creates an empty table.
+	 */
+	CompactChildMap()
+	{
+		this._hashes = new int[CompactChildMap.INITIAL_CAPACITY];
+		this._keys = new int[CompactChildMap.INITIAL_CAPACITY];
+		this._values = new Object[CompactChildMap.INITIAL_CAPACITY];
+		this._types = new char[CompactChildMap.INITIAL_CAPACITY];
+		this._slabs = new byte[4][];
+		this._classes = new Class<?>[4];
+		this._classUses = new int[4];
+	}
+
+	/*
+	 * Decodes the key stored at an offset of a slab.
+	 */
+	static String decode(final byte[] slab, final int offset)
+	{
+		final int length = CompactChildMap.length(slab, offset);
+		final char[] chars = new char[length];
+		int count = 0;
+		int i = offset + 2;
+		final int end = i + length;
+		while (i < end)
+		{
+			final int b = slab[i] & 0xff;
+			if (b < 0x80)
+			{
+				chars[count++] = (char) b;
+				i++;
+			}
+			else if (b < 0xe0)
+			{
+				chars[count++] = (char) (((b & 0x1f) << 6) | (slab[i + 1] & 0x3f));
+				i += 2;
+			}
+			else if (b < 0xf0)
+			{
+				chars[count++] = (char) (((b & 0x0f) << 12) | ((slab[i + 1] & 0x3f) << 6) | (slab[i + 2] & 0x3f));
+				i += 3;
+			}
+			else
+			{
+				final int codePoint = ((b & 0x07) << 18) | ((slab[i + 1] & 0x3f) << 12) | ((slab[i + 2] & 0x3f) << 6)
+				        | (slab[i + 3] & 0x3f);
+				chars[count++] = Character.highSurrogate(codePoint);
+				chars[count++] = Character.lowSurrogate(codePoint);
+				i += 4;
+			}
+		}
+		return (new String(chars, 0, count));
+	}
+
+	/*
+	 * Returns the number of bytes a key is encoded in.
+	 */
+	static int encodedLength(final String key)
+	{
+		int length = 0;
+		for (int i = 0; i < key.length(); i++)
+		{
+			final char c = key.charAt(i);
+			if (c < 0x80)
+			{
+				length++;
+			}
+			else if (c < 0x800)
+			{
+				length += 2;
+			}
+			else if (Character.isHighSurrogate(c) && ((i + 1) < key.length())
+			        && Character.isLowSurrogate(key.charAt(i + 1)))
+			{
+				length += 4;
+				i++;
+			}
+			else
+			{
+				length += 3;
+			}
+		}
+		return (length);
+	}
+
+	/*
+	 * Encodes a key into a slab at an offset, after its two byte length.
+	 */
+	static void encode(final String key, final int length, final byte[] slab, final int offset)
+	{
+		slab[offset] = (byte) (length >>> 8);
+		slab[offset + 1] = (byte) length;
+		int position = offset + 2;
+		for (int i = 0; i < key.length(); i++)
+		{
+			final char c = key.charAt(i);
+			if (c < 0x80)
+			{
+				slab[position++] = (byte) c;
+			}
+			else if (c < 0x800)
+			{
+				slab[position++] = (byte) (0xc0 | (c >>> 6));
+				slab[position++] = (byte) (0x80 | (c & 0x3f));
+			}
+			else if (Character.isHighSurrogate(c) && ((i + 1) < key.length())
+			        && Character.isLowSurrogate(key.charAt(i + 1)))
+			{
+				final int codePoint = Character.toCodePoint(c, key.charAt(++i));
+				slab[position++] = (byte) (0xf0 | (codePoint >>> 18));
+				slab[position++] = (byte) (0x80 | ((codePoint >>> 12) & 0x3f));
+				slab[position++] = (byte) (0x80 | ((codePoint >>> 6) & 0x3f));
+				slab[position++] = (byte) (0x80 | (codePoint & 0x3f));
+			}
+			else
+			{
+				slab[position++] = (byte) (0xe0 | (c >>> 12));
+				slab[position++] = (byte) (0x80 | ((c >>> 6) & 0x3f));
+				slab[position++] = (byte) (0x80 | (c & 0x3f));
+			}
+		}
+	}
+
+	/*
+	 * Spreads the hash code of a key over all the bits. Never 0, which marks an empty slot.
+	 */
+	static int hash(final String key)
+	{
+		int hash = key.hashCode() * 0x9e3779b9;
+		hash ^= (hash >>> 16);
+		return ((hash == 0) ? 1 : hash);
+	}
+
+	/*
+	 * Returns the encoded length of the key stored at an offset of a slab.
+	 */
+	private static int length(final byte[] slab, final int offset)
+	{
+		return (((slab[offset] & 0xff) << 8) | (slab[offset + 1] & 0xff));
+	}
+
+	/*
+	 * Returns true if the key stored at an offset of a slab is the key, decoding the bytes against its characters.
+	 */
+	private static boolean matches(final byte[] slab, final int offset, final String key)
+	{
+		final int end = offset + 2 + CompactChildMap.length(slab, offset);
+		int i = offset + 2;
+		int index = 0;
+		while (i < end)
+		{
+			if (index >= key.length())
+			{
+				return (false);
+			}
+			final int b = slab[i] & 0xff;
+			if (b < 0x80)
+			{
+				if (key.charAt(index++) != b)
+				{
+					return (false);
+				}
+				i++;
+			}
+			else if (b < 0xe0)
+			{
+				if (key.charAt(index++) != (((b & 0x1f) << 6) | (slab[i + 1] & 0x3f)))
+				{
+					return (false);
+				}
+				i += 2;
+			}
+			else if (b < 0xf0)
+			{
+				if (key.charAt(index++) != (((b & 0x0f) << 12) | ((slab[i + 1] & 0x3f) << 6) | (slab[i + 2] & 0x3f)))
+				{
+					return (false);
+				}
+				i += 3;
+			}
+			else
+			{
+				final int codePoint = ((b & 0x07) << 18) | ((slab[i + 1] & 0x3f) << 12) | ((slab[i + 2] & 0x3f) << 6)
+				        | (slab[i + 3] & 0x3f);
+				if (((index + 1) >= key.length()) || (key.charAt(index) != Character.highSurrogate(codePoint))
+				        || (key.charAt(index + 1) != Character.lowSurrogate(codePoint)))
+				{
+					return (false);
+				}
+				index += 2;
+				i += 4;
+			}
+		}
+		return (index == key.length());
+	}
+
+	/*
+	 * Finds the size of a reference from the JVM, assuming 8 bytes if it can not be told.
+	 */
+	private static int referenceSize()
+	{
+		try
+		{
+			final HotSpotDiagnosticMXBean bean = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+			return (Boolean.parseBoolean(bean.getVMOption("UseCompressedOops").getValue()) ? 4 : 8);
+		}
+		catch (final RuntimeException | LinkageError e)
+		{
+			return (8);
+		}
+	}
+
+	/*
+	 * Appends a key to the slabs, starting a new slab if it does not fit in the last one.
+	 *
+	 * @return The reference to the key.
+	 */
+	private int append(final String key)
+	{
+		final int length = CompactChildMap.encodedLength(key);
+		if (length > CompactChildMap.MAX_KEY_BYTES)
+		{
+			throw (new IllegalArgumentException("The key is too long to store - " + length + " bytes."));
+		}
+
+		final int size = length + 2;
+		if ((this._slabCount == 0) || ((this._slabs[this._slabCount - 1].length - this._slabPosition) < size))
+		{
+			final int last = (this._slabCount == 0) ? (CompactChildMap.INITIAL_SLAB / 2)
+			        : this._slabs[this._slabCount - 1].length;
+			if (this._slabCount == CompactChildMap.MAX_SLABS)
+			{
+				throw (new IllegalStateException("The key slabs are full."));
+			}
+			if (this._slabCount == this._slabs.length)
+			{
+				final byte[][] slabs = new byte[this._slabs.length * 2][];
+				System.arraycopy(this._slabs, 0, slabs, 0, this._slabCount);
+				this._slabs = slabs;
+			}
+			this._slabs[this._slabCount++] = new byte[Math.max(size, Math.min(last * 2, CompactChildMap.MAX_SLAB))];
+			this._slabPosition = 0;
+		}
+
+		final int offset = this._slabPosition;
+		CompactChildMap.encode(key, length, this._slabs[this._slabCount - 1], offset);
+		this._slabPosition += size;
+		return (((this._slabCount - 1) << CompactChildMap.OFFSET_BITS) | offset);
+	}
+
+	/*
+	 * Returns the bytes a key takes in its slab, with its length.
+	 */
+	private int bytesOf(final int reference)
+	{
+		return (2 + CompactChildMap.length(this._slabs[reference >>> CompactChildMap.OFFSET_BITS],
+		        reference & (CompactChildMap.MAX_SLAB - 1)));
+	}
+
+	/*
+	 * Returns the estimated bytes used per key: the table, the slabs and the headers, divided by the number of keys.
+	 * Returns the whole footprint when the table is empty.
+	 */
+	double bytesPerEntry()
+	{
+		final long stamp = this._lock.readLock();
+		try
+		{
+			return (((double) this.footprint()) / Math.max(1, this._size));
+		}
+		finally
+		{
+			this._lock.unlockRead(stamp);
+		}
+	}
+
+	/*
+	 * Gets the id of a class, adding the class if it is not in the table, and counts one more value of it.  Called
+	 * while the write lock is held.
+	 */
+	private char classId(final Class<?> type)
+	{
+		Integer id = this._classIds.get(type);
+		if (id == null)
+		{
+			int free = 0;
+			while ((free < this._classes.length) && (this._classes[free] != null))
+			{
+				free++;
+			}
+			if (free > Character.MAX_VALUE)
+			{
+				throw (new IllegalStateException("The table holds children of more than " + (Character.MAX_VALUE + 1)
+				        + " classes."));
+			}
+			if (free == this._classes.length)
+			{
+				this._classes = Arrays.copyOf(this._classes, this._classes.length * 2);
+				this._classUses = Arrays.copyOf(this._classUses, this._classUses.length * 2);
+			}
+			this._classes[free] = type;
+			this._classIds.put(type, free);
+			id = free;
+		}
+		this._classUses[id]++;
+		return ((char) id.intValue());
+	}
+
+	/*
+	 * Returns true for each class id whose class is assignable to the type.  Called while the lock is held.
+	 */
+	private boolean[] classesOf(final Class<?> type)
+	{
+		final boolean[] matching = new boolean[this._classes.length];
+		for (int id = 0; id < this._classes.length; id++)
+		{
+			matching[id] = (this._classes[id] != null) && type.isAssignableFrom(this._classes[id]);
+		}
+		return (matching);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.util.AbstractMap#clear()
+	 */
+	@Override
+	public void clear()
+	{
+		final long stamp = this._lock.writeLock();
+		try
+		{
+			this._hashes = new int[CompactChildMap.INITIAL_CAPACITY];
+			this._keys = new int[CompactChildMap.INITIAL_CAPACITY];
+			this._values = new Object[CompactChildMap.INITIAL_CAPACITY];
+			this._types = new char[CompactChildMap.INITIAL_CAPACITY];
+			this._slabs = new byte[4][];
+			this._classes = new Class<?>[4];
+			this._classUses = new int[4];
+			this._classIds.clear();
+			this._slabCount = 0;
+			this._slabPosition = 0;
+			this._deadBytes = 0;
+			this._size = 0;
+		}
+		finally
+		{
+			this._lock.unlockWrite(stamp);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.util.concurrent.ConcurrentMap#computeIfPresent(java.lang.Object, java.util.function.BiFunction)
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public V computeIfPresent(final String key, final BiFunction<? super String, ? super V, ? extends V> function)
+	{
+		final long stamp = this._lock.writeLock();
+		try
+		{
+			final int slot = this.find(key, CompactChildMap.hash(key));
+			if (slot < 0)
+			{
+				return (null);
+			}
+			final V computed = function.apply(key, (V) this._values[slot]);
+			if (computed == null)
+			{
+				this.removeAt(slot);
+			}
+			else
+			{
+				this.setValue(slot, computed);
+			}
+			return (computed);
+		}
+		finally
+		{
+			this._lock.unlockWrite(stamp);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.util.AbstractMap#containsKey(java.lang.Object)
+	 */
+	@Override
+	public boolean containsKey(final Object key)
+	{
+		return (this.get(key) != null);
+	}
+
+	/*
+	 * Returns the number of values of classes assignable to the type.
+	 */
+	int countOf(final Class<?> type)
+	{
+		final long stamp = this._lock.readLock();
+		try
+		{
+			final boolean[] matching = this.classesOf(type);
+			int count = 0;
+			for (int slot = 0; slot < this._hashes.length; slot++)
+			{
+				if ((this._hashes[slot] != 0) && matching[this._types[slot]])
+				{
+					count++;
+				}
+			}
+			return (count);
+		}
+		finally
+		{
+			this._lock.unlockRead(stamp);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.util.AbstractMap#entrySet()
+	 */
+	@Override
+	public Set<Map.Entry<String, V>> entrySet()
+	{
+		// read a pass at a time as it is iterated, like forEach(action), so a caller that stops early does not
+		// decode every key.
+		return (new AbstractSet<Map.Entry<String, V>>()
+		{
+			@Override
+			public Iterator<Map.Entry<String, V>> iterator()
+			{
+				return (new Iterator<Map.Entry<String, V>>()
+				{
+					private final List<String>	_keys		= new ArrayList<>(CompactChildMap.PASS);
+					private final List<V>		_values		= new ArrayList<>(CompactChildMap.PASS);
+					private int					_index;
+					private int					_slot;
+
+					@Override
+					public boolean hasNext()
+					{
+						while ((this._index == this._keys.size()) && (this._slot >= 0))
+						{
+							this._keys.clear();
+							this._values.clear();
+							this._index = 0;
+							this._slot = CompactChildMap.this.read(this._slot, this._keys, this._values);
+						}
+						return (this._index < this._keys.size());
+					}
+
+					@Override
+					public Map.Entry<String, V> next()
+					{
+						if (!this.hasNext())
+						{
+							throw (new NoSuchElementException());
+						}
+						final Map.Entry<String, V> next = new AbstractMap.SimpleImmutableEntry<>(
+						        this._keys.get(this._index), this._values.get(this._index));
+						this._index++;
+						return (next);
+					}
+				});
+			}
+
+			@Override
+			public int size()
+			{
+				return (CompactChildMap.this.size());
+			}
+		});
+	}
+
+	/*
+	 * Finds the slot of a key. Called while the lock is held or inside an optimistic read, so it must not loop
+	 * forever on a table that is being changed.
+	 *
+	 * @return The slot, or -1 if the key is not in the table.
+	 */
+	private int find(final String key, final int hash)
+	{
+		final int[] hashes = this._hashes;
+		final int[] keys = this._keys;
+		final byte[][] slabs = this._slabs;
+		final int mask = hashes.length - 1;
+		int slot = hash & mask;
+		for (int probes = 0; probes <= mask; probes++)
+		{
+			final int stored = hashes[slot];
+			if (stored == 0)
+			{
+				return (-1);
+			}
+			if (stored == hash)
+			{
+				final int reference = keys[slot];
+				if (CompactChildMap.matches(slabs[reference >>> CompactChildMap.OFFSET_BITS],
+				        reference & (CompactChildMap.MAX_SLAB - 1), key))
+				{
+					return (slot);
+				}
+			}
+			slot = (slot + 1) & mask;
+		}
+		return (-1);
+	}
+
+	/*
+	 * Returns the estimated bytes used by the table: the four arrays, the slabs and the class table. Called while the
+	 * lock is held.
+	 */
+	private long footprint()
+	{
+		long bytes = 64 + (4L * CompactChildMap.ARRAY_HEADER)
+		        + (((long) this._hashes.length) * (4 + 4 + 2 + CompactChildMap.REFERENCE));
+		bytes += (2L * CompactChildMap.ARRAY_HEADER)
+		        + (((long) this._classes.length) * (CompactChildMap.REFERENCE + 4)) + (48L * this._classIds.size());
+		bytes += CompactChildMap.ARRAY_HEADER + (((long) this._slabs.length) * CompactChildMap.REFERENCE);
+		for (int i = 0; i < this._slabCount; i++)
+		{
+			bytes += CompactChildMap.ARRAY_HEADER + this._slabs[i].length;
+		}
+		return (bytes);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.util.concurrent.ConcurrentMap#forEach(java.util.function.BiConsumer)
+	 */
+	@Override
+	public void forEach(final BiConsumer<? super String, ? super V> action)
+	{
+		// a few slots at a time, so the action runs without the lock and writers are not held up by a long pass.
+		final List<String> keys = new ArrayList<>(CompactChildMap.PASS);
+		final List<V> values = new ArrayList<>(CompactChildMap.PASS);
+		int slot = 0;
+		while (slot >= 0)
+		{
+			slot = this.read(slot, keys, values);
+			for (int i = 0; i < keys.size(); i++)
+			{
+				action.accept(keys.get(i), values.get(i));
+			}
+			keys.clear();
+			values.clear();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.util.AbstractMap#get(java.lang.Object)
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public V get(final Object key)
+	{
+		if (!(key instanceof String))
+		{
+			return (null);
+		}
+		final String string = (String) key;
+		final int hash = CompactChildMap.hash(string);
+
+		long stamp = this._lock.tryOptimisticRead();
+		if (stamp != 0)
+		{
+			try
+			{
+				final Object[] values = this._values;
+				final int slot = this.find(string, hash);
+				final Object value = (slot < 0) ? null : values[slot];
+				if (this._lock.validate(stamp))
+				{
+					return ((V) value);
+				}
+			}
+			catch (final RuntimeException e)
+			{
+				// read a table that was being changed; read again under the lock.
+			}
+		}
+
+		stamp = this._lock.readLock();
+		try
+		{
+			final int slot = this.find(string, hash);
+			return ((slot < 0) ? null : (V) this._values[slot]);
+		}
+		finally
+		{
+			this._lock.unlockRead(stamp);
+		}
+	}
+
+	/*
+	 * Adds a key that is not in the table. Called while the write lock is held.
+	 */
+	private void insert(final String key, final int hash, final Object value)
+	{
+		if (((this._size + 1) * 4L) > (this._hashes.length * 3L))
+		{
+			this.rebuild(this._hashes.length * 2);
+		}
+		final int mask = this._hashes.length - 1;
+		int slot = hash & mask;
+		while (this._hashes[slot] != 0)
+		{
+			slot = (slot + 1) & mask;
+		}
+		this._keys[slot] = this.append(key);
+		this._values[slot] = value;
+		this._types[slot] = this.classId(value.getClass());
+		this._hashes[slot] = hash;
+		this._size++;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.util.AbstractMap#isEmpty()
+	 */
+	@Override
+	public boolean isEmpty()
+	{
+		return (this.size() == 0);
+	}
+
+	/*
+	 * Returns the keys of the values of classes assignable to the type, a few slots at a time.
+	 */
+	List<String> keysOf(final Class<?> type)
+	{
+		final List<String> keys = new ArrayList<>();
+		int slot = 0;
+		boolean done = false;
+		while (!done)
+		{
+			final long stamp = this._lock.readLock();
+			try
+			{
+				final boolean[] matching = this.classesOf(type);
+				final int end = Math.min(slot + CompactChildMap.PASS, this._hashes.length);
+				for (; slot < end; slot++)
+				{
+					if ((this._hashes[slot] != 0) && matching[this._types[slot]])
+					{
+						final int reference = this._keys[slot];
+						keys.add(CompactChildMap.decode(this._slabs[reference >>> CompactChildMap.OFFSET_BITS],
+						        reference & (CompactChildMap.MAX_SLAB - 1)));
+					}
+				}
+				done = (slot >= this._hashes.length);
+			}
+			finally
+			{
+				this._lock.unlockRead(stamp);
+			}
+		}
+		return (keys);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.util.AbstractMap#put(java.lang.Object, java.lang.Object)
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public V put(final String key, final V value)
+	{
+		assert (value != null) : "put() - the parameter 'value' should not be null.";
+
+		final int hash = CompactChildMap.hash(key);
+		final long stamp = this._lock.writeLock();
+		try
+		{
+			final int slot = this.find(key, hash);
+			if (slot >= 0)
+			{
+				final V existing = (V) this._values[slot];
+				this.setValue(slot, value);
+				return (existing);
+			}
+			this.insert(key, hash, value);
+			return (null);
+		}
+		finally
+		{
+			this._lock.unlockWrite(stamp);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.util.concurrent.ConcurrentMap#putIfAbsent(java.lang.Object, java.lang.Object)
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public V putIfAbsent(final String key, final V value)
+	{
+		assert (value != null) : "putIfAbsent() - the parameter 'value' should not be null.";
+
+		final int hash = CompactChildMap.hash(key);
+		final long stamp = this._lock.writeLock();
+		try
+		{
+			final int slot = this.find(key, hash);
+			if (slot >= 0)
+			{
+				return ((V) this._values[slot]);
+			}
+			this.insert(key, hash, value);
+			return (null);
+		}
+		finally
+		{
+			this._lock.unlockWrite(stamp);
+		}
+	}
+
+	/*
+	 * Reads the keys and values of up to PASS slots from a slot under the read lock.
+	 *
+	 * @return The slot to read from next, or -1 once the table has been read.
+	 */
+	@SuppressWarnings("unchecked")
+	private int read(final int from, final List<String> keys, final List<V> values)
+	{
+		final long stamp = this._lock.readLock();
+		try
+		{
+			int slot = from;
+			final int end = Math.min(slot + CompactChildMap.PASS, this._hashes.length);
+			for (; slot < end; slot++)
+			{
+				if (this._hashes[slot] != 0)
+				{
+					final int reference = this._keys[slot];
+					keys.add(CompactChildMap.decode(this._slabs[reference >>> CompactChildMap.OFFSET_BITS],
+					        reference & (CompactChildMap.MAX_SLAB - 1)));
+					values.add((V) this._values[slot]);
+				}
+			}
+			return ((slot >= this._hashes.length) ? -1 : slot);
+		}
+		finally
+		{
+			this._lock.unlockRead(stamp);
+		}
+	}
+
+	/*
+	 * Moves the table into arrays of the capacity and copies the live keys into new slabs, dropping the dead bytes.
+	 * Called while the write lock is held.
+	 */
+	private void rebuild(final int capacity)
+	{
+		final int[] hashes = this._hashes;
+		final int[] keys = this._keys;
+		final Object[] values = this._values;
+		final char[] types = this._types;
+		final byte[][] slabs = this._slabs;
+
+		this._hashes = new int[capacity];
+		this._keys = new int[capacity];
+		this._values = new Object[capacity];
+		this._types = new char[capacity];
+		this._slabs = new byte[4][];
+		this._slabCount = 0;
+		this._slabPosition = 0;
+		this._deadBytes = 0;
+
+		final int mask = capacity - 1;
+		for (int i = 0; i < hashes.length; i++)
+		{
+			if (hashes[i] != 0)
+			{
+				int slot = hashes[i] & mask;
+				while (this._hashes[slot] != 0)
+				{
+					slot = (slot + 1) & mask;
+				}
+				final byte[] slab = slabs[keys[i] >>> CompactChildMap.OFFSET_BITS];
+				final int offset = keys[i] & (CompactChildMap.MAX_SLAB - 1);
+				this._keys[slot] = this.append(CompactChildMap.decode(slab, offset));
+				this._values[slot] = values[i];
+				this._types[slot] = types[i];
+				this._hashes[slot] = hashes[i];
+			}
+		}
+	}
+
+	/*
+	 * Counts one less value of a class id, dropping the class when none are left so the table does not keep a
+	 * reloaded class from being unloaded.  Called while the write lock is held.
+	 */
+	private void releaseClass(final int id)
+	{
+		if (--this._classUses[id] == 0)
+		{
+			this._classIds.remove(this._classes[id]);
+			this._classes[id] = null;
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.util.AbstractMap#remove(java.lang.Object)
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public V remove(final Object key)
+	{
+		if (!(key instanceof String))
+		{
+			return (null);
+		}
+		final int hash = CompactChildMap.hash((String) key);
+		final long stamp = this._lock.writeLock();
+		try
+		{
+			final int slot = this.find((String) key, hash);
+			if (slot < 0)
+			{
+				return (null);
+			}
+			final V existing = (V) this._values[slot];
+			this.removeAt(slot);
+			return (existing);
+		}
+		finally
+		{
+			this._lock.unlockWrite(stamp);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.gabstudios.manager.impl.BatchRemovable#removeAll(java.util.Collection)
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public Map<String, V> removeAll(final Collection<String> keys)
+	{
+		assert (keys != null) : "removeAll() - the parameter 'keys' should not be null.";
+
+		// a few keys at a time, so readers and writers are not held up by a long batch.
+		final Map<String, V> removed = new LinkedHashMap<>();
+		final Iterator<String> iterator = keys.iterator();
+		final String[] batch = new String[CompactChildMap.PASS];
+		final int[] hashes = new int[CompactChildMap.PASS];
+		while (iterator.hasNext())
+		{
+			int count = 0;
+			while ((count < batch.length) && iterator.hasNext())
+			{
+				batch[count] = iterator.next();
+				hashes[count] = CompactChildMap.hash(batch[count]);
+				count++;
+			}
+
+			final long stamp = this._lock.writeLock();
+			try
+			{
+				for (int i = 0; i < count; i++)
+				{
+					final int slot = this.find(batch[i], hashes[i]);
+					if (slot >= 0)
+					{
+						removed.put(batch[i], (V) this._values[slot]);
+						this.removeAt(slot);
+					}
+				}
+			}
+			finally
+			{
+				this._lock.unlockWrite(stamp);
+			}
+		}
+		return (removed);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.util.concurrent.ConcurrentMap#remove(java.lang.Object, java.lang.Object)
+	 */
+	@Override
+	public boolean remove(final Object key, final Object value)
+	{
+		if (!(key instanceof String) || (value == null))
+		{
+			return (false);
+		}
+		final int hash = CompactChildMap.hash((String) key);
+		final long stamp = this._lock.writeLock();
+		try
+		{
+			final int slot = this.find((String) key, hash);
+			if ((slot < 0) || !value.equals(this._values[slot]))
+			{
+				return (false);
+			}
+			this.removeAt(slot);
+			return (true);
+		}
+		finally
+		{
+			this._lock.unlockWrite(stamp);
+		}
+	}
+
+	/*
+	 * Empties a slot, shifting back the keys that probed past it so that no key is cut off from its home slot.
+	 * Called while the write lock is held.
+	 */
+	private void removeAt(final int slot)
+	{
+		this._deadBytes += this.bytesOf(this._keys[slot]);
+		this.releaseClass(this._types[slot]);
+		this._size--;
+
+		final int mask = this._hashes.length - 1;
+		int hole = slot;
+		int next = (hole + 1) & mask;
+		while (this._hashes[next] != 0)
+		{
+			final int home = this._hashes[next] & mask;
+			// the key may move into the hole unless its home slot lies after the hole, up to the key, cyclically.
+			final boolean homeAfterHole = (hole <= next) ? ((hole < home) && (home <= next))
+			        : ((hole < home) || (home <= next));
+			if (!homeAfterHole)
+			{
+				this._hashes[hole] = this._hashes[next];
+				this._keys[hole] = this._keys[next];
+				this._values[hole] = this._values[next];
+				this._types[hole] = this._types[next];
+				hole = next;
+			}
+			next = (next + 1) & mask;
+		}
+		this._hashes[hole] = 0;
+		this._keys[hole] = 0;
+		this._values[hole] = null;
+		this._types[hole] = 0;
+
+		// copy the live keys once more bytes are dead than alive.
+		final long used = this.usedBytes();
+		if ((this._deadBytes > CompactChildMap.INITIAL_SLAB) && ((this._deadBytes * 2) > used))
+		{
+			this.rebuild(this._hashes.length);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.util.concurrent.ConcurrentMap#replace(java.lang.Object, java.lang.Object)
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public V replace(final String key, final V value)
+	{
+		assert (value != null) : "replace() - the parameter 'value' should not be null.";
+
+		final int hash = CompactChildMap.hash(key);
+		final long stamp = this._lock.writeLock();
+		try
+		{
+			final int slot = this.find(key, hash);
+			if (slot < 0)
+			{
+				return (null);
+			}
+			final V existing = (V) this._values[slot];
+			this.setValue(slot, value);
+			return (existing);
+		}
+		finally
+		{
+			this._lock.unlockWrite(stamp);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.util.concurrent.ConcurrentMap#replace(java.lang.Object, java.lang.Object, java.lang.Object)
+	 */
+	@Override
+	public boolean replace(final String key, final V oldValue, final V newValue)
+	{
+		assert (newValue != null) : "replace() - the parameter 'newValue' should not be null.";
+
+		final int hash = CompactChildMap.hash(key);
+		final long stamp = this._lock.writeLock();
+		try
+		{
+			final int slot = this.find(key, hash);
+			if ((slot < 0) || !this._values[slot].equals(oldValue))
+			{
+				return (false);
+			}
+			this.setValue(slot, newValue);
+			return (true);
+		}
+		finally
+		{
+			this._lock.unlockWrite(stamp);
+		}
+	}
+
+	/*
+	 * Binds a slot to another value, moving it to the id of its class.  Called while the write lock is held.
+	 */
+	private void setValue(final int slot, final Object value)
+	{
+		final char id = this._types[slot];
+		if (this._classes[id] != value.getClass())
+		{
+			this._types[slot] = this.classId(value.getClass());
+			this.releaseClass(id);
+		}
+		this._values[slot] = value;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.util.AbstractMap#size()
+	 */
+	@Override
+	public int size()
+	{
+		long stamp = this._lock.tryOptimisticRead();
+		final int size = this._size;
+		if (!this._lock.validate(stamp))
+		{
+			stamp = this._lock.readLock();
+			try
+			{
+				return (this._size);
+			}
+			finally
+			{
+				this._lock.unlockRead(stamp);
+			}
+		}
+		return (size);
+	}
+
+	/*
+	 * Returns a type index of the values in the table, answered from the class ids in the slots.
+	 */
+	TypeIndex typeIndex()
+	{
+		return (TypeIndex.ofTable(this::countOf, this::keysOf));
+	}
+
+	/*
+	 * Returns the bytes written to the slabs, live and dead. Called while the lock is held.
+	 */
+	private long usedBytes()
+	{
+		long used = this._slabPosition;
+		for (int i = 0; i < (this._slabCount - 1); i++)
+		{
+			used += this._slabs[i].length;
+		}
+		return (used);
+	}
+
+}
@@ -0,0 +1,280 @@
+/*****************************************************************************************
+ *
+ * Copyright 2019 Gregory Brown. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ *****************************************************************************************
+ */
+
+
+package com.gabstudios.manager.impl;
+
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import com.gabstudios.manager.Manageable;
+import com.gabstudios.manager.ManagerException;
+
+/**
+ * <pre>
+ * The manager a <code>ManagerBuilder</code> builds when an instantiator, a metrics sink or a capacity is asked for.
+ * The features that were not asked for are no-op instances rather than null checks, and their calls inline to
+ * nothing.  The ManagerImpl hooks this class overrides are called through a type check once it is loaded, since
+ * their call sites then see two classes; a plain ManagerImpl in the same application pays that check too.
+ * </pre>
+ *
+ * @author Gregory Brown (sysdevone)
+ *
+ * @param <C>
+ *            The type of the children.
+ */
+final class ComposedManager<C extends Manageable> extends ManagerImpl<C>
+{
+	/*
+	 * The capacity of a manager without a limit.
+	 */
+	private static final Capacity		UNBOUNDED	= new Capacity();
+
+	/*
+	 * The sink of a manager without metrics.
+	 */
+	private static final MetricsSink	NO_METRICS	= new NoMetrics();
+
+	/*
+	 * Counts the children bound to a manager against its limit.  This one has no limit and counts nothing.
+	 */
+	private static class Capacity
+	{
+		/*
+		 * Returns the exception thrown when there is no room for a child.
+		 */
+		ManagerException full()
+		{
+			return (new ManagerException("The manager is full."));
+		}
+
+		/*
+		 * Reserves room for a child.
+		 *
+		 * @return True if there was room.
+		 */
+		boolean reserve()
+		{
+			return (true);
+		}
+
+		/*
+		 * Gives back the room of a child that was not bound or is no longer bound.
+		 */
+		void release()
+		{
+			// void
+		}
+	}
+
+	/*
+	 * A capacity with a limit.
+	 */
+	private static final class Limit extends Capacity
+	{
+		private final AtomicInteger	_bound	= new AtomicInteger();
+
+		private final int			_max;
+
+		Limit(final int max)
+		{
+			this._max = max;
+		}
+
+		@Override
+		ManagerException full()
+		{
+			return (new ManagerException("The manager is full - maxChildren=" + this._max));
+		}
+
+		@Override
+		boolean reserve()
+		{
+			if (this._bound.incrementAndGet() > this._max)
+			{
+				this._bound.decrementAndGet();
+				return (false);
+			}
+			return (true);
+		}
+
+		@Override
+		void release()
+		{
+			this._bound.decrementAndGet();
+		}
+	}
+
+	/*
+	 * A sink that drops the metrics.
+	 */
+	private static final class NoMetrics implements MetricsSink
+	{
+		@Override
+		public void created(final String key, final Class<?> type)
+		{
+			// void
+		}
+
+		@Override
+		public void lookup(final String key, final boolean hit)
+		{
+			// void
+		}
+
+		@Override
+		public void unbound(final String key)
+		{
+			// void
+		}
+	}
+
+	/*
+	 * The room left for children.
+	 */
+	private final Capacity						_capacity;
+
+	/*
+	 * Instantiates the children created by class name.
+	 */
+	private final Function<String, ? extends C>	_instantiator;
+
+	/*
+	 * Receives the metrics.
+	 */
+	private final MetricsSink					_metrics;
+
+	/*
+	 * Creates a manager.
+	 *
+	 * @param journal A <code>ManagerJournal</code> instance, or null for none.
+	 *
+	 * @param executor The <code>Executor</code> that independent children are initialized and closed on in parallel.
+	 *
+	 * @param referenceType How the children are held.
+	 *
+	 * @param cleanupHook Called with the key of every child that is reclaimed, or null for none.
+	 *
+	 * @param keyStorage How the keys are stored.
+	 *
+	 * @param table An empty table to hold the children in, or null for the default.
+	 *
+	 * @param instantiator Instantiates the children created by class name, or null for the default.
+	 *
+	 * @param metrics Receives the metrics, or null for none.
+	 *
+	 * @param maxChildren The most children that may be bound at once, or 0 for no limit.
+	 */
+	ComposedManager(final ManagerJournal journal, final Executor executor, final ReferenceType referenceType,
+	        final Consumer<String> cleanupHook, final KeyStorage keyStorage, final ConcurrentMap<String, C> table,
+	        final Function<String, ? extends C> instantiator, final MetricsSink metrics, final int maxChildren)
+	{
+		super(journal, executor, referenceType, cleanupHook, keyStorage, table);
+		assert (maxChildren >= 0) : "ComposedManager() - the parameter 'maxChildren' should not be negative.";
+
+		if (instantiator == null)
+		{
+			this._instantiator = super::instantiate;
+		}
+		else
+		{
+			// a null from the function falls back to the default.
+			this._instantiator = className -> {
+				final C child = instantiator.apply(className);
+				return ((child != null) ? child : super.instantiate(className));
+			};
+		}
+		this._metrics = (metrics == null) ? ComposedManager.NO_METRICS : metrics;
+		this._capacity = (maxChildren == 0) ? ComposedManager.UNBOUNDED : new Limit(maxChildren);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.gabstudios.manager.impl.ManagerImpl#addToChildTable(java.lang.String,
+	 * com.gabstudios.manager.Manageable)
+	 */
+	@Override
+	protected C addToChildTable(final String key, final C child)
+	{
+		if (!this._capacity.reserve())
+		{
+			// a key that is already bound is reported as bound, so the caller throws ManageableExistsException.
+			final C existing = this.peek(key);
+			if (existing != null)
+			{
+				return (existing);
+			}
+			throw (this._capacity.full());
+		}
+
+		C bound = null;
+		try
+		{
+			bound = super.addToChildTable(key, child);
+		}
+		finally
+		{
+			if (bound != child)
+			{
+				this._capacity.release();
+			}
+		}
+		if (bound == child)
+		{
+			this._metrics.created(key, child.getClass());
+		}
+		return (bound);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.gabstudios.manager.impl.ManagerImpl#instantiate(java.lang.String)
+	 */
+	@Override
+	C instantiate(final String className)
+	{
+		return (this._instantiator.apply(className));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.gabstudios.manager.impl.ManagerImpl#lookedUp(java.lang.String, boolean)
+	 */
+	@Override
+	void lookedUp(final String key, final boolean hit)
+	{
+		this._metrics.lookup(key, hit);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.gabstudios.manager.impl.ManagerImpl#unbound(java.lang.String)
+	 */
+	@Override
+	void unbound(final String key)
+	{
+		this._capacity.release();
+		this._metrics.unbound(key);
+	}
+
+}
@@ -0,0 +1,187 @@
+/*****************************************************************************************
+ *
+ * Copyright 2019 Gregory Brown. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ *****************************************************************************************
+ */
+
+package com.gabstudios.manager.impl;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+import com.gabstudios.manager.DependencyCycleException;
+
+/**
+ * <pre>
+ * Runs an action for every key of a dependency graph, each key after the keys it must follow.  Keys that do not
+ * depend on each other run in parallel on an executor.
+ *
+ * The graph maps each key to the keys that must be handled before it.  Keys outside of the graph are ignored, so
+ * a dependency on a child that already exists is treated as satisfied.
+ * </pre>
+ *
+ * @author Gregory Brown (sysdevone)
+ */
+final class DependencySchedule
+{
+	/*
+	 * Finds a cycle among the keys that were left over by a topological sort, for the exception message.
+	 */
+	private static List<String> findCycle(final Map<String, ? extends Collection<String>> graph,
+	        final Collection<String> remaining)
+	{
+		final String start = remaining.iterator().next();
+		final Map<String, Integer> seen = new HashMap<>();
+		final List<String> path = new ArrayList<>();
+		String current = start;
+		while (!seen.containsKey(current))
+		{
+			seen.put(current, path.size());
+			path.add(current);
+			String next = null;
+			for (final String before : graph.get(current))
+			{
+				if (remaining.contains(before))
+				{
+					next = before;
+					break;
+				}
+			}
+			assert (next != null) : "findCycle() - a left over key should have a left over dependency.";
+			current = next;
+		}
+		final List<String> cycle = new ArrayList<>(path.subList(seen.get(current), path.size()));
+		cycle.add(current);
+		return (cycle);
+	}
+
+	/*
+	 * Sorts the keys so that every key comes after the keys it must follow.
+	 *
+	 * @param graph A <code>Map</code> of each key to the keys that must be handled before it.
+	 *
+	 * @return The keys of the graph in a topological order.
+	 *
+	 * @throws DependencyCycleException if the graph has a cycle.
+	 */
+	static List<String> order(final Map<String, ? extends Collection<String>> graph)
+	{
+		assert (graph != null) : "order() - the parameter 'graph' should not be null.";
+
+		final Map<String, Integer> waiting = new HashMap<>();
+		final Map<String, List<String>> followers = new HashMap<>();
+		final Deque<String> ready = new ArrayDeque<>();
+		for (final Map.Entry<String, ? extends Collection<String>> entry : graph.entrySet())
+		{
+			int count = 0;
+			for (final String before : entry.getValue())
+			{
+				if (graph.containsKey(before))
+				{
+					followers.computeIfAbsent(before, key -> new ArrayList<>()).add(entry.getKey());
+					count++;
+				}
+			}
+			waiting.put(entry.getKey(), count);
+			if (count == 0)
+			{
+				ready.add(entry.getKey());
+			}
+		}
+
+		final List<String> order = new ArrayList<>(graph.size());
+		while (!ready.isEmpty())
+		{
+			final String key = ready.poll();
+			order.add(key);
+			for (final String follower : followers.getOrDefault(key, Collections.<String> emptyList()))
+			{
+				if (waiting.merge(follower, -1, Integer::sum) == 0)
+				{
+					ready.add(follower);
+				}
+			}
+		}
+
+		if (order.size() < graph.size())
+		{
+			final Collection<String> remaining = new ArrayList<>(graph.keySet());
+			remaining.removeAll(order);
+			throw (new DependencyCycleException("The dependencies form a cycle - "
+			        + String.join(" -> ", DependencySchedule.findCycle(graph, remaining))));
+		}
+		return (order);
+	}
+
+	/*
+	 * Runs the action for every key, each after the keys it must follow have completed.
+	 *
+	 * @param order The keys in the order returned by DependencySchedule.order(graph).
+	 *
+	 * @param graph A <code>Map</code> of each key to the keys that must be handled before it.
+	 *
+	 * @param action The action to run for a key.
+	 *
+	 * @param executor The <code>Executor</code> to run the actions on.
+	 *
+	 * @param stopOnFailure If true a key is not run when a key it follows failed, and fails as well. If false a key
+	 * runs once the keys it follows have completed, whether or not they failed.
+	 *
+	 * @return A <code>Map</code> of the keys to futures of the results, in the given order.
+	 */
+	static <T> Map<String, CompletableFuture<T>> run(final List<String> order,
+	        final Map<String, ? extends Collection<String>> graph, final Function<String, T> action,
+	        final Executor executor, final boolean stopOnFailure)
+	{
+		final Map<String, CompletableFuture<T>> futures = new LinkedHashMap<>();
+		for (final String key : order)
+		{
+			final List<CompletableFuture<T>> before = new ArrayList<>();
+			for (final String dependency : graph.get(key))
+			{
+				final CompletableFuture<T> future = futures.get(dependency);
+				if (future != null)
+				{
+					before.add(future);
+				}
+			}
+
+			CompletableFuture<?> ready = CompletableFuture.allOf(before.toArray(new CompletableFuture<?>[before.size()]));
+			if (!stopOnFailure)
+			{
+				ready = ready.handle((ignored, failure) -> null);
+			}
+			futures.put(key, ready.thenApplyAsync(ignored -> action.apply(key), executor));
+		}
+		return (futures);
+	}
+
+	/*
+	 * Static methods only.
+	 */
+	private DependencySchedule()
+	{
+		// void
+	}
+
+}
@@ -0,0 +1,36 @@
+/*****************************************************************************************
+ *
+ * Copyright 2019 Gregory Brown. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ *****************************************************************************************
+ */
+
+package com.gabstudios.manager.impl;
+
+/**
+ * The forms ManagerImpl.export(channel,format,details) can write the registry in.
+ *
+ * @author Gregory Brown (sysdevone)
+ */
+public enum ExportFormat
+{
+	/**
+	 * A compact binary form of length prefixed UTF-8 strings and big-endian numbers, laid out like a registry
+	 * snapshot.
+	 */
+	BINARY,
+
+	/**
+	 * A single JSON object with an array of the children.
+	 */
+	JSON
+}
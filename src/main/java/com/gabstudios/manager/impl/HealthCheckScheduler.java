@@ -0,0 +1,210 @@
+/*****************************************************************************************
+ *
+ * Copyright 2019 Gregory Brown. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ *****************************************************************************************
+ */
+
+package com.gabstudios.manager.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * <pre>
+ * Runs the health checks of a manager's children in rounds, one round per interval.  A round splits the keys into
+ * batches and spreads the batches over the interval, each at a random point of its own slot, so that the checks of
+ * thousands of children do not all start at once.  A batch is checked one key after another on the check executor.
+ *
+ * The timer is shared by every manager and has two daemon threads, which only start the rounds and hand the batches
+ * to the check executor, so a slow check of one manager never delays the checks of another.  Health checks cost no
+ * threads per child or per manager.
+ * </pre>
+ *
+ * @author Gregory Brown (sysdevone)
+ */
+final class HealthCheckScheduler
+{
+	/*
+	 * The timer shared by the health checks of every manager, started the first time it is used.
+	 */
+	private static final class Timer
+	{
+		static final ScheduledExecutorService INSTANCE = Executors.newScheduledThreadPool(2, new ThreadFactory()
+		{
+			private final AtomicInteger _count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(final Runnable runnable)
+			{
+				final Thread thread = new Thread(runnable, "gab-manager-health-" + this._count.incrementAndGet());
+				thread.setDaemon(true);
+				return (thread);
+			}
+		});
+	}
+
+	/*
+	 * Returns the keys of the children to check, read again at the start of every round.
+	 */
+	private final Supplier<? extends Collection<String>>	_keys;
+
+	/*
+	 * Checks the child of a key and acts on the result.
+	 */
+	private final Consumer<String>							_check;
+
+	/*
+	 * The time between two rounds, in nanoseconds.
+	 */
+	private final long										_interval;
+
+	/*
+	 * The most keys checked by one batch.
+	 */
+	private final int										_batchSize;
+
+	/*
+	 * The executor the batches run on.
+	 */
+	private final Executor									_executor;
+
+	/*
+	 * What is done with unhealthy children.
+	 */
+	private final UnhealthyAction							_action;
+
+	/*
+	 * Set by stop(), after which no round starts and no batch checks another key.
+	 */
+	private volatile boolean								_isStopped;
+
+	/*
+	 * The task that starts the rounds, or null until start() is called.
+	 */
+	private volatile ScheduledFuture<?>						_rounds;
+
+	/*
+	 * @param keys Returns the keys of the children to check.
+	 *
+	 * @param check Checks the child of a key.
+	 *
+	 * @param interval The time between the checks of a child, in nanoseconds.
+	 *
+	 * @param batchSize The most keys checked by one task.
+	 *
+	 * @param executor The <code>Executor</code> the batches run on.
+	 *
+	 * @param action What is done with unhealthy children.
+	 */
+	HealthCheckScheduler(final Supplier<? extends Collection<String>> keys, final Consumer<String> check,
+	        final long interval, final int batchSize, final Executor executor, final UnhealthyAction action)
+	{
+		assert (interval > 0) : "HealthCheckScheduler() - the parameter 'interval' should be positive.";
+		assert (batchSize > 0) : "HealthCheckScheduler() - the parameter 'batchSize' should be positive.";
+		assert (executor != null) : "HealthCheckScheduler() - the parameter 'executor' should not be null.";
+		this._keys = keys;
+		this._check = check;
+		this._interval = interval;
+		this._batchSize = batchSize;
+		this._executor = executor;
+		this._action = action;
+	}
+
+	/*
+	 * @return What is done with unhealthy children.
+	 */
+	UnhealthyAction getAction()
+	{
+		return (this._action);
+	}
+
+	/*
+	 * Checks one batch of keys.
+	 */
+	private void check(final List<String> keys)
+	{
+		for (final String key : keys)
+		{
+			if (this._isStopped)
+			{
+				return;
+			}
+			this._check.accept(key);
+		}
+	}
+
+	/*
+	 * Schedules the batches of one round over the interval.
+	 */
+	private void round()
+	{
+		if (this._isStopped)
+		{
+			return;
+		}
+		final List<String> keys = new ArrayList<>(this._keys.get());
+		final int batches = (keys.size() + this._batchSize - 1) / this._batchSize;
+		if (batches == 0)
+		{
+			return;
+		}
+
+		final long slot = this._interval / batches;
+		for (int i = 0; i < batches; i++)
+		{
+			final List<String> batch = keys.subList(i * this._batchSize,
+			        Math.min(keys.size(), (i + 1) * this._batchSize));
+			final long delay = (i * slot) + ThreadLocalRandom.current().nextLong(Math.max(1, slot / 2));
+			HealthCheckScheduler.Timer.INSTANCE.schedule(() -> {
+				if (!this._isStopped)
+				{
+					this._executor.execute(() -> this.check(batch));
+				}
+			}, delay, TimeUnit.NANOSECONDS);
+		}
+	}
+
+	/*
+	 * Starts the rounds, the first at a random point of the first interval so managers started together do not
+	 * check together.
+	 */
+	void start()
+	{
+		this._rounds = HealthCheckScheduler.Timer.INSTANCE.scheduleAtFixedRate(this::round,
+		        ThreadLocalRandom.current().nextLong(this._interval), this._interval, TimeUnit.NANOSECONDS);
+	}
+
+	/*
+	 * Stops the rounds. A batch that is running stops before its next key.
+	 */
+	void stop()
+	{
+		this._isStopped = true;
+		final ScheduledFuture<?> rounds = this._rounds;
+		if (rounds != null)
+		{
+			rounds.cancel(false);
+		}
+	}
+}
@@ -0,0 +1,40 @@
+/*****************************************************************************************
+ *
+ * Copyright 2019 Gregory Brown. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ *****************************************************************************************
+ */
+
+package com.gabstudios.manager.impl;
+
+/**
+ * The result of the last health check of a child, see ManagerImpl.getHealth(key).
+ *
+ * @author Gregory Brown (sysdevone)
+ */
+public enum HealthStatus
+{
+	/**
+	 * The child has not been checked, is not <code>HealthCheckable</code> or health checks are not running.
+	 */
+	UNKNOWN,
+
+	/**
+	 * The last check of the child returned true.
+	 */
+	HEALTHY,
+
+	/**
+	 * The last check of the child returned false or threw.
+	 */
+	UNHEALTHY
+}
@@ -0,0 +1,45 @@
+/*****************************************************************************************
+ *
+ * Copyright 2019 Gregory Brown. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ *****************************************************************************************
+ */
+
+package com.gabstudios.manager.impl;
+
+/**
+ * How a <code>ManagerImpl</code> stores the keys of its children.
+ *
+ * @author Gregory Brown (sysdevone)
+ */
+public enum KeyStorage
+{
+	/**
+	 * The keys are held as <code>String</code> instances in a concurrent hash map. This is the default.
+	 */
+	STRING,
+
+	/**
+	 * The keys are stored as UTF-8 bytes in shared slabs, in an open addressed table of primitive arrays. A child
+	 * costs far less memory, lookups do not block, and creates and closes are serialized. Only children held by
+	 * ReferenceType.STRONG can be stored this way.
+	 */
+	COMPACT,
+
+	/**
+	 * The keys, and the class, times and access statistics of each child, are stored in direct buffers outside of
+	 * the heap, and the children in one dense array. The garbage collector has one reference per child to mark.
+	 * Lookups do not block, and creates and closes are serialized. Only children held by ReferenceType.STRONG can be
+	 * stored this way.
+	 */
+	OFF_HEAP
+}
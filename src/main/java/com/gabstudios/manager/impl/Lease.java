@@ -0,0 +1,131 @@
+/*****************************************************************************************
+ *
+ * Copyright 2019 Gregory Brown. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ *****************************************************************************************
+ */
+
+package com.gabstudios.manager.impl;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+import com.gabstudios.manager.Manageable;
+
+/**
+ * <pre>
+ * A lease on a child, returned by ManagerImpl.acquire(key).  While any lease is held the child is not closed:
+ * Manager.closeChild(key) unbinds the key at once, but Manageable.close() is deferred until the last lease is
+ * released.
+ *
+ * Use it with try-with-resources:
+ *
+ *   try (Lease&lt;MyChild&gt; lease = manager.acquire("key"))
+ *   {
+ *       lease.get().doWork();
+ *   }
+ * </pre>
+ *
+ * @author Gregory Brown (sysdevone)
+ */
+public final class Lease<C extends Manageable> implements AutoCloseable
+{
+	/*
+	 * Updates the _released field.
+	 */
+	@SuppressWarnings("rawtypes")
+	private static final AtomicIntegerFieldUpdater<Lease>	RELEASED	= AtomicIntegerFieldUpdater
+	        .newUpdater(Lease.class, "_released");
+
+	/*
+	 * The child leased.
+	 */
+	private final C				_child;
+
+	/*
+	 * The count the lease is held in.
+	 */
+	private final LeaseCount	_count;
+
+	/*
+	 * 1 once the lease has been released.
+	 */
+	private volatile int		_released;
+
+	/*
+	 * The stripe the lease was counted on.
+	 */
+	private final int			_stripe;
+
+	/*
+	 * Creates a lease that has been counted on a stripe.
+	 */
+	Lease(final C child, final LeaseCount count, final int stripe)
+	{
+		assert (child != null) : "Lease() - the parameter 'child' should not be null.";
+		assert (count != null) : "Lease() - the parameter 'count' should not be null.";
+
+		this._child = child;
+		this._count = count;
+		this._stripe = stripe;
+	}
+
+	/**
+	 * Releases the lease. If the child was closed while the lease was held and this is the last lease, the child is
+	 * closed on this thread. Releasing a lease more than once has no effect.
+	 */
+	@Override
+	public void close()
+	{
+		if (Lease.RELEASED.compareAndSet(this, 0, 1))
+		{
+			this._count.release(this._stripe, this._child);
+		}
+	}
+
+	/**
+	 * Gets the leased child.
+	 *
+	 * @return The child. It is not closed until the lease is released.
+	 */
+	public C get()
+	{
+		return (this._child);
+	}
+
+	/**
+	 * Returns true once the lease has been released.
+	 *
+	 * @return A boolean value.
+	 */
+	public boolean isReleased()
+	{
+		return (this._released != 0);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString()
+	{
+		final StringBuilder builder = new StringBuilder();
+		builder.append("Lease [child=");
+		builder.append(this._child.getKey());
+		builder.append(", released=");
+		builder.append(this.isReleased());
+		builder.append("]");
+		return builder.toString();
+	}
+
+}
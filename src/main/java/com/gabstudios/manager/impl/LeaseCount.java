@@ -0,0 +1,234 @@
+/*****************************************************************************************
+ *
+ * Copyright 2019 Gregory Brown. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ *****************************************************************************************
+ */
+
+package com.gabstudios.manager.impl;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.gabstudios.manager.Manageable;
+
+/**
+ * <pre>
+ * A striped reference count of the leases held on one child.  Acquire and release are lock-free: a lease increments
+ * and later decrements the stripe picked by its thread, so threads on different cores rarely touch the same cache
+ * line.
+ *
+ * Once the child is retired no new lease is granted, and the child is closed by whichever thread sees the count
+ * drop to zero - the retiring thread if there are no leases, otherwise the thread releasing the last lease.  A
+ * stripe is only ever incremented before it is decremented, so every stripe stays at zero or above and a sum of zero
+ * read after retiring means no lease is outstanding.
+ *
+ * The count only refers weakly to its child, so a child held through a weak or soft reference can still be
+ * reclaimed once no lease is held on it.
+ * </pre>
+ *
+ * @author Gregory Brown (sysdevone)
+ */
+final class LeaseCount
+{
+	/*
+	 * The number of longs between two stripes, so that each stripe sits on its own cache line.
+	 */
+	private static final int	PADDING	= 8;
+
+	/*
+	 * The number of stripes, a power of two.
+	 */
+	private static final int	STRIPES	= Math.min(16,
+	        Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() - 1) << 1));
+
+	/*
+	 * Updates the _state field.
+	 */
+	private static final AtomicIntegerFieldUpdater<LeaseCount>	STATE	= AtomicIntegerFieldUpdater
+	        .newUpdater(LeaseCount.class, "_state");
+
+	/*
+	 * The state while leases may be granted.
+	 */
+	private static final int	OPEN	= 0;
+
+	/*
+	 * The state once the child is retired and waiting for its leases to be released.
+	 */
+	private static final int	RETIRED	= 1;
+
+	/*
+	 * The state once the child has been closed.
+	 */
+	private static final int	CLOSED	= 2;
+
+	/*
+	 * The child the leases are held on.
+	 */
+	private final WeakReference<Manageable>	_child;
+
+	/*
+	 * The stripes of the count.
+	 */
+	private final AtomicLongArray	_counts;
+
+	/*
+	 * One of OPEN, RETIRED or CLOSED.
+	 */
+	private volatile int		_state;
+
+	/*
+	 * Run once the child is closed, or null.  Set by LeaseCount.retire(child,closed).
+	 */
+	private volatile Runnable	_closed;
+
+	/*
+	 * Creates an open count for the child.
+	 */
+	LeaseCount(final Manageable child)
+	{
+		assert (child != null) : "LeaseCount() - the parameter 'child' should not be null.";
+
+		this._child = new WeakReference<>(child);
+		this._counts = new AtomicLongArray(LeaseCount.STRIPES * LeaseCount.PADDING);
+		this._state = LeaseCount.OPEN;
+	}
+
+	/*
+	 * Takes a lease on the child.
+	 *
+	 * @param child The child of the count.
+	 *
+	 * @return The stripe the lease was counted on, to pass to LeaseCount.release(stripe), or -1 if the child is
+	 * retired.
+	 */
+	int acquire(final Manageable child)
+	{
+		assert (this.isFor(child)) : "acquire() - the count is for another child.";
+
+		if (this._state != LeaseCount.OPEN)
+		{
+			return (-1);
+		}
+
+		final long id = Thread.currentThread().getId();
+		final int stripe = (int) (id ^ (id >>> 16)) & (LeaseCount.STRIPES - 1);
+		this._counts.getAndIncrement(stripe * LeaseCount.PADDING);
+		if (this._state != LeaseCount.OPEN)
+		{
+			// retired while counting; back out, closing the child if this was the last count.
+			this.release(stripe, child);
+			return (-1);
+		}
+		return (stripe);
+	}
+
+	/*
+	 * Returns true if the child of the count has been reclaimed.
+	 */
+	boolean isCleared()
+	{
+		return (this._child.get() == null);
+	}
+
+	/*
+	 * Returns true if this is the count of the child.
+	 */
+	boolean isFor(final Manageable child)
+	{
+		return (this._child.get() == child);
+	}
+
+	/*
+	 * Returns the number of leases held.
+	 */
+	long getCount()
+	{
+		long sum = 0;
+		for (int i = 0; i < LeaseCount.STRIPES; i++)
+		{
+			sum += this._counts.get(i * LeaseCount.PADDING);
+		}
+		return (sum);
+	}
+
+	/*
+	 * Returns true once the child is retired or closed.
+	 */
+	boolean isRetired()
+	{
+		return (this._state != LeaseCount.OPEN);
+	}
+
+	/*
+	 * Releases a lease, closing the child if it is retired and this was the last lease.
+	 *
+	 * @param stripe The stripe returned by LeaseCount.acquire(child).
+	 *
+	 * @param child The child of the count.
+	 */
+	void release(final int stripe, final Manageable child)
+	{
+		this._counts.getAndDecrement(stripe * LeaseCount.PADDING);
+		if (this._state == LeaseCount.RETIRED)
+		{
+			this.closeIfIdle(child);
+		}
+	}
+
+	/*
+	 * Stops new leases from being granted without ever closing the child, for a child that failed to initialize and
+	 * so has nothing to close.
+	 */
+	void discard()
+	{
+		this._state = LeaseCount.CLOSED;
+	}
+
+	/*
+	 * Stops new leases from being granted. The child is closed now if no lease is held, otherwise when the last lease
+	 * is released.
+	 *
+	 * @param child The child of the count.
+	 *
+	 * @param closed Run once the child is closed, or null.
+	 *
+	 * @return True if the child was closed by this call.
+	 */
+	boolean retire(final Manageable child, final Runnable closed)
+	{
+		this._closed = closed;
+		LeaseCount.STATE.compareAndSet(this, LeaseCount.OPEN, LeaseCount.RETIRED);
+		return (this.closeIfIdle(child));
+	}
+
+	/*
+	 * Closes the child once, if the count is zero.
+	 */
+	private boolean closeIfIdle(final Manageable child)
+	{
+		if ((this.getCount() == 0) && LeaseCount.STATE.compareAndSet(this, LeaseCount.RETIRED, LeaseCount.CLOSED))
+		{
+			child.close();
+			final Runnable closed = this._closed;
+			if (closed != null)
+			{
+				closed.run();
+			}
+			return (true);
+		}
+		return (false);
+	}
+
+}
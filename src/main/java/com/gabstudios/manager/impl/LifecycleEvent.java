@@ -0,0 +1,124 @@
+/*****************************************************************************************
+ *
+ * Copyright 2019 Gregory Brown. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ *****************************************************************************************
+ */
+
+package com.gabstudios.manager.impl;
+
+/**
+ * A change to the children of a <code>ManagerImpl</code>, published through ManagerImpl.getLifecycleEvents().
+ *
+ * @author Gregory Brown (sysdevone)
+ */
+public final class LifecycleEvent
+{
+	/**
+	 * The kinds of change.
+	 */
+	public enum Type
+	{
+		/**
+		 * A child was created and initialized.
+		 */
+		CREATED,
+
+		/**
+		 * A child was closed, by the manager or by itself.
+		 */
+		CLOSED,
+
+		/**
+		 * A child was replaced by a new child under the same key, see ManagerImpl.replace(key,className). The class
+		 * name is that of the new child.
+		 */
+		REPLACED,
+
+		/**
+		 * A child held through a weak or soft reference was reclaimed by the garbage collector.
+		 */
+		RECLAIMED
+	}
+
+	private final Type		_type;
+	private final String	_key;
+	private final String	_className;
+	private final long		_sequence;
+
+	/*
+	 * Constructor.
+	 */
+	LifecycleEvent(final Type type, final String key, final String className, final long sequence)
+	{
+		this._type = type;
+		this._key = key;
+		this._className = className;
+		this._sequence = sequence;
+	}
+
+	/**
+	 * @return The class name of the child, or null if the child was reclaimed.
+	 */
+	public String getClassName()
+	{
+		return (this._className);
+	}
+
+	/**
+	 * @return The key of the child.
+	 */
+	public String getKey()
+	{
+		return (this._key);
+	}
+
+	/**
+	 * The events of a manager are numbered in the order they are published, so a subscriber can tell from a gap that
+	 * events were dropped or coalesced.
+	 *
+	 * @return The sequence number of the event.
+	 */
+	public long getSequence()
+	{
+		return (this._sequence);
+	}
+
+	/**
+	 * @return The kind of change.
+	 */
+	public Type getType()
+	{
+		return (this._type);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString()
+	{
+		final StringBuilder builder = new StringBuilder();
+		builder.append("LifecycleEvent [_type=");
+		builder.append(this._type);
+		builder.append(", _key=");
+		builder.append(this._key);
+		builder.append(", _className=");
+		builder.append(this._className);
+		builder.append(", _sequence=");
+		builder.append(this._sequence);
+		builder.append("]");
+		return (builder.toString());
+	}
+}
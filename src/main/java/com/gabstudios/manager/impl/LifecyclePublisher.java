@@ -0,0 +1,478 @@
+/*****************************************************************************************
+ *
+ * Copyright 2019 Gregory Brown. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ *****************************************************************************************
+ */
+
+package com.gabstudios.manager.impl;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.gabstudios.manager.ManagerException;
+
+/**
+ * <pre>
+ * Publishes the lifecycle events of a manager to any number of subscribers, each with its own bounded buffer and
+ * demand.  Publishing never blocks and never calls a subscriber: the event is added to the buffer of every
+ * subscription and the subscriptions deliver on the executor, one task at a time per subscription, as far as their
+ * demand allows.  When a buffer is full its <code>OverflowPolicy</code> decides what happens.
+ *
+ * Publishing costs a check of an empty list while there are no subscribers.
+ * </pre>
+ *
+ * @author Gregory Brown (sysdevone)
+ */
+final class LifecyclePublisher implements Flow.Publisher<LifecycleEvent>
+{
+	/*
+	 * A subscriber, its buffer and its demand. Every signal to the subscriber is made by run(), which the work count
+	 * keeps to one thread at a time.
+	 */
+	private static final class EventSubscription implements Flow.Subscription, Runnable
+	{
+		private final LifecyclePublisher							_publisher;
+		private final Flow.Subscriber<? super LifecycleEvent>		_subscriber;
+		private final int											_capacity;
+		private final OverflowPolicy								_policy;
+
+		/*
+		 * The buffer.  Its size is counted separately, since ConcurrentLinkedQueue.size() is not constant time.
+		 */
+		private final ConcurrentLinkedQueue<LifecycleEvent>		_queue		= new ConcurrentLinkedQueue<>();
+		private final AtomicInteger									_size		= new AtomicInteger();
+
+		/*
+		 * The latest event of each key while a COALESCE buffer is full, of at most as many keys as the buffer holds
+		 * events.  Delivered after the buffer, so the events of a key stay in order.
+		 */
+		private final Map<String, LifecycleEvent>					_coalesced	= new ConcurrentHashMap<>();
+
+		/*
+		 * The keys of _coalesced in the order they started to wait, so the key that has waited longest is found
+		 * without a scan.  A key is added when its first event is coalesced and taken when its event is delivered or
+		 * dropped.
+		 */
+		private final ConcurrentLinkedQueue<String>					_waiting	= new ConcurrentLinkedQueue<>();
+
+		private final AtomicLong									_requested	= new AtomicLong();
+		private final AtomicInteger									_work		= new AtomicInteger();
+		private volatile boolean									_isCancelled;
+		private volatile boolean									_isDone;
+		private volatile Throwable									_error;
+
+		/*
+		 * Only read and written by run().
+		 */
+		private boolean												_isStarted;
+
+		EventSubscription(final LifecyclePublisher publisher, final Flow.Subscriber<? super LifecycleEvent> subscriber,
+		        final int capacity, final OverflowPolicy policy)
+		{
+			this._publisher = publisher;
+			this._subscriber = subscriber;
+			this._capacity = capacity;
+			this._policy = policy;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see java.util.concurrent.Flow.Subscription#cancel()
+		 */
+		@Override
+		public void cancel()
+		{
+			this._isCancelled = true;
+			this._publisher._subscriptions.remove(this);
+			this.schedule();
+		}
+
+		/*
+		 * Keeps the event as the latest of its key.  A key that is not yet waiting makes room by dropping the event of
+		 * the key that has waited longest once as many keys wait as the buffer holds, so a subscriber that falls behind
+		 * while many keys change holds a bounded number of events; it sees the dropped events as a gap in the sequence
+		 * numbers.
+		 */
+		private void coalesce(final LifecycleEvent event)
+		{
+			final String key = event.getKey();
+			while ((this._coalesced.size() >= this._capacity) && !this._coalesced.containsKey(key))
+			{
+				final String oldest = this._waiting.poll();
+				if (oldest == null)
+				{
+					// the keys taken by other threads have not been removed yet.
+					break;
+				}
+				this._coalesced.remove(oldest);
+			}
+			if (this._coalesced.put(key, event) == null)
+			{
+				this._waiting.offer(key);
+			}
+		}
+
+		/*
+		 * Completes the subscription once the buffered events are delivered.
+		 */
+		void complete()
+		{
+			this._isDone = true;
+			this.schedule();
+		}
+
+		/*
+		 * Fails the subscription, ahead of any buffered events.
+		 */
+		private void fail(final Throwable error)
+		{
+			this._error = error;
+			this._publisher._subscriptions.remove(this);
+			this.schedule();
+		}
+
+		/*
+		 * Buffers an event.  Called by any thread and never blocks.
+		 */
+		void offer(final LifecycleEvent event)
+		{
+			if (this._isCancelled || this._isDone || (this._error != null))
+			{
+				return;
+			}
+
+			if ((this._policy == OverflowPolicy.COALESCE) && !this._coalesced.isEmpty())
+			{
+				// still catching up, so newer events of a key must not overtake the coalesced ones.
+				this.coalesce(event);
+			}
+			else if (this._size.incrementAndGet() <= this._capacity)
+			{
+				this._queue.offer(event);
+			}
+			else
+			{
+				this._size.decrementAndGet();
+				switch (this._policy)
+				{
+					case DROP_OLDEST:
+						this.replaceOldest(event);
+						break;
+					case COALESCE:
+						this.coalesce(event);
+						break;
+					default:
+						this.fail(new ManagerException(
+						        "The lifecycle event buffer of " + this._capacity + " events is full."));
+						return;
+				}
+			}
+			this.schedule();
+		}
+
+		/*
+		 * Drops the oldest buffered event and buffers the new one.
+		 */
+		private void replaceOldest(final LifecycleEvent event)
+		{
+			while (this._size.incrementAndGet() > this._capacity)
+			{
+				this._size.decrementAndGet();
+				if (this._queue.poll() != null)
+				{
+					this._size.decrementAndGet();
+				}
+			}
+			this._queue.offer(event);
+		}
+
+		/*
+		 * Takes the next event to deliver, or null.
+		 */
+		private LifecycleEvent poll()
+		{
+			LifecycleEvent event = this._queue.poll();
+			if (event != null)
+			{
+				this._size.decrementAndGet();
+			}
+			else
+			{
+				// a key dropped by coalesce() after it was taken here has no event left, so the next key is tried.
+				String key;
+				while ((event == null) && ((key = this._waiting.poll()) != null))
+				{
+					event = this._coalesced.remove(key);
+				}
+			}
+			return (event);
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see java.util.concurrent.Flow.Subscription#request(long)
+		 */
+		@Override
+		public void request(final long n)
+		{
+			if (n <= 0)
+			{
+				// rule 3.9 of the reactive streams specification.
+				this.fail(new IllegalArgumentException("The number of events requested must be positive - " + n));
+				return;
+			}
+			long current;
+			do
+			{
+				current = this._requested.get();
+			}
+			while (!this._requested.compareAndSet(current,
+			        ((current + n) < 0) ? Long.MAX_VALUE : (current + n)));
+			this.schedule();
+		}
+
+		/*
+		 * Delivers what the demand allows.
+		 *
+		 * (non-Javadoc)
+		 *
+		 * @see java.lang.Runnable#run()
+		 */
+		@Override
+		public void run()
+		{
+			int missed = 1;
+			do
+			{
+				if (!this._isStarted)
+				{
+					this._isStarted = true;
+					try
+					{
+						this._subscriber.onSubscribe(this);
+					}
+					catch (final Throwable e)
+					{
+						this.signalError(e);
+					}
+				}
+
+				long requested = this._requested.get();
+				long emitted = 0;
+				while (!this._isCancelled)
+				{
+					if (this._error != null)
+					{
+						this.signalError(this._error);
+						break;
+					}
+					if (emitted == requested)
+					{
+						requested = this._requested.get();
+						if (emitted == requested)
+						{
+							break;
+						}
+					}
+					final LifecycleEvent event = this.poll();
+					if (event == null)
+					{
+						break;
+					}
+					emitted++;
+					try
+					{
+						this._subscriber.onNext(event);
+					}
+					catch (final Throwable e)
+					{
+						// rule 2.13 of the reactive streams specification: the subscription is cancelled.
+						this.signalError(e);
+						break;
+					}
+				}
+				if ((emitted != 0) && (requested != Long.MAX_VALUE))
+				{
+					this._requested.addAndGet(-emitted);
+				}
+
+				if (this._isCancelled)
+				{
+					this._queue.clear();
+					this._coalesced.clear();
+					this._waiting.clear();
+				}
+				else if (this._isDone && this._queue.isEmpty() && this._coalesced.isEmpty())
+				{
+					this.terminate();
+					try
+					{
+						this._subscriber.onComplete();
+					}
+					catch (final Throwable e)
+					{
+						// rule 2.13 of the reactive streams specification: there is no one left to tell.
+					}
+				}
+				missed = this._work.addAndGet(-missed);
+			}
+			while (missed != 0);
+		}
+
+		/*
+		 * Runs run() on the executor unless it is already running, in which case it runs again when it is done.
+		 */
+		private void schedule()
+		{
+			if (this._work.getAndIncrement() == 0)
+			{
+				try
+				{
+					this._publisher._executor.execute(this);
+				}
+				catch (final RejectedExecutionException e)
+				{
+					// nothing can be delivered.
+					this._isCancelled = true;
+					this._publisher._subscriptions.remove(this);
+				}
+			}
+		}
+
+		/*
+		 * Stops the subscription and signals the error to the subscriber.  Whatever the subscriber throws is caught,
+		 * so run() always finishes its work count and the subscription is never left unable to run again.
+		 */
+		private void signalError(final Throwable error)
+		{
+			this.terminate();
+			try
+			{
+				this._subscriber.onError(error);
+			}
+			catch (final Throwable e)
+			{
+				// rule 2.13 of the reactive streams specification: there is no one left to tell.
+			}
+		}
+
+		/*
+		 * Stops the subscription before its final signal.
+		 */
+		private void terminate()
+		{
+			this._isCancelled = true;
+			this._publisher._subscriptions.remove(this);
+			this._queue.clear();
+			this._coalesced.clear();
+			this._waiting.clear();
+		}
+	}
+
+	/*
+	 * The executor the subscribers are called on.
+	 */
+	private final Executor										_executor;
+
+	/*
+	 * The subscriptions that are not cancelled, failed or complete.
+	 */
+	private final CopyOnWriteArrayList<EventSubscription>		_subscriptions	= new CopyOnWriteArrayList<>();
+
+	/*
+	 * The sequence number of the last event published.
+	 */
+	private final AtomicLong									_sequence		= new AtomicLong();
+
+	private volatile boolean									_isClosed;
+
+	/*
+	 * @param executor The <code>Executor</code> the subscribers are called on.
+	 */
+	LifecyclePublisher(final Executor executor)
+	{
+		assert (executor != null) : "LifecyclePublisher() - the parameter 'executor' should not be null.";
+		this._executor = executor;
+	}
+
+	/*
+	 * Completes every subscription, and those made later, once their buffered events are delivered.
+	 */
+	void close()
+	{
+		this._isClosed = true;
+		for (final EventSubscription subscription : this._subscriptions)
+		{
+			subscription.complete();
+		}
+	}
+
+	/*
+	 * Publishes an event to every subscription.
+	 */
+	void publish(final LifecycleEvent.Type type, final String key, final String className)
+	{
+		if (!this._subscriptions.isEmpty())
+		{
+			final LifecycleEvent event = new LifecycleEvent(type, key, className, this._sequence.incrementAndGet());
+			for (final EventSubscription subscription : this._subscriptions)
+			{
+				subscription.offer(event);
+			}
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.util.concurrent.Flow.Publisher#subscribe(java.util.concurrent.Flow.Subscriber)
+	 */
+	@Override
+	public void subscribe(final Flow.Subscriber<? super LifecycleEvent> subscriber)
+	{
+		this.subscribe(subscriber, Flow.defaultBufferSize(), OverflowPolicy.COALESCE);
+	}
+
+	/*
+	 * Subscribes with a buffer of the capacity and the overflow policy.
+	 */
+	void subscribe(final Flow.Subscriber<? super LifecycleEvent> subscriber, final int capacity,
+	        final OverflowPolicy policy)
+	{
+		if (subscriber == null)
+		{
+			// rule 1.9 of the reactive streams specification.
+			throw (new NullPointerException("The subscriber may not be null."));
+		}
+		final EventSubscription subscription = new EventSubscription(this, subscriber, capacity, policy);
+		this._subscriptions.add(subscription);
+		if (this._isClosed)
+		{
+			subscription.complete();
+		}
+		else
+		{
+			// onSubscribe() is called by run(), so it comes before any other signal.
+			subscription.schedule();
+		}
+	}
+}
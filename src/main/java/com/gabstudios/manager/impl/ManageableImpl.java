@@ -32,6 +32,11 @@ public class ManageableImpl implements Manageable
 	// P = parent
 	// C = child
 
+	/*
+	 * A flag set by the parent when it has already removed this child, so that close() does not detach it again.
+	 */
+	private boolean		_isDetached	= false;
+
 	/**
 	 * A flag to determine if the child is closed. If closed, then the child should throw exception a method is called.
 	 */
@@ -63,9 +68,19 @@ public class ManageableImpl implements Manageable
 		{
 			assert (this._key != null) : "close(): the key is null.";
 			assert (this._parent != null) : "close(): the parent is null.";
-			if (this._parent.containsChild(this._key))
+			final Manager<?> parent = this._parent;
+			if (this._isDetached)
+			{
+				// closed by the parent, which has already removed this child.
+			}
+			else if (parent instanceof ManagerImpl)
+			{
+				((ManagerImpl<?>) parent).detach(this._key, this);
+			}
+			// a leased child may be closed after its manager.
+			else if (!parent.isClosed() && parent.containsChild(this._key))
 			{
-				this._parent.closeChild(this._key);
+				parent.closeChild(this._key);
 			}
 			this._parent = null;
 			this._isClosed = true;
@@ -167,6 +182,15 @@ public class ManageableImpl implements Manageable
 		this._parent = parent;
 		this._key = key;
 		this._isClosed = false;
+		this._isDetached = false;
+	}
+
+	/*
+	 * Marks this child as removed by its parent. Called by the parent just before it calls close().
+	 */
+	void setDetached()
+	{
+		this._isDetached = true;
 	}
 
 	/*
@@ -0,0 +1,78 @@
+/*****************************************************************************************
+ *
+ * Copyright 2019 Gregory Brown. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ *****************************************************************************************
+ */
+
+package com.gabstudios.manager.impl;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.function.Supplier;
+
+import com.gabstudios.manager.Manageable;
+import com.gabstudios.manager.ManagedTypeRegistry;
+
+/**
+ *
+ * The constructor references of every <code>ManagedTypeRegistry</code> on the class path, loaded once on first use.
+ *
+ * @author Gregory Brown (sysdevone)
+ */
+final class ManagedTypes
+{
+	/*
+	 * Loads the registries the first time the holder is used.
+	 */
+	private static final class Holder
+	{
+		/*
+		 * The constructor references by class name and alias.
+		 */
+		static final Map<String, Supplier<? extends Manageable>> TYPES = ManagedTypes.load();
+	}
+
+	/*
+	 * Loads every registry found by the ServiceLoader into one table.
+	 */
+	private static Map<String, Supplier<? extends Manageable>> load()
+	{
+		final Map<String, Supplier<? extends Manageable>> types = new HashMap<>();
+		for (final ManagedTypeRegistry registry : ServiceLoader.load(ManagedTypeRegistry.class,
+		        ManagedTypes.class.getClassLoader()))
+		{
+			registry.registerTypes(types);
+		}
+		return (Collections.unmodifiableMap(types));
+	}
+
+	/*
+	 * Returns the constructor reference for a class name or alias, or null if it was not registered.
+	 */
+	static Supplier<? extends Manageable> lookup(final String name)
+	{
+		assert (name != null) : "lookup() - the parameter 'name' should not be null.";
+		return (Holder.TYPES.get(name));
+	}
+
+	/*
+	 * Static methods only.
+	 */
+	private ManagedTypes()
+	{
+		// void
+	}
+
+}
@@ -0,0 +1,318 @@
+/*****************************************************************************************
+ *
+ * Copyright 2019 Gregory Brown. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ *****************************************************************************************
+ */
+
+
+package com.gabstudios.manager.impl;
+
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import com.gabstudios.manager.Manageable;
+import com.gabstudios.validate.Validate;
+
+/**
+ * <pre>
+ * Composes a <code>ManagerImpl</code> from the strategies and policies it is given, instead of a subclass that
+ * overrides ManagerImpl.addToChildTable(key, child).
+ *
+ *   keyStorage(storage), referenceType(type, hook), childTable(supplier)  - how the children are held.
+ *   instantiator(function)                                                - how children are created by class name.
+ *   executor(executor)                                                    - where the lifecycle work runs.
+ *   journal(journal)                                                      - where creates and closes are recorded.
+ *   metrics(sink), maxChildren(max), accessStatistics(sampleRate)         - what is counted and limited.
+ *
+ * With no instantiator, metrics sink or capacity the builder returns a plain ManagerImpl, and otherwise a final
+ * subclass whose unused features are no-op instances rather than null checks.  Once that subclass is loaded, the
+ * ManagerImpl hooks it overrides cost a type check per call in every manager.
+ *
+ *   ManagerImpl&lt;Session&gt; manager = new ManagerBuilder&lt;Session&gt;()
+ *           .keyStorage(KeyStorage.COMPACT).maxChildren(1_000_000).metrics(sink).build();
+ * </pre>
+ *
+ * @author Gregory Brown (sysdevone)
+ *
+ * @param <C>
+ *            The type of the children.
+ */
+public final class ManagerBuilder<C extends Manageable>
+{
+	/*
+	 * The sample rate of the access statistics, or 0 when they are not enabled.
+	 */
+	private int												_accessSampleRate;
+
+	/*
+	 * Called with the key of every child that is reclaimed, or null.
+	 */
+	private Consumer<String>								_cleanupHook;
+
+	/*
+	 * The executor that children are initialized and closed on.
+	 */
+	private Executor										_executor		= ForkJoinPool.commonPool();
+
+	/*
+	 * Instantiates the children created by class name, or null.
+	 */
+	private Function<String, ? extends C>					_instantiator;
+
+	/*
+	 * The journal, or null.
+	 */
+	private ManagerJournal									_journal;
+
+	/*
+	 * How the keys are stored.
+	 */
+	private KeyStorage										_keyStorage		= KeyStorage.STRING;
+
+	/*
+	 * The most children that may be bound at once, or 0 for no limit.
+	 */
+	private int												_maxChildren;
+
+	/*
+	 * Receives the metrics, or null.
+	 */
+	private MetricsSink										_metrics;
+
+	/*
+	 * How the children are held.
+	 */
+	private ReferenceType									_referenceType	= ReferenceType.STRONG;
+
+	/*
+	 * Supplies the table the children are held in, or null.
+	 */
+	private Supplier<? extends ConcurrentMap<String, C>>	_table;
+
+	/**
+	 * Creates a builder of a manager with the defaults of ManagerImpl().
+	 */
+	public ManagerBuilder()
+	{
+		// void
+	}
+
+	/**
+	 * Enables the access statistics of the manager, as ManagerImpl.enableAccessStatistics(sampleRate) does.
+	 *
+	 * @param sampleRate
+	 *            The number of lookups each recorded lookup stands for. A power of two.
+	 *
+	 * @return This builder.
+	 *
+	 * @throws IllegalArgumentException
+	 *             Thrown when the sample rate is not a positive power of two.
+	 */
+	public ManagerBuilder<C> accessStatistics(final int sampleRate)
+	{
+		if ((sampleRate < 1) || (Integer.bitCount(sampleRate) != 1))
+		{
+			throw (new IllegalArgumentException("The sample rate must be a positive power of two - " + sampleRate));
+		}
+		this._accessSampleRate = sampleRate;
+		return (this);
+	}
+
+	/**
+	 * Builds a manager. The builder may be used again, but a journal may only be given to one manager.
+	 *
+	 * @return A <code>ManagerImpl</code>, specialized to the features asked for.
+	 *
+	 * @throws IllegalArgumentException
+	 *             Thrown when compact or off-heap keys, or a child table, are asked for with weak or soft children,
+	 *             or a child table is asked for with compact or off-heap keys.
+	 */
+	public ManagerImpl<C> build()
+	{
+		if ((this._table != null) && (this._keyStorage != KeyStorage.STRING))
+		{
+			throw (new IllegalArgumentException("A child table can only be used with String keys."));
+		}
+		if ((this._table != null) && (this._referenceType != ReferenceType.STRONG))
+		{
+			throw (new IllegalArgumentException("A child table can only be used with strongly held children."));
+		}
+
+		ConcurrentMap<String, C> table = null;
+		if (this._table != null)
+		{
+			table = this._table.get();
+			Validate.defineObject(table).testNotNull().throwValidationExceptionOnFail().validate();
+			if (!table.isEmpty())
+			{
+				throw (new IllegalArgumentException("The child table must be empty."));
+			}
+		}
+
+		final ManagerImpl<C> manager;
+		if ((this._instantiator == null) && (this._metrics == null) && (this._maxChildren == 0))
+		{
+			manager = new ManagerImpl<>(this._journal, this._executor, this._referenceType, this._cleanupHook,
+			        this._keyStorage, table);
+		}
+		else
+		{
+			manager = new ComposedManager<>(this._journal, this._executor, this._referenceType, this._cleanupHook,
+			        this._keyStorage, table, this._instantiator, this._metrics, this._maxChildren);
+		}
+
+		if (this._accessSampleRate > 0)
+		{
+			manager.enableAccessStatistics(this._accessSampleRate);
+		}
+		return (manager);
+	}
+
+	/**
+	 * Sets the table the children are held in, for a concurrency strategy other than a ConcurrentHashMap with the
+	 * default settings. Only used with strongly held children and String keys.
+	 *
+	 * @param supplier
+	 *            Supplies an empty <code>ConcurrentMap</code> for each manager built.
+	 *
+	 * @return This builder.
+	 */
+	public ManagerBuilder<C> childTable(final Supplier<? extends ConcurrentMap<String, C>> supplier)
+	{
+		Validate.defineObject(supplier).testNotNull().throwValidationExceptionOnFail().validate();
+		this._table = supplier;
+		return (this);
+	}
+
+	/**
+	 * Sets the executor that independent children are initialized and closed on in parallel. The default is the
+	 * common pool.
+	 *
+	 * @param executor
+	 *            An <code>Executor</code> instance.
+	 *
+	 * @return This builder.
+	 */
+	public ManagerBuilder<C> executor(final Executor executor)
+	{
+		Validate.defineObject(executor).testNotNull().throwValidationExceptionOnFail().validate();
+		this._executor = executor;
+		return (this);
+	}
+
+	/**
+	 * Sets how the children created by class name are instantiated. The function is given the class name and
+	 * returns a new child, or null to instantiate the class as the manager does by default.
+	 *
+	 * @param instantiator
+	 *            A <code>Function</code> of a class name to a new child.
+	 *
+	 * @return This builder.
+	 */
+	public ManagerBuilder<C> instantiator(final Function<String, ? extends C> instantiator)
+	{
+		Validate.defineObject(instantiator).testNotNull().throwValidationExceptionOnFail().validate();
+		this._instantiator = instantiator;
+		return (this);
+	}
+
+	/**
+	 * Sets the journal that records every create and close, so the children are restored on the next start.
+	 *
+	 * @param journal
+	 *            A <code>ManagerJournal</code> instance.
+	 *
+	 * @return This builder.
+	 */
+	public ManagerBuilder<C> journal(final ManagerJournal journal)
+	{
+		Validate.defineObject(journal).testNotNull().throwValidationExceptionOnFail().validate();
+		this._journal = journal;
+		return (this);
+	}
+
+	/**
+	 * Sets how the keys of the children are stored. The default is KeyStorage.STRING.
+	 *
+	 * @param keyStorage
+	 *            A <code>KeyStorage</code> value.
+	 *
+	 * @return This builder.
+	 */
+	public ManagerBuilder<C> keyStorage(final KeyStorage keyStorage)
+	{
+		Validate.defineObject(keyStorage).testNotNull().throwValidationExceptionOnFail().validate();
+		this._keyStorage = keyStorage;
+		return (this);
+	}
+
+	/**
+	 * Limits the number of children bound at once. A create that would go over the limit throws a
+	 * <code>ManagerException</code>, and the room of a child is given back when it is closed or reclaimed.
+	 *
+	 * @param maxChildren
+	 *            The most children that may be bound at once.
+	 *
+	 * @return This builder.
+	 *
+	 * @throws IllegalArgumentException
+	 *             Thrown when the limit is not positive.
+	 */
+	public ManagerBuilder<C> maxChildren(final int maxChildren)
+	{
+		if (maxChildren < 1)
+		{
+			throw (new IllegalArgumentException("The maximum number of children must be positive - " + maxChildren));
+		}
+		this._maxChildren = maxChildren;
+		return (this);
+	}
+
+	/**
+	 * Sets the sink that receives the creates, lookups and removals of the children.
+	 *
+	 * @param metrics
+	 *            A <code>MetricsSink</code> instance.
+	 *
+	 * @return This builder.
+	 */
+	public ManagerBuilder<C> metrics(final MetricsSink metrics)
+	{
+		Validate.defineObject(metrics).testNotNull().throwValidationExceptionOnFail().validate();
+		this._metrics = metrics;
+		return (this);
+	}
+
+	/**
+	 * Sets how the children are held. The default is ReferenceType.STRONG.
+	 *
+	 * @param referenceType
+	 *            A <code>ReferenceType</code> value.
+	 * @param cleanupHook
+	 *            Called with the key of every child that is reclaimed, or null for none.
+	 *
+	 * @return This builder.
+	 */
+	public ManagerBuilder<C> referenceType(final ReferenceType referenceType, final Consumer<String> cleanupHook)
+	{
+		Validate.defineObject(referenceType).testNotNull().throwValidationExceptionOnFail().validate();
+		this._referenceType = referenceType;
+		this._cleanupHook = cleanupHook;
+		return (this);
+	}
+
+}
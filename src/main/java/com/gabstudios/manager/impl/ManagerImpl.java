@@ -16,16 +16,57 @@
 
 package com.gabstudios.manager.impl;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.lang.reflect.InvocationTargetException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 
+import com.gabstudios.manager.DependencyCycleException;
+import com.gabstudios.manager.HealthCheckable;
 import com.gabstudios.manager.Manageable;
+import com.gabstudios.manager.ManageableDefinition;
 import com.gabstudios.manager.ManageableExistsException;
 import com.gabstudios.manager.Manager;
 import com.gabstudios.manager.ManagerClosedException;
 import com.gabstudios.manager.ManagerException;
+import com.gabstudios.manager.Snapshotable;
 import com.gabstudios.validate.Validate;
 
 /**
@@ -49,6 +90,69 @@ import com.gabstudios.validate.Validate;
  * The manager's close() method will remove all children and all observers and prevent calls to
  * other manager methods.
  *
+ * The registry can be saved with saveSnapshot(path) and restored on a warm restart with
+ * restoreSnapshot(path).  Restored children are not instantiated until they are first retrieved.
+ *
+ * A manager created with a <code>ManagerJournal</code> is rebuilt from the journal and records every
+ * create and close in it, so the set of children survives a crash.
+ *
+ * Children created with createAll(definitions) may depend on other children.  They are initialized
+ * after the children they depend on, and the manager's close() closes them before the children they
+ * depend on.  Children that do not depend on each other are handled in parallel on the lifecycle
+ * executor.
+ *
+ * createAsync(key, className) and getOrCreateAsync(key, className) create a child on the lifecycle
+ * executor.  Concurrent requests for the same key share a single creation.
+ *
+ * getOrCreate(key, xxx) and tryCreate(key, xxx) bind a new child with one atomic table operation and
+ * do not throw when the key is already bound.
+ *
+ * acquire(key) returns a lease on a child.  A child that is closed while leases are held is unbound
+ * at once but not closed until the last lease is released.
+ *
+ * A manager created with ReferenceType.WEAK or ReferenceType.SOFT lets the garbage collector reclaim
+ * children that nothing else refers to.
+ *
+ * Children created with tags can be found with find(query), through an inverted index of the tags.
+ *
+ * close(deadline) and closeChild(key, deadline) bound how long a close may take and report the
+ * children that closed, failed or overran.
+ *
+ * getLifecycleEvents() publishes the creates and closes of the children to subscribers with
+ * backpressure.  Each subscriber has a bounded buffer, and a slow subscriber never blocks the
+ * thread that creates or closes a child.
+ *
+ * startHealthChecks(interval, batchSize, action) periodically checks the children that implement
+ * <code>HealthCheckable</code>, in batches spread over the interval on a small shared pool, and may
+ * close or recreate the unhealthy ones.  getHealth(key) returns the last result without blocking.
+ *
+ * replace(key, className) and compareAndReplace(key, expected, newChild) swap a new, initialized
+ * child in for the old one with one atomic table operation, so the key is never unbound.
+ *
+ * reload(jar, batchSize) loads a new version of child implementations in an isolated class loader
+ * and swaps the children of those classes to it in batches, without a restart.
+ *
+ * enableAccessStatistics(sampleRate) counts a sample of the get(key) and containsChild(key) lookups
+ * of each key.  getHottest(count) and getColdest(count) rank the keys without locking the table.
+ *
+ * A manager created with KeyStorage.COMPACT stores its keys as UTF-8 bytes in shared slabs, for
+ * managers with millions of children, and answers the lookups by type from a class id stored with
+ * each child.  getBytesPerChild() reports what the table costs per child.
+ *
+ * A manager created with KeyStorage.OFF_HEAP keeps the keys, classes, times and access statistics
+ * of its children in direct buffers, so the heap only holds the children and the collector has less
+ * to mark.  getHeapBytesPerChild() reports what stays on the heap.
+ *
+ * export(channel, format, details) streams the key, class and state of every child, in a compact
+ * binary form or as JSON, through a fixed size buffer.  toString() only lists the first few children.
+ *
+ * ManagerBuilder composes a manager from a child table, an instantiator, a lifecycle executor, a
+ * metrics sink and a capacity.  The features that are not asked for are left out of the manager it
+ * builds, rather than checked for on every call.
+ *
+ * closeChildren(keys) and closeChildren(matcher) close many children in one batch, validating the
+ * keys once and unbinding them together before the children are closed, optionally in parallel.
+ *
  * </pre>
  *
  * @author Gregory Brown (sysdevone)
@@ -65,13 +169,37 @@ public class ManagerImpl<C extends Manageable> implements Manager<C>
 	 */
 	public static final int	CLASS_NAME_MAX_LENGTH	= 2048;
 
+	/**
+	 * The system property that, when set to true, makes the <code>ManagerClosedException</code> and
+	 * <code>ManageableExistsException</code> instances thrown by a manager stackless. It is read when the manager is
+	 * created.
+	 */
+	public static final String	STACKLESS_EXCEPTIONS_PROPERTY	= "com.gabstudios.manager.stacklessExceptions";
+
+	/*
+	 * The longest acquire(key) parks between two tries while the count of a previous child is retired.
+	 */
+	private static final long	MAX_BACK_OFF_NANOS	= TimeUnit.MILLISECONDS.toNanos(1);
+
+	/*
+	 * The number of locks that order the journal records of the keys.  A power of two.
+	 */
+	private static final int	RECORD_LOCKS		= 64;
+
+	/*
+	 * The number of children listed by toString().
+	 */
+	private static final int	TO_STRING_CHILDREN	= 16;
+
 	// P = parent
 	// C = child
 
 	/*
-	 * Loads an ManagerChild using the classname to get a new instances.
+	 * Loads an ManagerChild using the classname to get a new instances.  A class name or alias registered in a
+	 * generated ManagedTypeRegistry is created through its constructor reference; any other name falls back to
+	 * reflection.
 	 *
-	 * @param className A <code>String</code> value that is a fully qualified class name.
+	 * @param className A <code>String</code> value that is a fully qualified class name or a registered alias.
 	 * 
 	 * @param <C> A type that extends <code>ManagerChild</code>.
 	 * 
@@ -82,18 +210,58 @@ public class ManagerImpl<C extends Manageable> implements Manager<C>
 	{
 		assert (className != null) : "loadManageable() - the parameter 'className' should not be null or empty";
 
+		final Supplier<? extends Manageable> factory = ManagedTypes.lookup(className);
+		if (factory != null)
+		{
+			try
+			{
+				return ((C) factory.get());
+			}
+			catch (final RuntimeException e)
+			{
+				throw (new ManagerException("Unable to instantiate the class name - " + className, e));
+			}
+		}
+
+		final Class<?> clazz;
+		try
+		{
+			clazz = Class.forName(className);
+		}
+		catch (final ClassNotFoundException e)
+		{
+			throw (new ManagerException("Unable to locate the class name - " + className, e));
+		}
+		return (ManagerImpl.loadManageable(clazz));
+	}
+
+	/*
+	 * Loads an ManagerChild using the class to get a new instance through its no argument constructor.
+	 *
+	 * @param clazz A <code>Class</code> that implements <code>ManagerChild</code>.
+	 *
+	 * @param <C> A type that extends <code>ManagerChild</code>.
+	 *
+	 * @return A subclass of <code>ManagerChild</code>
+	 */
+	@SuppressWarnings("unchecked")
+	protected final static <C extends Manageable> C loadManageable(final Class<?> clazz)
+	{
+		assert (clazz != null) : "loadManageable() - the parameter 'clazz' should not be null";
+
+		final String className = clazz.getName();
 		C child;
 		try
 		{
-			child = (C) Class.forName(className).getDeclaredConstructor().newInstance();
+			child = (C) clazz.getDeclaredConstructor().newInstance();
 		}
 		catch (final IllegalAccessException e)
 		{
 			throw (new ManagerException("Illegal access to class name - " + className, e));
 		}
-		catch (final ClassNotFoundException e)
+		catch (final ClassCastException e)
 		{
-			throw (new ManagerException("Unable to locate the class name - " + className, e));
+			throw (new ManagerException("The class name is not a Manageable - " + className, e));
 		}
 		catch (final InstantiationException e)
 		{
@@ -101,305 +269,3629 @@ public class ManagerImpl<C extends Manageable> implements Manager<C>
 		}
 		catch (final IllegalArgumentException e)
 		{
-			throw (new ManagerException("Unable to instantiate the class name due to illegal argument - " + className,
-			        e));
+			throw (new ManagerException("Unable to instantiate the class name due to illegal argument - " + className,
+			        e));
+		}
+		catch (final InvocationTargetException e)
+		{
+			throw (new ManagerException("Unable to instantiate the class name - " + className, e));
+		}
+		catch (final NoSuchMethodException e)
+		{
+			throw (new ManagerException("Unable to instantiate the class name - " + className, e));
+		}
+		catch (final SecurityException e)
+		{
+			throw (new ManagerException("Unable to instantiate the class name due to security - " + className, e));
+		}
+		return (child);
+	}
+
+	/*
+	 * Returns the failure as a runtime exception, wrapping it in a ManagerException if it is checked.
+	 */
+	private static RuntimeException asRuntimeException(final Throwable failure, final String message)
+	{
+		if (failure instanceof RuntimeException)
+		{
+			return ((RuntimeException) failure);
+		}
+		else if (failure instanceof Error)
+		{
+			throw ((Error) failure);
+		}
+		else
+		{
+			return (new ManagerException(message, failure));
+		}
+	}
+
+	/*
+	 * Adds a failure to the first one, as a suppressed exception, unless it is the first one or already added.  The
+	 * futures of the keys that follow a failed key fail with the same exception, which is kept once.
+	 *
+	 * @param failure The first failure, or null.
+	 *
+	 * @param next Another failure.
+	 *
+	 * @return The first failure.
+	 */
+	private static Throwable addFailure(final Throwable failure, final Throwable next)
+	{
+		if (failure == null)
+		{
+			return (next);
+		}
+		if ((next != failure) && !Arrays.asList(failure.getSuppressed()).contains(next))
+		{
+			failure.addSuppressed(next);
+		}
+		return (failure);
+	}
+
+	/*
+	 * Waits for every future to complete.
+	 *
+	 * @return The first failure in iteration order, unwrapped from the CompletionException, with the other failures
+	 * added to it as suppressed exceptions, or null if there were no failures.
+	 */
+	private static Throwable await(final Collection<? extends CompletableFuture<?>> futures)
+	{
+		Throwable failure = null;
+		for (final CompletableFuture<?> future : futures)
+		{
+			try
+			{
+				future.join();
+			}
+			catch (final CompletionException e)
+			{
+				failure = ManagerImpl.addFailure(failure, (e.getCause() != null) ? e.getCause() : e);
+			}
+		}
+		return (failure);
+	}
+
+	/*
+	 * Waits until the closes have finished or the deadline has passed, and reports on each.
+	 *
+	 * @param futures The closes, by key.
+	 *
+	 * @param start The System.nanoTime() the deadline is measured from.
+	 *
+	 * @param deadline The longest to wait.
+	 */
+	private static CloseReport awaitClose(final Map<String, ? extends CompletableFuture<?>> futures, final long start,
+	        final Duration deadline)
+	{
+		long nanos;
+		try
+		{
+			nanos = deadline.toNanos();
+		}
+		catch (final ArithmeticException e)
+		{
+			nanos = Long.MAX_VALUE;
+		}
+
+		try
+		{
+			CompletableFuture.allOf(futures.values().toArray(new CompletableFuture<?>[futures.size()]))
+			        .get(Math.max(0, nanos - (System.nanoTime() - start)), TimeUnit.NANOSECONDS);
+		}
+		catch (final TimeoutException | ExecutionException e)
+		{
+			// reported per child below.
+		}
+		catch (final InterruptedException e)
+		{
+			// the children not yet closed are reported as overran.
+			Thread.currentThread().interrupt();
+		}
+
+		final List<String> closed = new ArrayList<>();
+		final Map<String, Throwable> failed = new LinkedHashMap<>();
+		final List<String> overran = new ArrayList<>();
+		for (final Map.Entry<String, ? extends CompletableFuture<?>> entry : futures.entrySet())
+		{
+			final CompletableFuture<?> future = entry.getValue();
+			if (!future.isDone())
+			{
+				overran.add(entry.getKey());
+			}
+			else if (future.isCompletedExceptionally())
+			{
+				failed.put(entry.getKey(), ManagerImpl.await(Collections.singleton(future)));
+			}
+			else
+			{
+				closed.add(entry.getKey());
+			}
+		}
+		return (new CloseReport(closed, failed, overran));
+	}
+
+	/*
+	 * The access statistics of the keys, while they are enabled.
+	 */
+	private final Map<String, AccessCounter>	_accessCounters	= new ConcurrentHashMap<>();
+
+	/*
+	 * The sample rate of the access statistics less one, or -1 when they are disabled.
+	 */
+	private volatile int						_accessSampleMask	= -1;
+
+	/*
+	 * A table of children created by this manager.
+	 */
+	private final ConcurrentMap<String, C>	_children;
+
+	/*
+	 * The child table when it is kept off the heap, which also holds the access statistics, or null.
+	 */
+	private final OffHeapChildMap<C>		_offHeap;
+
+	/*
+	 * Called with the key of every child that is reclaimed by the garbage collector.  May be null.
+	 */
+	private final Consumer<String>	_cleanupHook;
+
+	/*
+	 * The keys each child depends on, for children created with dependencies.
+	 */
+	private final Map<String, Set<String>>	_dependencies;
+
+	/*
+	 * The executor that children are initialized and closed on in dependency order.
+	 */
+	private final Executor			_executor;
+
+	/*
+	 * Publishes the lifecycle events of the children, on the lifecycle executor.
+	 */
+	private final LifecyclePublisher	_events;
+
+	/*
+	 * The result of the last health check of each child.
+	 */
+	private final Map<String, HealthStatus>	_health		= new ConcurrentHashMap<>();
+
+	/*
+	 * The running health checks, or null.
+	 */
+	private volatile HealthCheckScheduler	_healthChecks;
+
+	/*
+	 * The loader of the last version loaded with reload(jar,batchSize), or null.
+	 */
+	private volatile VersionedClassLoader	_version;
+
+	/*
+	 * The versions replaced by a later reload that still have children, each with the number of its children that
+	 * are unbound but leased and not closed yet.  A version is released and its loader closed once none of its
+	 * children is bound or leased.
+	 */
+	private final Map<VersionedClassLoader, AtomicInteger>	_retired	= new ConcurrentHashMap<>();
+
+	/*
+	 * Keeps reloads from overlapping.
+	 */
+	private final Object					_reloadLock	= new Object();
+
+	/*
+	 * The asynchronous creations in flight, by key.
+	 */
+	private final Map<String, CompletableFuture<C>>	_inFlight;
+
+	/*
+	 * A flag to determine if the manager has been closed.
+	 */
+	private volatile boolean		_isClosed;
+
+	/*
+	 * The tags of the children that were created with tags.
+	 */
+	private final TagIndex			_tags;
+
+	/*
+	 * The keys of the children by their concrete class.
+	 */
+	private final TypeIndex			_types;
+
+	/*
+	 * The journal that records creates and closes.  May be null.
+	 */
+	private final ManagerJournal	_journal;
+
+	/*
+	 * The lease counts of the children that have been acquired, by key.
+	 */
+	private final Map<String, LeaseCount>	_leases;
+
+	/*
+	 * A flag to determine if the exceptions thrown on hot paths are created without a stack trace.
+	 */
+	private final boolean			_stacklessExceptions;
+
+	/*
+	 * Children restored from a snapshot that have not been instantiated yet.
+	 */
+	private final Map<String, RegistrySnapshot.Entry>	_pending;
+
+	/*
+	 * Children in the table whose initialize has not returned, to the thread initializing them or, once a caller waits
+	 * for one, to its <code>Initialization</code>.  A child closed in that window is left for its creator to close,
+	 * since a close before initialize would be undone by it.
+	 */
+	private final Map<Identity, Object>					_initializing	= new ConcurrentHashMap<>();
+
+	/*
+	 * Orders the journal records of a key, by the hash of the key.  A record is appended while the lock of its key is
+	 * held, and only after the table change it records, so replay sees the creates and closes of a key in the order
+	 * the table saw them.  Null without a journal.
+	 */
+	private final Object[]								_recordLocks;
+
+	/*
+	 * Children bound to the table whose create is not recorded in the journal yet.  A close that finds its child here
+	 * drops the create instead of recording a close ahead of it.  Null without a journal.
+	 */
+	private final Set<Identity>							_unrecorded;
+
+	/*
+	 * A child being initialized that a caller waits for.  Completed once the child is initialized, fails to initialize
+	 * or is closed.
+	 */
+	private static final class Initialization extends CompletableFuture<Void>
+	{
+		/*
+		 * The thread initializing the child.
+		 */
+		private final Thread _thread;
+
+		Initialization(final Thread thread)
+		{
+			this._thread = thread;
+		}
+	}
+
+	/*
+	 * Compares a child by identity, since the equals() of a child may change as it is initialized.
+	 */
+	private static final class Identity
+	{
+		private final Object _child;
+
+		Identity(final Object child)
+		{
+			this._child = child;
+		}
+
+		@Override
+		public boolean equals(final Object obj)
+		{
+			return ((obj instanceof Identity) && (((Identity) obj)._child == this._child));
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return (System.identityHashCode(this._child));
+		}
+	}
+
+	/*
+	 * initializes the children table.
+	 */
+	public ManagerImpl()
+	{
+		this(null, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Creates a manager that initializes and closes children with dependencies on an executor.
+	 *
+	 * @param executor
+	 *            The <code>Executor</code> that independent children are initialized and closed on in parallel.
+	 */
+	public ManagerImpl(final Executor executor)
+	{
+		this(null, executor);
+	}
+
+	/**
+	 * Creates a manager that is rebuilt from, and records every create and close in, a journal. The children in the
+	 * journal are restored the same way as ManagerImpl.restoreSnapshot(path) and are not instantiated until they are
+	 * first retrieved. The journal is closed when the manager is closed.
+	 *
+	 * @param journal
+	 *            A <code>ManagerJournal</code> instance.
+	 *
+	 * @throws ManagerException
+	 *             Thrown when the journal is unable to be read.
+	 */
+	public ManagerImpl(final ManagerJournal journal)
+	{
+		this(journal, ForkJoinPool.commonPool());
+		Validate.defineObject(journal).testNotNull().throwValidationExceptionOnFail().validate();
+	}
+
+	/**
+	 * Creates a manager that is rebuilt from, and records every create and close in, a journal, and that initializes
+	 * and closes children with dependencies on an executor.
+	 *
+	 * @param journal
+	 *            A <code>ManagerJournal</code> instance, or null for none.
+	 * @param executor
+	 *            The <code>Executor</code> that independent children are initialized and closed on in parallel.
+	 *
+	 * @throws ManagerException
+	 *             Thrown when the journal is unable to be read.
+	 */
+	public ManagerImpl(final ManagerJournal journal, final Executor executor)
+	{
+		this(journal, executor, ReferenceType.STRONG, null);
+	}
+
+	/**
+	 * Creates a manager that stores the keys of its children as given.
+	 *
+	 * @param keyStorage
+	 *            How the keys are stored.
+	 */
+	public ManagerImpl(final KeyStorage keyStorage)
+	{
+		this(null, ForkJoinPool.commonPool(), ReferenceType.STRONG, null, keyStorage);
+	}
+
+	/**
+	 * Creates a manager that holds its children through weak or soft references. A child that nothing else refers to
+	 * may be reclaimed by the garbage collector; its key is then unbound without Manageable.close() being called,
+	 * which suits children that are only caches. Reclaimed children are removed a few at a time as the manager is
+	 * used.
+	 *
+	 * @param referenceType
+	 *            How the children are held.
+	 * @param cleanupHook
+	 *            Called with the key of every child that is reclaimed, or null for none. It is called on a thread
+	 *            that is using the manager, so it should be quick and should not throw.
+	 */
+	public ManagerImpl(final ReferenceType referenceType, final Consumer<String> cleanupHook)
+	{
+		this(null, ForkJoinPool.commonPool(), referenceType, cleanupHook);
+	}
+
+	/*
+	 * Creates a manager.
+	 *
+	 * @param journal A <code>ManagerJournal</code> instance, or null for none.
+	 *
+	 * @param executor The <code>Executor</code> that independent children are initialized and closed on in parallel.
+	 *
+	 * @param referenceType How the children are held.
+	 *
+	 * @param cleanupHook Called with the key of every child that is reclaimed, or null for none.
+	 */
+	ManagerImpl(final ManagerJournal journal, final Executor executor, final ReferenceType referenceType,
+	        final Consumer<String> cleanupHook)
+	{
+		this(journal, executor, referenceType, cleanupHook, KeyStorage.STRING);
+	}
+
+	/*
+	 * Creates a manager.
+	 *
+	 * @param journal A <code>ManagerJournal</code> instance, or null for none.
+	 *
+	 * @param executor The <code>Executor</code> that independent children are initialized and closed on in parallel.
+	 *
+	 * @param referenceType How the children are held.
+	 *
+	 * @param cleanupHook Called with the key of every child that is reclaimed, or null for none.
+	 *
+	 * @param keyStorage How the keys are stored.
+	 *
+	 * @throws IllegalArgumentException if compact or off-heap keys are asked for with weak or soft children.
+	 */
+	ManagerImpl(final ManagerJournal journal, final Executor executor, final ReferenceType referenceType,
+	        final Consumer<String> cleanupHook, final KeyStorage keyStorage)
+	{
+		this(journal, executor, referenceType, cleanupHook, keyStorage, null);
+	}
+
+	/*
+	 * Creates a manager.
+	 *
+	 * @param journal A <code>ManagerJournal</code> instance, or null for none.
+	 *
+	 * @param executor The <code>Executor</code> that independent children are initialized and closed on in parallel.
+	 *
+	 * @param referenceType How the children are held.
+	 *
+	 * @param cleanupHook Called with the key of every child that is reclaimed, or null for none.
+	 *
+	 * @param keyStorage How the keys are stored.
+	 *
+	 * @param table An empty table to hold the children in, or null for the table that the reference type and key
+	 * storage ask for.  Only used with strongly held children and String keys.
+	 *
+	 * @throws IllegalArgumentException if compact or off-heap keys are asked for with weak or soft children.
+	 */
+	ManagerImpl(final ManagerJournal journal, final Executor executor, final ReferenceType referenceType,
+	        final Consumer<String> cleanupHook, final KeyStorage keyStorage, final ConcurrentMap<String, C> table)
+	{
+		Validate.defineObject(executor).testNotNull().throwValidationExceptionOnFail().validate();
+		Validate.defineObject(referenceType).testNotNull().throwValidationExceptionOnFail().validate();
+		Validate.defineObject(keyStorage).testNotNull().throwValidationExceptionOnFail().validate();
+		if ((keyStorage != KeyStorage.STRING) && (referenceType != ReferenceType.STRONG))
+		{
+			throw (new IllegalArgumentException(
+			        "Compact and off-heap keys can only be used with strongly held children."));
+		}
+
+		switch (referenceType)
+		{
+			case SOFT:
+				this._children = new ReferenceChildMap<>(true, this::reclaimed);
+				break;
+			case WEAK:
+				this._children = new ReferenceChildMap<>(false, this::reclaimed);
+				break;
+			default:
+				if (table != null)
+				{
+					assert (keyStorage == KeyStorage.STRING) : "ManagerImpl() - a given table should hold String keys.";
+					assert (table.isEmpty()) : "ManagerImpl() - a given table should be empty.";
+					this._children = table;
+				}
+				else if (keyStorage == KeyStorage.OFF_HEAP)
+				{
+					this._children = new OffHeapChildMap<>();
+				}
+				else
+				{
+					this._children = (keyStorage == KeyStorage.COMPACT) ? new CompactChildMap<>()
+					        : new ConcurrentHashMap<>();
+				}
+				break;
+		}
+		this._offHeap = (this._children instanceof OffHeapChildMap) ? (OffHeapChildMap<C>) this._children : null;
+		this._cleanupHook = cleanupHook;
+		this._dependencies = new ConcurrentHashMap<>();
+		this._inFlight = new ConcurrentHashMap<>();
+		this._leases = new ConcurrentHashMap<>();
+		this._tags = new TagIndex();
+		if (this._offHeap != null)
+		{
+			this._types = this._offHeap.typeIndex();
+		}
+		else
+		{
+			this._types = (this._children instanceof CompactChildMap)
+			        ? ((CompactChildMap<C>) this._children).typeIndex() : new TypeIndex();
+		}
+		this._pending = (journal == null) ? new ConcurrentHashMap<>() : new ConcurrentHashMap<>(journal.recover());
+		this._journal = journal;
+		if (journal == null)
+		{
+			this._recordLocks = null;
+			this._unrecorded = null;
+		}
+		else
+		{
+			this._recordLocks = new Object[ManagerImpl.RECORD_LOCKS];
+			for (int i = 0; i < this._recordLocks.length; i++)
+			{
+				this._recordLocks[i] = new Object();
+			}
+			this._unrecorded = ConcurrentHashMap.newKeySet();
+		}
+		this._executor = executor;
+		this._events = new LifecyclePublisher(executor);
+		this._stacklessExceptions = Boolean.getBoolean(ManagerImpl.STACKLESS_EXCEPTIONS_PROPERTY);
+		this._isClosed = false;
+	}
+
+	/**
+	 * Acquires a lease on the child bound to the key. While the lease is held the child is not closed: if
+	 * Manager.closeChild(key) or the manager's close() is called, the key is unbound at once and Manageable.close() is
+	 * called when the last lease is released. Acquiring and releasing are lock-free.
+	 *
+	 * @param key
+	 *            A <code>String</code> instance. The key of the child.
+	 *
+	 * @return A <code>Lease</code> on the child, to be released with Lease.close(), or null if no child is bound to
+	 *         the key.
+	 *
+	 * @throws ManagerClosedException
+	 *             Thrown when the manager is closed.
+	 */
+	public Lease<C> acquire(final String key)
+	{
+		for (int tries = 0;; tries++)
+		{
+			final C child = this.get(key);
+			if (child == null)
+			{
+				return (null);
+			}
+
+			LeaseCount count = this._leases.get(key);
+			if (count == null)
+			{
+				final LeaseCount created = new LeaseCount(child);
+				count = this._leases.putIfAbsent(key, created);
+				count = (count == null) ? created : count;
+			}
+
+			if (count.isFor(child))
+			{
+				final int stripe = count.acquire(child);
+				if (stripe >= 0)
+				{
+					if (this._children.get(key) == child)
+					{
+						return (new Lease<C>(child, count, stripe));
+					}
+					// the child was closed before the count was found by closeChild(key), so the count is not used.
+					count.release(stripe, child);
+					this._leases.remove(key, count);
+				}
+			}
+			else if (count.isRetired() || count.isCleared())
+			{
+				// the count of a previous child bound to the key.
+				this._leases.remove(key, count);
+			}
+			// otherwise the previous child is being closed and its count is about to be retired.
+			ManagerImpl.backOff(tries);
+		}
+	}
+
+	/*
+	 * Waits before the next try of a loop that waits for another thread: spins at first, then yields, then parks for
+	 * twice as long each time up to ManagerImpl.MAX_BACK_OFF_NANOS.
+	 *
+	 * @param tries The number of tries so far.
+	 */
+	private static void backOff(final int tries)
+	{
+		if (tries < 64)
+		{
+			Thread.onSpinWait();
+		}
+		else if (tries < 128)
+		{
+			Thread.yield();
+		}
+		else
+		{
+			LockSupport.parkNanos(Math.min(1000L << Math.min(tries - 128, 20), ManagerImpl.MAX_BACK_OFF_NANOS));
+		}
+	}
+
+	/*
+	 * A method that adds to the Manager child table.  The check for an existing child and the add are one atomic
+	 * operation: if a child is already bound to the key, the table is not changed.
+	 *
+	 * Other classes that extend Manager can override this method for unique behavior.
+	 *
+	 * @param key A <code>String</code> instance that is bound to the child and used for lookups.
+	 *
+	 * @param child A <code>ManagerChild</code> instance that will be added to the cache.
+	 *
+	 * @return Returns the child bound to the key after the call.  This is the given child if it was added, or the
+	 * child that was already bound to the key.
+	 */
+	protected C addToChildTable(final String key, final C child)
+	{
+		assert ((key != null) && (key.trim().length() > 0)) : "addToChildTable() - the key was null, spaces or empty.";
+		assert (child != null) : "addToChildTable() - the child was null.";
+		final C existing = this._children.putIfAbsent(key, child);
+		if (existing == null)
+		{
+			if (this._isClosed)
+			{
+				// the manager closed while the child was added; close() may not have seen it.
+				this.removeChild(key, child);
+				throw (this.closedException());
+			}
+			this._types.add(key, child.getClass());
+			if ((this._accessSampleMask >= 0) && (this._offHeap == null))
+			{
+				// an off-heap table starts the statistics of the child itself.
+				this.countAccesses(key, child);
+			}
+			return (child);
+		}
+		return (existing);
+	}
+
+	/*
+	 * Starts the access statistics of a newly bound child.
+	 */
+	private void countAccesses(final String key, final C child)
+	{
+		final AccessCounter counter = new AccessCounter(System.currentTimeMillis());
+		this._accessCounters.put(key, counter);
+		if (this._children.get(key) != child)
+		{
+			// unbound while the counter was added; forget() may not have seen it.
+			this._accessCounters.remove(key, counter);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.gabstudios.manager.Manager#close()
+	 */
+	@Override
+	public void close()
+	{
+		if (this.isClosed())
+		{
+			throw (new ManagerClosedException("The Manager has been closed and may not be used.", !this._stacklessExceptions));
+		}
+		else
+		{
+			// set first, so a child added while the children are closed removes itself.
+			this._isClosed = true;
+			this.stopHealthChecks(true);
+
+			// restored children that were never used have nothing to close.
+			this._pending.clear();
+
+			// close children.  The journal keeps them so they are restored on the next start.
+			final Set<String> keys = new HashSet<>(this._children.keySet());
+			if (this._dependencies.isEmpty())
+			{
+				for (final String key : keys)
+				{
+					this.closeChild(key, false);
+				}
+			}
+			else
+			{
+				this.closeInDependencyOrder(keys);
+			}
+			// a create that overlapped close() may bind its child after the keys were copied.  It unbinds the child
+			// itself once it sees the manager closed, so the table is not checked for children here.
+
+			this._events.close();
+			this.closeVersion();
+			if (this._journal != null)
+			{
+				this._journal.close();
+			}
+		}
+	}
+
+	/*
+	 * Creates the exception thrown when a method is called on a closed manager.
+	 */
+	private ManagerClosedException closedException()
+	{
+		return (new ManagerClosedException("This manager is closed and unable to process calls.",
+		        !this._stacklessExceptions));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.gabstudios.manager.Manager#closeChild(java.lang.String)
+	 */
+	@Override
+	public C closeChild(final String key)
+	{
+		if (this.isClosed())
+		{
+			throw (this.closedException());
+		}
+		else
+		{
+			Validate.defineString(key).testNotNullEmpty().testMaxLength(ManagerImpl.KEY_MAX_LENGTH)
+			        .throwValidationExceptionOnFail().validate();
+			return (this.closeChild(key, true));
+		}
+	}
+
+	/*
+	 * Removes and closes the child associated with the key.  A child restored from a snapshot that was never used is
+	 * dropped without being instantiated.
+	 *
+	 * @param key A validated <code>String</code> key.
+	 *
+	 * @param record True if the close should be recorded in the journal.
+	 *
+	 * @return The child that was closed, or null.
+	 */
+	private C closeChild(final String key, final boolean record)
+	{
+		if (!this._pending.isEmpty())
+		{
+			this.dropPending(key, record);
+		}
+
+		final C child = this._children.remove(key);
+		if (child == null)
+		{
+			this._dependencies.remove(key);
+		}
+		else
+		{
+			this.closeRemoved(key, child, record);
+		}
+		return (child);
+	}
+
+	/*
+	 * Drops a child restored from a snapshot that was never used, without instantiating it, and records the close in
+	 * the journal.
+	 *
+	 * @param key A validated <code>String</code> key.
+	 *
+	 * @param record True if the close should be recorded in the journal.
+	 *
+	 * @return True if the key was restored and not used yet.
+	 */
+	private boolean dropPending(final String key, final boolean record)
+	{
+		final RegistrySnapshot.Entry entry = this._pending.remove(key);
+		if (entry == null)
+		{
+			return (false);
+		}
+		if (record)
+		{
+			this.recordClose(key, null);
+		}
+		this._events.publish(LifecycleEvent.Type.CLOSED, key, entry.getClassName());
+		return (true);
+	}
+
+	/*
+	 * Closes a child that was just removed from the child table.
+	 */
+	private void closeRemoved(final String key, final C child, final boolean record)
+	{
+		this.closeUnbound(child, this.forget(key, child, record));
+		assert (this._children.get(key) != child) : "The children table still contains the manager child when the manager child was closed.";
+	}
+
+	/*
+	 * Closes a child that is no longer bound, unless it is still being initialized or is leased.
+	 *
+	 * @param count The lease count of the child, or null.
+	 */
+	private void closeUnbound(final C child, final LeaseCount count)
+	{
+		if (child instanceof ManageableImpl)
+		{
+			// the child is already removed, so it does not need to detach itself.
+			((ManageableImpl) child).setDetached();
+		}
+
+		if (!this._initializing.isEmpty() && this.endInitializing(child))
+		{
+			// initialize has not returned, so the creator closes the child once it does.
+		}
+		// a leased child is closed by the release of its last lease.
+		else if (count != null)
+		{
+			count.retire(child, this._retired.isEmpty() ? null : this.retiredLease(child));
+			return;
+		}
+		else
+		{
+			child.close();
+		}
+		if (!this._retired.isEmpty())
+		{
+			this.releaseVersion(child.getClass().getClassLoader());
+		}
+	}
+
+	/*
+	 * Removes and closes the child if it is still bound to the key.
+	 *
+	 * @return True if the child was bound and is closed.
+	 */
+	private boolean closeIfBound(final String key, final C child)
+	{
+		if (this.removeChild(key, child))
+		{
+			this.closeRemoved(key, child, true);
+			return (true);
+		}
+		return (false);
+	}
+
+	/**
+	 * Closes the manager, waiting no longer than the deadline for the children to close. The children are closed on
+	 * the lifecycle executor, in dependency order, while the calling thread watches the deadline. When the deadline
+	 * passes every child still bound is unbound and the manager is closed, whether or not the children have finished
+	 * closing, so shutdown takes no longer than the deadline.
+	 *
+	 * The lifecycle executor must run tasks on threads other than the caller's for the deadline to hold. A child
+	 * whose close hangs keeps its executor thread.
+	 *
+	 * @param deadline
+	 *            The longest to wait for the children to close.
+	 *
+	 * @return A <code>CloseReport</code> of the children that closed, failed or overran the deadline.
+	 *
+	 * @throws ManagerClosedException
+	 *             Thrown when the manager is already closed.
+	 */
+	public CloseReport close(final Duration deadline)
+	{
+		if (this.isClosed())
+		{
+			throw (new ManagerClosedException("The Manager has been closed and may not be used.", !this._stacklessExceptions));
+		}
+		Validate.defineObject(deadline).testNotNull().throwValidationExceptionOnFail().validate();
+
+		final long start = System.nanoTime();
+		this._isClosed = true;
+		this.stopHealthChecks(true);
+		this._pending.clear();
+		final Set<String> keys = new HashSet<>(this._children.keySet());
+		final Map<String, CompletableFuture<C>> futures;
+		if (this._dependencies.isEmpty())
+		{
+			futures = new LinkedHashMap<>();
+			for (final String key : keys)
+			{
+				futures.put(key, CompletableFuture.supplyAsync(() -> this.closeChild(key, false), this._executor));
+			}
+		}
+		else
+		{
+			futures = this.closeAsync(keys);
+		}
+		final CloseReport report = ManagerImpl.awaitClose(futures, start, deadline);
+
+		// the children that overran are abandoned, along with everything kept for them.  A lease still held on one
+		// keeps its own count, so releasing it does not need the lease table.
+		this._children.clear();
+		this._tags.clear();
+		this._types.clear();
+		this._dependencies.clear();
+		this._leases.clear();
+		this._accessCounters.clear();
+		this._health.clear();
+		this._events.close();
+		this.closeVersion();
+		if (this._journal != null)
+		{
+			this._journal.close();
+		}
+		return (report);
+	}
+
+	/**
+	 * Closes the child associated with the key, waiting no longer than the deadline for it to close. The key is
+	 * unbound at once and Manageable.close() is called on the lifecycle executor while the calling thread watches the
+	 * deadline.
+	 *
+	 * @param key
+	 *            A <code>String</code> instance. The key of the child.
+	 * @param deadline
+	 *            The longest to wait for the child to close.
+	 *
+	 * @return A <code>CloseReport</code> for the child, which is empty if no child is bound to the key.
+	 *
+	 * @throws ManagerClosedException
+	 *             Thrown when the manager is closed.
+	 */
+	public CloseReport closeChild(final String key, final Duration deadline)
+	{
+		if (this.isClosed())
+		{
+			throw (this.closedException());
+		}
+		Validate.defineString(key).testNotNullEmpty().testMaxLength(ManagerImpl.KEY_MAX_LENGTH)
+		        .throwValidationExceptionOnFail().validate();
+		Validate.defineObject(deadline).testNotNull().throwValidationExceptionOnFail().validate();
+
+		final long start = System.nanoTime();
+		final Map<String, CompletableFuture<C>> futures = new LinkedHashMap<>();
+		if (this.contains(key))
+		{
+			futures.put(key, CompletableFuture.supplyAsync(() -> this.closeChild(key, true), this._executor));
+		}
+		return (ManagerImpl.awaitClose(futures, start, deadline));
+	}
+
+	/*
+	 * Starts closing the children so that a child is closed before the children it depends on.  Children that do not
+	 * depend on each other are closed in parallel.  Every child is closed even if another fails to close.
+	 *
+	 * @param keys The keys of the children to close.
+	 *
+	 * @return The closes, by key.
+	 */
+	private Map<String, CompletableFuture<C>> closeAsync(final Set<String> keys)
+	{
+		return (this.closeAsync(keys, key -> this.closeChild(key, false), this._executor));
+	}
+
+	/*
+	 * Starts closing the children so that a child is closed before the children it depends on.
+	 *
+	 * @param keys The keys of the children to close.
+	 *
+	 * @param close Closes the child of a key.
+	 *
+	 * @param executor The <code>Executor</code> to close the children on.
+	 *
+	 * @return The closes, by key.
+	 */
+	private Map<String, CompletableFuture<C>> closeAsync(final Set<String> keys, final Function<String, C> close,
+	        final Executor executor)
+	{
+		// a child must close after every child that depends on it.
+		final Map<String, List<String>> dependents = new HashMap<>();
+		for (final String key : keys)
+		{
+			dependents.put(key, new ArrayList<String>());
+		}
+		for (final String key : keys)
+		{
+			for (final String dependency : this._dependencies.getOrDefault(key, Collections.<String> emptySet()))
+			{
+				final List<String> list = dependents.get(dependency);
+				if (list != null)
+				{
+					list.add(key);
+				}
+			}
+		}
+
+		return (DependencySchedule.run(DependencySchedule.order(dependents), dependents, close, executor, false));
+	}
+
+	/*
+	 * Closes the children so that a child is closed before the children it depends on, and waits for them.
+	 *
+	 * @param keys The keys of the children to close.
+	 */
+	private void closeInDependencyOrder(final Set<String> keys)
+	{
+		final Map<String, CompletableFuture<C>> futures = this.closeAsync(keys);
+		final Throwable failure = ManagerImpl.await(futures.values());
+		this._dependencies.clear();
+		if (failure != null)
+		{
+			throw (ManagerImpl.asRuntimeException(failure, "Unable to close the children of the manager."));
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.gabstudios.manager.Manager#containsChild(java.lang.String)
+	 */
+	@Override
+	public boolean containsChild(final String key)
+	{
+		final boolean contains = this.contains(key);
+		if (contains && (this._accessSampleMask >= 0))
+		{
+			this.recordAccess(key);
+		}
+		this.lookedUp(key, contains);
+		return (contains);
+	}
+
+	/*
+	 * Checks if a child is bound to the key like containsChild(key), without counting it as a lookup, for the methods
+	 * that check a key on the way to doing something else.
+	 */
+	private boolean contains(final String key)
+	{
+		if (this.isClosed())
+		{
+			throw (this.closedException());
+		}
+		else
+		{
+			Validate.defineString(key).testNotNullEmpty().testMaxLength(ManagerImpl.KEY_MAX_LENGTH)
+			        .throwValidationExceptionOnFail().validate();
+			return (this._children.containsKey(key) || this._pending.containsKey(key));
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.gabstudios.manager.Manager#create(java.lang.Class)
+	 */
+	@Override
+	public C create(final Class<C> clazz) throws ManageableExistsException
+	{
+		return (this.create(clazz.getName(), clazz.getName()));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.gabstudios.manager.Manager#create(java.lang.String)
+	 */
+	@Override
+	public C create(final String className) throws ManageableExistsException
+	{
+		return (this.create(className, className));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.gabstudios.manager.Manager#create(java.lang.String, java.lang.Class)
+	 */
+	@Override
+	public C create(final String key, final Class<C> clazz) throws ManageableExistsException
+	{
+		return (this.create(key, clazz.getName()));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.gabstudios.manager.Manager#create(java.lang.String, java.lang.String)
+	 */
+	@Override
+	public C create(final String key, final String className) throws ManageableExistsException
+	{
+		Validate.defineString(key).testNotNullEmpty().testMaxLength(ManagerImpl.KEY_MAX_LENGTH)
+		        .throwValidationExceptionOnFail().validate();
+		Validate.defineString(className).testNotNullEmpty().testMaxLength(ManagerImpl.CLASS_NAME_MAX_LENGTH)
+		        .throwValidationExceptionOnFail().validate();
+
+		final C child = this.loadAndStoreManageable(key, className);
+		this.initializeAdded(key, child, className);
+		return child;
+	}
+
+	/**
+	 * Creates a child with tags that can be queried with ManagerImpl.find(query). The tags are indexed once the child
+	 * has been initialized and are dropped when it is closed. Tags are not saved in snapshots or the journal.
+	 *
+	 * @param key
+	 *            A <code>String</code> instance. The key to bind to the new child.
+	 * @param className
+	 *            A <code>String</code> instance of the fully qualified classname.
+	 * @param tags
+	 *            A <code>Map</code> of tag names to values, such as tenant, region or priority.
+	 *
+	 * @return A <code>Manageable</code> instance bound to the key.
+	 *
+	 * @throws ManageableExistsException
+	 *             Thrown when a Manageable instance already exists with that key.
+	 */
+	public C create(final String key, final String className, final Map<String, String> tags)
+	        throws ManageableExistsException
+	{
+		Validate.defineObject(tags).testNotNull().throwValidationExceptionOnFail().validate();
+		for (final Map.Entry<String, String> tag : tags.entrySet())
+		{
+			Validate.defineString(tag.getKey()).testNotNullEmpty().throwValidationExceptionOnFail().validate();
+			Validate.defineObject(tag.getValue()).testNotNull().throwValidationExceptionOnFail().validate();
+		}
+
+		final C child = this.create(key, className);
+		this._tags.add(key, child, tags);
+		if (this._children.get(key) != child)
+		{
+			// closed while the tags were added.
+			this._tags.remove(key, child);
+		}
+		return (child);
+	}
+
+	/**
+	 * Creates a child asynchronously. The child is instantiated and initialized on the lifecycle executor, off of the
+	 * caller's thread. Concurrent calls for the same key, through this method or
+	 * ManagerImpl.getOrCreateAsync(key,className), share one instantiation and initialization and complete with the
+	 * same child.
+	 *
+	 * If the creation fails, every caller sharing it completes exceptionally with the failure and the key is left
+	 * free, so a later call may try again.
+	 *
+	 * @param key
+	 *            A <code>String</code> instance. The key to bind to the new child.
+	 * @param className
+	 *            A <code>String</code> instance of the fully qualified classname.
+	 *
+	 * @return A <code>CompletableFuture</code> that completes with the child bound to the key. It completes
+	 *         exceptionally with a <code>ManageableExistsException</code> if a child is already bound to the key.
+	 *
+	 * @throws ManagerClosedException
+	 *             Thrown when the manager is closed.
+	 */
+	public CompletableFuture<C> createAsync(final String key, final String className)
+	{
+		if (this.isClosed())
+		{
+			throw (this.closedException());
+		}
+		Validate.defineString(key).testNotNullEmpty().testMaxLength(ManagerImpl.KEY_MAX_LENGTH)
+		        .throwValidationExceptionOnFail().validate();
+		Validate.defineString(className).testNotNullEmpty().testMaxLength(ManagerImpl.CLASS_NAME_MAX_LENGTH)
+		        .throwValidationExceptionOnFail().validate();
+
+		if (this.contains(key))
+		{
+			final CompletableFuture<C> failed = new CompletableFuture<>();
+			failed.completeExceptionally(this.existsException(key));
+			return (failed);
+		}
+		return (this.createSingleFlight(key, className));
+	}
+
+	/*
+	 * Starts the creation of a child on the lifecycle executor, or joins the creation already in flight for the key.
+	 *
+	 * @return A copy of the shared future, so a caller completing its future does not affect the others.
+	 */
+	private CompletableFuture<C> createSingleFlight(final String key, final String className)
+	{
+		final CompletableFuture<C> inFlight = this._inFlight.get(key);
+		if (inFlight != null)
+		{
+			return (inFlight.copy());
+		}
+
+		final CompletableFuture<C> created = new CompletableFuture<>();
+		final CompletableFuture<C> existing = this._inFlight.putIfAbsent(key, created);
+		if (existing != null)
+		{
+			return (existing.copy());
+		}
+
+		try
+		{
+			this._executor.execute(() -> {
+				C child = null;
+				Throwable failure = null;
+				try
+				{
+					child = this.create(key, className);
+				}
+				catch (final ManageableExistsException e)
+				{
+					// created by a synchronous call while this one was queued.
+					child = this._children.get(key);
+					failure = (child == null) ? e : null;
+				}
+				catch (final Throwable e)
+				{
+					failure = e;
+				}
+
+				// leave the key free before the waiters see the outcome, so a retry starts a new creation.
+				this._inFlight.remove(key, created);
+				if (failure == null)
+				{
+					created.complete(child);
+				}
+				else
+				{
+					created.completeExceptionally(failure);
+				}
+			});
+		}
+		catch (final RuntimeException e)
+		{
+			this._inFlight.remove(key, created);
+			created.completeExceptionally(e);
+		}
+		return (created.copy());
+	}
+
+	/**
+	 * Creates a set of children that may depend on each other or on children that already exist. A child is
+	 * initialized only after the children it depends on have been initialized, and children that do not depend on each
+	 * other are created in parallel on the lifecycle executor. The manager's close() later closes a child before the
+	 * children it depends on.
+	 *
+	 * All of the children are created or none of them are: if any child fails, the children already created by this
+	 * call are closed, in reverse dependency order, and the failure is thrown.
+	 *
+	 * @param definitions
+	 *            A <code>Collection</code> of <code>ManageableDefinition</code> instances.
+	 *
+	 * @return A <code>Map</code> of the keys to the children created, in the order of the definitions.
+	 *
+	 * @throws ManageableExistsException
+	 *             Thrown when a key is already bound to a child or is used by more than one definition. Nothing is
+	 *             created.
+	 * @throws DependencyCycleException
+	 *             Thrown when the dependencies form a cycle. Nothing is created.
+	 * @throws ManagerException
+	 *             Thrown when a dependency is neither in the definitions nor an existing child, or when a child is
+	 *             unable to be created.
+	 */
+	public Map<String, C> createAll(final Collection<ManageableDefinition> definitions)
+	        throws ManageableExistsException
+	{
+		if (this.isClosed())
+		{
+			throw (this.closedException());
+		}
+		Validate.defineObject(definitions).testNotNull().throwValidationExceptionOnFail().validate();
+
+		final Map<String, ManageableDefinition> batch = new LinkedHashMap<>();
+		final Map<String, Set<String>> graph = new LinkedHashMap<>();
+		for (final ManageableDefinition definition : definitions)
+		{
+			final String key = definition.getKey();
+			Validate.defineString(key).testNotNullEmpty().testMaxLength(ManagerImpl.KEY_MAX_LENGTH)
+			        .throwValidationExceptionOnFail().validate();
+			Validate.defineString(definition.getClassName()).testNotNullEmpty()
+			        .testMaxLength(ManagerImpl.CLASS_NAME_MAX_LENGTH).throwValidationExceptionOnFail().validate();
+			if ((batch.put(key, definition) != null) || this.contains(key))
+			{
+				throw (this.existsException(key));
+			}
+			graph.put(key, definition.getDependencies());
+		}
+		for (final ManageableDefinition definition : batch.values())
+		{
+			for (final String dependency : definition.getDependencies())
+			{
+				if (!batch.containsKey(dependency) && !this.contains(dependency))
+				{
+					throw (new ManagerException("The child '" + definition.getKey() + "' depends on '" + dependency
+					        + "' which does not exist."));
+				}
+			}
+		}
+
+		final List<String> order = DependencySchedule.order(graph);
+		final Map<String, CompletableFuture<C>> futures = DependencySchedule.run(order, graph, key -> {
+			final ManageableDefinition definition = batch.get(key);
+			try
+			{
+				final C child = this.create(key, definition.getClassName());
+				this._dependencies.put(key, definition.getDependencies());
+				return (child);
+			}
+			catch (final ManageableExistsException e)
+			{
+				throw (new CompletionException(e));
+			}
+		}, this._executor, true);
+
+		final Throwable failure = ManagerImpl.await(futures.values());
+		if (failure != null)
+		{
+			for (int i = order.size() - 1; i >= 0; i--)
+			{
+				final CompletableFuture<C> future = futures.get(order.get(i));
+				if (!future.isCompletedExceptionally() && !this.isClosed())
+				{
+					this.closeChild(order.get(i));
+				}
+			}
+			if (failure instanceof ManageableExistsException)
+			{
+				throw ((ManageableExistsException) failure);
+			}
+			throw (ManagerImpl.asRuntimeException(failure, "Unable to create the children."));
+		}
+
+		final Map<String, C> children = new LinkedHashMap<>();
+		for (final String key : batch.keySet())
+		{
+			children.put(key, futures.get(key).join());
+		}
+		return (children);
+	}
+
+	/**
+	 * Stops counting the lookups of the keys and drops the statistics collected.
+	 *
+	 * @throws ManagerClosedException
+	 *             Thrown when the manager is closed.
+	 */
+	public void disableAccessStatistics()
+	{
+		if (this.isClosed())
+		{
+			throw (this.closedException());
+		}
+		this._accessSampleMask = -1;
+		this._accessCounters.clear();
+	}
+
+	/**
+	 * Starts counting the lookups of each key with get(key) and containsChild(key). One lookup in every sampleRate is
+	 * recorded, on average, and counts as sampleRate lookups, so a lookup that is not sampled costs a random number and
+	 * no shared write. The counts are estimates; a sample rate of one counts every lookup of a key used by one thread.
+	 * The children bound when this is called are given the current time as their create time.
+	 *
+	 * @param sampleRate
+	 *            The number of lookups each recorded lookup stands for. A power of two.
+	 *
+	 * @throws ManagerClosedException
+	 *             Thrown when the manager is closed.
+	 *
+	 * @throws IllegalArgumentException
+	 *             Thrown when the sample rate is not a positive power of two.
+	 */
+	public void enableAccessStatistics(final int sampleRate)
+	{
+		if (this.isClosed())
+		{
+			throw (this.closedException());
+		}
+		if ((sampleRate < 1) || (Integer.bitCount(sampleRate) != 1))
+		{
+			throw (new IllegalArgumentException("The sample rate must be a positive power of two - " + sampleRate));
+		}
+
+		final long now = System.currentTimeMillis();
+		if (this._offHeap != null)
+		{
+			if (this._accessSampleMask < 0)
+			{
+				this._offHeap.resetStatistics(now);
+			}
+		}
+		else
+		{
+			for (final String key : this._children.keySet())
+			{
+				this._accessCounters.putIfAbsent(key, new AccessCounter(now));
+			}
+		}
+		this._accessSampleMask = sampleRate - 1;
+	}
+
+	/*
+	 * Creates the exception thrown when a key is already bound to a child.
+	 */
+	private ManageableExistsException existsException(final String key)
+	{
+		return (new ManageableExistsException("A Manageable instance already exists with that key='" + key + "'", null,
+		        !this._stacklessExceptions));
+	}
+
+	/*
+	 * Removes a child that is closing itself, so that it does not have to call back through Manager.closeChild(key).
+	 * The child is removed with one conditional remove on the key and the child's identity; if the key is bound to
+	 * another child, or to nothing, the table is not changed.
+	 *
+	 * @param key The key the child was bound to.
+	 *
+	 * @param child The child closing itself.
+	 *
+	 * @return True if the child was removed.
+	 */
+	boolean detach(final String key, final Manageable child)
+	{
+		assert (key != null) : "detach() - the parameter 'key' should not be null.";
+		assert (child != null) : "detach() - the parameter 'child' should not be null.";
+
+		if (!this.removeChild(key, child))
+		{
+			return (false);
+		}
+		this.forget(key, child, true);
+		if (!this._retired.isEmpty())
+		{
+			this.releaseVersion(child.getClass().getClassLoader());
+		}
+		return (true);
+	}
+
+	/*
+	 * Drops the bookkeeping for a child that was removed from the table, and records the close in the journal.
+	 *
+	 * @param key The key the child was bound to.
+	 *
+	 * @param child The child that was removed.
+	 *
+	 * @param record True if the close should be recorded in the journal.
+	 *
+	 * @return The lease count of the child, which is removed from the lease table, or null if the child was never
+	 * acquired.
+	 */
+	private LeaseCount forget(final String key, final Manageable child, final boolean record)
+	{
+		this.unindex(key, child);
+		if (this._tags.isInUse())
+		{
+			this._tags.remove(key, child);
+		}
+		if (!this._dependencies.isEmpty())
+		{
+			this._dependencies.remove(key);
+		}
+		if (record)
+		{
+			this.recordClose(key, child);
+		}
+		this._events.publish(LifecycleEvent.Type.CLOSED, key, child.getClass().getName());
+		if (!this._health.isEmpty())
+		{
+			this._health.remove(key);
+		}
+		if (!this._accessCounters.isEmpty())
+		{
+			this._accessCounters.remove(key);
+		}
+		this.unbound(key);
+
+		return (this.takeLeaseCount(key, child));
+	}
+
+	/*
+	 * Removes the lease count of a child that is no longer bound.
+	 *
+	 * @return The count, or null if the child is not leased.
+	 */
+	private LeaseCount takeLeaseCount(final String key, final Manageable child)
+	{
+		LeaseCount count = null;
+		if (!this._leases.isEmpty())
+		{
+			count = this._leases.get(key);
+			if ((count != null) && count.isFor(child))
+			{
+				this._leases.remove(key, count);
+			}
+			else
+			{
+				count = null;
+			}
+		}
+		return (count);
+	}
+
+	/**
+	 * Writes the key, class name and state of every child to the channel, one child at a time through a fixed size
+	 * buffer, so the memory used does not grow with the number of children. The state is ACTIVE, INITIALIZING for a
+	 * child whose initialize has not returned, or PENDING for a child restored from a snapshot that has not been
+	 * instantiated. The children are read from a weakly consistent pass over the table; the export is not a
+	 * snapshot of a single moment. The channel is not closed.
+	 *
+	 * @param channel
+	 *            A <code>WritableByteChannel</code> to write to.
+	 * @param format
+	 *            The <code>ExportFormat</code> to write.
+	 * @param details
+	 *            If true, the health, tags, access statistics and dependencies of each child are written as well.
+	 *
+	 * @return The number of children written.
+	 *
+	 * @throws ManagerClosedException
+	 *             Thrown when the manager is closed.
+	 * @throws ManagerException
+	 *             Thrown when the channel is unable to be written to.
+	 */
+	public int export(final WritableByteChannel channel, final ExportFormat format, final boolean details)
+	{
+		if (this.isClosed())
+		{
+			throw (this.closedException());
+		}
+		Validate.defineObject(channel).testNotNull().throwValidationExceptionOnFail().validate();
+		Validate.defineObject(format).testNotNull().throwValidationExceptionOnFail().validate();
+
+		final RegistryExporter exporter = new RegistryExporter(channel, format, details);
+		try
+		{
+			exporter.begin();
+			this._children.forEach((key, child) -> {
+				final byte state = (!this._initializing.isEmpty() && this._initializing.containsKey(new Identity(child)))
+				        ? RegistryExporter.INITIALIZING
+				        : RegistryExporter.ACTIVE;
+				this.export(exporter, key, child.getClass().getName(), state, details);
+			});
+			this._pending.forEach((key, entry) -> {
+				// a child being instantiated is in the table before it leaves the pending table.
+				if (!this._children.containsKey(key))
+				{
+					this.export(exporter, key, entry.getClassName(), RegistryExporter.PENDING, details);
+				}
+			});
+			exporter.end();
+		}
+		catch (final IOException e)
+		{
+			throw (new ManagerException("Unable to export the registry.", e));
+		}
+		catch (final UncheckedIOException e)
+		{
+			throw (new ManagerException("Unable to export the registry.", e.getCause()));
+		}
+		return (exporter.getCount());
+	}
+
+	/**
+	 * Writes the key, class name and state of every child to the stream, as export(channel,format,details) does. The
+	 * stream is flushed but not closed.
+	 *
+	 * @param out
+	 *            An <code>OutputStream</code> to write to.
+	 * @param format
+	 *            The <code>ExportFormat</code> to write.
+	 * @param details
+	 *            If true, the health, tags, access statistics and dependencies of each child are written as well.
+	 *
+	 * @return The number of children written.
+	 *
+	 * @throws ManagerClosedException
+	 *             Thrown when the manager is closed.
+	 * @throws ManagerException
+	 *             Thrown when the stream is unable to be written to.
+	 */
+	public int export(final OutputStream out, final ExportFormat format, final boolean details)
+	{
+		Validate.defineObject(out).testNotNull().throwValidationExceptionOnFail().validate();
+
+		final int count = this.export(Channels.newChannel(out), format, details);
+		try
+		{
+			out.flush();
+		}
+		catch (final IOException e)
+		{
+			throw (new ManagerException("Unable to export the registry.", e));
+		}
+		return (count);
+	}
+
+	/*
+	 * Writes one child, gathering its details if they are asked for.
+	 */
+	private void export(final RegistryExporter exporter, final String key, final String className, final byte state,
+	        final boolean details)
+	{
+		try
+		{
+			if (details)
+			{
+				exporter.child(key, className, state, this._health.getOrDefault(key, HealthStatus.UNKNOWN),
+				        this._tags.isInUse() ? this._tags.getTags(key) : Collections.<String, String> emptyMap(),
+				        this.statistics(key),
+				        this._dependencies.getOrDefault(key, Collections.<String> emptySet()));
+			}
+			else
+			{
+				exporter.child(key, className, state, null, null, null, null);
+			}
+		}
+		catch (final IOException e)
+		{
+			throw (new UncheckedIOException(e));
+		}
+	}
+
+	/**
+	 * Finds the children whose tags match the query, through an inverted index of the tags. The cost is proportional
+	 * to the number of children carrying the tags in the query, not the number of children held.
+	 *
+	 * @param query
+	 *            A <code>TagQuery</code> instance, such as TagQuery.tag("tenant","a").and(TagQuery.tag("region","eu")).
+	 *
+	 * @return A <code>List</code> of the matching children.
+	 *
+	 * @throws ManagerClosedException
+	 *             Thrown when the manager is closed.
+	 */
+	public List<C> find(final TagQuery query)
+	{
+		if (this.isClosed())
+		{
+			throw (this.closedException());
+		}
+		Validate.defineObject(query).testNotNull().throwValidationExceptionOnFail().validate();
+
+		final List<String> keys = this._tags.find(query);
+		final List<C> children = new ArrayList<>(keys.size());
+		for (final String key : keys)
+		{
+			final C child = this._children.get(key);
+			if (child != null)
+			{
+				children.add(child);
+			}
+		}
+		return (children);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.gabstudios.manager.Manager#get(java.lang.String)
+	 */
+	@Override
+	public C get(final String key)
+	{
+		if (this.isClosed())
+		{
+			throw (this.closedException());
+		}
+		else
+		{
+			Validate.defineString(key).testNotNullEmpty().testMaxLength(ManagerImpl.KEY_MAX_LENGTH)
+			        .throwValidationExceptionOnFail().validate();
+			// TODO - can make max length check based on the max length of a registered key.
+
+			final C child = this.lookup(key);
+			this.lookedUp(key, child != null);
+			if ((child != null) && (this._accessSampleMask >= 0))
+			{
+				this.recordAccess(key);
+			}
+			return (child);
+
+		}
+	}
+
+	/*
+	 * Called for every lookup of a key by get(key) and containsChild(key), and so by the methods that look the key up
+	 * first.  Does nothing here, and is inlined away while no manager built by a <code>ManagerBuilder</code> that
+	 * overrides it is loaded.
+	 *
+	 * @param key The key that was looked up.
+	 *
+	 * @param hit True if a child was bound to the key.
+	 */
+	void lookedUp(final String key, final boolean hit)
+	{
+		// void
+	}
+
+	/*
+	 * Gets the child bound to the key, instantiating it if it was restored from a snapshot, without counting an
+	 * access.
+	 */
+	private C lookup(final String key)
+	{
+		C child = this._children.get(key);
+		if ((child == null) && !this._pending.isEmpty())
+		{
+			child = this.materialize(key);
+		}
+		return (child);
+	}
+
+	/*
+	 * Gets the child bound to the key in the child table, without instantiating a restored child or counting a
+	 * lookup.
+	 */
+	C peek(final String key)
+	{
+		return (this._children.get(key));
+	}
+
+	/*
+	 * Records a lookup of the key if it is sampled.
+	 */
+	private void recordAccess(final String key)
+	{
+		final int mask = this._accessSampleMask;
+		if ((mask >= 0) && ((ThreadLocalRandom.current().nextInt() & mask) == 0))
+		{
+			if (this._offHeap != null)
+			{
+				this._offHeap.recordAccess(key, mask + 1L, System.currentTimeMillis());
+			}
+			else
+			{
+				final AccessCounter counter = this._accessCounters.get(key);
+				if (counter != null)
+				{
+					counter.record(mask + 1L, System.currentTimeMillis());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gets the access statistics of the key.
+	 *
+	 * @param key
+	 *            A <code>String</code> instance. The key of the child.
+	 *
+	 * @return The <code>AccessStatistics</code> of the key, or null if statistics are disabled or no child is bound
+	 *         to the key.
+	 *
+	 * @throws ManagerClosedException
+	 *             Thrown when the manager is closed.
+	 */
+	public AccessStatistics getAccessStatistics(final String key)
+	{
+		if (this.isClosed())
+		{
+			throw (this.closedException());
+		}
+		Validate.defineString(key).testNotNullEmpty().testMaxLength(ManagerImpl.KEY_MAX_LENGTH)
+		        .throwValidationExceptionOnFail().validate();
+		return (this.statistics(key));
+	}
+
+	/*
+	 * Gets the access statistics of the key from wherever the table keeps them, or null.
+	 */
+	private AccessStatistics statistics(final String key)
+	{
+		if (this._offHeap != null)
+		{
+			return ((this._accessSampleMask >= 0) ? this._offHeap.statistics(key) : null);
+		}
+		final AccessCounter counter = this._accessCounters.get(key);
+		return ((counter == null) ? null : counter.snapshot(key));
+	}
+
+	/**
+	 * Gets the keys that were looked up the least, with the least recently used first among equal counts. The keys
+	 * are ranked from a weakly consistent pass over the statistics that does not lock the table, in time
+	 * proportional to the number of keys and memory proportional to the count asked for.
+	 *
+	 * @param count
+	 *            The number of keys to return, at most.
+	 *
+	 * @return A <code>List</code> of the statistics of the coldest keys, the coldest first. Empty if statistics are
+	 *         disabled.
+	 *
+	 * @throws ManagerClosedException
+	 *             Thrown when the manager is closed.
+	 */
+	public List<AccessStatistics> getColdest(final int count)
+	{
+		return (this.rank(count, AccessStatistics.BY_USE));
+	}
+
+	/**
+	 * Gets the keys that were looked up the most, with the most recently used first among equal counts. The keys are
+	 * ranked from a weakly consistent pass over the statistics that does not lock the table, in time proportional to
+	 * the number of keys and memory proportional to the count asked for.
+	 *
+	 * @param count
+	 *            The number of keys to return, at most.
+	 *
+	 * @return A <code>List</code> of the statistics of the hottest keys, the hottest first. Empty if statistics are
+	 *         disabled.
+	 *
+	 * @throws ManagerClosedException
+	 *             Thrown when the manager is closed.
+	 */
+	public List<AccessStatistics> getHottest(final int count)
+	{
+		return (this.rank(count, AccessStatistics.BY_USE.reversed()));
+	}
+
+	/*
+	 * Finds the first keys in the order with a bounded heap that holds the best keys seen so far, the worst of them
+	 * on top.
+	 */
+	private List<AccessStatistics> rank(final int count, final Comparator<AccessStatistics> order)
+	{
+		if (this.isClosed())
+		{
+			throw (this.closedException());
+		}
+		if (count < 0)
+		{
+			throw (new IllegalArgumentException("The count must not be negative - " + count));
+		}
+
+		final PriorityQueue<AccessStatistics> best = new PriorityQueue<>(Math.max(1, count), order.reversed());
+		if (count > 0)
+		{
+			final Consumer<AccessStatistics> offer = statistics -> {
+				if (best.size() < count)
+				{
+					best.add(statistics);
+				}
+				else if (order.compare(statistics, best.peek()) < 0)
+				{
+					best.poll();
+					best.add(statistics);
+				}
+			};
+			if (this._offHeap == null)
+			{
+				for (final Map.Entry<String, AccessCounter> entry : this._accessCounters.entrySet())
+				{
+					offer.accept(entry.getValue().snapshot(entry.getKey()));
+				}
+			}
+			else if (this._accessSampleMask >= 0)
+			{
+				this._offHeap.forEachStatistics(offer);
+			}
+		}
+
+		final List<AccessStatistics> ranked = new ArrayList<>(best);
+		ranked.sort(order);
+		return (ranked);
+	}
+
+	/**
+	 * Gets the result of the last health check of the child bound to the key. Does not block or run a check.
+	 *
+	 * @param key
+	 *            A <code>String</code> instance. The key of the child.
+	 *
+	 * @return The <code>HealthStatus</code> of the child, HealthStatus.UNKNOWN if it has not been checked.
+	 *
+	 * @throws ManagerClosedException
+	 *             Thrown when the manager is closed.
+	 */
+	public HealthStatus getHealth(final String key)
+	{
+		if (this.isClosed())
+		{
+			throw (this.closedException());
+		}
+		Validate.defineString(key).testNotNullEmpty().testMaxLength(ManagerImpl.KEY_MAX_LENGTH)
+		        .throwValidationExceptionOnFail().validate();
+		return (this._health.getOrDefault(key, HealthStatus.UNKNOWN));
+	}
+
+	/**
+	 * Gets a publisher of the lifecycle events of the children: a CREATED event once a child is created and
+	 * initialized, a CLOSED event when it is closed, and a RECLAIMED event when a weakly or softly held child is
+	 * reclaimed. Children restored from a snapshot or journal are not announced. Subscribers are called on the
+	 * lifecycle executor, each receives the events published after it subscribed, as far as its demand allows, and
+	 * each is completed once the manager is closed.
+	 *
+	 * Each subscriber has a buffer of Flow.defaultBufferSize() events and the OverflowPolicy.COALESCE policy.
+	 *
+	 * @return A <code>Flow.Publisher</code> of the lifecycle events.
+	 *
+	 * @throws ManagerClosedException
+	 *             Thrown when the manager is closed.
+	 */
+	public Flow.Publisher<LifecycleEvent> getLifecycleEvents()
+	{
+		if (this.isClosed())
+		{
+			throw (this.closedException());
+		}
+		return (this._events);
+	}
+
+	/**
+	 * Gets a publisher of the lifecycle events of the children, whose subscribers have a buffer of the size and the
+	 * overflow policy. See ManagerImpl.getLifecycleEvents().
+	 *
+	 * @param bufferSize
+	 *            The number of events buffered for a subscriber that has not requested them.
+	 * @param policy
+	 *            What happens when the buffer of a subscriber is full.
+	 *
+	 * @return A <code>Flow.Publisher</code> of the lifecycle events.
+	 *
+	 * @throws ManagerClosedException
+	 *             Thrown when the manager is closed.
+	 */
+	public Flow.Publisher<LifecycleEvent> getLifecycleEvents(final int bufferSize, final OverflowPolicy policy)
+	{
+		if (this.isClosed())
+		{
+			throw (this.closedException());
+		}
+		if (bufferSize < 1)
+		{
+			throw (new IllegalArgumentException("The buffer size must be greater than zero."));
+		}
+		Validate.defineObject(policy).testNotNull().throwValidationExceptionOnFail().validate();
+		return (subscriber -> this._events.subscribe(subscriber, bufferSize, policy));
+	}
+
+	/**
+	 * Gets the child bound to the key, creating it asynchronously if there is none. The child is instantiated and
+	 * initialized on the lifecycle executor, and concurrent calls for the same key share one instantiation and
+	 * initialization; see ManagerImpl.createAsync(key,className).
+	 *
+	 * @param key
+	 *            A <code>String</code> instance. The key of the child.
+	 * @param className
+	 *            A <code>String</code> instance of the fully qualified classname to create the child from if there
+	 *            is none.
+	 *
+	 * @return A <code>CompletableFuture</code> that completes with the child bound to the key. It is already complete
+	 *         if the child exists.
+	 *
+	 * @throws ManagerClosedException
+	 *             Thrown when the manager is closed.
+	 */
+	public CompletableFuture<C> getOrCreateAsync(final String key, final String className)
+	{
+		final C child = this.get(key);
+		if (child != null)
+		{
+			return (CompletableFuture.completedFuture(child));
+		}
+		Validate.defineString(className).testNotNullEmpty().testMaxLength(ManagerImpl.CLASS_NAME_MAX_LENGTH)
+		        .throwValidationExceptionOnFail().validate();
+		return (this.createSingleFlight(key, className));
+	}
+
+	/**
+	 * Gets the child bound to the key, creating it from the class if there is none. This has the semantics of
+	 * <code>Map.computeIfAbsent</code>: concurrent callers all get the same child, and no exception is thrown when the
+	 * key is already bound. A caller that finds the child still being initialized waits for it, and tries again if it
+	 * fails to initialize.
+	 *
+	 * @param key
+	 *            A <code>String</code> instance. The key of the child.
+	 * @param clazz
+	 *            The class type to create a child from if there is none.
+	 *
+	 * @return The child bound to the key.
+	 *
+	 * @throws ManagerClosedException
+	 *             Thrown when the manager is closed.
+	 */
+	public C getOrCreate(final String key, final Class<? extends C> clazz)
+	{
+		Validate.defineObject(clazz).testNotNull().throwValidationExceptionOnFail().validate();
+		final C child = this.get(key);
+		if ((child != null) && this.awaitInitialized(key, child))
+		{
+			return (child);
+		}
+		return (this.getOrCreate(key, () -> ManagerImpl.<C> loadManageable(clazz), clazz.getName()));
+	}
+
+	/**
+	 * Gets the child bound to the key, creating it from the fully qualified class name if there is none. This has the
+	 * semantics of <code>Map.computeIfAbsent</code>: concurrent callers all get the same child, and no exception is
+	 * thrown when the key is already bound. A caller that finds the child still being initialized waits for it, and
+	 * tries again if it fails to initialize.
+	 *
+	 * @param key
+	 *            A <code>String</code> instance. The key of the child.
+	 * @param className
+	 *            A <code>String</code> instance of the fully qualified classname to create the child from if there
+	 *            is none.
+	 *
+	 * @return The child bound to the key.
+	 *
+	 * @throws ManagerClosedException
+	 *             Thrown when the manager is closed.
+	 */
+	public C getOrCreate(final String key, final String className)
+	{
+		final C child = this.get(key);
+		if ((child != null) && this.awaitInitialized(key, child))
+		{
+			return (child);
+		}
+		Validate.defineString(className).testNotNullEmpty().testMaxLength(ManagerImpl.CLASS_NAME_MAX_LENGTH)
+		        .throwValidationExceptionOnFail().validate();
+		return (this.getOrCreate(key, () -> this.instantiate(className), className));
+	}
+
+	/**
+	 * Gets the child bound to the key, creating it with the supplier if there is none. This has the semantics of
+	 * <code>Map.computeIfAbsent</code>: concurrent callers all get the same child, and no exception is thrown when the
+	 * key is already bound. A caller that finds the child still being initialized waits for it, and tries again if it
+	 * fails to initialize. The supplier may be called by more than one racing caller; only the instance that is bound
+	 * to the key is initialized.
+	 *
+	 * @param key
+	 *            A <code>String</code> instance. The key of the child.
+	 * @param supplier
+	 *            A <code>Supplier</code> of a new, uninitialized child.
+	 *
+	 * @return The child bound to the key.
+	 *
+	 * @throws ManagerClosedException
+	 *             Thrown when the manager is closed.
+	 */
+	public C getOrCreate(final String key, final Supplier<? extends C> supplier)
+	{
+		Validate.defineObject(supplier).testNotNull().throwValidationExceptionOnFail().validate();
+		final C child = this.get(key);
+		if ((child != null) && this.awaitInitialized(key, child))
+		{
+			return (child);
+		}
+		return (this.getOrCreate(key, supplier, null));
+	}
+
+	/*
+	 * Instantiates a child and binds it to the key with one atomic table operation, unless a child is already bound.
+	 *
+	 * @param key A validated <code>String</code> key.
+	 *
+	 * @param supplier Instantiates the child.
+	 *
+	 * @param className The class name to record in the journal, or null to use the class of the child.
+	 *
+	 * @return The child bound to the key.
+	 */
+	private C getOrCreate(final String key, final Supplier<? extends C> supplier, final String className)
+	{
+		final C created = supplier.get();
+		Validate.defineObject(created).testNotNull().throwValidationExceptionOnFail().validate();
+
+		while (true)
+		{
+			final C child = this.addUninitialized(key, created, true);
+			if (child == created)
+			{
+				this.initializeAdded(key, created, (className == null) ? created.getClass().getName() : className);
+				return (child);
+			}
+			if (this.awaitInitialized(key, child))
+			{
+				return (child);
+			}
+			// the child that won failed to initialize or was closed, so the key is tried again.
+		}
+	}
+
+	/**
+	 * Gets every child that is an instance of the type. The children are found through an index of the children by
+	 * class, so the cost is proportional to the number of children returned rather than the number of children held.
+	 * Children restored from a snapshot that have not been used yet are found by a scan of the restored entries, and
+	 * are instantiated if they match.
+	 *
+	 * @param type
+	 *            A concrete class, superclass or interface.
+	 * @param <T>
+	 *            The type of the children.
+	 *
+	 * @return A <code>List</code> of the children that are instances of the type.
+	 *
+	 * @throws ManagerClosedException
+	 *             Thrown when the manager is closed.
+	 */
+	public <T> List<T> getAllOfType(final Class<T> type)
+	{
+		if (this.isClosed())
+		{
+			throw (this.closedException());
+		}
+		Validate.defineObject(type).testNotNull().throwValidationExceptionOnFail().validate();
+
+		final List<T> children = new ArrayList<>();
+		for (final String key : this.keysOfType(type))
+		{
+			final C child = this._children.get(key);
+			if (type.isInstance(child))
+			{
+				children.add(type.cast(child));
+			}
+		}
+		return (children);
+	}
+
+	/**
+	 * Counts the children that are instances of the type, through the index of the children by class.
+	 *
+	 * @param type
+	 *            A concrete class, superclass or interface.
+	 *
+	 * @return The number of children that are instances of the type.
+	 *
+	 * @throws ManagerClosedException
+	 *             Thrown when the manager is closed.
+	 */
+	public int countOfType(final Class<?> type)
+	{
+		if (this.isClosed())
+		{
+			throw (this.closedException());
+		}
+		Validate.defineObject(type).testNotNull().throwValidationExceptionOnFail().validate();
+
+		if (this._pending.isEmpty())
+		{
+			return (this.types().count(type));
+		}
+		return (this.keysOfType(type).size());
+	}
+
+	/**
+	 * Closes every child that is an instance of the type, each as Manager.closeChild(key) would.
+	 *
+	 * @param type
+	 *            A concrete class, superclass or interface.
+	 *
+	 * @return The number of children closed.
+	 *
+	 * @throws ManagerClosedException
+	 *             Thrown when the manager is closed.
+	 */
+	public int closeAllOfType(final Class<?> type)
+	{
+		if (this.isClosed())
+		{
+			throw (this.closedException());
+		}
+		Validate.defineObject(type).testNotNull().throwValidationExceptionOnFail().validate();
+
+		int count = 0;
+		for (final String key : this.keysOfType(type))
+		{
+			final C child = this._children.get(key);
+			if (type.isInstance(child) && (this.closeChild(key, true) != null))
+			{
+				count++;
+			}
+		}
+		return (count);
+	}
+
+	/**
+	 * Closes the children bound to the keys on the calling thread. See ManagerImpl.closeChildren(keys, parallel).
+	 *
+	 * @param keys
+	 *            A <code>Collection</code> of keys.
+	 *
+	 * @return The number of children closed.
+	 *
+	 * @throws ManagerClosedException
+	 *             Thrown when the manager is closed.
+	 */
+	public int closeChildren(final Collection<String> keys)
+	{
+		return (this.closeChildren(keys, false));
+	}
+
+	/**
+	 * Closes the children bound to the keys, each as Manager.closeChild(key) would, in one batch. Every key is
+	 * validated before any child is closed. The children are then unbound together, with a few acquisitions of the
+	 * table lock for a compact or off-heap table, and closed afterwards, a child before the children it depends on.
+	 * A child restored from a snapshot that was never used is dropped without being instantiated. Keys that are not
+	 * bound are skipped.
+	 *
+	 * @param keys
+	 *            A <code>Collection</code> of keys.
+	 * @param parallel
+	 *            True to close the children on the lifecycle executor and wait for them, or false to close them on
+	 *            the calling thread.
+	 *
+	 * @return The number of children closed.
+	 *
+	 * @throws ManagerClosedException
+	 *             Thrown when the manager is closed.
+	 *
+	 * @throws RuntimeException
+	 *             Thrown when a child fails to close. The other children are still closed.
+	 */
+	public int closeChildren(final Collection<String> keys, final boolean parallel)
+	{
+		if (this.isClosed())
+		{
+			throw (this.closedException());
+		}
+		Validate.defineObject(keys).testNotNull().throwValidationExceptionOnFail().validate();
+		for (final String key : keys)
+		{
+			Validate.defineString(key).testNotNullEmpty().testMaxLength(ManagerImpl.KEY_MAX_LENGTH)
+			        .throwValidationExceptionOnFail().validate();
+		}
+
+		return (this.closeKeys(keys, parallel));
+	}
+
+	/**
+	 * Closes the children whose keys match on the calling thread. See ManagerImpl.closeChildren(matcher, parallel).
+	 *
+	 * @param matcher
+	 *            A <code>Predicate</code> of the keys to close.
+	 *
+	 * @return The number of children closed.
+	 *
+	 * @throws ManagerClosedException
+	 *             Thrown when the manager is closed.
+	 */
+	public int closeChildren(final Predicate<String> matcher)
+	{
+		return (this.closeChildren(matcher, false));
+	}
+
+	/**
+	 * Closes the children whose keys match, as ManagerImpl.closeChildren(keys, parallel) does. The keys are matched
+	 * in one pass over the child table, so removing every child of a tenant, for example, does not need a list of
+	 * its keys.
+	 *
+	 * @param matcher
+	 *            A <code>Predicate</code> of the keys to close.
+	 * @param parallel
+	 *            True to close the children on the lifecycle executor and wait for them, or false to close them on
+	 *            the calling thread.
+	 *
+	 * @return The number of children closed.
+	 *
+	 * @throws ManagerClosedException
+	 *             Thrown when the manager is closed.
+	 *
+	 * @throws RuntimeException
+	 *             Thrown when a child fails to close. The other children are still closed.
+	 */
+	public int closeChildren(final Predicate<String> matcher, final boolean parallel)
+	{
+		if (this.isClosed())
+		{
+			throw (this.closedException());
+		}
+		Validate.defineObject(matcher).testNotNull().throwValidationExceptionOnFail().validate();
+
+		final List<String> keys = new ArrayList<>();
+		for (final String key : this._children.keySet())
+		{
+			if (matcher.test(key))
+			{
+				keys.add(key);
+			}
+		}
+		if (!this._pending.isEmpty())
+		{
+			for (final String key : this._pending.keySet())
+			{
+				if (matcher.test(key))
+				{
+					keys.add(key);
+				}
+			}
+		}
+
+		return (this.closeKeys(keys, parallel));
+	}
+
+	/*
+	 * Gets the keys indexed under the type, after instantiating the restored children of the type.
+	 */
+	private List<String> keysOfType(final Class<?> type)
+	{
+		if (!this._pending.isEmpty())
+		{
+			for (final RegistrySnapshot.Entry entry : this._pending.values())
+			{
+				boolean matches;
+				try
+				{
+					matches = type.isAssignableFrom(
+					        Class.forName(entry.getClassName(), false, ManagerImpl.class.getClassLoader()));
+				}
+				catch (final ClassNotFoundException | LinkageError e)
+				{
+					// an alias is only resolved to its class by instantiating it.
+					matches = (ManagedTypes.lookup(entry.getClassName()) != null);
+				}
+				if (matches)
+				{
+					this.materialize(entry.getKey());
+				}
+			}
+		}
+		return (this.types().keys(type));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.gabstudios.manager.Manager#getChildCount()
+	 */
+	@Override
+	public int getChildCount()
+	{
+		if (this.isClosed())
+		{
+			throw (this.closedException());
+		}
+		else
+		{
+			return (this._children.size() + this._pending.size());
+		}
+	}
+
+	/**
+	 * Gets the memory used by the child table for each child: the table, the stored keys and their headers, divided
+	 * by the number of children. The children themselves are not counted. Only a manager created with
+	 * KeyStorage.COMPACT or KeyStorage.OFF_HEAP can measure its table; an off-heap table counts its direct buffers
+	 * as well.
+	 *
+	 * @return The estimated bytes per child, or -1 if the table can not be measured.
+	 *
+	 * @throws ManagerClosedException
+	 *             Thrown when the manager is closed.
+	 */
+	public double getBytesPerChild()
+	{
+		if (this.isClosed())
+		{
+			throw (this.closedException());
+		}
+		if (this._offHeap != null)
+		{
+			return (this._offHeap.bytesPerEntry());
+		}
+		return ((this._children instanceof CompactChildMap) ? ((CompactChildMap<C>) this._children).bytesPerEntry()
+		        : -1);
+	}
+
+	/**
+	 * Gets the heap memory used by the child table for each child, as getBytesPerChild() does, leaving out the
+	 * memory of an off-heap table that is outside of the heap.
+	 *
+	 * @return The estimated heap bytes per child, or -1 if the table can not be measured.
+	 *
+	 * @throws ManagerClosedException
+	 *             Thrown when the manager is closed.
+	 */
+	public double getHeapBytesPerChild()
+	{
+		if (this.isClosed())
+		{
+			throw (this.closedException());
+		}
+		return ((this._offHeap != null) ? this._offHeap.heapBytesPerEntry() : this.getBytesPerChild());
+	}
+
+	/**
+	 * Gets the tags the child bound to the key was created with.
+	 *
+	 * @param key
+	 *            A <code>String</code> instance. The key of the child.
+	 *
+	 * @return An unmodifiable <code>Map</code> of the tags, which is empty if the child has no tags or no child is
+	 *         bound to the key.
+	 *
+	 * @throws ManagerClosedException
+	 *             Thrown when the manager is closed.
+	 */
+	public Map<String, String> getTags(final String key)
+	{
+		if (this.isClosed())
+		{
+			throw (this.closedException());
+		}
+		Validate.defineString(key).testNotNullEmpty().testMaxLength(ManagerImpl.KEY_MAX_LENGTH)
+		        .throwValidationExceptionOnFail().validate();
+		return (this._tags.getTags(key));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.gabstudios.manager.Manager#getKeys()
+	 */
+	@Override
+	public Set<String> getKeys()
+	{
+		if (this.isClosed())
+		{
+			throw (this.closedException());
+		}
+		else
+		{
+			final Set<String> keys;
+			if (this._pending.isEmpty())
+			{
+				keys = Set.copyOf(this._children.keySet());
+			}
+			else
+			{
+				final Set<String> all = new HashSet<>(this._children.keySet());
+				all.addAll(this._pending.keySet());
+				keys = Set.copyOf(all);
+			}
+			assert (keys != null) : "The set that holds the keys is null when it should not be.";
+			return (keys);
+
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.gabstudios.manager.Manager#isClosed()
+	 */
+	@Override
+	public boolean isClosed()
+	{
+		return (this._isClosed);
+	}
+
+	/*
+	 * Loads and Stores the ManagerChild for use.
+	 *
+	 * @param key A <code>String</code> instance. The key to bind to the new child.
+	 *
+	 * @param className A <code>String</code> instance of the fully qualified classname.
+	 *
+	 * @return A <code>ManagerChild</code> instance bound to the key.
+	 *
+	 * @throws ManagerClosedException if this method is called and the Manager is closed.
+	 *
+	 * @throws ManageableExistsException Thrown when a Manageable instance already exists with that key.
+	 */
+	protected final C loadAndStoreManageable(final String key, final String className) throws ManageableExistsException
+	{
+		if (this.isClosed())
+		{
+			throw (this.closedException());
+		}
+		else
+		{
+
+			assert ((key != null) && (key
+			        .length() != 0)) : "loadAndStoreManagerChild() - the parameter 'key' should not be null or empty";
+			assert ((className != null) && (className
+			        .length() != 0)) : "loadAndStoreManagerChild() - the parameter 'className' should not be null or empty";
+
+			if (this.contains(key))
+			{
+				throw (this.existsException(key));
+			}
+			else
+			{
+				final C child = this.instantiate(className);
+				if (this.addUninitialized(key, child, true) != child)
+				{
+					// another thread bound the key first.
+					throw (this.existsException(key));
+				}
+				return (child);
+			}
+		}
+	}
+
+	/*
+	 * Adds a child to the table that the caller initializes next, see ManagerImpl.isInitialized(child).
+	 *
+	 * @param record True if the create is recorded in the journal once the child is initialized, or false for a
+	 * restored child whose create is already there.
+	 *
+	 * @return The child bound to the key after the call.
+	 */
+	private C addUninitialized(final String key, final C child, final boolean record)
+	{
+		final Identity identity = new Identity(child);
+		this._initializing.put(identity, Thread.currentThread());
+		final boolean unrecorded = record && (this._unrecorded != null);
+		if (unrecorded)
+		{
+			// marked before it is bound, so a close that unbinds it sees the mark.
+			this._unrecorded.add(identity);
+		}
+		C bound = null;
+		try
+		{
+			bound = this.addToChildTable(key, child);
+			return (bound);
+		}
+		finally
+		{
+			if (bound != child)
+			{
+				this._initializing.remove(identity);
+				if (unrecorded)
+				{
+					this._unrecorded.remove(identity);
+				}
+			}
+		}
+	}
+
+	/*
+	 * Instantiates a child from the class name, from the version loaded with ManagerImpl.reload(jar,batchSize) if
+	 * the class is in it.  Overridden by managers built with an instantiator.
+	 */
+	@SuppressWarnings("unchecked")
+	C instantiate(final String className)
+	{
+		final VersionedClassLoader version = this._version;
+		if (version != null)
+		{
+			final Supplier<? extends Manageable> instantiator = version.instantiator(className);
+			if (instantiator != null)
+			{
+				return ((C) instantiator.get());
+			}
+		}
+		return (ManagerImpl.loadManageable(className));
+	}
+
+	/*
+	 * Called once a child added with ManagerImpl.addUninitialized(key, child) is initialized.
+	 *
+	 * @return True if the child is still bound, or false if it was closed before initialize returned, in which case
+	 * it is closed now.
+	 */
+	private boolean isInitialized(final C child)
+	{
+		if (this.endInitializing(child))
+		{
+			return (true);
+		}
+		child.close();
+		return (false);
+	}
+
+	/*
+	 * Removes a child whose initialize failed, so that it does not hold on to the key.
+	 */
+	private void discardAdded(final String key, final C child)
+	{
+		if (this._unrecorded != null)
+		{
+			this._unrecorded.remove(new Identity(child));
+		}
+		// removed from the table before the waiters are woken, so they do not find it bound.
+		if (this._initializing.containsKey(new Identity(child)) && this.removeChild(key, child))
+		{
+			this.unindex(key, child);
+			// gives back what the add took, such as the room of a manager with a capacity.
+			this.unbound(key);
+			// a count made by an acquire(key) while the child was being initialized would hold up the next child's.
+			final LeaseCount count = this.takeLeaseCount(key, child);
+			if (count != null)
+			{
+				count.discard();
+			}
+		}
+		this.endInitializing(child);
+	}
+
+	/*
+	 * Removes a child from the children being initialized, and wakes the callers waiting for it.
+	 *
+	 * @return True if the child was being initialized.
+	 */
+	private boolean endInitializing(final Manageable child)
+	{
+		final Object initializing = this._initializing.remove(new Identity(child));
+		if (initializing instanceof Initialization)
+		{
+			((Initialization) initializing).complete(null);
+		}
+		return (initializing != null);
+	}
+
+	/*
+	 * Waits until a child that was found bound to the key is initialized, unless it is the calling thread that
+	 * initializes it.
+	 *
+	 * @return True if the child is still bound to the key, or false if it failed to initialize or was closed.
+	 */
+	private boolean awaitInitialized(final String key, final C child)
+	{
+		if (this._initializing.isEmpty())
+		{
+			return (true);
+		}
+		final Object initializing = this._initializing.computeIfPresent(new Identity(child),
+		        (ignored, current) -> (current instanceof Initialization) ? current
+		                : new Initialization((Thread) current));
+		if (initializing != null)
+		{
+			final Initialization initialization = (Initialization) initializing;
+			if (initialization._thread == Thread.currentThread())
+			{
+				// called from the child's own initialize.
+				return (true);
+			}
+			initialization.join();
+		}
+		return (this._children.get(key) == child);
+	}
+
+	/*
+	 * Initializes a child that was just added to the table with ManagerImpl.addUninitialized(key, child) and records
+	 * it in the journal.  If initialize fails the child is removed so that it does not hold on to the key.
+	 */
+	private void initializeAdded(final String key, final C child, final String className)
+	{
+		try
+		{
+			child.initialize(this, key);
+		}
+		catch (final RuntimeException e)
+		{
+			this.discardAdded(key, child);
+			throw (e);
+		}
+
+		if (this.isInitialized(child))
+		{
+			this.recordCreate(key, child, className);
+			this._events.publish(LifecycleEvent.Type.CREATED, key, child.getClass().getName());
+		}
+	}
+
+	/*
+	 * Records the create of a child in the journal, if there is one, and waits until it is durable.  Nothing is
+	 * recorded if the child was unbound since it was added, since its close was not recorded either.
+	 */
+	private void recordCreate(final String key, final C child, final String className)
+	{
+		if (this._journal != null)
+		{
+			final long sequence;
+			synchronized (this.recordLock(key))
+			{
+				if (!this._unrecorded.remove(new Identity(child)))
+				{
+					return;
+				}
+				sequence = this._journal.append(ManagerJournal.CREATE, key, className);
+			}
+			this.durable(sequence);
+		}
+	}
+
+	/*
+	 * Records the close of a child that was unbound in the journal, if there is one, and waits until it is durable.
+	 * A child whose create was not recorded yet has its create dropped instead.
+	 *
+	 * @param child The child, or null for a restored child that was never instantiated.
+	 */
+	private void recordClose(final String key, final Manageable child)
+	{
+		if (this._journal != null)
+		{
+			final long sequence;
+			synchronized (this.recordLock(key))
+			{
+				if ((child != null) && this._unrecorded.remove(new Identity(child)))
+				{
+					return;
+				}
+				sequence = this._journal.append(ManagerJournal.CLOSE, key, null);
+			}
+			this.durable(sequence);
+		}
+	}
+
+	/*
+	 * Returns the lock that orders the journal records of the key.
+	 */
+	private Object recordLock(final String key)
+	{
+		final int hash = key.hashCode();
+		return (this._recordLocks[(hash ^ (hash >>> 16)) & (ManagerImpl.RECORD_LOCKS - 1)]);
+	}
+
+	/*
+	 * Waits until a journal record is durable.  Compacts the journal when it has grown past its threshold.
+	 */
+	private void durable(final long sequence)
+	{
+		this._journal.sync(sequence);
+		if (this._journal.shouldCompact())
+		{
+			this._journal.compact(this::captureEntries);
+		}
+	}
+
+	/*
+	 * Instantiates a child that was restored from a snapshot.  The child is given its saved state, added to the child
+	 * table and then initialized.
+	 *
+	 * @param key A <code>String</code> instance that is bound to the restored child.
+	 *
+	 * @return The child, or null if the key was not restored from a snapshot.
+	 */
+	private C materialize(final String key)
+	{
+		final RegistrySnapshot.Entry entry = this._pending.get(key);
+		if (entry == null)
+		{
+			return (this._children.get(key));
+		}
+
+		// the child's own code runs outside of the pending table, so it may look up other keys.
+		final C child = this.instantiate(entry.getClassName());
+		final ByteBuffer state = entry.getState();
+		if ((state != null) && (child instanceof Snapshotable))
+		{
+			((Snapshotable) child).restoreState(state);
+		}
+
+		// the entry is only removed once the child is in the table, so a racing get(key) finds one or the other.  A
+		// racing materialize that bound its child first wins, and this child is dropped before it is initialized.
+		final C bound = this.addUninitialized(key, child, false);
+		if (bound != child)
+		{
+			this._pending.remove(key, entry);
+			return (bound);
+		}
+		if (!this._pending.remove(key, entry))
+		{
+			// the entry was dropped by a close, or replaced by a restore, while the child was bound.
+			this.discardAdded(key, child);
+			return (this.materialize(key));
+		}
+		try
+		{
+			child.initialize(this, key);
+		}
+		catch (final RuntimeException e)
+		{
+			this.discardAdded(key, child);
+			throw (e);
+		}
+		this.isInitialized(child);
+		return (child);
+	}
+
+	/*
+	 * Returns the type index, built from the child table on the first lookup by type.
+	 */
+	private TypeIndex types()
+	{
+		this._types.build(this._children);
+		return (this._types);
+	}
+
+	/*
+	 * Removes a key from the type index after its child was removed from the child table.  The key is added back if
+	 * it was bound again to a child of the same class in the meantime.
+	 */
+	private void unindex(final String key, final Manageable child)
+	{
+		if (!this._types.isInUse())
+		{
+			return;
+		}
+		this._types.remove(key, child.getClass());
+		final C current = this._children.get(key);
+		if ((current != null) && (current.getClass() == child.getClass()))
+		{
+			this._types.add(key, current.getClass());
+		}
+	}
+
+	/*
+	 * Removes the child bound to the key if it is the given instance, with one table operation.
+	 *
+	 * @return True if the child was removed.
+	 */
+	private boolean removeChild(final String key, final Object child)
+	{
+		final boolean[] removed = new boolean[1];
+		this._children.computeIfPresent(key, (ignored, current) -> {
+			removed[0] = (current == child);
+			return (removed[0] ? null : current);
+		});
+		return (removed[0]);
+	}
+
+	/*
+	 * Closes the children bound to the keys, after dropping the restored children among them that were never used.
+	 *
+	 * @param parallel True to close them on the lifecycle executor and wait for them.
+	 *
+	 * @return The number of children closed or dropped.
+	 */
+	private int closeKeys(final Collection<String> keys, final boolean parallel)
+	{
+		int dropped = 0;
+		if (!this._pending.isEmpty())
+		{
+			for (final String key : keys)
+			{
+				if (this.dropPending(key, true))
+				{
+					dropped++;
+				}
+			}
+		}
+		return (dropped + this.closeRemoved(this.removeChildren(keys), parallel));
+	}
+
+	/*
+	 * Removes the children bound to the keys from the child table.  A table with one write lock removes them in
+	 * batches; the default ConcurrentHashMap has a lock per bin, so each key is removed on its own, which takes only
+	 * the lock of its bin.
+	 *
+	 * @return The children removed, by key.
+	 */
+	@SuppressWarnings("unchecked")
+	private Map<String, C> removeChildren(final Collection<String> keys)
+	{
+		final Map<String, C> removed;
+		if (this._children instanceof BatchRemovable)
+		{
+			removed = ((BatchRemovable<C>) this._children).removeAll(keys);
+		}
+		else
+		{
+			removed = new LinkedHashMap<>();
+			for (final String key : keys)
+			{
+				final C child = this._children.remove(key);
+				if (child != null)
+				{
+					removed.put(key, child);
+				}
+			}
+		}
+
+		if (!this._dependencies.isEmpty())
+		{
+			for (final String key : keys)
+			{
+				if (!removed.containsKey(key))
+				{
+					this._dependencies.remove(key);
+				}
+			}
+		}
+		return (removed);
+	}
+
+	/*
+	 * Closes children that were just removed from the child table, a child before the children it depends on.  Every
+	 * child is closed even if another fails to close; the first failure is thrown with the others suppressed.
+	 *
+	 * @param removed The children removed, by key.
+	 *
+	 * @param parallel True to close them on the lifecycle executor and wait for them.
+	 *
+	 * @return The number of children closed.
+	 */
+	private int closeRemoved(final Map<String, C> removed, final boolean parallel)
+	{
+		Throwable failure = null;
+		if (!parallel && this._dependencies.isEmpty())
+		{
+			for (final Map.Entry<String, C> entry : removed.entrySet())
+			{
+				try
+				{
+					this.closeRemoved(entry.getKey(), entry.getValue(), true);
+				}
+				catch (final RuntimeException e)
+				{
+					failure = ManagerImpl.addFailure(failure, e);
+				}
+			}
+		}
+		else
+		{
+			// a direct executor closes each child as soon as the children that depend on it are closed.
+			final Executor executor = parallel ? this._executor : Runnable::run;
+			failure = ManagerImpl.await(this.closeAsync(removed.keySet(), key -> {
+				final C child = removed.get(key);
+				this.closeRemoved(key, child, true);
+				return (child);
+			}, executor).values());
+		}
+
+		if (failure != null)
+		{
+			throw (ManagerImpl.asRuntimeException(failure, "Unable to close the children."));
+		}
+		return (removed.size());
+	}
+
+	/*
+	 * Forgets a child that was reclaimed by the garbage collector.
+	 *
+	 * @param key The key the child was bound to.
+	 */
+	private void reclaimed(final String key)
+	{
+		this._types.remove(key);
+		if (this._children.containsKey(key))
+		{
+			// bound again since the child was reclaimed.
+			this._types.add(key, this._children.get(key).getClass());
+		}
+		this._dependencies.remove(key);
+		if (this._tags.isInUse())
+		{
+			this._tags.remove(key, null);
+		}
+		if (!this._accessCounters.isEmpty() && !this._children.containsKey(key))
+		{
+			this._accessCounters.remove(key);
+		}
+		final LeaseCount count = this._leases.get(key);
+		if ((count != null) && count.isCleared())
+		{
+			this._leases.remove(key, count);
+		}
+		this._events.publish(LifecycleEvent.Type.RECLAIMED, key, null);
+		this._health.remove(key);
+		this.unbound(key);
+		if (this._cleanupHook != null)
+		{
+			this._cleanupHook.accept(key);
+		}
+	}
+
+	/*
+	 * Called once for every child removed from the child table, whether it was closed, reclaimed or discarded after
+	 * its initialize failed.  Does nothing here, and is inlined away while no manager built by a
+	 * <code>ManagerBuilder</code> that overrides it is loaded.
+	 *
+	 * @param key The key the child was bound to.
+	 */
+	void unbound(final String key)
+	{
+		// void
+	}
+
+	/**
+	 * Loads a new version of child implementations from a jar and swaps every child whose class is in the jar to a
+	 * new instance of the new version. The jar is loaded by its own child-first class loader, so its classes are used
+	 * even when the class path has other versions of them, and every later create of a class in the jar uses the new
+	 * version. Classes in the java, javax and manager packages are always shared with the manager and are not
+	 * reloaded.
+	 *
+	 * The children are swapped in batches on the lifecycle executor, each the same way as
+	 * ManagerImpl.replace(key,className), so the keys are never unbound. Once no child of the previous version is
+	 * bound or leased its class loader is closed and released, so the previous version can be unloaded when its
+	 * last instance is collected. A child of the previous version that is not swapped, or that is swapped while
+	 * leased, keeps the previous version open until it is closed.
+	 *
+	 * @param jar
+	 *            A <code>Path</code> to the jar of the new version.
+	 * @param batchSize
+	 *            The most children swapped by one task.
+	 *
+	 * @return The number of children swapped to the new version.
+	 *
+	 * @throws ManagerClosedException
+	 *             Thrown when the manager is closed.
+	 * @throws ManagerException
+	 *             Thrown when the jar is unable to be read, or when children are unable to be swapped. The children
+	 *             that were not swapped stay bound to their previous version.
+	 */
+	public int reload(final Path jar, final int batchSize)
+	{
+		if (this.isClosed())
+		{
+			throw (this.closedException());
+		}
+		Validate.defineObject(jar).testNotNull().throwValidationExceptionOnFail().validate();
+		if (batchSize < 1)
+		{
+			throw (new IllegalArgumentException("The batch size must be greater than zero."));
+		}
+		if (!Files.isRegularFile(jar))
+		{
+			throw (new ManagerException("Unable to read the jar - " + jar));
+		}
+
+		synchronized (this._reloadLock)
+		{
+			return (this.reload(jar, batchSize, new VersionedClassLoader(jar, ManagerImpl.class.getClassLoader())));
+		}
+	}
+
+	/*
+	 * Makes the version current and swaps the children to it.  Called under the reload lock.
+	 */
+	private int reload(final Path jar, final int batchSize, final VersionedClassLoader version)
+	{
+		final VersionedClassLoader previous = this._version;
+		if (previous != null)
+		{
+			// retired before its children are swapped, so a leased one keeps it open until it is closed.
+			this._retired.put(previous, new AtomicInteger());
+		}
+		this._version = version;
+
+		final List<String> keys = new ArrayList<>();
+		for (final Map.Entry<String, C> entry : this._children.entrySet())
+		{
+			final Class<?> type = entry.getValue().getClass();
+			if ((type.getClassLoader() != version) && (version.instantiator(type.getName()) != null))
+			{
+				keys.add(entry.getKey());
+			}
+		}
+
+		final AtomicInteger swapped = new AtomicInteger();
+		final List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+		final List<CompletableFuture<Void>> batches = new ArrayList<>();
+		for (int i = 0; i < keys.size(); i += batchSize)
+		{
+			final List<String> batch = keys.subList(i, Math.min(keys.size(), i + batchSize));
+			batches.add(CompletableFuture.runAsync(() -> {
+				for (final String key : batch)
+				{
+					try
+					{
+						if (this.reload(key, version))
+						{
+							swapped.incrementAndGet();
+						}
+					}
+					catch (final RuntimeException e)
+					{
+						failures.add(e);
+					}
+				}
+			}, this._executor));
+		}
+		CompletableFuture.allOf(batches.toArray(new CompletableFuture<?>[batches.size()])).join();
+
+		if (previous != null)
+		{
+			// released here if it had no children; otherwise by the unbind or close of its last child.
+			this.releaseVersion(previous);
+		}
+		if (!failures.isEmpty())
+		{
+			throw (new ManagerException("Unable to reload " + failures.size() + " children from " + jar,
+			        failures.get(0)));
+		}
+		return (swapped.get());
+	}
+
+	/*
+	 * Swaps the child bound to the key to a new instance from the version.
+	 *
+	 * @return True if the child was swapped.
+	 */
+	private boolean reload(final String key, final VersionedClassLoader version)
+	{
+		final C child = this._children.get(key);
+		if ((child == null) || (child.getClass().getClassLoader() == version))
+		{
+			return (false);
 		}
-		catch (final InvocationTargetException e)
+		final Supplier<? extends Manageable> instantiator = version.instantiator(child.getClass().getName());
+		if (instantiator == null)
 		{
-			throw (new ManagerException("Unable to instantiate the class name - " + className, e));
+			// replaced by a child of another class in the meantime.
+			return (false);
 		}
-		catch (final NoSuchMethodException e)
+
+		@SuppressWarnings("unchecked")
+		final C replacement = (C) instantiator.get();
+		replacement.initialize(this, key);
+		if (this.swap(key, child, replacement, null))
 		{
-			throw (new ManagerException("Unable to instantiate the class name - " + className, e));
+			return (true);
 		}
-		catch (final SecurityException e)
+		replacement.close();
+		return (false);
+	}
+
+	/*
+	 * Returns true if a bound child is from the class loader.
+	 */
+	private boolean isInUse(final ClassLoader loader)
+	{
+		for (final C child : this._children.values())
 		{
-			throw (new ManagerException("Unable to instantiate the class name due to security - " + className, e));
+			if (child.getClass().getClassLoader() == loader)
+			{
+				return (true);
+			}
 		}
-		return (child);
+		return (false);
 	}
 
 	/*
-	 * A table of children created by this manager.
+	 * Counts a leased child of a retired version as a user of the version until its last lease is released.
+	 *
+	 * @return What the lease count runs once the child is closed, or null if the version of the child is not retired.
 	 */
-	private final Map<String, C>	_children;
+	private Runnable retiredLease(final Manageable child)
+	{
+		final ClassLoader loader = child.getClass().getClassLoader();
+		final AtomicInteger leased = this._retired.get(loader);
+		if (leased == null)
+		{
+			return (null);
+		}
+		leased.incrementAndGet();
+		return (() -> {
+			leased.decrementAndGet();
+			this.releaseVersion(loader);
+		});
+	}
 
 	/*
-	 * A flag to determine if the manager has been closed.
+	 * Releases a retired version and closes its loader once none of its children is bound or leased.  Called after a
+	 * child of the version is unbound or closed; the scan of the table stops at the first child of the version, so
+	 * it is short while many are left.
 	 */
-	private boolean					_isClosed;
+	private void releaseVersion(final ClassLoader loader)
+	{
+		final AtomicInteger leased = this._retired.get(loader);
+		if ((leased != null) && (leased.get() == 0) && !this.isInUse(loader) && this._retired.remove(loader, leased))
+		{
+			this._types.release(loader);
+			ManagerImpl.close((VersionedClassLoader) loader);
+		}
+	}
 
 	/*
-	 * initializes the children table.
+	 * Releases the version loaded with reload(jar,batchSize), when the manager closes.
 	 */
-	public ManagerImpl()
+	private void closeVersion()
 	{
-		this._children = new HashMap<>();
-		this._isClosed = false;
+		final VersionedClassLoader version = this._version;
+		if (version != null)
+		{
+			this._version = null;
+			ManagerImpl.close(version);
+		}
 	}
 
 	/*
-	 * A method that adds to the Manager child table.
-	 *
-	 * Other classes that extend Manager can override this method for unique behavior.
+	 * Closes a version's class loader, which releases its jar.
+	 */
+	private static void close(final VersionedClassLoader loader)
+	{
+		try
+		{
+			loader.close();
+		}
+		catch (final IOException e)
+		{
+			// the jar is released when the loader is collected.
+		}
+	}
+
+	/**
+	 * Replaces the child bound to the key with a new instance of the class, with no moment at which the key is
+	 * unbound. The new child is instantiated and initialized while the old child is still bound, and then swapped
+	 * into the child table with one atomic operation, so Manager.get(key) returns either the old or the new child.
+	 * The old child is closed after the swap; a leased old child is closed once its last lease is released, so the
+	 * users that hold it finish with it first.
 	 *
-	 * @param key A <code>String</code> instance that is bound to the child and used for lookups.
+	 * @param key
+	 *            A <code>String</code> instance. The key of the child to replace.
+	 * @param className
+	 *            A <code>String</code> instance. The class name of the new child.
 	 *
-	 * @param child A <code>ManagerChild</code> instance that will be added to the cache.
+	 * @return The child that was replaced, or null if no child was bound to the key, in which case no child is bound.
 	 *
-	 * @return Returns the child that was added to the table.
+	 * @throws ManagerClosedException
+	 *             Thrown when the manager is closed.
+	 * @throws ManagerException
+	 *             Thrown when the new child is unable to be created. The old child stays bound.
 	 */
-	protected C addToChildTable(final String key, final C child)
+	public C replace(final String key, final String className)
 	{
-		assert ((key != null) && (key.trim().length() > 0)) : "addToChildTable() - the key was null, spaces or empty.";
-		assert (child != null) : "addToChildTable() - the child was null.";
-		this._children.put(key, child);
-		return (child);
+		if (this.isClosed())
+		{
+			throw (this.closedException());
+		}
+		Validate.defineString(key).testNotNullEmpty().testMaxLength(ManagerImpl.KEY_MAX_LENGTH)
+		        .throwValidationExceptionOnFail().validate();
+		Validate.defineString(className).testNotNullEmpty().testMaxLength(ManagerImpl.CLASS_NAME_MAX_LENGTH)
+		        .throwValidationExceptionOnFail().validate();
+
+		C current = this.lookup(key);
+		if (current == null)
+		{
+			return (null);
+		}
+
+		final C replacement = this.instantiate(className);
+		replacement.initialize(this, key);
+		while (current != null)
+		{
+			if (this.swap(key, current, replacement, className))
+			{
+				return (current);
+			}
+			// replaced by another thread in the meantime.
+			current = this._children.get(key);
+		}
+
+		// closed while the replacement was initialized.
+		replacement.close();
+		return (null);
 	}
 
-	/*
-	 * (non-Javadoc)
+	/**
+	 * Replaces the expected child with the new child if the expected child is still bound to the key, with no moment
+	 * at which the key is unbound. See ManagerImpl.replace(key,className).
 	 *
-	 * @see com.gabstudios.manager.Manager#close()
+	 * @param key
+	 *            A <code>String</code> instance. The key of the child to replace.
+	 * @param expected
+	 *            The child that should be bound to the key.
+	 * @param newChild
+	 *            A new child that has not been initialized. It is initialized by this call.
+	 *
+	 * @return True if the expected child was replaced. If false the new child is not bound, and if it was
+	 *         initialized it has been closed.
+	 *
+	 * @throws ManagerClosedException
+	 *             Thrown when the manager is closed.
 	 */
-	@Override
-	public void close()
+	public boolean compareAndReplace(final String key, final C expected, final C newChild)
 	{
 		if (this.isClosed())
 		{
-			throw (new ManagerClosedException("The Manager has been closed and may not be used."));
+			throw (this.closedException());
 		}
-		else
+		Validate.defineString(key).testNotNullEmpty().testMaxLength(ManagerImpl.KEY_MAX_LENGTH)
+		        .throwValidationExceptionOnFail().validate();
+		Validate.defineObject(expected).testNotNull().throwValidationExceptionOnFail().validate();
+		Validate.defineObject(newChild).testNotNull().throwValidationExceptionOnFail().validate();
+
+		if ((newChild == expected) || (this._children.get(key) != expected))
+		{
+			return (false);
+		}
+		newChild.initialize(this, key);
+		if (this.swap(key, expected, newChild, newChild.getClass().getName()))
 		{
+			return (true);
+		}
+		newChild.close();
+		return (false);
+	}
 
-			// close children.
-			final Set<String> keys = this.getKeys();
-			for (final String key : keys)
+	/*
+	 * Swaps an initialized replacement into the child table in place of the child, if the child is still bound, with
+	 * one table operation.  The indexes, tags, journal and leases of the key move to the replacement and the child is
+	 * closed.
+	 *
+	 * @param className The class name to record in the journal, or null if the class name has not changed.
+	 *
+	 * @return True if the child was replaced.
+	 */
+	private boolean swap(final String key, final C child, final C replacement, final String className)
+	{
+		final boolean[] swapped = new boolean[1];
+		final long[] sequence = new long[1];
+		final boolean record = (className != null) && (this._journal != null);
+		this._children.computeIfPresent(key, (ignored, current) -> {
+			swapped[0] = (current == child);
+			if (swapped[0] && record)
 			{
-				this.closeChild(key);
+				// appended in the table operation, so a close of the replacement is recorded after it.  A create of
+				// the child that is not recorded yet is dropped, so it does not follow this one.
+				synchronized (this.recordLock(key))
+				{
+					this._unrecorded.remove(new Identity(child));
+					sequence[0] = this._journal.append(ManagerJournal.CREATE, key, className);
+				}
 			}
-			assert (this._children.size() == 0) : "The child table should be empty.";
+			return (swapped[0] ? replacement : current);
+		});
+		if (!swapped[0])
+		{
+			return (false);
+		}
 
-			this._isClosed = true;
+		this.unindex(key, child);
+		this._types.add(key, replacement.getClass());
+		if (this._tags.isInUse())
+		{
+			this._tags.replaceOwner(key, child, replacement);
+		}
+		if (!this._health.isEmpty())
+		{
+			this._health.remove(key);
+		}
+		if (record)
+		{
+			this.durable(sequence[0]);
 		}
+		this._events.publish(LifecycleEvent.Type.REPLACED, key, replacement.getClass().getName());
+		this.closeUnbound(child, this.takeLeaseCount(key, child));
+		return (true);
 	}
 
-	/*
-	 * (non-Javadoc)
+	/**
+	 * Restores the children saved by ManagerImpl.saveSnapshot(path). The file is memory-mapped and only the keys are
+	 * read; each child is instantiated, given its saved state and initialized the first time it is retrieved with
+	 * Manager.get(key). Children that are never used are never instantiated, and closing one with
+	 * Manager.closeChild(key) drops it and returns null.
 	 *
-	 * @see com.gabstudios.manager.Manager#closeChild(java.lang.String)
+	 * @param file
+	 *            A <code>Path</code> to a snapshot file.
+	 *
+	 * @return The number of children restored.
+	 *
+	 * @throws ManageableExistsException
+	 *             Thrown when the snapshot holds a key that is already bound to a child. Nothing is restored.
+	 * @throws ManagerException
+	 *             Thrown when the file is unable to be read or is not a snapshot.
 	 */
-	@Override
-	public C closeChild(final String key)
+	public int restoreSnapshot(final Path file) throws ManageableExistsException
 	{
 		if (this.isClosed())
 		{
-			throw (new ManagerClosedException("This manager is closed and unable to process calls."));
+			throw (this.closedException());
 		}
 		else
 		{
-			Validate.defineString(key).testNotNullEmpty().testMaxLength(ManagerImpl.KEY_MAX_LENGTH)
-			        .throwValidationExceptionOnFail().validate();
+			Validate.defineObject(file).testNotNull().throwValidationExceptionOnFail().validate();
 
-			@SuppressWarnings("unchecked")
-			
-			
-			final C child = this._children.remove(key);
-			if (child != null)
+			final Map<String, RegistrySnapshot.Entry> entries = RegistrySnapshot.read(file);
+			for (final String key : entries.keySet())
 			{
-				child.close();
-				assert (!this._children.containsKey(child
-				        .getKey())) : "The children table still contains the manager child when the manager child was closed.";
+				if (this.contains(key))
+				{
+					throw (this.existsException(key));
+				}
 			}
-			return (child);
+			this._pending.putAll(entries);
+			return (entries.size());
 		}
 	}
 
-	/*
-	 * (non-Javadoc)
+	/**
+	 * Saves the key and class name of every child to a compact binary snapshot file. Children that implement
+	 * <code>Snapshotable</code> also have their state saved. Children restored from a snapshot that have not been
+	 * used yet are written through without being instantiated.
 	 *
-	 * @see com.gabstudios.manager.Manager#containsChild(java.lang.String)
+	 * @param file
+	 *            A <code>Path</code> to write the snapshot to. An existing file is replaced.
+	 *
+	 * @return The number of children saved.
+	 *
+	 * @throws ManagerException
+	 *             Thrown when the file is unable to be written.
 	 */
-	@Override
-	public boolean containsChild(final String key)
+	public int saveSnapshot(final Path file)
 	{
 		if (this.isClosed())
 		{
-			throw (new ManagerClosedException("This manager is closed and unable to process calls."));
+			throw (this.closedException());
 		}
 		else
 		{
-			Validate.defineString(key).testNotNullEmpty().testMaxLength(ManagerImpl.KEY_MAX_LENGTH)
-			        .throwValidationExceptionOnFail().validate();
-			return (this._children.containsKey(key));
+			Validate.defineObject(file).testNotNull().throwValidationExceptionOnFail().validate();
+
+			final List<RegistrySnapshot.Entry> entries = this.snapshotEntries();
+			RegistrySnapshot.write(file, entries);
+			return (entries.size());
 		}
 	}
 
 	/*
-	 * (non-Javadoc)
+	 * Copies the children, and the restored children that have not been used yet, without calling into them.
 	 *
-	 * @see com.gabstudios.manager.Manager#create(java.lang.Class)
+	 * @return What gathers a registry entry for every child copied, saving the state of the children.
 	 */
-	@Override
-	public C create(final Class<C> clazz) throws ManageableExistsException
+	private Supplier<List<RegistrySnapshot.Entry>> captureEntries()
 	{
-		return (this.create(clazz.getName(), clazz.getName()));
+		final List<Map.Entry<String, C>> children = new ArrayList<>(this._children.entrySet());
+		final List<RegistrySnapshot.Entry> pending = new ArrayList<>(this._pending.values());
+		return (() -> {
+			final List<RegistrySnapshot.Entry> entries = new ArrayList<>(children.size() + pending.size());
+			for (final Map.Entry<String, C> entry : children)
+			{
+				final C child = entry.getValue();
+				final byte[] state = (child instanceof Snapshotable) ? ((Snapshotable) child).saveState() : null;
+				entries.add(RegistrySnapshot.Entry.of(entry.getKey(), child.getClass().getName(), state));
+			}
+			entries.addAll(pending);
+			return (entries);
+		});
 	}
 
 	/*
-	 * (non-Javadoc)
-	 *
-	 * @see com.gabstudios.manager.Manager#create(java.lang.String)
+	 * Gathers a registry entry for every child, including restored children that have not been used yet.
 	 */
-	@Override
-	public C create(final String className) throws ManageableExistsException
+	private List<RegistrySnapshot.Entry> snapshotEntries()
 	{
-		return (this.create(className, className));
+		return (this.captureEntries().get());
 	}
 
-	/*
-	 * (non-Javadoc)
+	/**
+	 * Starts checking the health of the children that implement <code>HealthCheckable</code>, on the lifecycle
+	 * executor of the manager. See ManagerImpl.startHealthChecks(interval,batchSize,action,executor).
 	 *
-	 * @see com.gabstudios.manager.Manager#create(java.lang.String, java.lang.Class)
-	 */
-	@Override
-	public C create(final String key, final Class<C> clazz) throws ManageableExistsException
-	{
-		return (this.create(key, clazz.getName()));
-	}
-
-	/*
-	 * (non-Javadoc)
+	 * @param interval
+	 *            The time between the checks of a child.
+	 * @param batchSize
+	 *            The most children checked by one task.
+	 * @param action
+	 *            What is done with a child whose check fails.
 	 *
-	 * @see com.gabstudios.manager.Manager#create(java.lang.String, java.lang.String)
+	 * @throws ManagerClosedException
+	 *             Thrown when the manager is closed.
 	 */
-	@Override
-	public C create(final String key, final String className) throws ManageableExistsException
+	public void startHealthChecks(final Duration interval, final int batchSize, final UnhealthyAction action)
 	{
-		Validate.defineString(key).testNotNullEmpty().testMaxLength(ManagerImpl.KEY_MAX_LENGTH)
-		        .throwValidationExceptionOnFail().validate();
-		Validate.defineString(className).testNotNullEmpty().testMaxLength(ManagerImpl.CLASS_NAME_MAX_LENGTH)
-		        .throwValidationExceptionOnFail().validate();
-
-		final C child = this.loadAndStoreManageable(key, className);
-		child.initialize(this, key);
-		return child;
+		this.startHealthChecks(interval, batchSize, action, null);
 	}
 
-	/*
-	 * (non-Javadoc)
+	/**
+	 * Starts checking the health of the children that implement <code>HealthCheckable</code>. Every interval the
+	 * children are split into batches, and the batches are spread over the interval with jitter so that the checks
+	 * do not all run at once. The children of a batch are checked one after another on the executor. Health checks
+	 * that are already running are replaced, and they stop when the manager is closed.
 	 *
-	 * @see com.gabstudios.manager.Manager#get(java.lang.String)
+	 * @param interval
+	 *            The time between the checks of a child.
+	 * @param batchSize
+	 *            The most children checked by one task.
+	 * @param action
+	 *            What is done with a child whose check fails.
+	 * @param executor
+	 *            The <code>Executor</code> the batches run on, such as an executor of virtual threads, or null for
+	 *            the lifecycle executor of the manager.
+	 *
+	 * @throws ManagerClosedException
+	 *             Thrown when the manager is closed.
 	 */
-	@Override
-	public C get(final String key)
+	public void startHealthChecks(final Duration interval, final int batchSize, final UnhealthyAction action,
+	        final Executor executor)
 	{
 		if (this.isClosed())
 		{
-			throw (new ManagerClosedException("This manager is closed and unable to process calls."));
+			throw (this.closedException());
 		}
-		else
+		Validate.defineObject(interval).testNotNull().throwValidationExceptionOnFail().validate();
+		Validate.defineObject(action).testNotNull().throwValidationExceptionOnFail().validate();
+		if (interval.isNegative() || interval.isZero())
 		{
-			Validate.defineString(key).testNotNullEmpty().testMaxLength(ManagerImpl.KEY_MAX_LENGTH)
-			        .throwValidationExceptionOnFail().validate();
-			// TODO - can make max length check based on the max length of a registered key.
-
-			@SuppressWarnings("unchecked")
-			final C child = this._children.get(key);
-			return (child);
+			throw (new IllegalArgumentException("The health check interval must be greater than zero."));
+		}
+		if (batchSize < 1)
+		{
+			throw (new IllegalArgumentException("The health check batch size must be greater than zero."));
+		}
 
+		final HealthCheckScheduler healthChecks = new HealthCheckScheduler(
+		        () -> this.types().keys(HealthCheckable.class), this::checkHealth, interval.toNanos(), batchSize,
+		        (executor == null) ? this._executor : executor, action);
+		synchronized (this._health)
+		{
+			this.stopHealthChecks(false);
+			this._healthChecks = healthChecks;
+			healthChecks.start();
 		}
 	}
 
-	/*
-	 * (non-Javadoc)
+	/**
+	 * Stops the health checks. The results of the last checks are forgotten.
 	 *
-	 * @see com.gabstudios.manager.Manager#getChildCount()
+	 * @throws ManagerClosedException
+	 *             Thrown when the manager is closed.
 	 */
-	@Override
-	public int getChildCount()
+	public void stopHealthChecks()
 	{
 		if (this.isClosed())
 		{
-			throw (new ManagerClosedException("This manager is closed and unable to process calls."));
+			throw (this.closedException());
 		}
-		else
+		this.stopHealthChecks(true);
+	}
+
+	/*
+	 * Stops the health checks, if they are running.
+	 *
+	 * @param clear True to forget the results of the last checks.
+	 */
+	private void stopHealthChecks(final boolean clear)
+	{
+		synchronized (this._health)
 		{
-			return (this._children.size());
+			final HealthCheckScheduler healthChecks = this._healthChecks;
+			if (healthChecks != null)
+			{
+				healthChecks.stop();
+				this._healthChecks = null;
+			}
+			if (clear)
+			{
+				this._health.clear();
+			}
 		}
 	}
 
 	/*
-	 * (non-Javadoc)
-	 *
-	 * @see com.gabstudios.manager.Manager#getKeys()
+	 * Checks the health of the child bound to the key and acts on a failed check.  Called by the health checks.
 	 */
-	@Override
-	public Set<String> getKeys()
+	private void checkHealth(final String key)
 	{
-		if (this.isClosed())
+		final HealthCheckScheduler healthChecks = this._healthChecks;
+		final C child = this._children.get(key);
+		if ((healthChecks == null) || !(child instanceof HealthCheckable))
 		{
-			throw (new ManagerClosedException("This manager is closed and unable to process calls."));
+			return;
 		}
-		else
+
+		boolean isHealthy;
+		try
 		{
-			final Set<String> keys = Set.copyOf(this._children.keySet());
-			assert (keys != null) : "The set that holds the keys is null when it should not be.";
-			return (keys);
+			isHealthy = ((HealthCheckable) child).checkHealth();
+		}
+		catch (final RuntimeException e)
+		{
+			isHealthy = false;
+		}
+		final HealthStatus status = isHealthy ? HealthStatus.HEALTHY : HealthStatus.UNHEALTHY;
+		this._health.put(key, status);
+		if (this._children.get(key) != child)
+		{
+			// closed or replaced while it was checked.
+			this._health.remove(key, status);
+			return;
+		}
 
+		if (!isHealthy && (healthChecks.getAction() != UnhealthyAction.NONE) && this.closeIfBound(key, child))
+		{
+			if (healthChecks.getAction() == UnhealthyAction.RECREATE)
+			{
+				try
+				{
+					this.tryCreate(key, () -> ManagerImpl.<C> loadManageable(child.getClass()),
+					        child.getClass().getName());
+				}
+				catch (final RuntimeException e)
+				{
+					// the key stays unbound; the next round has nothing to check.
+				}
+			}
 		}
 	}
 
-	/*
-	 * (non-Javadoc)
+	/**
+	 * Creates a child from the class if the key is not already bound. Unlike Manager.create(key,clazz) no exception is
+	 * thrown when the key is bound.
 	 *
-	 * @see com.gabstudios.manager.Manager#isClosed()
+	 * @param key
+	 *            A <code>String</code> instance. The key to bind to the new child.
+	 * @param clazz
+	 *            The class type to create a child from.
+	 *
+	 * @return An <code>Optional</code> holding the new child, or an empty <code>Optional</code> if a child was already
+	 *         bound to the key.
+	 *
+	 * @throws ManagerClosedException
+	 *             Thrown when the manager is closed.
 	 */
-	@Override
-	public boolean isClosed()
+	public Optional<C> tryCreate(final String key, final Class<? extends C> clazz)
 	{
-		return (this._isClosed);
+		Validate.defineObject(clazz).testNotNull().throwValidationExceptionOnFail().validate();
+		return (this.tryCreate(key, () -> ManagerImpl.<C> loadManageable(clazz), clazz.getName()));
 	}
 
-	/*
-	 * Loads and Stores the ManagerChild for use.
-	 *
-	 * @param key A <code>String</code> instance. The key to bind to the new child.
-	 *
-	 * @param className A <code>String</code> instance of the fully qualified classname.
+	/**
+	 * Creates a child from the fully qualified class name if the key is not already bound. Unlike
+	 * Manager.create(key,className) no exception is thrown when the key is bound.
 	 *
-	 * @return A <code>ManagerChild</code> instance bound to the key.
+	 * @param key
+	 *            A <code>String</code> instance. The key to bind to the new child.
+	 * @param className
+	 *            A <code>String</code> instance of the fully qualified classname.
 	 *
-	 * @throws ManagerClosedException if this method is called and the Manager is closed.
+	 * @return An <code>Optional</code> holding the new child, or an empty <code>Optional</code> if a child was already
+	 *         bound to the key.
 	 *
-	 * @throws ManageableExistsException Thrown when a Manageable instance already exists with that key.
+	 * @throws ManagerClosedException
+	 *             Thrown when the manager is closed.
 	 */
-	protected final C loadAndStoreManageable(final String key, final String className) throws ManageableExistsException
+	public Optional<C> tryCreate(final String key, final String className)
 	{
-		if (this.isClosed())
+		Validate.defineString(className).testNotNullEmpty().testMaxLength(ManagerImpl.CLASS_NAME_MAX_LENGTH)
+		        .throwValidationExceptionOnFail().validate();
+		return (this.tryCreate(key, () -> this.instantiate(className), className));
+	}
+
+	/*
+	 * Creates a child unless the key is bound, with one atomic table operation to bind it.
+	 */
+	private Optional<C> tryCreate(final String key, final Supplier<? extends C> supplier, final String className)
+	{
+		if (this.contains(key))
 		{
-			throw (new ManagerClosedException("This manager is closed and unable to process calls."));
+			return (Optional.empty());
 		}
-		else
-		{
 
-			assert ((key != null) && (key
-			        .length() != 0)) : "loadAndStoreManagerChild() - the parameter 'key' should not be null or empty";
-			assert ((className != null) && (className
-			        .length() != 0)) : "loadAndStoreManagerChild() - the parameter 'className' should not be null or empty";
-
-			if (this.containsChild(key))
-			{
-				throw (new ManageableExistsException(
-				        "A Manageable instance already exists with that key='" + key + "'"));
-			}
-			else
-			{
-				C child = ManagerImpl.loadManageable(className);
-				child = this.addToChildTable(key, child);
-				return (child);
-			}
+		final C created = supplier.get();
+		if (this.addUninitialized(key, created, true) != created)
+		{
+			return (Optional.empty());
 		}
+		this.initializeAdded(key, created, className);
+		return (Optional.of(created));
 	}
 
 	/*
@@ -410,10 +3902,24 @@ public class ManagerImpl<C extends Manageable> implements Manager<C>
 	@Override
 	public String toString()
 	{
+		// bounded, since a manager may hold millions of children; export(channel,format,details) writes them all.
 		final StringBuilder builder = new StringBuilder();
-		builder.append("Manager [children=");
-		builder.append(this._children);
-		builder.append(", isClosed=");
+		builder.append("Manager [childCount=");
+		builder.append(this._children.size());
+		builder.append(", children={");
+		final Iterator<Map.Entry<String, C>> children = this._children.entrySet().iterator();
+		for (int listed = 0; children.hasNext(); listed++)
+		{
+			if (listed == ManagerImpl.TO_STRING_CHILDREN)
+			{
+				builder.append(", ...");
+				break;
+			}
+			final Map.Entry<String, C> child = children.next();
+			builder.append((listed == 0) ? "" : ", ").append(child.getKey()).append('=')
+			        .append(child.getValue().getClass().getName());
+		}
+		builder.append("}, isClosed=");
 		builder.append(this._isClosed);
 		builder.append("]");
 		return builder.toString();
@@ -0,0 +1,716 @@
+/*****************************************************************************************
+ *
+ * Copyright 2019 Gregory Brown. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ *****************************************************************************************
+ */
+
+package com.gabstudios.manager.impl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+import com.gabstudios.manager.ManagerClosedException;
+import com.gabstudios.manager.ManagerException;
+import com.gabstudios.validate.Validate;
+
+/**
+ * <pre>
+ * An append-only write-ahead journal of the children created and closed by a <code>ManagerImpl</code>.
+ *
+ * A journal lives in a directory that holds two files:
+ *
+ *   registry.snapshot - the registry as of the last compaction, see <code>RegistrySnapshot</code>.
+ *   registry.journal  - the create(key, className) and closeChild(key) operations since that compaction.
+ *
+ * Pass the journal to the ManagerImpl(journal) constructor.  The manager is rebuilt from the snapshot plus a replay of
+ * the journal, then records every create and close before the call returns.
+ *
+ * Appends are group committed.  An operation buffers its record and then waits for it to be durable.  The first
+ * waiter writes every buffered record and forces the file once; the waiters queued behind it find their records
+ * already durable and return without a force of their own.
+ *
+ * A write or force that fails puts its records back in the buffer, truncates the file back to where the write
+ * started and fails the journal.  The waiters on those records, and every later sync, then throw rather than return
+ * as if their records were on disk.
+ *
+ * Once the number of records since the last compaction reaches the compaction threshold, the manager writes a new
+ * snapshot and the journal is truncated.  The children are copied while appends are held off, but their state is
+ * saved and written afterwards, so a slow Snapshotable.saveState() does not hold up creates and closes.  The records
+ * appended while the snapshot is written are carried over to the truncated journal.
+ * </pre>
+ *
+ * @author Gregory Brown (sysdevone)
+ */
+public final class ManagerJournal
+{
+	/**
+	 * The default number of records after which the journal is compacted.
+	 */
+	public static final int		DEFAULT_COMPACT_THRESHOLD	= 10000;
+
+	/**
+	 * The name of the journal file in the journal directory.
+	 */
+	public static final String	JOURNAL_FILE_NAME			= "registry.journal";
+
+	/**
+	 * The name of the snapshot file in the journal directory.
+	 */
+	public static final String	SNAPSHOT_FILE_NAME			= "registry.snapshot";
+
+	/*
+	 * The operation of a record that closed a child.
+	 */
+	static final byte			CLOSE						= 2;
+
+	/*
+	 * The operation of a record that created a child.
+	 */
+	static final byte			CREATE						= 1;
+
+	/*
+	 * The size of the journal file header.
+	 */
+	private static final int	HEADER_SIZE					= 8;
+
+	/*
+	 * The magic number at the start of a journal file - 'GABJ'.
+	 */
+	private static final int	MAGIC						= 0x4741424A;
+
+	/*
+	 * The version of the record layout.
+	 */
+	private static final int	VERSION						= 1;
+
+	/*
+	 * Guards the buffer, the appended sequence and the record count.  Held only to copy a record into the buffer.
+	 */
+	private final Object		_appendLock					= new Object();
+
+	/*
+	 * The sequence number of the last record appended to the buffer.
+	 */
+	private long				_appended;
+
+	/*
+	 * Records appended but not yet written.
+	 */
+	private ByteBuffer			_buffer						= ByteBuffer.allocate(8 * 1024);
+
+	/*
+	 * The open journal file.  Replaced by a compaction, while the flush and append locks are held.
+	 */
+	private FileChannel			_channel;
+
+	/*
+	 * True while a compaction is writing a snapshot.
+	 */
+	private boolean				_compacting;
+
+	/*
+	 * The number of records after which the journal should be compacted.
+	 */
+	private final int			_compactThreshold;
+
+	/*
+	 * The directory holding the journal and snapshot files.
+	 */
+	private final Path			_directory;
+
+	/*
+	 * The sequence number of the last record known to be on disk.
+	 */
+	private volatile long		_durable;
+
+	/*
+	 * The failure of a write that left records off the disk, or null.  Once set the journal takes no more records.
+	 */
+	private volatile IOException	_failure;
+
+	/*
+	 * Held by the one thread writing and forcing the file for a group of records.
+	 */
+	private final Object		_flushLock					= new Object();
+
+	/*
+	 * A flag to determine if the journal has been closed.
+	 */
+	private volatile boolean	_isClosed;
+
+	/*
+	 * The number of bytes of the records appended since the last compaction, whether written or buffered.
+	 */
+	private long				_recordBytes;
+
+	/*
+	 * The number of records since the last compaction.
+	 */
+	private int					_recordCount;
+
+	/*
+	 * The number of times the file was forced.  Used to observe group commits.
+	 */
+	private long				_syncCount;
+
+	/**
+	 * Opens, or creates, the journal in a directory with the default compaction threshold.
+	 *
+	 * @param directory
+	 *            A <code>Path</code> to the directory that holds the journal files. It is created if it does not
+	 *            exist.
+	 *
+	 * @throws ManagerException
+	 *             Thrown when the journal is unable to be opened.
+	 */
+	public ManagerJournal(final Path directory)
+	{
+		this(directory, ManagerJournal.DEFAULT_COMPACT_THRESHOLD);
+	}
+
+	/**
+	 * Opens, or creates, the journal in a directory.
+	 *
+	 * @param directory
+	 *            A <code>Path</code> to the directory that holds the journal files. It is created if it does not
+	 *            exist.
+	 * @param compactThreshold
+	 *            The number of records after which the journal is compacted into a snapshot.
+	 *
+	 * @throws ManagerException
+	 *             Thrown when the journal is unable to be opened.
+	 */
+	public ManagerJournal(final Path directory, final int compactThreshold)
+	{
+		Validate.defineObject(directory).testNotNull().throwValidationExceptionOnFail().validate();
+		if (compactThreshold < 1)
+		{
+			throw (new IllegalArgumentException("The compact threshold must be greater than zero."));
+		}
+
+		this._directory = directory;
+		this._compactThreshold = compactThreshold;
+		try
+		{
+			Files.createDirectories(directory);
+			this._channel = FileChannel.open(directory.resolve(ManagerJournal.JOURNAL_FILE_NAME),
+			        StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			if (this._channel.size() < ManagerJournal.HEADER_SIZE)
+			{
+				ManagerJournal.writeHeader(this._channel);
+			}
+			else
+			{
+				this._channel.position(this._channel.size());
+				this._recordBytes = this._channel.size() - ManagerJournal.HEADER_SIZE;
+			}
+		}
+		catch (final IOException e)
+		{
+			throw (new ManagerException("Unable to open the manager journal - " + directory, e));
+		}
+	}
+
+	/*
+	 * Buffers a record and returns its sequence number.  The record is not durable until ManagerJournal.sync(sequence)
+	 * returns.
+	 */
+	long append(final byte operation, final String key, final String className)
+	{
+		assert ((operation == ManagerJournal.CREATE) || (operation == ManagerJournal.CLOSE)) : "append() - unknown operation.";
+		assert (key != null) : "append() - the parameter 'key' should not be null.";
+
+		final byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+		final byte[] classNameBytes = (className == null) ? new byte[0] : className.getBytes(StandardCharsets.UTF_8);
+		final int length = 1 + 4 + keyBytes.length + 4 + classNameBytes.length;
+
+		final CRC32 crc = new CRC32();
+		crc.update(operation);
+		crc.update(keyBytes);
+		crc.update(classNameBytes);
+
+		synchronized (this._appendLock)
+		{
+			if (this._isClosed)
+			{
+				throw (new ManagerClosedException("The manager journal has been closed and may not be used."));
+			}
+
+			if (this._buffer.remaining() < (length + 8))
+			{
+				final ByteBuffer larger = ByteBuffer
+				        .allocate(Math.max(this._buffer.capacity() * 2, this._buffer.position() + length + 8));
+				this._buffer.flip();
+				larger.put(this._buffer);
+				this._buffer = larger;
+			}
+			this._buffer.putInt(length).put(operation);
+			this._buffer.putInt(keyBytes.length).put(keyBytes);
+			this._buffer.putInt(classNameBytes.length).put(classNameBytes);
+			this._buffer.putInt((int) crc.getValue());
+			this._recordBytes += length + 8;
+			this._recordCount++;
+			return (++this._appended);
+		}
+	}
+
+	/**
+	 * Writes any buffered records and closes the journal file. The journal may not be used once closed.
+	 *
+	 * @throws ManagerException
+	 *             Thrown when the buffered records are unable to be written.
+	 */
+	public void close()
+	{
+		if (!this._isClosed)
+		{
+			final long last;
+			synchronized (this._appendLock)
+			{
+				last = this._appended;
+			}
+			try
+			{
+				this.sync(last);
+			}
+			finally
+			{
+				synchronized (this._flushLock)
+				{
+					synchronized (this._appendLock)
+					{
+						this._isClosed = true;
+					}
+					try
+					{
+						this._channel.close();
+					}
+					catch (final IOException e)
+					{
+						throw (new ManagerException("Unable to close the manager journal - " + this._directory, e));
+					}
+				}
+			}
+		}
+	}
+
+	/*
+	 * Writes a snapshot of the registry and truncates the journal.  The registry is copied while appends are held
+	 * off, so every operation is either in the snapshot or in the journal.  The snapshot is then saved and written
+	 * while appends go on, and the records appended since the copy are carried over to the truncated journal.  A
+	 * call made while another compaction is running returns at once.
+	 *
+	 * @param capture Copies the registry without calling into the children, and returns what gathers the entries of
+	 * the copy.  Called while appends are held off.
+	 */
+	void compact(final Supplier<? extends Supplier<? extends Iterable<RegistrySnapshot.Entry>>> capture)
+	{
+		final Supplier<? extends Iterable<RegistrySnapshot.Entry>> entries;
+		final long covered;
+		final long mark;
+		synchronized (this._appendLock)
+		{
+			if (this._isClosed)
+			{
+				throw (new ManagerClosedException("The manager journal has been closed and may not be used."));
+			}
+			if (this._compacting)
+			{
+				return;
+			}
+			if (this._failure != null)
+			{
+				throw (this.failedException());
+			}
+			entries = capture.get();
+			covered = this._recordBytes;
+			mark = this._appended;
+			this._compacting = true;
+		}
+
+		try
+		{
+			RegistrySnapshot.write(this._directory.resolve(ManagerJournal.SNAPSHOT_FILE_NAME), entries.get());
+
+			synchronized (this._flushLock)
+			{
+				synchronized (this._appendLock)
+				{
+					// a journal closed meanwhile holds every record, which replay over the new snapshot.
+					if (!this._isClosed)
+					{
+						this.truncate(covered);
+						this._recordCount = (int) (this._appended - mark);
+						this._durable = this._appended;
+					}
+				}
+			}
+		}
+		finally
+		{
+			synchronized (this._appendLock)
+			{
+				this._compacting = false;
+			}
+		}
+	}
+
+	/*
+	 * Drops the records a snapshot covers from the journal, keeping the records written or buffered after them.  The
+	 * kept records are written to a new file that is moved over the journal, so a crash leaves one or the other.
+	 * Called while the flush and append locks are held.
+	 *
+	 * @param covered The number of bytes of records, from the last compaction, that the snapshot covers.
+	 */
+	private void truncate(final long covered)
+	{
+		final Path file = this._directory.resolve(ManagerJournal.JOURNAL_FILE_NAME);
+		final Path temp = file.resolveSibling(ManagerJournal.JOURNAL_FILE_NAME + ".tmp");
+		try
+		{
+			// the records before the buffered ones are all in the file, since the flush lock is held.
+			final long written = this._channel.size() - ManagerJournal.HEADER_SIZE;
+			final ByteBuffer buffered = this._buffer.duplicate();
+			buffered.flip();
+			if (covered > written)
+			{
+				buffered.position((int) (covered - written));
+			}
+
+			try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+			        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))
+			{
+				ManagerJournal.writeHeader(channel);
+				long position = ManagerJournal.HEADER_SIZE + Math.min(covered, written);
+				final long end = ManagerJournal.HEADER_SIZE + written;
+				while (position < end)
+				{
+					position += this._channel.transferTo(position, end - position, channel);
+				}
+				while (buffered.hasRemaining())
+				{
+					channel.write(buffered);
+				}
+				channel.force(false);
+			}
+
+			this._channel.close();
+			try
+			{
+				Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			}
+			finally
+			{
+				// the old journal, with the buffer unchanged, if the move failed.
+				this._channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+				this._channel.position(this._channel.size());
+			}
+			this._buffer.clear();
+			this._recordBytes = this._channel.size() - ManagerJournal.HEADER_SIZE;
+		}
+		catch (final IOException e)
+		{
+			throw (new ManagerException("Unable to truncate the manager journal - " + this._directory, e));
+		}
+	}
+
+	/*
+	 * Creates the exception thrown once a write has failed.
+	 */
+	private ManagerException failedException()
+	{
+		return (new ManagerException("The manager journal failed to write and may not be used - " + this._directory,
+		        this._failure));
+	}
+
+	/*
+	 * Returns the number of times the journal file has been forced.
+	 */
+	long getSyncCount()
+	{
+		synchronized (this._flushLock)
+		{
+			return (this._syncCount);
+		}
+	}
+
+	/**
+	 * Returns a boolean (true or false) if this journal is closed.
+	 *
+	 * @return A <code>boolean</code> value. True if the journal is closed, otherwise it is false.
+	 */
+	public boolean isClosed()
+	{
+		return (this._isClosed);
+	}
+
+	/*
+	 * Rebuilds the registry from the snapshot and a replay of the journal.  A torn record at the end of the journal,
+	 * left by a crash in the middle of a write, is discarded.
+	 *
+	 * @return A <code>Map</code> of keys to registry entries.
+	 */
+	Map<String, RegistrySnapshot.Entry> recover()
+	{
+		final Path snapshot = this._directory.resolve(ManagerJournal.SNAPSHOT_FILE_NAME);
+		final Map<String, RegistrySnapshot.Entry> entries = Files.exists(snapshot) ? RegistrySnapshot.read(snapshot)
+		        : new LinkedHashMap<String, RegistrySnapshot.Entry>();
+
+		synchronized (this._flushLock)
+		{
+			try
+			{
+				final long size = this._channel.size();
+				final ByteBuffer journal = this._channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+				if ((journal.getInt() != ManagerJournal.MAGIC) || (journal.getInt() != ManagerJournal.VERSION))
+				{
+					throw (new ManagerException("The file is not a manager journal - " + this._directory));
+				}
+
+				int count = 0;
+				while (ManagerJournal.replay(journal, entries))
+				{
+					count++;
+				}
+				if (journal.position() < size)
+				{
+					this._channel.truncate(journal.position());
+				}
+				this._channel.position(journal.position());
+				this._recordBytes = journal.position() - ManagerJournal.HEADER_SIZE;
+				this._recordCount = count;
+				return (entries);
+			}
+			catch (final IOException e)
+			{
+				throw (new ManagerException("Unable to read the manager journal - " + this._directory, e));
+			}
+		}
+	}
+
+	/*
+	 * Applies the next record to the entries.
+	 *
+	 * @return True if a record was applied, false if there are no more complete and valid records.
+	 */
+	private static boolean replay(final ByteBuffer journal, final Map<String, RegistrySnapshot.Entry> entries)
+	{
+		final int start = journal.position();
+		if (journal.remaining() < 4)
+		{
+			return (false);
+		}
+
+		final int length = journal.getInt();
+		if ((length < 9) || (journal.remaining() < (length + 4)))
+		{
+			journal.position(start);
+			return (false);
+		}
+
+		final byte operation = journal.get();
+		final int keyLength = journal.getInt();
+		if ((keyLength < 0) || (keyLength > (length - 9)))
+		{
+			journal.position(start);
+			return (false);
+		}
+		final byte[] key = new byte[keyLength];
+		journal.get(key);
+		final int classNameLength = journal.getInt();
+		if (classNameLength != (length - 9 - keyLength))
+		{
+			journal.position(start);
+			return (false);
+		}
+		final byte[] className = new byte[classNameLength];
+		journal.get(className);
+
+		final CRC32 crc = new CRC32();
+		crc.update(operation);
+		crc.update(key);
+		crc.update(className);
+		if (journal.getInt() != (int) crc.getValue())
+		{
+			journal.position(start);
+			return (false);
+		}
+
+		final String keyValue = new String(key, StandardCharsets.UTF_8);
+		if (operation == ManagerJournal.CREATE)
+		{
+			final String classNameValue = new String(className, StandardCharsets.UTF_8);
+			final RegistrySnapshot.Entry entry = entries.get(keyValue);
+			if ((entry == null) || !entry.getClassName().equals(classNameValue))
+			{
+				entries.put(keyValue, RegistrySnapshot.Entry.of(keyValue, classNameValue, null));
+			}
+		}
+		else if (operation == ManagerJournal.CLOSE)
+		{
+			entries.remove(keyValue);
+		}
+		else
+		{
+			journal.position(start);
+			return (false);
+		}
+		return (true);
+	}
+
+	/*
+	 * Returns a boolean (true or false) if enough records have been appended that the journal should be compacted.
+	 */
+	boolean shouldCompact()
+	{
+		synchronized (this._appendLock)
+		{
+			return (!this._compacting && (this._recordCount >= this._compactThreshold));
+		}
+	}
+
+	/*
+	 * Waits until the record with the sequence number is on disk.  If no other thread is writing, this thread writes
+	 * and forces every buffered record, not just its own.
+	 *
+	 * @throws ManagerException Thrown when the records are unable to be written, or an earlier write failed.
+	 */
+	void sync(final long sequence)
+	{
+		if (this._durable >= sequence)
+		{
+			return;
+		}
+
+		synchronized (this._flushLock)
+		{
+			// a leader may have written this record while we waited.
+			if (this._durable >= sequence)
+			{
+				return;
+			}
+			if (this._failure != null)
+			{
+				throw (this.failedException());
+			}
+
+			final ByteBuffer batch;
+			final long last;
+			synchronized (this._appendLock)
+			{
+				batch = this._buffer;
+				last = this._appended;
+				this._buffer = ByteBuffer.allocate(batch.capacity());
+			}
+
+			long start = -1;
+			try
+			{
+				start = this._channel.position();
+				batch.flip();
+				while (batch.hasRemaining())
+				{
+					this._channel.write(batch);
+				}
+				this._channel.force(false);
+				this._syncCount++;
+			}
+			catch (final IOException e)
+			{
+				this.failed(batch, start, e);
+				throw (new ManagerException("Unable to write the manager journal - " + this._directory, e));
+			}
+			this._durable = last;
+		}
+	}
+
+	/*
+	 * Fails the journal after a batch was not written.  The batch is put back in front of the records buffered since,
+	 * and a part of it that was written is truncated, so the file does not end in a torn record that hides the
+	 * records after it.  Called while the flush lock is held.
+	 *
+	 * @param batch The records that were not written.
+	 *
+	 * @param start The position the write started at, or -1 if it is not known.
+	 *
+	 * @param e The failure.
+	 */
+	private void failed(final ByteBuffer batch, final long start, final IOException e)
+	{
+		synchronized (this._appendLock)
+		{
+			batch.position(0);
+			final ByteBuffer appended = this._buffer;
+			appended.flip();
+			this._buffer = ByteBuffer.allocate(Math.max(batch.capacity(), batch.limit() + appended.limit()));
+			this._buffer.put(batch).put(appended);
+			this._failure = e;
+		}
+
+		if (start >= 0)
+		{
+			try
+			{
+				this._channel.truncate(start);
+				this._channel.position(start);
+			}
+			catch (final IOException truncateFailure)
+			{
+				e.addSuppressed(truncateFailure);
+			}
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString()
+	{
+		final StringBuilder builder = new StringBuilder();
+		builder.append("ManagerJournal [directory=");
+		builder.append(this._directory);
+		builder.append(", compactThreshold=");
+		builder.append(this._compactThreshold);
+		builder.append(", isClosed=");
+		builder.append(this._isClosed);
+		builder.append("]");
+		return builder.toString();
+	}
+
+	/*
+	 * Writes the file header to an empty journal.
+	 */
+	private static void writeHeader(final FileChannel channel) throws IOException
+	{
+		final ByteBuffer header = ByteBuffer.allocate(ManagerJournal.HEADER_SIZE);
+		header.putInt(ManagerJournal.MAGIC).putInt(ManagerJournal.VERSION).flip();
+		channel.truncate(0);
+		channel.write(header, 0);
+		channel.position(ManagerJournal.HEADER_SIZE);
+		channel.force(false);
+	}
+
+}
@@ -0,0 +1,60 @@
+/*****************************************************************************************
+ *
+ * Copyright 2019 Gregory Brown. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ *****************************************************************************************
+ */
+
+
+package com.gabstudios.manager.impl;
+
+/**
+ * <pre>
+ * Receives the metrics of a manager built by a <code>ManagerBuilder</code>.  The methods are called on the thread
+ * that creates, closes or looks up the child, so they should only count and never block.
+ *
+ * A manager built without a sink does not call one.
+ * </pre>
+ *
+ * @author Gregory Brown (sysdevone)
+ */
+public interface MetricsSink
+{
+	/**
+	 * Called when a new child is bound to a key, before it is initialized.
+	 *
+	 * @param key
+	 *            The key of the child.
+	 * @param type
+	 *            The class of the child.
+	 */
+	public abstract void created(String key, Class<?> type);
+
+	/**
+	 * Called when a key is looked up with Manager.get(key) or Manager.containsChild(key), or by a method that looks
+	 * the key up first, such as ManagerImpl.getOrCreate(key, className) and ManagerImpl.acquire(key).
+	 *
+	 * @param key
+	 *            The key that was looked up.
+	 * @param hit
+	 *            True if a child was bound to the key.
+	 */
+	public abstract void lookup(String key, boolean hit);
+
+	/**
+	 * Called when a child is removed from the manager, because it was closed or reclaimed by the garbage collector.
+	 *
+	 * @param key
+	 *            The key the child was bound to.
+	 */
+	public abstract void unbound(String key);
+}
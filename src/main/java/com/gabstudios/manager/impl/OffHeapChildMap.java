@@ -0,0 +1,1346 @@
+/*****************************************************************************************
+ *
+ * Copyright 2019 Gregory Brown. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ *****************************************************************************************
+ */
+
+package com.gabstudios.manager.impl;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+import com.gabstudios.manager.ManagerException;
+
+/**
+ * <pre>
+ * A child table that keeps the keys and the metadata of the children outside of the Java heap, for managers whose
+ * registries are large enough that the garbage collector spends its time marking them.
+ *
+ * Each child has a fixed size record in a direct buffer: the offset of its key, the id of its class, the time it was
+ * bound and its access statistics.  The keys are stored as length prefixed UTF-8 bytes, as in CompactChildMap, in a
+ * second direct buffer, and the open addressed index from the hash of a key to its record in a third.  Only the
+ * children are on the heap, in one dense array indexed by record, so the heap holds one reference per child and the
+ * collector has no key, node or counter objects to mark.  A removed record is reused by the next child added.
+ *
+ * Reads are optimistic and writes are serialized by one lock, as in CompactChildMap.  The statistics are updated
+ * under the read lock without ordering, so two lookups recorded at the same moment may lose one of the updates; the
+ * counts are estimates.  The direct buffers are released when the table, or the buffers it has outgrown, are
+ * collected.
+ * </pre>
+ *
+ * @author Gregory Brown (sysdevone)
+ */
+final class OffHeapChildMap<V> extends AbstractMap<String, V> implements ConcurrentMap<String, V>, BatchRemovable<V>
+{
+	/*
+	 * The offset in a record of the estimated number of lookups.
+	 */
+	private static final int	ACCESS_COUNT		= 24;
+
+	/*
+	 * The offset in a record of the id of the class of the child.
+	 */
+	private static final int	CLASS_ID			= 4;
+
+	/*
+	 * The offset in a record of the time the child was bound, or statistics were last enabled.
+	 */
+	private static final int	CREATE_TIME			= 8;
+
+	/*
+	 * The number of index slots, and of records, a table starts with.  A power of two.
+	 */
+	private static final int	INITIAL_CAPACITY	= 16;
+
+	/*
+	 * The size the key buffer starts with.
+	 */
+	private static final int	INITIAL_KEY_BYTES	= 4 * 1024;
+
+	/*
+	 * The offset in a record of the offset of its key, or of the next free record when the record is free.
+	 */
+	private static final int	KEY					= 0;
+
+	/*
+	 * The offset in a record of the time of the last recorded lookup.
+	 */
+	private static final int	LAST_ACCESS			= 16;
+
+	/*
+	 * The largest buffer the table allocates.
+	 */
+	private static final int	MAX_BUFFER			= 1 << 30;
+
+	/*
+	 * The number of records visited under one hold of the lock by the passes over the table.
+	 */
+	private static final int	PASS				= 256;
+
+	/*
+	 * The size of a record, in bytes.
+	 */
+	private static final int	RECORD				= 32;
+
+	/*
+	 * The size of an index slot, in bytes: the hash of the key, or 0 for an empty slot, then the record plus one.
+	 */
+	private static final int	SLOT				= 8;
+
+	/*
+	 * The id of each class in the table.
+	 */
+	private final Map<Class<?>, Integer>	_classIds	= new HashMap<>();
+
+	/*
+	 * The number of records of each class id.
+	 */
+	private int[]							_classUses;
+
+	/*
+	 * The class of each id, or null for an id that is not in use.
+	 */
+	private Class<?>[]						_classes;
+
+	/*
+	 * The bytes of the keys that were removed and are still in the key buffer.
+	 */
+	private int								_deadBytes;
+
+	/*
+	 * The first free record, or -1 if every record below _recordCount is in use.
+	 */
+	private int								_free;
+
+	/*
+	 * The index from the hash of a key to its record.
+	 */
+	private ByteBuffer						_index;
+
+	/*
+	 * The next free byte of the key buffer.
+	 */
+	private int								_keyPosition;
+
+	/*
+	 * The keys.
+	 */
+	private ByteBuffer						_keys;
+
+	/*
+	 * Guards the table.  Reads are optimistic.
+	 */
+	private final StampedLock				_lock		= new StampedLock();
+
+	/*
+	 * The number of records that have been used.
+	 */
+	private int								_recordCount;
+
+	/*
+	 * The records of the children.
+	 */
+	private ByteBuffer						_records;
+
+	/*
+	 * The number of keys.
+	 */
+	private int								_size;
+
+	/*
+	 * The child of each record, or null for a free record.
+	 */
+	private Object[]						_values;
+
+	/*
+	 * Creates an empty table.
+	 */
+	OffHeapChildMap()
+	{
+		this.reset();
+	}
+
+	/*
+	 * Allocates a direct buffer aligned so the times and counts of a record are each written in one store.
+	 */
+	private static ByteBuffer allocate(final long bytes)
+	{
+		if (bytes > OffHeapChildMap.MAX_BUFFER)
+		{
+			throw (new ManagerException("The off-heap table is full - maxBytes=" + OffHeapChildMap.MAX_BUFFER));
+		}
+		return (ByteBuffer.allocateDirect(((int) bytes) + 7).alignedSlice(8).order(ByteOrder.nativeOrder()));
+	}
+
+	/*
+	 * Copies the first bytes of a buffer to the start of another, leaving the positions of both as they are.
+	 */
+	private static void copy(final ByteBuffer from, final ByteBuffer to, final int bytes)
+	{
+		final ByteBuffer source = from.duplicate();
+		source.position(0);
+		source.limit(bytes);
+		final ByteBuffer target = to.duplicate();
+		target.position(0);
+		target.put(source);
+	}
+
+	/*
+	 * Decodes the key stored at an offset of the key buffer.
+	 */
+	private static String decode(final ByteBuffer keys, final int offset)
+	{
+		final byte[] bytes = new byte[2 + OffHeapChildMap.length(keys, offset)];
+		for (int i = 0; i < bytes.length; i++)
+		{
+			bytes[i] = keys.get(offset + i);
+		}
+		return (CompactChildMap.decode(bytes, 0));
+	}
+
+	/*
+	 * Returns the encoded length of the key stored at an offset of the key buffer.
+	 */
+	private static int length(final ByteBuffer keys, final int offset)
+	{
+		return (((keys.get(offset) & 0xff) << 8) | (keys.get(offset + 1) & 0xff));
+	}
+
+	/*
+	 * Returns true if the key stored at an offset of the key buffer is the key, decoding the bytes against its
+	 * characters.
+	 */
+	private static boolean matches(final ByteBuffer keys, final int offset, final String key)
+	{
+		final int end = offset + 2 + OffHeapChildMap.length(keys, offset);
+		int i = offset + 2;
+		int index = 0;
+		while (i < end)
+		{
+			if (index >= key.length())
+			{
+				return (false);
+			}
+			final int b = keys.get(i) & 0xff;
+			if (b < 0x80)
+			{
+				if (key.charAt(index++) != b)
+				{
+					return (false);
+				}
+				i++;
+			}
+			else if (b < 0xe0)
+			{
+				if (key.charAt(index++) != (((b & 0x1f) << 6) | (keys.get(i + 1) & 0x3f)))
+				{
+					return (false);
+				}
+				i += 2;
+			}
+			else if (b < 0xf0)
+			{
+				if (key.charAt(index++) != (((b & 0x0f) << 12) | ((keys.get(i + 1) & 0x3f) << 6)
+				        | (keys.get(i + 2) & 0x3f)))
+				{
+					return (false);
+				}
+				i += 3;
+			}
+			else
+			{
+				final int codePoint = ((b & 0x07) << 18) | ((keys.get(i + 1) & 0x3f) << 12)
+				        | ((keys.get(i + 2) & 0x3f) << 6) | (keys.get(i + 3) & 0x3f);
+				if (((index + 1) >= key.length()) || (key.charAt(index) != Character.highSurrogate(codePoint))
+				        || (key.charAt(index + 1) != Character.lowSurrogate(codePoint)))
+				{
+					return (false);
+				}
+				index += 2;
+				i += 4;
+			}
+		}
+		return (index == key.length());
+	}
+
+	/*
+	 * Takes a new record, reusing a free one if there is one and growing the records if there is not.  Called while
+	 * the write lock is held.
+	 */
+	private int allocateRecord()
+	{
+		if (this._free >= 0)
+		{
+			final int record = this._free;
+			this._free = this._records.getInt((record * OffHeapChildMap.RECORD) + OffHeapChildMap.KEY);
+			return (record);
+		}
+		if (this._recordCount == this._values.length)
+		{
+			final int capacity = this._values.length * 2;
+			final ByteBuffer records = OffHeapChildMap.allocate(((long) capacity) * OffHeapChildMap.RECORD);
+			OffHeapChildMap.copy(this._records, records, this._recordCount * OffHeapChildMap.RECORD);
+			this._records = records;
+			this._values = Arrays.copyOf(this._values, capacity);
+		}
+		return (this._recordCount++);
+	}
+
+	/*
+	 * Appends a key to the key buffer, compacting or growing it if the key does not fit.  Called while the write
+	 * lock is held.
+	 *
+	 * @return The offset of the key.
+	 */
+	private int append(final String key)
+	{
+		final int length = CompactChildMap.encodedLength(key);
+		if (length > CompactChildMap.MAX_KEY_BYTES)
+		{
+			throw (new IllegalArgumentException("The key is too long to store - " + length + " bytes."));
+		}
+		final byte[] bytes = new byte[length + 2];
+		CompactChildMap.encode(key, length, bytes, 0);
+
+		if ((this._keys.capacity() - this._keyPosition) < bytes.length)
+		{
+			// the live keys take at most half of the new buffer, so it is not compacted again soon.
+			final long live = (this._keyPosition - this._deadBytes) + bytes.length;
+			long capacity = this._keys.capacity();
+			while ((live * 2) > capacity)
+			{
+				capacity *= 2;
+			}
+			this.compactKeys(capacity);
+		}
+
+		final int offset = this._keyPosition;
+		for (int i = 0; i < bytes.length; i++)
+		{
+			this._keys.put(offset + i, bytes[i]);
+		}
+		this._keyPosition += bytes.length;
+		return (offset);
+	}
+
+	/*
+	 * Returns the estimated bytes used per key, on and off the heap, divided by the number of keys.  Returns the
+	 * whole footprint when the table is empty.
+	 */
+	double bytesPerEntry()
+	{
+		final long stamp = this._lock.readLock();
+		try
+		{
+			return (((double) (this.heapBytes() + this.offHeapBytes())) / Math.max(1, this._size));
+		}
+		finally
+		{
+			this._lock.unlockRead(stamp);
+		}
+	}
+
+	/*
+	 * Gets the id of a class, adding the class if it is not in the table, and counts one more record of it.  Called
+	 * while the write lock is held.
+	 */
+	private int classId(final Class<?> type)
+	{
+		Integer id = this._classIds.get(type);
+		if (id == null)
+		{
+			int free = 0;
+			while ((free < this._classes.length) && (this._classes[free] != null))
+			{
+				free++;
+			}
+			if (free == this._classes.length)
+			{
+				this._classes = Arrays.copyOf(this._classes, this._classes.length * 2);
+				this._classUses = Arrays.copyOf(this._classUses, this._classUses.length * 2);
+			}
+			this._classes[free] = type;
+			this._classIds.put(type, free);
+			id = free;
+		}
+		this._classUses[id]++;
+		return (id);
+	}
+
+	/*
+	 * Returns true for each class id whose class is assignable to the type.  Called while the lock is held.
+	 */
+	private boolean[] classesOf(final Class<?> type)
+	{
+		final boolean[] matching = new boolean[this._classes.length];
+		for (int id = 0; id < this._classes.length; id++)
+		{
+			matching[id] = (this._classes[id] != null) && type.isAssignableFrom(this._classes[id]);
+		}
+		return (matching);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.util.AbstractMap#clear()
+	 */
+	@Override
+	public void clear()
+	{
+		final long stamp = this._lock.writeLock();
+		try
+		{
+			this.reset();
+		}
+		finally
+		{
+			this._lock.unlockWrite(stamp);
+		}
+	}
+
+	/*
+	 * Moves the live keys into a new key buffer of the capacity, dropping the dead bytes.  Called while the write
+	 * lock is held.
+	 */
+	private void compactKeys(final long capacity)
+	{
+		final ByteBuffer keys = this._keys;
+		final ByteBuffer compacted = OffHeapChildMap.allocate(capacity);
+		int position = 0;
+		for (int record = 0; record < this._recordCount; record++)
+		{
+			if (this._values[record] != null)
+			{
+				final int base = record * OffHeapChildMap.RECORD;
+				final int offset = this._records.getInt(base + OffHeapChildMap.KEY);
+				final int bytes = 2 + OffHeapChildMap.length(keys, offset);
+				for (int i = 0; i < bytes; i++)
+				{
+					compacted.put(position + i, keys.get(offset + i));
+				}
+				this._records.putInt(base + OffHeapChildMap.KEY, position);
+				position += bytes;
+			}
+		}
+		this._keys = compacted;
+		this._keyPosition = position;
+		this._deadBytes = 0;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.util.concurrent.ConcurrentMap#computeIfPresent(java.lang.Object, java.util.function.BiFunction)
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public V computeIfPresent(final String key, final BiFunction<? super String, ? super V, ? extends V> function)
+	{
+		final long stamp = this._lock.writeLock();
+		try
+		{
+			final int slot = this.find(key, CompactChildMap.hash(key));
+			if (slot < 0)
+			{
+				return (null);
+			}
+			final int record = this.recordAt(slot);
+			final V computed = function.apply(key, (V) this._values[record]);
+			if (computed == null)
+			{
+				this.removeAt(slot);
+			}
+			else
+			{
+				this.setValue(record, computed);
+			}
+			return (computed);
+		}
+		finally
+		{
+			this._lock.unlockWrite(stamp);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.util.AbstractMap#containsKey(java.lang.Object)
+	 */
+	@Override
+	public boolean containsKey(final Object key)
+	{
+		return (this.get(key) != null);
+	}
+
+	/*
+	 * Returns the number of children of classes assignable to the type.
+	 */
+	int countOf(final Class<?> type)
+	{
+		final long stamp = this._lock.readLock();
+		try
+		{
+			final boolean[] matching = this.classesOf(type);
+			int count = 0;
+			for (int record = 0; record < this._recordCount; record++)
+			{
+				if ((this._values[record] != null) && matching[this._records
+				        .getInt((record * OffHeapChildMap.RECORD) + OffHeapChildMap.CLASS_ID)])
+				{
+					count++;
+				}
+			}
+			return (count);
+		}
+		finally
+		{
+			this._lock.unlockRead(stamp);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.util.AbstractMap#entrySet()
+	 */
+	@Override
+	public Set<Map.Entry<String, V>> entrySet()
+	{
+		// read a pass at a time as it is iterated, like forEach(action), so a caller that stops early does not
+		// decode every key.
+		return (new AbstractSet<Map.Entry<String, V>>()
+		{
+			@Override
+			public Iterator<Map.Entry<String, V>> iterator()
+			{
+				return (new Iterator<Map.Entry<String, V>>()
+				{
+					private final List<String>	_keys		= new ArrayList<>(OffHeapChildMap.PASS);
+					private final List<V>		_values		= new ArrayList<>(OffHeapChildMap.PASS);
+					private int					_index;
+					private int					_record;
+
+					@Override
+					public boolean hasNext()
+					{
+						while ((this._index == this._keys.size()) && (this._record >= 0))
+						{
+							this._keys.clear();
+							this._values.clear();
+							this._index = 0;
+							this._record = OffHeapChildMap.this.read(this._record, this._keys, this._values);
+						}
+						return (this._index < this._keys.size());
+					}
+
+					@Override
+					public Map.Entry<String, V> next()
+					{
+						if (!this.hasNext())
+						{
+							throw (new NoSuchElementException());
+						}
+						final Map.Entry<String, V> next = new AbstractMap.SimpleImmutableEntry<>(
+						        this._keys.get(this._index), this._values.get(this._index));
+						this._index++;
+						return (next);
+					}
+				});
+			}
+
+			@Override
+			public int size()
+			{
+				return (OffHeapChildMap.this.size());
+			}
+		});
+	}
+
+	/*
+	 * Finds the index slot of a key. Called while the lock is held or inside an optimistic read, so it must not loop
+	 * forever on a table that is being changed.
+	 *
+	 * @return The slot, or -1 if the key is not in the table.
+	 */
+	private int find(final String key, final int hash)
+	{
+		final ByteBuffer index = this._index;
+		final ByteBuffer records = this._records;
+		final ByteBuffer keys = this._keys;
+		final int mask = (index.capacity() / OffHeapChildMap.SLOT) - 1;
+		int slot = hash & mask;
+		for (int probes = 0; probes <= mask; probes++)
+		{
+			final int stored = index.getInt(slot * OffHeapChildMap.SLOT);
+			if (stored == 0)
+			{
+				return (-1);
+			}
+			if (stored == hash)
+			{
+				final int record = index.getInt((slot * OffHeapChildMap.SLOT) + 4) - 1;
+				if (OffHeapChildMap.matches(keys,
+				        records.getInt((record * OffHeapChildMap.RECORD) + OffHeapChildMap.KEY), key))
+				{
+					return (slot);
+				}
+			}
+			slot = (slot + 1) & mask;
+		}
+		return (-1);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.util.concurrent.ConcurrentMap#forEach(java.util.function.BiConsumer)
+	 */
+	@Override
+	public void forEach(final BiConsumer<? super String, ? super V> action)
+	{
+		// a few records at a time, so the action runs without the lock and writers are not held up by a long pass.
+		final List<String> keys = new ArrayList<>(OffHeapChildMap.PASS);
+		final List<V> values = new ArrayList<>(OffHeapChildMap.PASS);
+		int record = 0;
+		while (record >= 0)
+		{
+			record = this.read(record, keys, values);
+			for (int i = 0; i < keys.size(); i++)
+			{
+				action.accept(keys.get(i), values.get(i));
+			}
+			keys.clear();
+			values.clear();
+		}
+	}
+
+	/*
+	 * Calls the action with the access statistics of every key, a few records at a time, without the lock.
+	 */
+	void forEachStatistics(final Consumer<AccessStatistics> action)
+	{
+		final List<AccessStatistics> statistics = new ArrayList<>(OffHeapChildMap.PASS);
+		int record = 0;
+		boolean done = false;
+		while (!done)
+		{
+			final long stamp = this._lock.readLock();
+			try
+			{
+				final int end = Math.min(record + OffHeapChildMap.PASS, this._recordCount);
+				for (; record < end; record++)
+				{
+					if (this._values[record] != null)
+					{
+						statistics.add(this.statisticsOf(this.keyOf(record), record));
+					}
+				}
+				done = (record >= this._recordCount);
+			}
+			finally
+			{
+				this._lock.unlockRead(stamp);
+			}
+
+			statistics.forEach(action);
+			statistics.clear();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.util.AbstractMap#get(java.lang.Object)
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public V get(final Object key)
+	{
+		if (!(key instanceof String))
+		{
+			return (null);
+		}
+		final String string = (String) key;
+		final int hash = CompactChildMap.hash(string);
+
+		long stamp = this._lock.tryOptimisticRead();
+		if (stamp != 0)
+		{
+			try
+			{
+				final int slot = this.find(string, hash);
+				final Object value = (slot < 0) ? null : this._values[this.recordAt(slot)];
+				if (this._lock.validate(stamp))
+				{
+					return ((V) value);
+				}
+			}
+			catch (final RuntimeException e)
+			{
+				// read a table that was being changed; read again under the lock.
+			}
+		}
+
+		stamp = this._lock.readLock();
+		try
+		{
+			final int slot = this.find(string, hash);
+			return ((slot < 0) ? null : (V) this._values[this.recordAt(slot)]);
+		}
+		finally
+		{
+			this._lock.unlockRead(stamp);
+		}
+	}
+
+	/*
+	 * Returns the estimated bytes the table uses on the heap. Called while the lock is held.
+	 */
+	private long heapBytes()
+	{
+		// the table, its lock and buffer objects, the child array and the class table.
+		return (256 + CompactChildMap.ARRAY_HEADER + (((long) this._values.length) * CompactChildMap.REFERENCE)
+		        + (2L * CompactChildMap.ARRAY_HEADER)
+		        + (((long) this._classes.length) * (CompactChildMap.REFERENCE + 4)) + (48L * this._classIds.size()));
+	}
+
+	/*
+	 * Returns the estimated bytes used on the heap per key, divided by the number of keys.  Returns the whole heap
+	 * footprint when the table is empty.
+	 */
+	double heapBytesPerEntry()
+	{
+		final long stamp = this._lock.readLock();
+		try
+		{
+			return (((double) this.heapBytes()) / Math.max(1, this._size));
+		}
+		finally
+		{
+			this._lock.unlockRead(stamp);
+		}
+	}
+
+	/*
+	 * Adds a key that is not in the table. Called while the write lock is held.
+	 */
+	private void insert(final String key, final int hash, final Object value)
+	{
+		final int capacity = this._index.capacity() / OffHeapChildMap.SLOT;
+		if (((this._size + 1) * 4L) > (capacity * 3L))
+		{
+			this.rehash(capacity * 2);
+		}
+
+		final int offset = this.append(key);
+		final int record = this.allocateRecord();
+		final int base = record * OffHeapChildMap.RECORD;
+		this._records.putInt(base + OffHeapChildMap.KEY, offset);
+		this._records.putInt(base + OffHeapChildMap.CLASS_ID, this.classId(value.getClass()));
+		this._records.putLong(base + OffHeapChildMap.CREATE_TIME, System.currentTimeMillis());
+		this._records.putLong(base + OffHeapChildMap.LAST_ACCESS, 0);
+		this._records.putLong(base + OffHeapChildMap.ACCESS_COUNT, 0);
+		this._values[record] = value;
+
+		final int mask = (this._index.capacity() / OffHeapChildMap.SLOT) - 1;
+		int slot = hash & mask;
+		while (this._index.getInt(slot * OffHeapChildMap.SLOT) != 0)
+		{
+			slot = (slot + 1) & mask;
+		}
+		// the record before the hash, so an optimistic read never sees a hash without its record.
+		this._index.putInt((slot * OffHeapChildMap.SLOT) + 4, record + 1);
+		this._index.putInt(slot * OffHeapChildMap.SLOT, hash);
+		this._size++;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.util.AbstractMap#isEmpty()
+	 */
+	@Override
+	public boolean isEmpty()
+	{
+		return (this.size() == 0);
+	}
+
+	/*
+	 * Decodes the key of a record. Called while the lock is held.
+	 */
+	private String keyOf(final int record)
+	{
+		return (OffHeapChildMap.decode(this._keys,
+		        this._records.getInt((record * OffHeapChildMap.RECORD) + OffHeapChildMap.KEY)));
+	}
+
+	/*
+	 * Returns the keys of the children of classes assignable to the type, a few records at a time.
+	 */
+	List<String> keysOf(final Class<?> type)
+	{
+		final List<String> keys = new ArrayList<>();
+		int record = 0;
+		boolean done = false;
+		while (!done)
+		{
+			final long stamp = this._lock.readLock();
+			try
+			{
+				final boolean[] matching = this.classesOf(type);
+				final int end = Math.min(record + OffHeapChildMap.PASS, this._recordCount);
+				for (; record < end; record++)
+				{
+					if ((this._values[record] != null) && matching[this._records
+					        .getInt((record * OffHeapChildMap.RECORD) + OffHeapChildMap.CLASS_ID)])
+					{
+						keys.add(this.keyOf(record));
+					}
+				}
+				done = (record >= this._recordCount);
+			}
+			finally
+			{
+				this._lock.unlockRead(stamp);
+			}
+		}
+		return (keys);
+	}
+
+	/*
+	 * Returns the bytes the table uses outside of the heap. Called while the lock is held.
+	 */
+	private long offHeapBytes()
+	{
+		return (((long) this._index.capacity()) + this._records.capacity() + this._keys.capacity());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.util.AbstractMap#put(java.lang.Object, java.lang.Object)
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public V put(final String key, final V value)
+	{
+		assert (value != null) : "put() - the parameter 'value' should not be null.";
+
+		final int hash = CompactChildMap.hash(key);
+		final long stamp = this._lock.writeLock();
+		try
+		{
+			final int slot = this.find(key, hash);
+			if (slot >= 0)
+			{
+				final int record = this.recordAt(slot);
+				final V existing = (V) this._values[record];
+				this.setValue(record, value);
+				return (existing);
+			}
+			this.insert(key, hash, value);
+			return (null);
+		}
+		finally
+		{
+			this._lock.unlockWrite(stamp);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.util.concurrent.ConcurrentMap#putIfAbsent(java.lang.Object, java.lang.Object)
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public V putIfAbsent(final String key, final V value)
+	{
+		assert (value != null) : "putIfAbsent() - the parameter 'value' should not be null.";
+
+		final int hash = CompactChildMap.hash(key);
+		final long stamp = this._lock.writeLock();
+		try
+		{
+			final int slot = this.find(key, hash);
+			if (slot >= 0)
+			{
+				return ((V) this._values[this.recordAt(slot)]);
+			}
+			this.insert(key, hash, value);
+			return (null);
+		}
+		finally
+		{
+			this._lock.unlockWrite(stamp);
+		}
+	}
+
+	/*
+	 * Reads the keys and values of up to PASS records from a record under the read lock.
+	 *
+	 * @return The record to read from next, or -1 once the table has been read.
+	 */
+	@SuppressWarnings("unchecked")
+	private int read(final int from, final List<String> keys, final List<V> values)
+	{
+		final long stamp = this._lock.readLock();
+		try
+		{
+			int record = from;
+			final int end = Math.min(record + OffHeapChildMap.PASS, this._recordCount);
+			for (; record < end; record++)
+			{
+				if (this._values[record] != null)
+				{
+					keys.add(this.keyOf(record));
+					values.add((V) this._values[record]);
+				}
+			}
+			return ((record >= this._recordCount) ? -1 : record);
+		}
+		finally
+		{
+			this._lock.unlockRead(stamp);
+		}
+	}
+
+	/*
+	 * Records a sampled lookup of the key, if it is in the table.
+	 *
+	 * @param weight The number of lookups the sample stands for.
+	 *
+	 * @param now The current time in milliseconds since the epoch.
+	 */
+	void recordAccess(final String key, final long weight, final long now)
+	{
+		final int hash = CompactChildMap.hash(key);
+		final long stamp = this._lock.readLock();
+		try
+		{
+			final int slot = this.find(key, hash);
+			if (slot >= 0)
+			{
+				final int base = this.recordAt(slot) * OffHeapChildMap.RECORD;
+				this._records.putLong(base + OffHeapChildMap.ACCESS_COUNT,
+				        this._records.getLong(base + OffHeapChildMap.ACCESS_COUNT) + weight);
+				this._records.putLong(base + OffHeapChildMap.LAST_ACCESS, now);
+			}
+		}
+		finally
+		{
+			this._lock.unlockRead(stamp);
+		}
+	}
+
+	/*
+	 * Returns the record of an index slot.
+	 */
+	private int recordAt(final int slot)
+	{
+		return (this._index.getInt((slot * OffHeapChildMap.SLOT) + 4) - 1);
+	}
+
+	/*
+	 * Moves the index into a buffer of the capacity.  The records and keys stay where they are.  Called while the
+	 * write lock is held.
+	 */
+	private void rehash(final int capacity)
+	{
+		final ByteBuffer index = this._index;
+		final ByteBuffer rehashed = OffHeapChildMap.allocate(((long) capacity) * OffHeapChildMap.SLOT);
+		final int mask = capacity - 1;
+		for (int i = 0; i < index.capacity(); i += OffHeapChildMap.SLOT)
+		{
+			final int hash = index.getInt(i);
+			if (hash != 0)
+			{
+				int slot = hash & mask;
+				while (rehashed.getInt(slot * OffHeapChildMap.SLOT) != 0)
+				{
+					slot = (slot + 1) & mask;
+				}
+				rehashed.putLong(slot * OffHeapChildMap.SLOT, index.getLong(i));
+			}
+		}
+		this._index = rehashed;
+	}
+
+	/*
+	 * Counts one less record of a class id, dropping the class when none are left so the table does not keep a
+	 * reloaded class from being unloaded.  Called while the write lock is held.
+	 */
+	private void releaseClass(final int id)
+	{
+		if (--this._classUses[id] == 0)
+		{
+			this._classIds.remove(this._classes[id]);
+			this._classes[id] = null;
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.util.AbstractMap#remove(java.lang.Object)
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public V remove(final Object key)
+	{
+		if (!(key instanceof String))
+		{
+			return (null);
+		}
+		final int hash = CompactChildMap.hash((String) key);
+		final long stamp = this._lock.writeLock();
+		try
+		{
+			final int slot = this.find((String) key, hash);
+			if (slot < 0)
+			{
+				return (null);
+			}
+			final V existing = (V) this._values[this.recordAt(slot)];
+			this.removeAt(slot);
+			return (existing);
+		}
+		finally
+		{
+			this._lock.unlockWrite(stamp);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.gabstudios.manager.impl.BatchRemovable#removeAll(java.util.Collection)
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public Map<String, V> removeAll(final Collection<String> keys)
+	{
+		assert (keys != null) : "removeAll() - the parameter 'keys' should not be null.";
+
+		// a few keys at a time, so readers and writers are not held up by a long batch.
+		final Map<String, V> removed = new LinkedHashMap<>();
+		final Iterator<String> iterator = keys.iterator();
+		final String[] batch = new String[OffHeapChildMap.PASS];
+		final int[] hashes = new int[OffHeapChildMap.PASS];
+		while (iterator.hasNext())
+		{
+			int count = 0;
+			while ((count < batch.length) && iterator.hasNext())
+			{
+				batch[count] = iterator.next();
+				hashes[count] = CompactChildMap.hash(batch[count]);
+				count++;
+			}
+
+			final long stamp = this._lock.writeLock();
+			try
+			{
+				for (int i = 0; i < count; i++)
+				{
+					final int slot = this.find(batch[i], hashes[i]);
+					if (slot >= 0)
+					{
+						removed.put(batch[i], (V) this._values[this.recordAt(slot)]);
+						this.removeAt(slot);
+					}
+				}
+			}
+			finally
+			{
+				this._lock.unlockWrite(stamp);
+			}
+		}
+		return (removed);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.util.concurrent.ConcurrentMap#remove(java.lang.Object, java.lang.Object)
+	 */
+	@Override
+	public boolean remove(final Object key, final Object value)
+	{
+		if (!(key instanceof String) || (value == null))
+		{
+			return (false);
+		}
+		final int hash = CompactChildMap.hash((String) key);
+		final long stamp = this._lock.writeLock();
+		try
+		{
+			final int slot = this.find((String) key, hash);
+			if ((slot < 0) || !value.equals(this._values[this.recordAt(slot)]))
+			{
+				return (false);
+			}
+			this.removeAt(slot);
+			return (true);
+		}
+		finally
+		{
+			this._lock.unlockWrite(stamp);
+		}
+	}
+
+	/*
+	 * Frees the record of an index slot and empties the slot, shifting back the keys that probed past it so that no
+	 * key is cut off from its home slot.  Called while the write lock is held.
+	 */
+	private void removeAt(final int slot)
+	{
+		final int record = this.recordAt(slot);
+		final int base = record * OffHeapChildMap.RECORD;
+		this._deadBytes += 2 + OffHeapChildMap.length(this._keys, this._records.getInt(base + OffHeapChildMap.KEY));
+		this.releaseClass(this._records.getInt(base + OffHeapChildMap.CLASS_ID));
+		this._values[record] = null;
+		this._records.putInt(base + OffHeapChildMap.KEY, this._free);
+		this._free = record;
+		this._size--;
+
+		final ByteBuffer index = this._index;
+		final int mask = (index.capacity() / OffHeapChildMap.SLOT) - 1;
+		int hole = slot;
+		int next = (hole + 1) & mask;
+		while (index.getInt(next * OffHeapChildMap.SLOT) != 0)
+		{
+			final int home = index.getInt(next * OffHeapChildMap.SLOT) & mask;
+			// the key may move into the hole unless its home slot lies after the hole, up to the key, cyclically.
+			final boolean homeAfterHole = (hole <= next) ? ((hole < home) && (home <= next))
+			        : ((hole < home) || (home <= next));
+			if (!homeAfterHole)
+			{
+				index.putLong(hole * OffHeapChildMap.SLOT, index.getLong(next * OffHeapChildMap.SLOT));
+				hole = next;
+			}
+			next = (next + 1) & mask;
+		}
+		index.putLong(hole * OffHeapChildMap.SLOT, 0);
+
+		// copy the live keys once more bytes are dead than alive.
+		if ((this._deadBytes > OffHeapChildMap.INITIAL_KEY_BYTES) && ((this._deadBytes * 2) > this._keyPosition))
+		{
+			this.compactKeys(this._keys.capacity());
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.util.concurrent.ConcurrentMap#replace(java.lang.Object, java.lang.Object)
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public V replace(final String key, final V value)
+	{
+		assert (value != null) : "replace() - the parameter 'value' should not be null.";
+
+		final int hash = CompactChildMap.hash(key);
+		final long stamp = this._lock.writeLock();
+		try
+		{
+			final int slot = this.find(key, hash);
+			if (slot < 0)
+			{
+				return (null);
+			}
+			final int record = this.recordAt(slot);
+			final V existing = (V) this._values[record];
+			this.setValue(record, value);
+			return (existing);
+		}
+		finally
+		{
+			this._lock.unlockWrite(stamp);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.util.concurrent.ConcurrentMap#replace(java.lang.Object, java.lang.Object, java.lang.Object)
+	 */
+	@Override
+	public boolean replace(final String key, final V oldValue, final V newValue)
+	{
+		assert (newValue != null) : "replace() - the parameter 'newValue' should not be null.";
+
+		final int hash = CompactChildMap.hash(key);
+		final long stamp = this._lock.writeLock();
+		try
+		{
+			final int slot = this.find(key, hash);
+			if ((slot < 0) || !this._values[this.recordAt(slot)].equals(oldValue))
+			{
+				return (false);
+			}
+			this.setValue(this.recordAt(slot), newValue);
+			return (true);
+		}
+		finally
+		{
+			this._lock.unlockWrite(stamp);
+		}
+	}
+
+	/*
+	 * Empties the table into buffers of the initial sizes.  Called while the write lock is held, or from the
+	 * constructor.
+	 */
+	private void reset()
+	{
+		this._index = OffHeapChildMap.allocate(OffHeapChildMap.INITIAL_CAPACITY * OffHeapChildMap.SLOT);
+		this._records = OffHeapChildMap.allocate(OffHeapChildMap.INITIAL_CAPACITY * OffHeapChildMap.RECORD);
+		this._keys = OffHeapChildMap.allocate(OffHeapChildMap.INITIAL_KEY_BYTES);
+		this._values = new Object[OffHeapChildMap.INITIAL_CAPACITY];
+		this._classes = new Class<?>[4];
+		this._classUses = new int[4];
+		this._classIds.clear();
+		this._free = -1;
+		this._recordCount = 0;
+		this._keyPosition = 0;
+		this._deadBytes = 0;
+		this._size = 0;
+	}
+
+	/*
+	 * Zeroes the access statistics of every key and sets their create time, for statistics that are enabled again.
+	 *
+	 * @param now The current time in milliseconds since the epoch.
+	 */
+	void resetStatistics(final long now)
+	{
+		final long stamp = this._lock.writeLock();
+		try
+		{
+			for (int record = 0; record < this._recordCount; record++)
+			{
+				if (this._values[record] != null)
+				{
+					final int base = record * OffHeapChildMap.RECORD;
+					this._records.putLong(base + OffHeapChildMap.CREATE_TIME, now);
+					this._records.putLong(base + OffHeapChildMap.LAST_ACCESS, 0);
+					this._records.putLong(base + OffHeapChildMap.ACCESS_COUNT, 0);
+				}
+			}
+		}
+		finally
+		{
+			this._lock.unlockWrite(stamp);
+		}
+	}
+
+	/*
+	 * Binds a record to another child, moving it to the id of its class.  Called while the write lock is held.
+	 */
+	private void setValue(final int record, final Object value)
+	{
+		final int base = record * OffHeapChildMap.RECORD;
+		final int id = this._records.getInt(base + OffHeapChildMap.CLASS_ID);
+		if (this._classes[id] != value.getClass())
+		{
+			this._records.putInt(base + OffHeapChildMap.CLASS_ID, this.classId(value.getClass()));
+			this.releaseClass(id);
+		}
+		this._values[record] = value;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.util.AbstractMap#size()
+	 */
+	@Override
+	public int size()
+	{
+		long stamp = this._lock.tryOptimisticRead();
+		final int size = this._size;
+		if (!this._lock.validate(stamp))
+		{
+			stamp = this._lock.readLock();
+			try
+			{
+				return (this._size);
+			}
+			finally
+			{
+				this._lock.unlockRead(stamp);
+			}
+		}
+		return (size);
+	}
+
+	/*
+	 * Gets the access statistics of the key.
+	 *
+	 * @return The <code>AccessStatistics</code> of the key, or null if the key is not in the table.
+	 */
+	AccessStatistics statistics(final String key)
+	{
+		final int hash = CompactChildMap.hash(key);
+		final long stamp = this._lock.readLock();
+		try
+		{
+			final int slot = this.find(key, hash);
+			return ((slot < 0) ? null : this.statisticsOf(key, this.recordAt(slot)));
+		}
+		finally
+		{
+			this._lock.unlockRead(stamp);
+		}
+	}
+
+	/*
+	 * Takes a snapshot of the statistics of a record. Called while the lock is held.
+	 */
+	private AccessStatistics statisticsOf(final String key, final int record)
+	{
+		final int base = record * OffHeapChildMap.RECORD;
+		return (new AccessStatistics(key, this._records.getLong(base + OffHeapChildMap.ACCESS_COUNT),
+		        this._records.getLong(base + OffHeapChildMap.LAST_ACCESS),
+		        this._records.getLong(base + OffHeapChildMap.CREATE_TIME)));
+	}
+
+	/*
+	 * Returns a type index of the children in the table, answered from the class ids in the records.
+	 */
+	TypeIndex typeIndex()
+	{
+		return (TypeIndex.ofTable(this::countOf, this::keysOf));
+	}
+
+}
@@ -0,0 +1,44 @@
+/*****************************************************************************************
+ *
+ * Copyright 2019 Gregory Brown. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ *****************************************************************************************
+ */
+
+package com.gabstudios.manager.impl;
+
+/**
+ * What a subscriber to the lifecycle events of a <code>ManagerImpl</code> is given when it falls behind and its
+ * buffer is full. The thread that creates or closes a child is never blocked by a subscriber.
+ *
+ * @author Gregory Brown (sysdevone)
+ */
+public enum OverflowPolicy
+{
+	/**
+	 * The oldest buffered event is dropped to make room for the new one.
+	 */
+	DROP_OLDEST,
+
+	/**
+	 * Events are kept per key while the buffer is full, and a newer event for a key replaces the older one. The
+	 * subscriber receives the latest event of every key, for as many keys as the buffer holds events; beyond that the
+	 * oldest of them is dropped, which the subscriber sees as a gap in the sequence numbers. So at most twice the
+	 * buffer size of events are held however many keys change. This is the default.
+	 */
+	COALESCE,
+
+	/**
+	 * The subscription fails with a <code>ManagerException</code> and is cancelled.
+	 */
+	FAIL
+}
@@ -0,0 +1,517 @@
+/*****************************************************************************************
+ *
+ * Copyright 2019 Gregory Brown. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ *****************************************************************************************
+ */
+
+package com.gabstudios.manager.impl;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+/**
+ * <pre>
+ * A concurrent child table that holds its values through weak or soft references.
+ *
+ * When the garbage collector reclaims a child its reference is put on a <code>ReferenceQueue</code>.  The queue is
+ * drained a few references at a time on every access, removing the entries of reclaimed children and passing their
+ * keys to a listener, so the table is cleaned incrementally without a thread of its own.  An entry that is found
+ * cleared before it is drained is removed on the spot.
+ *
+ * size() may count entries that have been reclaimed but not yet drained.
+ * </pre>
+ *
+ * @author Gregory Brown (sysdevone)
+ */
+final class ReferenceChildMap<V> extends AbstractMap<String, V> implements ConcurrentMap<String, V>
+{
+	/*
+	 * A reference that remembers the key it is bound to.
+	 */
+	private static interface KeyedReference<V>
+	{
+		V get();
+
+		String getKey();
+	}
+
+	/*
+	 * A soft reference bound to a key.
+	 */
+	private static final class SoftValue<V> extends SoftReference<V> implements KeyedReference<V>
+	{
+		private final String _key;
+
+		SoftValue(final String key, final V value, final ReferenceQueue<? super V> queue)
+		{
+			super(value, queue);
+			this._key = key;
+		}
+
+		@Override
+		public String getKey()
+		{
+			return (this._key);
+		}
+	}
+
+	/*
+	 * A weak reference bound to a key.
+	 */
+	private static final class WeakValue<V> extends WeakReference<V> implements KeyedReference<V>
+	{
+		private final String _key;
+
+		WeakValue(final String key, final V value, final ReferenceQueue<? super V> queue)
+		{
+			super(value, queue);
+			this._key = key;
+		}
+
+		@Override
+		public String getKey()
+		{
+			return (this._key);
+		}
+	}
+
+	/*
+	 * The most references drained from the queue by one access.
+	 */
+	private static final int	EXPUNGE_BATCH	= 16;
+
+	/*
+	 * Called with the key of every entry removed because its child was reclaimed.
+	 */
+	private final Consumer<String>	_listener;
+
+	/*
+	 * The keys waiting for the listener on a thread that is calling it.  A listener that reads the table drains the
+	 * queue beneath itself; its keys are told by the outer call, so a mass reclaim does not nest one call per key.
+	 */
+	private final ThreadLocal<Deque<String>>	_notifying	= new ThreadLocal<>();
+
+	/*
+	 * The queue the references of reclaimed children are put on.
+	 */
+	private final ReferenceQueue<V>	_queue;
+
+	/*
+	 * True for soft references, false for weak.
+	 */
+	private final boolean			_soft;
+
+	/*
+	 * The entries.
+	 */
+	private final ConcurrentMap<String, KeyedReference<V>>	_table;
+
+	/*
+	 * Creates an empty table.
+	 *
+	 * @param soft True to hold the values through soft references, false for weak references.
+	 *
+	 * @param listener Called with the key of every entry removed because its value was reclaimed.
+	 */
+	ReferenceChildMap(final boolean soft, final Consumer<String> listener)
+	{
+		assert (listener != null) : "ReferenceChildMap() - the parameter 'listener' should not be null.";
+
+		this._soft = soft;
+		this._listener = listener;
+		this._queue = new ReferenceQueue<>();
+		this._table = new ConcurrentHashMap<>();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.util.AbstractMap#clear()
+	 */
+	@Override
+	public void clear()
+	{
+		this._table.clear();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.util.concurrent.ConcurrentMap#computeIfPresent(java.lang.Object, java.util.function.BiFunction)
+	 */
+	@Override
+	public V computeIfPresent(final String key, final BiFunction<? super String, ? super V, ? extends V> function)
+	{
+		this.expunge();
+
+		// the function runs once, atomically, on the live value.
+		final List<V> result = new ArrayList<>(1);
+		final boolean[] cleared = new boolean[1];
+		this._table.computeIfPresent(key, (ignored, reference) -> {
+			final V value = reference.get();
+			if (value == null)
+			{
+				cleared[0] = true;
+				return (null);
+			}
+			final V computed = function.apply(key, value);
+			result.add(computed);
+			return ((computed == null) ? null
+			        : ((computed == value) ? reference : this.newReference(key, computed)));
+		});
+		if (cleared[0])
+		{
+			this.notifyReclaimed(key);
+		}
+		return (result.isEmpty() ? null : result.get(0));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.util.AbstractMap#containsKey(java.lang.Object)
+	 */
+	@Override
+	public boolean containsKey(final Object key)
+	{
+		return (this.get(key) != null);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.util.AbstractMap#entrySet()
+	 */
+	@Override
+	public Set<Map.Entry<String, V>> entrySet()
+	{
+		this.expunge();
+
+		// read as it is iterated, so a caller that stops early does not pay for the whole table.  Each entry holds
+		// its value, so a value cannot be reclaimed while it is used; the entries of reclaimed values are skipped.
+		return (new AbstractSet<Map.Entry<String, V>>()
+		{
+			@Override
+			public Iterator<Map.Entry<String, V>> iterator()
+			{
+				final Iterator<Map.Entry<String, KeyedReference<V>>> table = ReferenceChildMap.this._table.entrySet()
+				        .iterator();
+				return (new Iterator<Map.Entry<String, V>>()
+				{
+					private Map.Entry<String, V> _next;
+
+					@Override
+					public boolean hasNext()
+					{
+						while ((this._next == null) && table.hasNext())
+						{
+							final Map.Entry<String, KeyedReference<V>> entry = table.next();
+							final V value = entry.getValue().get();
+							if (value != null)
+							{
+								this._next = new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), value);
+							}
+						}
+						return (this._next != null);
+					}
+
+					@Override
+					public Map.Entry<String, V> next()
+					{
+						if (!this.hasNext())
+						{
+							throw (new NoSuchElementException());
+						}
+						final Map.Entry<String, V> next = this._next;
+						this._next = null;
+						return (next);
+					}
+				});
+			}
+
+			@Override
+			public int size()
+			{
+				return (ReferenceChildMap.this.size());
+			}
+		});
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.util.concurrent.ConcurrentMap#forEach(java.util.function.BiConsumer)
+	 */
+	@Override
+	public void forEach(final BiConsumer<? super String, ? super V> action)
+	{
+		this.expunge();
+
+		// unlike entrySet(), nothing is copied; each value is held only while the action runs.
+		for (final Map.Entry<String, KeyedReference<V>> entry : this._table.entrySet())
+		{
+			final V value = entry.getValue().get();
+			if (value != null)
+			{
+				action.accept(entry.getKey(), value);
+			}
+		}
+	}
+
+	/*
+	 * Removes the entries of values that have been reclaimed, a batch at a time.
+	 */
+	private void expunge()
+	{
+		for (int i = 0; i < ReferenceChildMap.EXPUNGE_BATCH; i++)
+		{
+			@SuppressWarnings("unchecked")
+			final KeyedReference<V> reference = (KeyedReference<V>) this._queue.poll();
+			if (reference == null)
+			{
+				break;
+			}
+			this.removeCleared(reference);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.util.AbstractMap#get(java.lang.Object)
+	 */
+	@Override
+	public V get(final Object key)
+	{
+		this.expunge();
+		final KeyedReference<V> reference = this._table.get(key);
+		if (reference == null)
+		{
+			return (null);
+		}
+		final V value = reference.get();
+		if (value == null)
+		{
+			this.removeCleared(reference);
+		}
+		return (value);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.util.AbstractMap#isEmpty()
+	 */
+	@Override
+	public boolean isEmpty()
+	{
+		return (this.size() == 0);
+	}
+
+	/*
+	 * Creates the reference for a value.
+	 */
+	private KeyedReference<V> newReference(final String key, final V value)
+	{
+		if (this._soft)
+		{
+			return (new SoftValue<V>(key, value, this._queue));
+		}
+		else
+		{
+			return (new WeakValue<V>(key, value, this._queue));
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.util.AbstractMap#put(java.lang.Object, java.lang.Object)
+	 */
+	@Override
+	public V put(final String key, final V value)
+	{
+		this.expunge();
+		final KeyedReference<V> previous = this._table.put(key, this.newReference(key, value));
+		return ((previous == null) ? null : previous.get());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.util.concurrent.ConcurrentMap#putIfAbsent(java.lang.Object, java.lang.Object)
+	 */
+	@Override
+	public V putIfAbsent(final String key, final V value)
+	{
+		this.expunge();
+		final KeyedReference<V> reference = this.newReference(key, value);
+		while (true)
+		{
+			final KeyedReference<V> existing = this._table.putIfAbsent(key, reference);
+			if (existing == null)
+			{
+				return (null);
+			}
+			final V current = existing.get();
+			if (current != null)
+			{
+				return (current);
+			}
+			if (this._table.replace(key, existing, reference))
+			{
+				this.notifyReclaimed(key);
+				return (null);
+			}
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.util.AbstractMap#remove(java.lang.Object)
+	 */
+	@Override
+	public V remove(final Object key)
+	{
+		this.expunge();
+		final KeyedReference<V> previous = this._table.remove(key);
+		return ((previous == null) ? null : previous.get());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.util.concurrent.ConcurrentMap#remove(java.lang.Object, java.lang.Object)
+	 */
+	@Override
+	public boolean remove(final Object key, final Object value)
+	{
+		this.expunge();
+		final KeyedReference<V> reference = this._table.get(key);
+		if (reference == null)
+		{
+			return (false);
+		}
+		final V current = reference.get();
+		return ((current != null) && current.equals(value) && this._table.remove(key, reference));
+	}
+
+	/*
+	 * Tells the listener that the entry of the key was removed because its value was reclaimed, or queues the key
+	 * if the listener is already being called on this thread.
+	 */
+	private void notifyReclaimed(final String key)
+	{
+		final Deque<String> pending = this._notifying.get();
+		if (pending != null)
+		{
+			pending.add(key);
+			return;
+		}
+
+		final Deque<String> keys = new ArrayDeque<>();
+		this._notifying.set(keys);
+		try
+		{
+			for (String next = key; next != null; next = keys.poll())
+			{
+				this._listener.accept(next);
+			}
+		}
+		finally
+		{
+			this._notifying.remove();
+		}
+	}
+
+	/*
+	 * Removes the entry of a reclaimed value, if it is still in the table, and tells the listener.
+	 */
+	private void removeCleared(final KeyedReference<V> reference)
+	{
+		if (this._table.remove(reference.getKey(), reference))
+		{
+			this.notifyReclaimed(reference.getKey());
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.util.concurrent.ConcurrentMap#replace(java.lang.Object, java.lang.Object)
+	 */
+	@Override
+	public V replace(final String key, final V value)
+	{
+		this.expunge();
+		final KeyedReference<V> reference = this.newReference(key, value);
+		while (true)
+		{
+			final KeyedReference<V> existing = this._table.get(key);
+			final V current = (existing == null) ? null : existing.get();
+			if (current == null)
+			{
+				return (null);
+			}
+			if (this._table.replace(key, existing, reference))
+			{
+				return (current);
+			}
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.util.concurrent.ConcurrentMap#replace(java.lang.Object, java.lang.Object, java.lang.Object)
+	 */
+	@Override
+	public boolean replace(final String key, final V oldValue, final V newValue)
+	{
+		this.expunge();
+		final KeyedReference<V> existing = this._table.get(key);
+		final V current = (existing == null) ? null : existing.get();
+		return ((current != null) && current.equals(oldValue)
+		        && this._table.replace(key, existing, this.newReference(key, newValue)));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.util.AbstractMap#size()
+	 */
+	@Override
+	public int size()
+	{
+		this.expunge();
+		return (this._table.size());
+	}
+
+}
@@ -0,0 +1,41 @@
+/*****************************************************************************************
+ *
+ * Copyright 2019 Gregory Brown. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ *****************************************************************************************
+ */
+
+package com.gabstudios.manager.impl;
+
+/**
+ * How a <code>ManagerImpl</code> holds on to its children.
+ *
+ * @author Gregory Brown (sysdevone)
+ */
+public enum ReferenceType
+{
+	/**
+	 * Children are held until they are closed. This is the default.
+	 */
+	STRONG,
+
+	/**
+	 * Children are held through soft references and may be reclaimed when memory runs low and nothing else refers to
+	 * them.
+	 */
+	SOFT,
+
+	/**
+	 * Children are held through weak references and may be reclaimed as soon as nothing else refers to them.
+	 */
+	WEAK
+}
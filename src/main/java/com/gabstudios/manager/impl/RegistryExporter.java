@@ -0,0 +1,365 @@
+/*****************************************************************************************
+ *
+ * Copyright 2019 Gregory Brown. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ *****************************************************************************************
+ */
+
+package com.gabstudios.manager.impl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * <pre>
+ * Streams the state of a registry to a channel, one child at a time, through a fixed size buffer.  The memory used
+ * does not grow with the number of children.
+ *
+ * The binary layout is:
+ *
+ *   int    magic ('GABX')
+ *   int    version
+ *   byte   flags (1 when the details are written)
+ *   record*
+ *   int    0 (terminator)
+ *   int    record count
+ *
+ * where each record is:
+ *
+ *   int    key length,        key bytes (UTF-8)
+ *   int    class name length, class name bytes (UTF-8)
+ *   byte   state (0 active, 1 initializing, 2 pending)
+ *
+ * followed, when the details are written, by:
+ *
+ *   byte   health (the HealthStatus ordinal)
+ *   int    tag count,         (int length, bytes) of each name and value
+ *   long   access count       (-1 when access statistics are disabled)
+ *   long   last access time   (milliseconds since the epoch, 0 if none)
+ *   int    dependency count,  (int length, bytes) of each key
+ *
+ * The JSON form is one object:
+ *
+ *   {"version":1,"children":[{"key":"a","class":"x.Y","state":"ACTIVE", details...},...],"count":1}
+ *
+ * where the details are the members "health", "tags", "accessCount", "lastAccessTime" and "dependsOn".
+ * </pre>
+ *
+ * @author Gregory Brown (sysdevone)
+ */
+final class RegistryExporter
+{
+	/*
+	 * The state of a child that is bound and initialized.
+	 */
+	static final byte			ACTIVE			= 0;
+
+	/*
+	 * The state of a child that is bound and whose initialize has not returned.
+	 */
+	static final byte			INITIALIZING	= 1;
+
+	/*
+	 * The state of a child restored from a snapshot that has not been instantiated.
+	 */
+	static final byte			PENDING			= 2;
+
+	/*
+	 * The magic number at the start of a binary export - 'GABX'.
+	 */
+	static final int			MAGIC			= 0x47414258;
+
+	/*
+	 * The version of the layouts.
+	 */
+	static final int			VERSION			= 1;
+
+	/*
+	 * The size of the buffer used when writing.
+	 */
+	private static final int	BUFFER_SIZE		= 64 * 1024;
+
+	/*
+	 * The names of the states in the JSON form, by state.
+	 */
+	private static final String[]	STATE_NAMES	= { "ACTIVE", "INITIALIZING", "PENDING" };
+
+	/*
+	 * The bytes waiting to be written.
+	 */
+	private final ByteBuffer			_buffer;
+
+	/*
+	 * The channel written to.
+	 */
+	private final WritableByteChannel	_channel;
+
+	/*
+	 * The number of children written.
+	 */
+	private int							_count;
+
+	/*
+	 * A flag to determine if the details of each child are written.
+	 */
+	private final boolean				_details;
+
+	/*
+	 * The form written.
+	 */
+	private final ExportFormat			_format;
+
+	/*
+	 * Creates an exporter. Nothing is written until begin() is called.
+	 */
+	RegistryExporter(final WritableByteChannel channel, final ExportFormat format, final boolean details)
+	{
+		assert (channel != null) : "RegistryExporter() - the parameter 'channel' should not be null.";
+		assert (format != null) : "RegistryExporter() - the parameter 'format' should not be null.";
+
+		this._channel = channel;
+		this._format = format;
+		this._details = details;
+		this._buffer = ByteBuffer.allocate(RegistryExporter.BUFFER_SIZE);
+	}
+
+	/*
+	 * Quotes and escapes a value for a JSON string.
+	 */
+	private static String quote(final String value)
+	{
+		final StringBuilder builder = new StringBuilder(value.length() + 2);
+		builder.append('"');
+		for (int i = 0; i < value.length(); i++)
+		{
+			final char c = value.charAt(i);
+			switch (c)
+			{
+				case '"':
+					builder.append("\\\"");
+					break;
+				case '\\':
+					builder.append("\\\\");
+					break;
+				case '\n':
+					builder.append("\\n");
+					break;
+				case '\r':
+					builder.append("\\r");
+					break;
+				case '\t':
+					builder.append("\\t");
+					break;
+				default:
+					if (c < 0x20)
+					{
+						builder.append(String.format("\\u%04x", (int) c));
+					}
+					else
+					{
+						builder.append(c);
+					}
+					break;
+			}
+		}
+		builder.append('"');
+		return (builder.toString());
+	}
+
+	/*
+	 * Writes the start of the export.
+	 */
+	void begin() throws IOException
+	{
+		if (this._format == ExportFormat.BINARY)
+		{
+			this._buffer.putInt(RegistryExporter.MAGIC).putInt(RegistryExporter.VERSION);
+			this._buffer.put((byte) (this._details ? 1 : 0));
+		}
+		else
+		{
+			this.text("{\"version\":" + RegistryExporter.VERSION + ",\"children\":[");
+		}
+	}
+
+	/*
+	 * Writes one child.
+	 *
+	 * @param key The key of the child.
+	 *
+	 * @param className The class name of the child.
+	 *
+	 * @param state One of ACTIVE, INITIALIZING or PENDING.
+	 *
+	 * @param health The last health of the child. Only used for the details.
+	 *
+	 * @param tags The tags of the child. Only used for the details.
+	 *
+	 * @param access The access statistics of the child, or null. Only used for the details.
+	 *
+	 * @param dependsOn The keys the child depends on. Only used for the details.
+	 */
+	void child(final String key, final String className, final byte state, final HealthStatus health,
+	        final Map<String, String> tags, final AccessStatistics access, final Collection<String> dependsOn)
+	        throws IOException
+	{
+		if (this._format == ExportFormat.BINARY)
+		{
+			this.string(key);
+			this.string(className);
+			this.reserve(1);
+			this._buffer.put(state);
+			if (this._details)
+			{
+				this.reserve(5);
+				this._buffer.put((byte) health.ordinal()).putInt(tags.size());
+				for (final Map.Entry<String, String> tag : tags.entrySet())
+				{
+					this.string(tag.getKey());
+					this.string(tag.getValue());
+				}
+				this.reserve(20);
+				this._buffer.putLong((access == null) ? -1 : access.getAccessCount());
+				this._buffer.putLong((access == null) ? 0 : access.getLastAccessTime());
+				this._buffer.putInt(dependsOn.size());
+				for (final String dependency : dependsOn)
+				{
+					this.string(dependency);
+				}
+			}
+		}
+		else
+		{
+			this.text(((this._count == 0) ? "{\"key\":" : ",{\"key\":") + RegistryExporter.quote(key) + ",\"class\":"
+			        + RegistryExporter.quote(className) + ",\"state\":\"" + RegistryExporter.STATE_NAMES[state] + "\"");
+			if (this._details)
+			{
+				this.text(",\"health\":\"" + health + "\",\"tags\":{");
+				String separator = "";
+				for (final Map.Entry<String, String> tag : tags.entrySet())
+				{
+					this.text(separator + RegistryExporter.quote(tag.getKey()) + ":"
+					        + RegistryExporter.quote(tag.getValue()));
+					separator = ",";
+				}
+				this.text("},\"accessCount\":" + ((access == null) ? -1 : access.getAccessCount())
+				        + ",\"lastAccessTime\":" + ((access == null) ? 0 : access.getLastAccessTime())
+				        + ",\"dependsOn\":[");
+				separator = "";
+				for (final String dependency : dependsOn)
+				{
+					this.text(separator + RegistryExporter.quote(dependency));
+					separator = ",";
+				}
+				this.text("]");
+			}
+			this.text("}");
+		}
+		this._count++;
+	}
+
+	/*
+	 * Writes the end of the export and drains the buffer to the channel.
+	 */
+	void end() throws IOException
+	{
+		if (this._format == ExportFormat.BINARY)
+		{
+			this.reserve(8);
+			this._buffer.putInt(0).putInt(this._count);
+		}
+		else
+		{
+			this.text("],\"count\":" + this._count + "}\n");
+		}
+		this.drain();
+	}
+
+	/*
+	 * Returns the number of children written.
+	 */
+	int getCount()
+	{
+		return (this._count);
+	}
+
+	/*
+	 * Writes the bytes in the buffer to the channel and clears the buffer.
+	 */
+	private void drain() throws IOException
+	{
+		this._buffer.flip();
+		while (this._buffer.hasRemaining())
+		{
+			this._channel.write(this._buffer);
+		}
+		this._buffer.clear();
+	}
+
+	/*
+	 * Writes bytes, straight to the channel when they do not fit in the buffer.
+	 */
+	private void put(final byte[] bytes) throws IOException
+	{
+		if (this._buffer.remaining() < bytes.length)
+		{
+			this.drain();
+		}
+		if (this._buffer.remaining() < bytes.length)
+		{
+			final ByteBuffer view = ByteBuffer.wrap(bytes);
+			while (view.hasRemaining())
+			{
+				this._channel.write(view);
+			}
+		}
+		else
+		{
+			this._buffer.put(bytes);
+		}
+	}
+
+	/*
+	 * Drains the buffer if it has less room than the number of bytes.
+	 */
+	private void reserve(final int bytes) throws IOException
+	{
+		if (this._buffer.remaining() < bytes)
+		{
+			this.drain();
+		}
+	}
+
+	/*
+	 * Writes a length prefixed UTF-8 string.
+	 */
+	private void string(final String value) throws IOException
+	{
+		final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		this.reserve(4);
+		this._buffer.putInt(bytes.length);
+		this.put(bytes);
+	}
+
+	/*
+	 * Writes JSON text.
+	 */
+	private void text(final String value) throws IOException
+	{
+		this.put(value.getBytes(StandardCharsets.UTF_8));
+	}
+
+}
@@ -0,0 +1,351 @@
+/*****************************************************************************************
+ *
+ * Copyright 2019 Gregory Brown. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ *****************************************************************************************
+ */
+
+package com.gabstudios.manager.impl;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.gabstudios.manager.ManagerException;
+
+/**
+ * <pre>
+ * Reads and writes the binary registry snapshot used for a warm restart of a <code>ManagerImpl</code>.
+ *
+ * The file layout is:
+ *
+ *   int    magic ('GABR')
+ *   int    version
+ *   record*
+ *   int    0 (terminator)
+ *   int    record count
+ *
+ * where each record is:
+ *
+ *   int    key length,        key bytes (UTF-8)
+ *   int    class name length, class name bytes (UTF-8)
+ *   int    state length (-1 when there is no state), state bytes
+ *
+ * A snapshot is read by mapping the file and indexing the records.  Only the keys are decoded; the class name and
+ * state stay in the mapped file until the child is first used.
+ * </pre>
+ *
+ * @author Gregory Brown (sysdevone)
+ */
+final class RegistrySnapshot
+{
+	/*
+	 * A single record of a snapshot.  The class name and state are read from the backing buffer on demand.
+	 */
+	static final class Entry
+	{
+		/*
+		 * The buffer the record lives in.  May be a memory-mapped file.
+		 */
+		private final ByteBuffer	_buffer;
+
+		/*
+		 * The position of the class name length in the buffer.
+		 */
+		private final int			_classNameOffset;
+
+		/*
+		 * The key bound to the record.
+		 */
+		private final String		_key;
+
+		/*
+		 * The position of the state length in the buffer.
+		 */
+		private final int			_stateOffset;
+
+		/*
+		 * Creates an entry for a record that was read from a buffer.
+		 */
+		Entry(final String key, final ByteBuffer buffer, final int classNameOffset, final int stateOffset)
+		{
+			assert (key != null) : "Entry() - the parameter 'key' should not be null.";
+			assert (buffer != null) : "Entry() - the parameter 'buffer' should not be null.";
+
+			this._key = key;
+			this._buffer = buffer;
+			this._classNameOffset = classNameOffset;
+			this._stateOffset = stateOffset;
+		}
+
+		/*
+		 * Creates an entry for a record that is held on the heap, used when a registry is rebuilt from something
+		 * other than a snapshot file.
+		 */
+		static Entry of(final String key, final String className, final byte[] state)
+		{
+			final byte[] classNameBytes = className.getBytes(StandardCharsets.UTF_8);
+			final int stateLength = (state == null) ? 0 : state.length;
+			final ByteBuffer buffer = ByteBuffer.allocate(4 + classNameBytes.length + 4 + stateLength);
+			buffer.putInt(classNameBytes.length).put(classNameBytes);
+			buffer.putInt((state == null) ? -1 : state.length);
+			if (state != null)
+			{
+				buffer.put(state);
+			}
+			return (new Entry(key, buffer, 0, 4 + classNameBytes.length));
+		}
+
+		/*
+		 * Decodes the class name of the record.
+		 */
+		String getClassName()
+		{
+			final int length = this._buffer.getInt(this._classNameOffset);
+			return (RegistrySnapshot.decode(this._buffer, this._classNameOffset + 4, length));
+		}
+
+		/*
+		 * Returns the key of the record.
+		 */
+		String getKey()
+		{
+			return (this._key);
+		}
+
+		/*
+		 * Returns a read only view of the state of the record, or null if there is no state.  No bytes are copied.
+		 */
+		ByteBuffer getState()
+		{
+			final int length = this._buffer.getInt(this._stateOffset);
+			if (length < 0)
+			{
+				return (null);
+			}
+			else
+			{
+				final ByteBuffer state = this._buffer.duplicate();
+				state.limit(this._stateOffset + 4 + length).position(this._stateOffset + 4);
+				return (state.slice().asReadOnlyBuffer());
+			}
+		}
+	}
+
+	/*
+	 * The magic number at the start of a snapshot file - 'GABR'.
+	 */
+	static final int	MAGIC		= 0x47414252;
+
+	/*
+	 * The size of the buffer used when writing.
+	 */
+	private static final int	BUFFER_SIZE	= 64 * 1024;
+
+	/*
+	 * The version of the file layout.
+	 */
+	static final int	VERSION		= 1;
+
+	/*
+	 * Decodes UTF-8 bytes from an absolute position without moving the buffer.
+	 */
+	private static String decode(final ByteBuffer buffer, final int offset, final int length)
+	{
+		if (buffer.hasArray())
+		{
+			return (new String(buffer.array(), buffer.arrayOffset() + offset, length, StandardCharsets.UTF_8));
+		}
+		else
+		{
+			final ByteBuffer view = buffer.duplicate();
+			view.limit(offset + length).position(offset);
+			return (StandardCharsets.UTF_8.decode(view).toString());
+		}
+	}
+
+	/*
+	 * Writes the bytes in the buffer to the channel and clears the buffer.
+	 */
+	private static void drain(final ByteBuffer buffer, final WritableByteChannel channel) throws IOException
+	{
+		buffer.flip();
+		while (buffer.hasRemaining())
+		{
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	/*
+	 * Maps the snapshot file and indexes its records.
+	 *
+	 * @param file A <code>Path</code> to a snapshot file.
+	 *
+	 * @return A <code>Map</code> of keys to entries, in file order.
+	 *
+	 * @throws ManagerException if the file is unable to be read or is not a valid snapshot.
+	 */
+	static Map<String, Entry> read(final Path file)
+	{
+		assert (file != null) : "read() - the parameter 'file' should not be null.";
+
+		final MappedByteBuffer buffer;
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+		{
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		catch (final IOException e)
+		{
+			throw (new ManagerException("Unable to read the registry snapshot - " + file, e));
+		}
+
+		try
+		{
+			if ((buffer.getInt() != RegistrySnapshot.MAGIC) || (buffer.getInt() != RegistrySnapshot.VERSION))
+			{
+				throw (new ManagerException("The file is not a registry snapshot - " + file));
+			}
+
+			final Map<String, Entry> entries = new LinkedHashMap<>();
+			int keyLength = buffer.getInt();
+			while (keyLength != 0)
+			{
+				final String key = RegistrySnapshot.decode(buffer, buffer.position(), keyLength);
+				buffer.position(buffer.position() + keyLength);
+
+				final int classNameOffset = buffer.position();
+				buffer.position(classNameOffset + 4 + buffer.getInt(classNameOffset));
+
+				final int stateOffset = buffer.position();
+				buffer.position(stateOffset + 4 + Math.max(0, buffer.getInt(stateOffset)));
+
+				entries.put(key, new Entry(key, buffer, classNameOffset, stateOffset));
+				keyLength = buffer.getInt();
+			}
+
+			if (buffer.getInt() != entries.size())
+			{
+				throw (new ManagerException("The registry snapshot is corrupt - " + file));
+			}
+			return (entries);
+		}
+		catch (final BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e)
+		{
+			throw (new ManagerException("The registry snapshot is truncated - " + file, e));
+		}
+	}
+
+	/*
+	 * Writes one record to the buffer, draining to the channel when the buffer fills.
+	 */
+	private static void write(final ByteBuffer buffer, final WritableByteChannel channel, final byte[] key,
+	        final byte[] className, final ByteBuffer state) throws IOException
+	{
+		final int stateLength = (state == null) ? 0 : state.remaining();
+		if (buffer.remaining() < (12 + key.length + className.length))
+		{
+			RegistrySnapshot.drain(buffer, channel);
+		}
+		buffer.putInt(key.length).put(key);
+		buffer.putInt(className.length).put(className);
+		buffer.putInt((state == null) ? -1 : stateLength);
+
+		if (state != null)
+		{
+			if (buffer.remaining() < stateLength)
+			{
+				RegistrySnapshot.drain(buffer, channel);
+			}
+			if (buffer.remaining() < stateLength)
+			{
+				final ByteBuffer view = state.duplicate();
+				while (view.hasRemaining())
+				{
+					channel.write(view);
+				}
+			}
+			else
+			{
+				buffer.put(state.duplicate());
+			}
+		}
+	}
+
+	/*
+	 * Writes a snapshot of the entries to the file.  The snapshot is written to a temporary file that is then moved
+	 * over the target, so a crash while writing leaves the previous snapshot in place.
+	 *
+	 * @param file A <code>Path</code> to write the snapshot to.
+	 *
+	 * @param entries The entries to write.
+	 *
+	 * @throws ManagerException if the file is unable to be written.
+	 */
+	static void write(final Path file, final Iterable<Entry> entries)
+	{
+		assert (file != null) : "write() - the parameter 'file' should not be null.";
+		assert (entries != null) : "write() - the parameter 'entries' should not be null.";
+
+		final Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+		try
+		{
+			try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+			        StandardOpenOption.TRUNCATE_EXISTING))
+			{
+				final ByteBuffer buffer = ByteBuffer.allocate(RegistrySnapshot.BUFFER_SIZE);
+				buffer.putInt(RegistrySnapshot.MAGIC).putInt(RegistrySnapshot.VERSION);
+
+				int count = 0;
+				for (final Entry entry : entries)
+				{
+					final byte[] key = entry.getKey().getBytes(StandardCharsets.UTF_8);
+					final byte[] className = entry.getClassName().getBytes(StandardCharsets.UTF_8);
+					RegistrySnapshot.write(buffer, channel, key, className, entry.getState());
+					count++;
+				}
+
+				if (buffer.remaining() < 8)
+				{
+					RegistrySnapshot.drain(buffer, channel);
+				}
+				buffer.putInt(0).putInt(count);
+				RegistrySnapshot.drain(buffer, channel);
+				channel.force(true);
+			}
+			Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch (final IOException e)
+		{
+			throw (new ManagerException("Unable to write the registry snapshot - " + file, e));
+		}
+	}
+
+	/*
+	 * Static methods only.
+	 */
+	private RegistrySnapshot()
+	{
+		// void
+	}
+
+}
@@ -0,0 +1,336 @@
+/*****************************************************************************************
+ *
+ * Copyright 2019 Gregory Brown. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ *****************************************************************************************
+ */
+
+package com.gabstudios.manager.impl;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * <pre>
+ * An inverted index of the tags of a manager's children.
+ *
+ * Every tagged child is given a small internal id, reused once the child is removed, and each distinct tag has a
+ * posting: a <code>CompactBitmap</code> of the ids of the children that carry it.  A query is answered by combining
+ * postings, so a multi-tag intersection costs time in proportion to the size of the postings, not the number of
+ * children.
+ *
+ * Reads share a lock and writes are exclusive.
+ * </pre>
+ *
+ * @author Gregory Brown (sysdevone)
+ */
+final class TagIndex
+{
+	/*
+	 * The tags of one child.
+	 */
+	private static final class Entry
+	{
+		/*
+		 * The internal id of the child.
+		 */
+		final int						_id;
+
+		/*
+		 * The child, so a child bound again to the key is not confused with the one the tags were added for.
+		 */
+		final WeakReference<Object>		_owner;
+
+		/*
+		 * The tags.
+		 */
+		final Map<String, String>		_tags;
+
+		Entry(final int id, final Object owner, final Map<String, String> tags)
+		{
+			this._id = id;
+			this._owner = new WeakReference<>(owner);
+			this._tags = tags;
+		}
+	}
+
+	/*
+	 * An empty posting, returned for a tag that no child carries.
+	 */
+	private static final CompactBitmap	EMPTY	= new CompactBitmap();
+
+	/*
+	 * Makes the posting key of a tag.
+	 */
+	private static String postingKey(final String name, final String value)
+	{
+		return (name + '\u0000' + value);
+	}
+
+	/*
+	 * The entries, by key.
+	 */
+	private final Map<String, Entry>			_entries;
+
+	/*
+	 * Set once a child has been tagged, so a manager that never tags its children skips the index.
+	 */
+	private volatile boolean					_inUse;
+
+	/*
+	 * The ids that have been released and may be reused.
+	 */
+	private int[]								_free;
+
+	/*
+	 * The number of ids in _free.
+	 */
+	private int									_freeCount;
+
+	/*
+	 * The key of each id in use.
+	 */
+	private String[]							_keys;
+
+	/*
+	 * Guards the index.
+	 */
+	private final ReadWriteLock					_lock;
+
+	/*
+	 * The next id that has never been used.
+	 */
+	private int									_nextId;
+
+	/*
+	 * The postings, by tag.
+	 */
+	private final Map<String, CompactBitmap>	_postings;
+
+	/*
+	 * Creates an empty index.
+	 */
+	TagIndex()
+	{
+		this._entries = new HashMap<>();
+		this._postings = new HashMap<>();
+		this._keys = new String[16];
+		this._free = new int[16];
+		this._lock = new ReentrantReadWriteLock();
+	}
+
+	/*
+	 * Indexes the tags of a child.  Any tags already indexed for the key are replaced.
+	 *
+	 * @param key The key of the child.
+	 *
+	 * @param owner The child.
+	 *
+	 * @param tags The tags of the child.
+	 */
+	void add(final String key, final Object owner, final Map<String, String> tags)
+	{
+		final Map<String, String> copy = Collections.unmodifiableMap(new LinkedHashMap<>(tags));
+		this._inUse = true;
+		this._lock.writeLock().lock();
+		try
+		{
+			this.removeEntry(key);
+
+			final int id;
+			if (this._freeCount > 0)
+			{
+				id = this._free[--this._freeCount];
+			}
+			else
+			{
+				id = this._nextId++;
+				if (id == this._keys.length)
+				{
+					this._keys = Arrays.copyOf(this._keys, id * 2);
+				}
+			}
+			this._keys[id] = key;
+			this._entries.put(key, new Entry(id, owner, copy));
+			for (final Map.Entry<String, String> tag : copy.entrySet())
+			{
+				this._postings.computeIfAbsent(TagIndex.postingKey(tag.getKey(), tag.getValue()),
+				        ignored -> new CompactBitmap()).add(id);
+			}
+		}
+		finally
+		{
+			this._lock.writeLock().unlock();
+		}
+	}
+
+	/*
+	 * Removes every entry.
+	 */
+	void clear()
+	{
+		this._lock.writeLock().lock();
+		try
+		{
+			this._entries.clear();
+			this._postings.clear();
+			Arrays.fill(this._keys, null);
+			this._nextId = 0;
+			this._freeCount = 0;
+		}
+		finally
+		{
+			this._lock.writeLock().unlock();
+		}
+	}
+
+	/*
+	 * Finds the keys of the children that match the query.
+	 */
+	List<String> find(final TagQuery query)
+	{
+		this._lock.readLock().lock();
+		try
+		{
+			final CompactBitmap ids = query.evaluate(this);
+			final List<String> keys = new ArrayList<>(ids.getCardinality());
+			ids.forEach(id -> keys.add(this._keys[id]));
+			return (keys);
+		}
+		finally
+		{
+			this._lock.readLock().unlock();
+		}
+	}
+
+	/*
+	 * Gets the tags of the child bound to the key.
+	 *
+	 * @return An unmodifiable <code>Map</code> of the tags, or an empty map if the child has none.
+	 */
+	Map<String, String> getTags(final String key)
+	{
+		this._lock.readLock().lock();
+		try
+		{
+			final Entry entry = this._entries.get(key);
+			return ((entry == null) ? Collections.<String, String> emptyMap() : entry._tags);
+		}
+		finally
+		{
+			this._lock.readLock().unlock();
+		}
+	}
+
+	/*
+	 * Returns true once a child has been tagged.
+	 */
+	boolean isInUse()
+	{
+		return (this._inUse);
+	}
+
+	/*
+	 * Returns the posting of a tag.  Called by a query under the read lock; the posting must not be changed.
+	 */
+	CompactBitmap posting(final String name, final String value)
+	{
+		final CompactBitmap posting = this._postings.get(TagIndex.postingKey(name, value));
+		return ((posting == null) ? TagIndex.EMPTY : posting);
+	}
+
+	/*
+	 * Removes the tags of a child.
+	 *
+	 * @param key The key of the child.
+	 *
+	 * @param owner The child, or null to remove the entry only if its child has been reclaimed.
+	 */
+	void remove(final String key, final Object owner)
+	{
+		this._lock.writeLock().lock();
+		try
+		{
+			final Entry entry = this._entries.get(key);
+			if ((entry != null) && (entry._owner.get() == owner))
+			{
+				this.removeEntry(key);
+			}
+		}
+		finally
+		{
+			this._lock.writeLock().unlock();
+		}
+	}
+
+	/*
+	 * Moves the tags of a child to the child that replaced it under the same key.
+	 *
+	 * @param key The key of the children.
+	 *
+	 * @param owner The child that was replaced.
+	 *
+	 * @param replacement The child that replaced it.
+	 */
+	void replaceOwner(final String key, final Object owner, final Object replacement)
+	{
+		this._lock.writeLock().lock();
+		try
+		{
+			final Entry entry = this._entries.get(key);
+			if ((entry != null) && (entry._owner.get() == owner))
+			{
+				this._entries.put(key, new Entry(entry._id, replacement, entry._tags));
+			}
+		}
+		finally
+		{
+			this._lock.writeLock().unlock();
+		}
+	}
+
+	/*
+	 * Removes the entry of a key and releases its id.  Called under the write lock.
+	 */
+	private void removeEntry(final String key)
+	{
+		final Entry entry = this._entries.remove(key);
+		if (entry != null)
+		{
+			for (final Map.Entry<String, String> tag : entry._tags.entrySet())
+			{
+				final String postingKey = TagIndex.postingKey(tag.getKey(), tag.getValue());
+				final CompactBitmap posting = this._postings.get(postingKey);
+				posting.remove(entry._id);
+				if (posting.isEmpty())
+				{
+					this._postings.remove(postingKey);
+				}
+			}
+			this._keys[entry._id] = null;
+			if (this._freeCount == this._free.length)
+			{
+				this._free = Arrays.copyOf(this._free, this._freeCount * 2);
+			}
+			this._free[this._freeCount++] = entry._id;
+		}
+	}
+
+}
@@ -0,0 +1,190 @@
+/*****************************************************************************************
+ *
+ * Copyright 2019 Gregory Brown. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ *****************************************************************************************
+ */
+
+package com.gabstudios.manager.impl;
+
+import com.gabstudios.validate.Validate;
+
+/**
+ * <pre>
+ * A query over the tags of children, for ManagerImpl.find(query).  A query is built from tags and combined with and,
+ * or and andNot:
+ *
+ *   manager.find(TagQuery.tag("tenant", "a").and(TagQuery.tag("region", "eu")))
+ *
+ * Queries are immutable and may be reused.
+ * </pre>
+ *
+ * @author Gregory Brown (sysdevone)
+ */
+public abstract class TagQuery
+{
+	/*
+	 * A query combining two queries.
+	 */
+	private static final class Combined extends TagQuery
+	{
+		private final TagQuery	_left;
+
+		private final char		_operator;
+
+		private final TagQuery	_right;
+
+		Combined(final TagQuery left, final char operator, final TagQuery right)
+		{
+			this._left = left;
+			this._operator = operator;
+			this._right = right;
+		}
+
+		@Override
+		CompactBitmap evaluate(final TagIndex index)
+		{
+			final CompactBitmap left = this._left.evaluate(index);
+			final CompactBitmap right = this._right.evaluate(index);
+			switch (this._operator)
+			{
+				case '&':
+					return (CompactBitmap.and(left, right));
+				case '|':
+					return (CompactBitmap.or(left, right));
+				default:
+					return (CompactBitmap.andNot(left, right));
+			}
+		}
+
+		@Override
+		public String toString()
+		{
+			final String operator;
+			switch (this._operator)
+			{
+				case '&':
+					operator = " and ";
+					break;
+				case '|':
+					operator = " or ";
+					break;
+				default:
+					operator = " and not ";
+					break;
+			}
+			return ("(" + this._left + operator + this._right + ")");
+		}
+	}
+
+	/*
+	 * A query for the children with one tag.
+	 */
+	private static final class Tag extends TagQuery
+	{
+		private final String	_name;
+
+		private final String	_value;
+
+		Tag(final String name, final String value)
+		{
+			this._name = name;
+			this._value = value;
+		}
+
+		@Override
+		CompactBitmap evaluate(final TagIndex index)
+		{
+			return (index.posting(this._name, this._value));
+		}
+
+		@Override
+		public String toString()
+		{
+			return (this._name + "=" + this._value);
+		}
+	}
+
+	/**
+	 * Creates a query for the children tagged with the name and value.
+	 *
+	 * @param name
+	 *            A <code>String</code> instance. The name of the tag.
+	 * @param value
+	 *            A <code>String</code> instance. The value of the tag.
+	 *
+	 * @return A <code>TagQuery</code> instance.
+	 */
+	public static TagQuery tag(final String name, final String value)
+	{
+		Validate.defineString(name).testNotNullEmpty().throwValidationExceptionOnFail().validate();
+		Validate.defineObject(value).testNotNull().throwValidationExceptionOnFail().validate();
+		return (new Tag(name, value));
+	}
+
+	/*
+	 * Queries are only created through TagQuery.tag(name,value) and the combining methods.
+	 */
+	TagQuery()
+	{
+		// void
+	}
+
+	/**
+	 * Creates a query for the children that match both this query and the other.
+	 *
+	 * @param other
+	 *            A <code>TagQuery</code> instance.
+	 *
+	 * @return A <code>TagQuery</code> instance.
+	 */
+	public TagQuery and(final TagQuery other)
+	{
+		Validate.defineObject(other).testNotNull().throwValidationExceptionOnFail().validate();
+		return (new Combined(this, '&', other));
+	}
+
+	/**
+	 * Creates a query for the children that match this query but not the other.
+	 *
+	 * @param other
+	 *            A <code>TagQuery</code> instance.
+	 *
+	 * @return A <code>TagQuery</code> instance.
+	 */
+	public TagQuery andNot(final TagQuery other)
+	{
+		Validate.defineObject(other).testNotNull().throwValidationExceptionOnFail().validate();
+		return (new Combined(this, '-', other));
+	}
+
+	/*
+	 * Evaluates the query to the ids of the matching children.  The result may be a posting of the index and must not
+	 * be changed.
+	 */
+	abstract CompactBitmap evaluate(TagIndex index);
+
+	/**
+	 * Creates a query for the children that match this query or the other.
+	 *
+	 * @param other
+	 *            A <code>TagQuery</code> instance.
+	 *
+	 * @return A <code>TagQuery</code> instance.
+	 */
+	public TagQuery or(final TagQuery other)
+	{
+		Validate.defineObject(other).testNotNull().throwValidationExceptionOnFail().validate();
+		return (new Combined(this, '|', other));
+	}
+
+}
@@ -0,0 +1,349 @@
+/*****************************************************************************************
+ *
+ * Copyright 2019 Gregory Brown. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ *****************************************************************************************
+ */
+
+package com.gabstudios.manager.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * <pre>
+ * A secondary index of the keys of a manager's children by their concrete class.
+ *
+ * A lookup by a concrete class reads one set of keys.  A lookup by an interface or superclass reads the sets of the
+ * indexed classes assignable to it; a manager holds few distinct classes, so the cost stays proportional to the
+ * number of matching children.
+ *
+ * The index is built from the child table on the first lookup, so a manager that never looks up its children by type
+ * does not keep it.  Once built, a key is added to and removed from the set of its class outside of the lock of the
+ * class's entry, so creates and closes of children of one class do not contend on a single lock.
+ *
+ * The index may briefly hold a key whose child has just been removed, so the caller checks each child it reads.
+ *
+ * A compact or off-heap child table answers the same lookups from the class id it stores with each child, so it keeps
+ * no index; see TypeIndex.ofTable(count,keys).
+ * </pre>
+ *
+ * @author Gregory Brown (sysdevone)
+ */
+class TypeIndex
+{
+	/*
+	 * A type index that keeps no keys of its own: the child table stores the class of each child when the child is
+	 * put, and a lookup reads the table.
+	 */
+	private static final class TableTypeIndex extends TypeIndex
+	{
+		private final ToIntFunction<Class<?>>			_count;
+		private final Function<Class<?>, List<String>>	_keys;
+
+		TableTypeIndex(final ToIntFunction<Class<?>> count, final Function<Class<?>, List<String>> keys)
+		{
+			this._count = count;
+			this._keys = keys;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see com.gabstudios.manager.impl.TypeIndex#add(java.lang.String, java.lang.Class)
+		 */
+		@Override
+		void add(final String key, final Class<?> type)
+		{
+			// void - the class is stored in the table.
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see com.gabstudios.manager.impl.TypeIndex#build(java.util.Map)
+		 */
+		@Override
+		void build(final Map<String, ?> children)
+		{
+			// void - the table is the index.
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see com.gabstudios.manager.impl.TypeIndex#clear()
+		 */
+		@Override
+		void clear()
+		{
+			// void - the classes are cleared with the table.
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see com.gabstudios.manager.impl.TypeIndex#count(java.lang.Class)
+		 */
+		@Override
+		int count(final Class<?> type)
+		{
+			return (this._count.applyAsInt(type));
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see com.gabstudios.manager.impl.TypeIndex#isInUse()
+		 */
+		@Override
+		boolean isInUse()
+		{
+			return (false);
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see com.gabstudios.manager.impl.TypeIndex#keys(java.lang.Class)
+		 */
+		@Override
+		List<String> keys(final Class<?> type)
+		{
+			return (this._keys.apply(type));
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see com.gabstudios.manager.impl.TypeIndex#release(java.lang.ClassLoader)
+		 */
+		@Override
+		void release(final ClassLoader loader)
+		{
+			// void - the table drops a class with its last child.
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see com.gabstudios.manager.impl.TypeIndex#remove(java.lang.String, java.lang.Class)
+		 */
+		@Override
+		void remove(final String key, final Class<?> type)
+		{
+			// void - the class is freed with the key.
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see com.gabstudios.manager.impl.TypeIndex#remove(java.lang.String)
+		 */
+		@Override
+		void remove(final String key)
+		{
+			// void - the class is freed with the key.
+		}
+	}
+
+	/*
+	 * Set once the index has been built.
+	 */
+	private volatile boolean					_built;
+
+	/*
+	 * Keeps the index from being built twice.
+	 */
+	private final Object						_buildLock	= new Object();
+
+	/*
+	 * Set when the index starts to be built, from when every add and remove is applied.
+	 */
+	private volatile boolean					_inUse;
+
+	/*
+	 * The keys of the children of each concrete class.  A set that becomes empty is kept, so a key is never added to
+	 * a set that was dropped; see TypeIndex.release(loader).
+	 */
+	private final Map<Class<?>, Set<String>>	_keys;
+
+	/*
+	 * Creates an empty index.
+	 */
+	TypeIndex()
+	{
+		this._keys = new ConcurrentHashMap<>();
+	}
+
+	/*
+	 * Returns a type index that keeps no keys and answers lookups from a child table that stores the class of each
+	 * child.
+	 *
+	 * @param count Returns the number of children of classes assignable to a type.
+	 *
+	 * @param keys Returns the keys of the children of classes assignable to a type.
+	 */
+	static TypeIndex ofTable(final ToIntFunction<Class<?>> count, final Function<Class<?>, List<String>> keys)
+	{
+		return (new TableTypeIndex(count, keys));
+	}
+
+	/*
+	 * Indexes a key under the concrete class of its child.  Called after the child is in the child table.
+	 */
+	void add(final String key, final Class<?> type)
+	{
+		if (this._inUse)
+		{
+			Set<String> keys = this._keys.get(type);
+			if (keys == null)
+			{
+				keys = this._keys.computeIfAbsent(type, ignored -> ConcurrentHashMap.newKeySet());
+			}
+			keys.add(key);
+		}
+	}
+
+	/*
+	 * Builds the index from the child table, if it has not been built.  Called before every lookup.  Adds and removes
+	 * are applied from the moment the build starts, and each key read from the table is checked again once it is
+	 * indexed, so a child removed while the index is built is not left in it.
+	 *
+	 * @param children The child table.
+	 */
+	void build(final Map<String, ?> children)
+	{
+		if (!this._built)
+		{
+			synchronized (this._buildLock)
+			{
+				if (!this._built)
+				{
+					this._inUse = true;
+					for (final Map.Entry<String, ?> entry : children.entrySet())
+					{
+						final Class<?> type = entry.getValue().getClass();
+						this.add(entry.getKey(), type);
+						final Object current = children.get(entry.getKey());
+						if ((current == null) || (current.getClass() != type))
+						{
+							this.remove(entry.getKey(), type);
+						}
+					}
+					this._built = true;
+				}
+			}
+		}
+	}
+
+	/*
+	 * Removes every key.
+	 */
+	void clear()
+	{
+		this._keys.clear();
+	}
+
+	/*
+	 * Returns the number of keys indexed under classes assignable to the type.
+	 */
+	int count(final Class<?> type)
+	{
+		int count = 0;
+		for (final Map.Entry<Class<?>, Set<String>> entry : this._keys.entrySet())
+		{
+			if (type.isAssignableFrom(entry.getKey()))
+			{
+				count += entry.getValue().size();
+			}
+		}
+		return (count);
+	}
+
+	/*
+	 * Returns true once adds and removes have to be applied, so a caller can skip the work of finding what to add or
+	 * remove until then.
+	 */
+	boolean isInUse()
+	{
+		return (this._inUse);
+	}
+
+	/*
+	 * Returns the keys indexed under classes assignable to the type.
+	 */
+	List<String> keys(final Class<?> type)
+	{
+		final Set<String> exact = this._keys.get(type);
+		final List<String> keys = new ArrayList<>((exact == null) ? 0 : exact.size());
+		for (final Map.Entry<Class<?>, Set<String>> entry : this._keys.entrySet())
+		{
+			if (type.isAssignableFrom(entry.getKey()))
+			{
+				keys.addAll(entry.getValue());
+			}
+		}
+		return (keys);
+	}
+
+	/*
+	 * Drops the empty sets of the classes of a class loader that no child uses any more, so the index does not keep
+	 * a reloaded version from being unloaded.
+	 */
+	void release(final ClassLoader loader)
+	{
+		for (final Map.Entry<Class<?>, Set<String>> entry : this._keys.entrySet())
+		{
+			if ((entry.getKey().getClassLoader() == loader) && entry.getValue().isEmpty())
+			{
+				this._keys.remove(entry.getKey(), entry.getValue());
+			}
+		}
+	}
+
+	/*
+	 * Removes a key from the index of a concrete class.  Called after the child is removed from the child table; if
+	 * the key may have been bound again to a child of the same class, the caller adds it back.
+	 */
+	void remove(final String key, final Class<?> type)
+	{
+		if (this._inUse)
+		{
+			final Set<String> keys = this._keys.get(type);
+			if (keys != null)
+			{
+				keys.remove(key);
+			}
+		}
+	}
+
+	/*
+	 * Removes a key whose class is not known from the index.
+	 */
+	void remove(final String key)
+	{
+		if (this._inUse)
+		{
+			for (final Set<String> keys : this._keys.values())
+			{
+				keys.remove(key);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,40 @@
+/*****************************************************************************************
+ *
+ * Copyright 2019 Gregory Brown. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ *****************************************************************************************
+ */
+
+package com.gabstudios.manager.impl;
+
+/**
+ * What the health checks of a <code>ManagerImpl</code> do with a child whose check fails.
+ *
+ * @author Gregory Brown (sysdevone)
+ */
+public enum UnhealthyAction
+{
+	/**
+	 * The child is only marked unhealthy.
+	 */
+	NONE,
+
+	/**
+	 * The child is closed.
+	 */
+	CLOSE,
+
+	/**
+	 * The child is closed and a new instance of its class is created under the same key.
+	 */
+	RECREATE
+}
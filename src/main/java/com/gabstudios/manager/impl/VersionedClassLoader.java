@@ -0,0 +1,190 @@
+/*****************************************************************************************
+ *
+ * Copyright 2019 Gregory Brown. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ *****************************************************************************************
+ */
+
+package com.gabstudios.manager.impl;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import com.gabstudios.manager.Manageable;
+import com.gabstudios.manager.ManagerException;
+
+/**
+ * <pre>
+ * A child-first class loader over one version of a jar of <code>Manageable</code> implementations, used by
+ * ManagerImpl.reload(jar,batchSize).  A class in the jar is loaded from the jar even if the application class path
+ * has another version of it.  The JDK and the manager API are always loaded from the parent, so the children of
+ * every version share the <code>Manageable</code> interface and ManageableImpl with the manager; implementations in
+ * those packages can not be reloaded.
+ *
+ * The instantiator of each class is cached by the loader, so creating a child costs a map lookup and a constructor
+ * call, and the cache goes away with the loader when a newer version replaces it.
+ * </pre>
+ *
+ * @author Gregory Brown (sysdevone)
+ */
+final class VersionedClassLoader extends URLClassLoader
+{
+	static
+	{
+		ClassLoader.registerAsParallelCapable();
+	}
+
+	/*
+	 * The packages always loaded from the parent.
+	 */
+	private static final String[]											SHARED_PACKAGES	= { "java.", "javax.",
+	        "jdk.", "sun.", "com.sun.", "com.gabstudios.manager.", "com.gabstudios.validate." };
+
+	/*
+	 * Returns a URL for the jar.
+	 */
+	private static URL toURL(final Path jar)
+	{
+		try
+		{
+			return (jar.toUri().toURL());
+		}
+		catch (final MalformedURLException e)
+		{
+			throw (new ManagerException("Unable to read the jar - " + jar, e));
+		}
+	}
+
+	/*
+	 * The instantiator of each class name asked for, or an empty Optional if the jar does not have the class.
+	 */
+	private final Map<String, Optional<Supplier<? extends Manageable>>>	_instantiators	= new ConcurrentHashMap<>();
+
+	/*
+	 * @param jar The jar of this version.
+	 *
+	 * @param parent The <code>ClassLoader</code> of the manager.
+	 */
+	VersionedClassLoader(final Path jar, final ClassLoader parent)
+	{
+		super(new URL[] { VersionedClassLoader.toURL(jar) }, parent);
+	}
+
+	/*
+	 * Returns an instantiator for the class name, or null if the class is not in this version's jar.
+	 *
+	 * @throws ManagerException if the class is in the jar but can not be instantiated.
+	 */
+	Supplier<? extends Manageable> instantiator(final String className)
+	{
+		return (this._instantiators.computeIfAbsent(className, this::newInstantiator).orElse(null));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.ClassLoader#loadClass(java.lang.String, boolean)
+	 */
+	@Override
+	protected Class<?> loadClass(final String name, final boolean resolve) throws ClassNotFoundException
+	{
+		synchronized (this.getClassLoadingLock(name))
+		{
+			Class<?> clazz = this.findLoadedClass(name);
+			if ((clazz == null) && !VersionedClassLoader.isShared(name))
+			{
+				try
+				{
+					clazz = this.findClass(name);
+				}
+				catch (final ClassNotFoundException e)
+				{
+					// not in the jar, so the parent is asked.
+				}
+			}
+			if (clazz == null)
+			{
+				return (super.loadClass(name, resolve));
+			}
+			if (resolve)
+			{
+				this.resolveClass(clazz);
+			}
+			return (clazz);
+		}
+	}
+
+	/*
+	 * Returns true if the class is always loaded from the parent.
+	 */
+	private static boolean isShared(final String name)
+	{
+		for (final String prefix : VersionedClassLoader.SHARED_PACKAGES)
+		{
+			if (name.startsWith(prefix))
+			{
+				return (true);
+			}
+		}
+		return (false);
+	}
+
+	/*
+	 * Looks up the no argument constructor of a class in the jar.
+	 */
+	private Optional<Supplier<? extends Manageable>> newInstantiator(final String className)
+	{
+		if (VersionedClassLoader.isShared(className)
+		        || (this.findResource(className.replace('.', '/') + ".class") == null))
+		{
+			return (Optional.empty());
+		}
+
+		final Constructor<?> constructor;
+		try
+		{
+			final Class<?> clazz = Class.forName(className, false, this);
+			if (!Manageable.class.isAssignableFrom(clazz))
+			{
+				throw (new ManagerException("The class name is not a Manageable - " + className));
+			}
+			constructor = clazz.getDeclaredConstructor();
+		}
+		catch (final ClassNotFoundException | LinkageError e)
+		{
+			throw (new ManagerException("Unable to locate the class name - " + className, e));
+		}
+		catch (final NoSuchMethodException e)
+		{
+			throw (new ManagerException("Unable to instantiate the class name - " + className, e));
+		}
+
+		return (Optional.of(() -> {
+			try
+			{
+				return ((Manageable) constructor.newInstance());
+			}
+			catch (final InstantiationException | IllegalAccessException | InvocationTargetException e)
+			{
+				throw (new ManagerException("Unable to instantiate the class name - " + className, e));
+			}
+		}));
+	}
+}
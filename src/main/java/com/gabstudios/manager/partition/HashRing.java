@@ -0,0 +1,170 @@
+/*****************************************************************************************
+ *
+ * Copyright 2019 Gregory Brown. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ *****************************************************************************************
+ */
+
+package com.gabstudios.manager.partition;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * <pre>
+ * An immutable consistent hash ring.  Each node is placed on the ring at a number of virtual points, and a key is
+ * owned by the node of the first point at or after the hash of the key, wrapping around.  Adding or removing a node
+ * only changes the owner of the keys that fall on its points, about 1/n of the keys.
+ * </pre>
+ *
+ * @author Gregory Brown (sysdevone)
+ */
+final class HashRing
+{
+	/*
+	 * The nodes, in the order they were added.
+	 */
+	private final Set<String>			_nodes;
+
+	/*
+	 * The points of the nodes, by hash.
+	 */
+	private final TreeMap<Long, String>	_points;
+
+	/*
+	 * The number of points of each node.
+	 */
+	private final int					_virtualNodes;
+
+	/*
+	 * Creates an empty ring.
+	 */
+	HashRing(final int virtualNodes)
+	{
+		this(Collections.<String> emptySet(), new TreeMap<>(), virtualNodes);
+	}
+
+	/*
+	 * Creates a ring. The arguments are not copied.
+	 */
+	private HashRing(final Set<String> nodes, final TreeMap<Long, String> points, final int virtualNodes)
+	{
+		assert (virtualNodes > 0) : "HashRing() - the parameter 'virtualNodes' should be positive.";
+
+		this._nodes = Collections.unmodifiableSet(nodes);
+		this._points = points;
+		this._virtualNodes = virtualNodes;
+	}
+
+	/*
+	 * Hashes the characters of a value with 64 bit FNV-1a, then mixes the bits with the MurmurHash3 finalizer so
+	 * similar keys spread over the whole ring.
+	 */
+	static long hash(final String value)
+	{
+		long hash = 0xcbf29ce484222325L;
+		for (int i = 0; i < value.length(); i++)
+		{
+			hash ^= value.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+		hash ^= (hash >>> 33);
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= (hash >>> 33);
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= (hash >>> 33);
+		return (hash);
+	}
+
+	/*
+	 * Returns true if the node is in the ring.
+	 */
+	boolean contains(final String node)
+	{
+		return (this._nodes.contains(node));
+	}
+
+	/*
+	 * Returns the nodes, in the order they were added.
+	 */
+	Set<String> getNodes()
+	{
+		return (this._nodes);
+	}
+
+	/*
+	 * Returns true if the ring has no nodes.
+	 */
+	boolean isEmpty()
+	{
+		return (this._nodes.isEmpty());
+	}
+
+	/*
+	 * Returns the node that owns the key, or null if the ring is empty.
+	 */
+	String owner(final String key)
+	{
+		if (this._points.isEmpty())
+		{
+			return (null);
+		}
+		final Map.Entry<Long, String> point = this._points.ceilingEntry(HashRing.hash(key));
+		return ((point == null) ? this._points.firstEntry().getValue() : point.getValue());
+	}
+
+	/*
+	 * Returns a ring with the node added.
+	 */
+	HashRing with(final String node)
+	{
+		assert (!this.contains(node)) : "with() - the node is already in the ring.";
+
+		final Set<String> nodes = new LinkedHashSet<>(this._nodes);
+		nodes.add(node);
+		final TreeMap<Long, String> points = new TreeMap<>(this._points);
+		for (int i = 0; i < this._virtualNodes; i++)
+		{
+			// a point that collides with another node's is skipped; the ring stays the same whatever the order.
+			final long point = HashRing.hash(node + "#" + i);
+			final String existing = points.get(point);
+			if ((existing == null) || (existing.compareTo(node) > 0))
+			{
+				points.put(point, node);
+			}
+		}
+		return (new HashRing(nodes, points, this._virtualNodes));
+	}
+
+	/*
+	 * Returns a ring with the node removed.
+	 */
+	HashRing without(final String node)
+	{
+		assert (this.contains(node)) : "without() - the node is not in the ring.";
+
+		// rebuilt, so a point the node took from another node on a collision goes back to it.
+		HashRing ring = new HashRing(this._virtualNodes);
+		for (final String other : this._nodes)
+		{
+			if (!other.equals(node))
+			{
+				ring = ring.with(other);
+			}
+		}
+		return (ring);
+	}
+
+}
@@ -0,0 +1,200 @@
+/*****************************************************************************************
+ *
+ * Copyright 2019 Gregory Brown. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ *****************************************************************************************
+ */
+
+package com.gabstudios.manager.partition;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import com.gabstudios.manager.Manageable;
+import com.gabstudios.manager.ManageableExistsException;
+import com.gabstudios.manager.Manager;
+import com.gabstudios.manager.ManagerException;
+import com.gabstudios.manager.impl.ManagerImpl;
+import com.gabstudios.validate.Validate;
+
+/**
+ * A <code>PartitionTransport</code> whose nodes are managers in this JVM, called directly.
+ *
+ * @author Gregory Brown (sysdevone)
+ *
+ * @param <C>
+ *            The type of the children of the nodes.
+ */
+public class InProcessTransport<C extends Manageable> implements PartitionTransport<C>
+{
+	/*
+	 * Creates the manager of a node.
+	 */
+	private final Supplier<? extends Manager<C>>	_factory;
+
+	/*
+	 * The managers of the running nodes, by name.
+	 */
+	private final Map<String, Manager<C>>			_nodes	= new ConcurrentHashMap<>();
+
+	/**
+	 * Creates a transport whose nodes are each a <code>ManagerImpl</code>.
+	 */
+	public InProcessTransport()
+	{
+		this(ManagerImpl::new);
+	}
+
+	/**
+	 * Creates a transport.
+	 *
+	 * @param factory
+	 *            Creates the manager of each node.
+	 */
+	public InProcessTransport(final Supplier<? extends Manager<C>> factory)
+	{
+		Validate.defineObject(factory).testNotNull().throwValidationExceptionOnFail().validate();
+
+		this._factory = factory;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.gabstudios.manager.partition.PartitionTransport#close()
+	 */
+	@Override
+	public void close()
+	{
+		for (final String node : new ArrayList<>(this._nodes.keySet()))
+		{
+			this.close(node);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.gabstudios.manager.partition.PartitionTransport#close(java.lang.String)
+	 */
+	@Override
+	public void close(final String node)
+	{
+		final Manager<C> manager = this._nodes.remove(node);
+		if ((manager != null) && !manager.isClosed())
+		{
+			manager.close();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.gabstudios.manager.partition.PartitionTransport#closeChild(java.lang.String, java.lang.String)
+	 */
+	@Override
+	public C closeChild(final String node, final String key)
+	{
+		return (this.manager(node).closeChild(key));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.gabstudios.manager.partition.PartitionTransport#containsChild(java.lang.String, java.lang.String)
+	 */
+	@Override
+	public boolean containsChild(final String node, final String key)
+	{
+		return (this.manager(node).containsChild(key));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.gabstudios.manager.partition.PartitionTransport#create(java.lang.String, java.lang.String,
+	 * java.lang.String)
+	 */
+	@Override
+	public C create(final String node, final String key, final String className) throws ManageableExistsException
+	{
+		return (this.manager(node).create(key, className));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.gabstudios.manager.partition.PartitionTransport#get(java.lang.String, java.lang.String)
+	 */
+	@Override
+	public C get(final String node, final String key)
+	{
+		return (this.manager(node).get(key));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.gabstudios.manager.partition.PartitionTransport#getChildCount(java.lang.String)
+	 */
+	@Override
+	public int getChildCount(final String node)
+	{
+		return (this.manager(node).getChildCount());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.gabstudios.manager.partition.PartitionTransport#getKeys(java.lang.String)
+	 */
+	@Override
+	public Set<String> getKeys(final String node)
+	{
+		return (this.manager(node).getKeys());
+	}
+
+	/*
+	 * Returns the manager of a running node.
+	 */
+	private Manager<C> manager(final String node)
+	{
+		final Manager<C> manager = this._nodes.get(node);
+		if (manager == null)
+		{
+			throw (new ManagerException("The node is not running - " + node));
+		}
+		return (manager);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.gabstudios.manager.partition.PartitionTransport#open(java.lang.String)
+	 */
+	@Override
+	public void open(final String node)
+	{
+		Validate.defineString(node).testNotNullEmpty().throwValidationExceptionOnFail().validate();
+
+		final Manager<C> manager = this._factory.get();
+		if (this._nodes.putIfAbsent(node, manager) != null)
+		{
+			manager.close();
+			throw (new ManagerException("The node is already running - " + node));
+		}
+	}
+
+}
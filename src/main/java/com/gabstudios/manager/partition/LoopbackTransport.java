@@ -0,0 +1,549 @@
+/*****************************************************************************************
+ *
+ * Copyright 2019 Gregory Brown. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ *****************************************************************************************
+ */
+
+package com.gabstudios.manager.partition;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import com.gabstudios.manager.Manageable;
+import com.gabstudios.manager.ManageableExistsException;
+import com.gabstudios.manager.Manager;
+import com.gabstudios.manager.ManagerClosedException;
+import com.gabstudios.manager.ManagerException;
+import com.gabstudios.manager.impl.ManagerImpl;
+import com.gabstudios.validate.Validate;
+
+/**
+ * <pre>
+ * A <code>PartitionTransport</code> that carries every call over a socket on the loopback interface, so a
+ * partitioned manager can be tested on one machine with the framing and latency of a network in the path.
+ *
+ * Each node is a manager served on its own port by a daemon thread per connection.  A request is an operation byte,
+ * the key and, for a create, the class name.  A reply is a status byte followed by the result.  The nodes run in
+ * this JVM, so a child is not serialized: the node registers it under a handle, the handle crosses the socket and
+ * the caller takes the child from the handle table.  A transport to another process would return a stub instead.
+ *
+ * Calls to one node share one connection and are made one at a time.
+ * </pre>
+ *
+ * @author Gregory Brown (sysdevone)
+ *
+ * @param <C>
+ *            The type of the children of the nodes.
+ */
+public class LoopbackTransport<C extends Manageable> implements PartitionTransport<C>
+{
+	/*
+	 * A running node: its manager, the socket it is served on and the client connection to it.
+	 */
+	private static final class Node<C extends Manageable>
+	{
+		private final Socket			_client;
+		private final DataInputStream	_in;
+		private final Manager<C>		_manager;
+		private final DataOutputStream	_out;
+		private final ServerSocket		_server;
+
+		Node(final Manager<C> manager, final ServerSocket server, final Socket client) throws IOException
+		{
+			this._manager = manager;
+			this._server = server;
+			this._client = client;
+			this._in = new DataInputStream(new BufferedInputStream(client.getInputStream()));
+			this._out = new DataOutputStream(new BufferedOutputStream(client.getOutputStream()));
+		}
+	}
+
+	/*
+	 * Reads the result that follows a status of OK.
+	 */
+	private interface Reply<T>
+	{
+		T read(DataInputStream in) throws IOException;
+	}
+
+	/*
+	 * The operations.
+	 */
+	private static final byte	CREATE		= 1;
+	private static final byte	GET			= 2;
+	private static final byte	CONTAINS	= 3;
+	private static final byte	CLOSE_CHILD	= 4;
+	private static final byte	KEYS		= 5;
+	private static final byte	COUNT		= 6;
+
+	/*
+	 * The statuses of a reply.
+	 */
+	private static final byte	OK			= 0;
+	private static final byte	EXISTS		= 1;
+	private static final byte	CLOSED		= 2;
+	private static final byte	ERROR		= 3;
+
+	/*
+	 * Creates the manager of a node.
+	 */
+	private final Supplier<? extends Manager<C>>	_factory;
+
+	/*
+	 * The children returned by the nodes and not yet taken by a caller, by handle.
+	 */
+	private final Map<Long, C>						_handles	= new ConcurrentHashMap<>();
+
+	/*
+	 * The last handle given out.
+	 */
+	private final AtomicLong						_lastHandle	= new AtomicLong();
+
+	/*
+	 * The running nodes, by name.
+	 */
+	private final Map<String, Node<C>>				_nodes		= new ConcurrentHashMap<>();
+
+	/**
+	 * Creates a transport whose nodes are each a <code>ManagerImpl</code>.
+	 */
+	public LoopbackTransport()
+	{
+		this(ManagerImpl::new);
+	}
+
+	/**
+	 * Creates a transport.
+	 *
+	 * @param factory
+	 *            Creates the manager of each node.
+	 */
+	public LoopbackTransport(final Supplier<? extends Manager<C>> factory)
+	{
+		Validate.defineObject(factory).testNotNull().throwValidationExceptionOnFail().validate();
+
+		this._factory = factory;
+	}
+
+	/*
+	 * Closes quietly.
+	 */
+	private static void closeQuietly(final Closeable closeable)
+	{
+		try
+		{
+			closeable.close();
+		}
+		catch (final IOException e)
+		{
+			// void - nothing more can be done.
+		}
+	}
+
+	/*
+	 * Makes a call on a node and reads the reply.
+	 *
+	 * @throws ManageableExistsException if the node replied that the key is already bound.
+	 */
+	private <T> T call(final String node, final byte operation, final String key, final String className,
+	        final Reply<T> reply) throws ManageableExistsException
+	{
+		final Node<C> running = this._nodes.get(node);
+		if (running == null)
+		{
+			throw (new ManagerException("The node is not running - " + node));
+		}
+
+		synchronized (running)
+		{
+			try
+			{
+				running._out.writeByte(operation);
+				if (key != null)
+				{
+					running._out.writeUTF(key);
+				}
+				if (className != null)
+				{
+					running._out.writeUTF(className);
+				}
+				running._out.flush();
+
+				switch (running._in.readByte())
+				{
+					case OK:
+						return (reply.read(running._in));
+					case EXISTS:
+						throw (new ManageableExistsException("A child is already bound to the key - " + key));
+					case CLOSED:
+						throw (new ManagerClosedException("The node is closed - " + node));
+					default:
+						throw (new ManagerException(running._in.readUTF()));
+				}
+			}
+			catch (final IOException e)
+			{
+				throw (new ManagerException("The call to the node failed - " + node, e));
+			}
+		}
+	}
+
+	/*
+	 * Makes a call that can not reply that a key is bound.
+	 */
+	private <T> T callUnchecked(final String node, final byte operation, final String key, final Reply<T> reply)
+	{
+		try
+		{
+			return (this.call(node, operation, key, null, reply));
+		}
+		catch (final ManageableExistsException e)
+		{
+			throw (new ManagerException("Unexpected reply from the node - " + node, e));
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.gabstudios.manager.partition.PartitionTransport#close()
+	 */
+	@Override
+	public void close()
+	{
+		for (final String node : new ArrayList<>(this._nodes.keySet()))
+		{
+			this.close(node);
+		}
+		this._handles.clear();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.gabstudios.manager.partition.PartitionTransport#close(java.lang.String)
+	 */
+	@Override
+	public void close(final String node)
+	{
+		final Node<C> running = this._nodes.remove(node);
+		if (running != null)
+		{
+			synchronized (running)
+			{
+				LoopbackTransport.closeQuietly(running._client);
+			}
+			// the node's end of the connection reads the end of the stream and stops.
+			LoopbackTransport.closeQuietly(running._server);
+			if (!running._manager.isClosed())
+			{
+				running._manager.close();
+			}
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.gabstudios.manager.partition.PartitionTransport#closeChild(java.lang.String, java.lang.String)
+	 */
+	@Override
+	public C closeChild(final String node, final String key)
+	{
+		return (this.callUnchecked(node, LoopbackTransport.CLOSE_CHILD, key, in -> this.take(in.readLong())));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.gabstudios.manager.partition.PartitionTransport#containsChild(java.lang.String, java.lang.String)
+	 */
+	@Override
+	public boolean containsChild(final String node, final String key)
+	{
+		return (this.callUnchecked(node, LoopbackTransport.CONTAINS, key, in -> in.readBoolean()));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.gabstudios.manager.partition.PartitionTransport#create(java.lang.String, java.lang.String,
+	 * java.lang.String)
+	 */
+	@Override
+	public C create(final String node, final String key, final String className) throws ManageableExistsException
+	{
+		return (this.call(node, LoopbackTransport.CREATE, key, className, in -> this.take(in.readLong())));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.gabstudios.manager.partition.PartitionTransport#get(java.lang.String, java.lang.String)
+	 */
+	@Override
+	public C get(final String node, final String key)
+	{
+		return (this.callUnchecked(node, LoopbackTransport.GET, key, in -> this.take(in.readLong())));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.gabstudios.manager.partition.PartitionTransport#getChildCount(java.lang.String)
+	 */
+	@Override
+	public int getChildCount(final String node)
+	{
+		return (this.callUnchecked(node, LoopbackTransport.COUNT, null, in -> in.readInt()));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.gabstudios.manager.partition.PartitionTransport#getKeys(java.lang.String)
+	 */
+	@Override
+	public Set<String> getKeys(final String node)
+	{
+		return (this.callUnchecked(node, LoopbackTransport.KEYS, null, in -> {
+			final int count = in.readInt();
+			final Set<String> keys = new HashSet<>(count * 2);
+			for (int i = 0; i < count; i++)
+			{
+				keys.add(in.readUTF());
+			}
+			return (keys);
+		}));
+	}
+
+	/*
+	 * Registers a child under a new handle, or returns 0 for null.
+	 */
+	private long handle(final C child)
+	{
+		if (child == null)
+		{
+			return (0);
+		}
+		final long handle = this._lastHandle.incrementAndGet();
+		this._handles.put(handle, child);
+		return (handle);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.gabstudios.manager.partition.PartitionTransport#open(java.lang.String)
+	 */
+	@Override
+	public void open(final String node)
+	{
+		Validate.defineString(node).testNotNullEmpty().throwValidationExceptionOnFail().validate();
+
+		if (this._nodes.containsKey(node))
+		{
+			throw (new ManagerException("The node is already running - " + node));
+		}
+
+		final Manager<C> manager = this._factory.get();
+		ServerSocket server = null;
+		Socket client = null;
+		try
+		{
+			server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+			final ServerSocket listening = server;
+			final Thread acceptor = new Thread(() -> this.accept(node, listening, manager),
+			        "gab-manager-loopback-" + node);
+			acceptor.setDaemon(true);
+			acceptor.start();
+
+			client = new Socket(InetAddress.getLoopbackAddress(), server.getLocalPort());
+			client.setTcpNoDelay(true);
+			if (this._nodes.putIfAbsent(node, new Node<>(manager, server, client)) != null)
+			{
+				throw (new ManagerException("The node is already running - " + node));
+			}
+		}
+		catch (final IOException | RuntimeException e)
+		{
+			if (client != null)
+			{
+				LoopbackTransport.closeQuietly(client);
+			}
+			if (server != null)
+			{
+				LoopbackTransport.closeQuietly(server);
+			}
+			manager.close();
+			throw ((e instanceof RuntimeException) ? (RuntimeException) e
+			        : new ManagerException("Unable to start the node - " + node, e));
+		}
+	}
+
+	/*
+	 * Accepts connections to a node until its server socket is closed.
+	 */
+	private void accept(final String node, final ServerSocket server, final Manager<C> manager)
+	{
+		while (!server.isClosed())
+		{
+			try
+			{
+				final Socket socket = server.accept();
+				socket.setTcpNoDelay(true);
+				final Thread handler = new Thread(() -> this.serve(socket, manager),
+				        "gab-manager-loopback-" + node + "-" + socket.getPort());
+				handler.setDaemon(true);
+				handler.start();
+			}
+			catch (final IOException e)
+			{
+				// the server socket was closed.
+			}
+		}
+	}
+
+	/*
+	 * Serves the calls made on one connection until it is closed.
+	 */
+	private void serve(final Socket socket, final Manager<C> manager)
+	{
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+		        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream())))
+		{
+			while (true)
+			{
+				final byte operation = in.readByte();
+				final String key = ((operation == LoopbackTransport.KEYS) || (operation == LoopbackTransport.COUNT))
+				        ? null
+				        : in.readUTF();
+				final String className = (operation == LoopbackTransport.CREATE) ? in.readUTF() : null;
+				this.reply(out, manager, operation, key, className);
+				out.flush();
+			}
+		}
+		catch (final EOFException e)
+		{
+			// the caller closed the connection.
+		}
+		catch (final IOException e)
+		{
+			// the connection was closed while in use.
+		}
+		finally
+		{
+			LoopbackTransport.closeQuietly(socket);
+		}
+	}
+
+	/*
+	 * Runs a call on the manager of a node and writes the reply. The result is found before anything is written, so
+	 * a call that throws writes only its status.
+	 */
+	private void reply(final DataOutputStream out, final Manager<C> manager, final byte operation, final String key,
+	        final String className) throws IOException
+	{
+		try
+		{
+			switch (operation)
+			{
+				case CREATE:
+				{
+					final long handle = this.handle(manager.create(key, className));
+					out.writeByte(LoopbackTransport.OK);
+					out.writeLong(handle);
+					break;
+				}
+				case GET:
+				{
+					final long handle = this.handle(manager.get(key));
+					out.writeByte(LoopbackTransport.OK);
+					out.writeLong(handle);
+					break;
+				}
+				case CLOSE_CHILD:
+				{
+					final long handle = this.handle(manager.closeChild(key));
+					out.writeByte(LoopbackTransport.OK);
+					out.writeLong(handle);
+					break;
+				}
+				case CONTAINS:
+				{
+					final boolean contains = manager.containsChild(key);
+					out.writeByte(LoopbackTransport.OK);
+					out.writeBoolean(contains);
+					break;
+				}
+				case KEYS:
+				{
+					final Set<String> keys = manager.getKeys();
+					out.writeByte(LoopbackTransport.OK);
+					out.writeInt(keys.size());
+					for (final String each : keys)
+					{
+						out.writeUTF(each);
+					}
+					break;
+				}
+				case COUNT:
+				{
+					final int count = manager.getChildCount();
+					out.writeByte(LoopbackTransport.OK);
+					out.writeInt(count);
+					break;
+				}
+				default:
+					throw (new ManagerException("Unknown operation - " + operation));
+			}
+		}
+		catch (final ManageableExistsException e)
+		{
+			out.writeByte(LoopbackTransport.EXISTS);
+		}
+		catch (final ManagerClosedException e)
+		{
+			out.writeByte(LoopbackTransport.CLOSED);
+		}
+		catch (final RuntimeException e)
+		{
+			out.writeByte(LoopbackTransport.ERROR);
+			out.writeUTF(String.valueOf(e.getMessage()));
+		}
+	}
+
+	/*
+	 * Takes the child registered under a handle, or returns null for 0.
+	 */
+	private C take(final long handle)
+	{
+		return ((handle == 0) ? null : this._handles.remove(handle));
+	}
+
+}
@@ -0,0 +1,134 @@
+/*****************************************************************************************
+ *
+ * Copyright 2019 Gregory Brown. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ *****************************************************************************************
+ */
+
+package com.gabstudios.manager.partition;
+
+import java.util.Set;
+
+import com.gabstudios.manager.Manageable;
+import com.gabstudios.manager.ManageableExistsException;
+
+/**
+ * <pre>
+ * Carries the calls of a <code>PartitionedManager</code> to the manager of the node that owns a key.  A transport
+ * starts and stops the nodes, and each call names the node it is for.
+ *
+ * A call on a node that has closed throws ManagerClosedException; a call that could not be carried throws
+ * ManagerException.
+ * </pre>
+ *
+ * @author Gregory Brown (sysdevone)
+ *
+ * @param <C>
+ *            The type of the children of the nodes.
+ */
+public interface PartitionTransport<C extends Manageable>
+{
+	/**
+	 * Stops every node that is still running and releases the transport.
+	 */
+	public abstract void close();
+
+	/**
+	 * Stops a node and closes its children.
+	 *
+	 * @param node
+	 *            The name of the node.
+	 */
+	public abstract void close(String node);
+
+	/**
+	 * Closes the child bound to the key on the node.
+	 *
+	 * @param node
+	 *            The name of the node.
+	 * @param key
+	 *            The key of the child.
+	 *
+	 * @return The child that was closed, or null if no child is bound to the key.
+	 */
+	public abstract C closeChild(String node, String key);
+
+	/**
+	 * Returns true if a child is bound to the key on the node.
+	 *
+	 * @param node
+	 *            The name of the node.
+	 * @param key
+	 *            The key of the child.
+	 *
+	 * @return A <code>boolean</code> value.
+	 */
+	public abstract boolean containsChild(String node, String key);
+
+	/**
+	 * Creates a child on the node.
+	 *
+	 * @param node
+	 *            The name of the node.
+	 * @param key
+	 *            The key to bind to the new child.
+	 * @param className
+	 *            The fully qualified class name of the child.
+	 *
+	 * @return The child that was created.
+	 *
+	 * @throws ManageableExistsException
+	 *             Thrown when a child is already bound to the key on the node.
+	 */
+	public abstract C create(String node, String key, String className) throws ManageableExistsException;
+
+	/**
+	 * Gets the child bound to the key on the node.
+	 *
+	 * @param node
+	 *            The name of the node.
+	 * @param key
+	 *            The key of the child.
+	 *
+	 * @return The child, or null if no child is bound to the key.
+	 */
+	public abstract C get(String node, String key);
+
+	/**
+	 * Returns the number of children on the node.
+	 *
+	 * @param node
+	 *            The name of the node.
+	 *
+	 * @return The number of children.
+	 */
+	public abstract int getChildCount(String node);
+
+	/**
+	 * Returns the keys of the children on the node.
+	 *
+	 * @param node
+	 *            The name of the node.
+	 *
+	 * @return A <code>Set</code> of keys.
+	 */
+	public abstract Set<String> getKeys(String node);
+
+	/**
+	 * Starts a node with no children.
+	 *
+	 * @param node
+	 *            The name of the node.
+	 */
+	public abstract void open(String node);
+
+}
@@ -0,0 +1,564 @@
+/*****************************************************************************************
+ *
+ * Copyright 2019 Gregory Brown. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ *****************************************************************************************
+ */
+
+package com.gabstudios.manager.partition;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.gabstudios.manager.Manageable;
+import com.gabstudios.manager.ManageableExistsException;
+import com.gabstudios.manager.Manager;
+import com.gabstudios.manager.ManagerClosedException;
+import com.gabstudios.manager.ManagerException;
+import com.gabstudios.manager.Snapshotable;
+import com.gabstudios.manager.impl.ManagerImpl;
+import com.gabstudios.validate.Validate;
+
+/**
+ * <pre>
+ * A manager that partitions its keys over several node managers with consistent hashing, and routes each call to
+ * the node that owns the key through a <code>PartitionTransport</code>.
+ *
+ * Each node is placed on a hash ring at a number of virtual points.  When a node is added with addNode(node) or
+ * removed with removeNode(node), only the keys whose owner changed are moved: each is created again, from its class
+ * name, on its new node, then closed on its old node.  Calls wait while the ring changes.
+ *
+ * A move replaces the instance: the child on the new node is a new object, and a reference to the old one is left
+ * holding a closed child.  The state of a child that implements Snapshotable is carried over with saveState() and
+ * restoreState(state); since a transport creates and initializes a child in one call, the state is restored just
+ * after the new child is initialized.  If a move fails the child is left on its old node, and the children already
+ * moved by the same addNode(node) or removeNode(node) are moved back before the failure is thrown, so every key
+ * stays where the unchanged ring routes it.
+ *
+ * A child is initialized by the manager of its node, so Manageable.getParent() returns that manager.
+ * </pre>
+ *
+ * @author Gregory Brown (sysdevone)
+ *
+ * @param <C>
+ *            The type of the children.
+ */
+public class PartitionedManager<C extends Manageable> implements Manager<C>
+{
+	/**
+	 * The number of points each node is placed at on the ring, unless another number is given.
+	 */
+	public static final int	DEFAULT_VIRTUAL_NODES	= 64;
+
+	/*
+	 * A flag to determine if the manager has been closed.
+	 */
+	private volatile boolean			_isClosed;
+
+	/*
+	 * Held to route a call, so the ring does not change under it.
+	 */
+	private final Lock					_readLock;
+
+	/*
+	 * The ring of nodes.  Replaced, never changed, while the write lock is held.
+	 */
+	private volatile HashRing			_ring;
+
+	/*
+	 * Carries the calls to the nodes.
+	 */
+	private final PartitionTransport<C>	_transport;
+
+	/*
+	 * Held to change the ring.
+	 */
+	private final Lock					_writeLock;
+
+	/**
+	 * Creates a manager with no nodes, placing each node at DEFAULT_VIRTUAL_NODES points.
+	 *
+	 * @param transport
+	 *            The <code>PartitionTransport</code> to the nodes.
+	 */
+	public PartitionedManager(final PartitionTransport<C> transport)
+	{
+		this(transport, PartitionedManager.DEFAULT_VIRTUAL_NODES);
+	}
+
+	/**
+	 * Creates a manager with no nodes.
+	 *
+	 * @param transport
+	 *            The <code>PartitionTransport</code> to the nodes.
+	 * @param virtualNodes
+	 *            The number of points each node is placed at on the ring. More points spread the keys more evenly.
+	 *
+	 * @throws IllegalArgumentException
+	 *             Thrown when the number of points is not positive.
+	 */
+	public PartitionedManager(final PartitionTransport<C> transport, final int virtualNodes)
+	{
+		Validate.defineObject(transport).testNotNull().throwValidationExceptionOnFail().validate();
+		if (virtualNodes < 1)
+		{
+			throw (new IllegalArgumentException("The number of virtual nodes must be positive - " + virtualNodes));
+		}
+
+		final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+		this._readLock = lock.readLock();
+		this._writeLock = lock.writeLock();
+		this._transport = transport;
+		this._ring = new HashRing(virtualNodes);
+		this._isClosed = false;
+	}
+
+	/**
+	 * Starts a node and moves to it the keys it now owns.
+	 *
+	 * @param node
+	 *            The name of the node.
+	 *
+	 * @return The number of children moved to the node.
+	 *
+	 * @throws ManagerClosedException
+	 *             Thrown when the manager is closed.
+	 * @throws ManagerException
+	 *             Thrown when the node is already in the ring.
+	 */
+	public int addNode(final String node)
+	{
+		Validate.defineString(node).testNotNullEmpty().throwValidationExceptionOnFail().validate();
+
+		this._writeLock.lock();
+		try
+		{
+			this.checkNotClosed();
+			if (this._ring.contains(node))
+			{
+				throw (new ManagerException("The node is already in the ring - " + node));
+			}
+
+			this._transport.open(node);
+			final HashRing ring = this._ring.with(node);
+			final List<String[]> moved = new ArrayList<>();
+			try
+			{
+				for (final String other : this._ring.getNodes())
+				{
+					for (final String key : this._transport.getKeys(other))
+					{
+						if (node.equals(ring.owner(key)) && this.move(key, other, node))
+						{
+							moved.add(new String[] { key, other, node });
+						}
+					}
+				}
+			}
+			catch (final RuntimeException e)
+			{
+				this.moveBack(moved, e);
+				this._transport.close(node);
+				throw (e);
+			}
+			this._ring = ring;
+			return (moved.size());
+		}
+		finally
+		{
+			this._writeLock.unlock();
+		}
+	}
+
+	/*
+	 * Throws ManagerClosedException if the manager is closed.
+	 */
+	private void checkNotClosed()
+	{
+		if (this._isClosed)
+		{
+			throw (new ManagerClosedException("This manager is closed and unable to process calls."));
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.gabstudios.manager.Manager#close()
+	 */
+	@Override
+	public void close()
+	{
+		this._writeLock.lock();
+		try
+		{
+			this.checkNotClosed();
+			this._isClosed = true;
+			this._transport.close();
+		}
+		finally
+		{
+			this._writeLock.unlock();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.gabstudios.manager.Manager#closeChild(java.lang.String)
+	 */
+	@Override
+	public C closeChild(final String key)
+	{
+		this._readLock.lock();
+		try
+		{
+			final String node = this.route(key);
+			return ((node == null) ? null : this._transport.closeChild(node, key));
+		}
+		finally
+		{
+			this._readLock.unlock();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.gabstudios.manager.Manager#containsChild(java.lang.String)
+	 */
+	@Override
+	public boolean containsChild(final String key)
+	{
+		this._readLock.lock();
+		try
+		{
+			final String node = this.route(key);
+			return ((node != null) && this._transport.containsChild(node, key));
+		}
+		finally
+		{
+			this._readLock.unlock();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.gabstudios.manager.Manager#create(java.lang.Class)
+	 */
+	@Override
+	public C create(final Class<C> clazz) throws ManageableExistsException
+	{
+		Validate.defineObject(clazz).testNotNull().throwValidationExceptionOnFail().validate();
+		return (this.create(clazz.getName(), clazz.getName()));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.gabstudios.manager.Manager#create(java.lang.String)
+	 */
+	@Override
+	public C create(final String className) throws ManageableExistsException
+	{
+		return (this.create(className, className));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.gabstudios.manager.Manager#create(java.lang.String, java.lang.Class)
+	 */
+	@Override
+	public C create(final String key, final Class<C> clazz) throws ManageableExistsException
+	{
+		Validate.defineObject(clazz).testNotNull().throwValidationExceptionOnFail().validate();
+		return (this.create(key, clazz.getName()));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.gabstudios.manager.Manager#create(java.lang.String, java.lang.String)
+	 */
+	@Override
+	public C create(final String key, final String className) throws ManageableExistsException
+	{
+		Validate.defineString(className).testNotNullEmpty().testMaxLength(ManagerImpl.CLASS_NAME_MAX_LENGTH)
+		        .throwValidationExceptionOnFail().validate();
+
+		this._readLock.lock();
+		try
+		{
+			final String node = this.route(key);
+			if (node == null)
+			{
+				throw (new ManagerException("The manager has no nodes to create the child on - " + key));
+			}
+			return (this._transport.create(node, key, className));
+		}
+		finally
+		{
+			this._readLock.unlock();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.gabstudios.manager.Manager#get(java.lang.String)
+	 */
+	@Override
+	public C get(final String key)
+	{
+		this._readLock.lock();
+		try
+		{
+			final String node = this.route(key);
+			return ((node == null) ? null : this._transport.get(node, key));
+		}
+		finally
+		{
+			this._readLock.unlock();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.gabstudios.manager.Manager#getChildCount()
+	 */
+	@Override
+	public int getChildCount()
+	{
+		this._readLock.lock();
+		try
+		{
+			this.checkNotClosed();
+			int count = 0;
+			for (final String node : this._ring.getNodes())
+			{
+				count += this._transport.getChildCount(node);
+			}
+			return (count);
+		}
+		finally
+		{
+			this._readLock.unlock();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.gabstudios.manager.Manager#getKeys()
+	 */
+	@Override
+	public Set<String> getKeys()
+	{
+		this._readLock.lock();
+		try
+		{
+			this.checkNotClosed();
+			final Set<String> keys = new HashSet<>();
+			for (final String node : this._ring.getNodes())
+			{
+				keys.addAll(this._transport.getKeys(node));
+			}
+			return (keys);
+		}
+		finally
+		{
+			this._readLock.unlock();
+		}
+	}
+
+	/**
+	 * Gets the node that owns the key.
+	 *
+	 * @param key
+	 *            A <code>String</code> instance. The key.
+	 *
+	 * @return The name of the node, or null if there are no nodes.
+	 *
+	 * @throws ManagerClosedException
+	 *             Thrown when the manager is closed.
+	 */
+	public String getNode(final String key)
+	{
+		this.checkNotClosed();
+		Validate.defineString(key).testNotNullEmpty().testMaxLength(ManagerImpl.KEY_MAX_LENGTH)
+		        .throwValidationExceptionOnFail().validate();
+		return (this._ring.owner(key));
+	}
+
+	/**
+	 * Gets the nodes in the ring.
+	 *
+	 * @return An unmodifiable <code>Set</code> of the names of the nodes, in the order they were added.
+	 */
+	public Set<String> getNodes()
+	{
+		return (this._ring.getNodes());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.gabstudios.manager.Manager#isClosed()
+	 */
+	@Override
+	public boolean isClosed()
+	{
+		return (this._isClosed);
+	}
+
+	/*
+	 * Moves a child from one node to another, with its state if it is Snapshotable.  The child is created on the new
+	 * node before it is closed on the old one, so a failure leaves it where it was.
+	 *
+	 * @return True if the child was moved, false if it was closed before it could be.
+	 */
+	private boolean move(final String key, final String from, final String to)
+	{
+		final C child = this._transport.get(from, key);
+		if (child == null)
+		{
+			return (false);
+		}
+		final byte[] state = (child instanceof Snapshotable) ? ((Snapshotable) child).saveState() : null;
+
+		final C moved;
+		try
+		{
+			moved = this._transport.create(to, key, child.getClass().getName());
+		}
+		catch (final ManageableExistsException e)
+		{
+			throw (new ManagerException("The key is bound on two nodes - " + key, e));
+		}
+		try
+		{
+			if (state != null)
+			{
+				((Snapshotable) moved).restoreState(ByteBuffer.wrap(state).asReadOnlyBuffer());
+			}
+			this._transport.closeChild(from, key);
+		}
+		catch (final RuntimeException e)
+		{
+			this._transport.closeChild(to, key);
+			throw (e);
+		}
+		return (true);
+	}
+
+	/*
+	 * Moves children back to the nodes they were moved from, after a later move failed.  A child that can not be
+	 * moved back is added to the failure as a suppressed exception.
+	 *
+	 * @param moved The key, old node and new node of each child moved, in the order they were moved.
+	 */
+	private void moveBack(final List<String[]> moved, final RuntimeException failure)
+	{
+		for (int i = moved.size() - 1; i >= 0; i--)
+		{
+			final String[] move = moved.get(i);
+			try
+			{
+				this.move(move[0], move[2], move[1]);
+			}
+			catch (final RuntimeException e)
+			{
+				failure.addSuppressed(e);
+			}
+		}
+	}
+
+	/**
+	 * Moves the keys of a node to the nodes that now own them, then stops the node.
+	 *
+	 * @param node
+	 *            The name of the node.
+	 *
+	 * @return The number of children moved off the node.
+	 *
+	 * @throws ManagerClosedException
+	 *             Thrown when the manager is closed.
+	 * @throws ManagerException
+	 *             Thrown when the node is not in the ring, or is the last node and still holds children.
+	 */
+	public int removeNode(final String node)
+	{
+		Validate.defineString(node).testNotNullEmpty().throwValidationExceptionOnFail().validate();
+
+		this._writeLock.lock();
+		try
+		{
+			this.checkNotClosed();
+			if (!this._ring.contains(node))
+			{
+				throw (new ManagerException("The node is not in the ring - " + node));
+			}
+
+			final HashRing ring = this._ring.without(node);
+			final Set<String> keys = this._transport.getKeys(node);
+			if (ring.isEmpty() && !keys.isEmpty())
+			{
+				throw (new ManagerException("The last node can not be removed while it holds children - " + node));
+			}
+
+			final List<String[]> moved = new ArrayList<>();
+			try
+			{
+				for (final String key : keys)
+				{
+					final String owner = ring.owner(key);
+					if (this.move(key, node, owner))
+					{
+						moved.add(new String[] { key, node, owner });
+					}
+				}
+			}
+			catch (final RuntimeException e)
+			{
+				this.moveBack(moved, e);
+				throw (e);
+			}
+			this._ring = ring;
+			this._transport.close(node);
+			return (moved.size());
+		}
+		finally
+		{
+			this._writeLock.unlock();
+		}
+	}
+
+	/*
+	 * Validates the key and returns the node that owns it, or null if there are no nodes.
+	 */
+	private String route(final String key)
+	{
+		this.checkNotClosed();
+		Validate.defineString(key).testNotNullEmpty().testMaxLength(ManagerImpl.KEY_MAX_LENGTH)
+		        .throwValidationExceptionOnFail().validate();
+		return (this._ring.owner(key));
+	}
+
+}
@@ -0,0 +1,356 @@
+/*****************************************************************************************
+ *
+ * Copyright 2019 Gregory Brown. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ *****************************************************************************************
+ */
+
+package com.gabstudios.manager.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+import com.gabstudios.manager.ManagedType;
+import com.gabstudios.manager.ManagedTypeRegistry;
+
+/**
+ * <pre>
+ * An annotation processor that generates a <code>ManagedTypeRegistry</code> for the classes marked with
+ * <code>ManagedType</code>, so the manager creates children through direct constructor references instead of
+ * Class.forName(className).
+ *
+ * For every package holding marked classes a <code>GeneratedManagedTypeRegistry</code> class is generated that maps
+ * the fully qualified class name, and the alias if there is one, to a constructor reference.  The processor also
+ * writes:
+ *
+ *   META-INF/services/com.gabstudios.manager.ManagedTypeRegistry          - so the generated registries are found.
+ *   META-INF/native-image/[dir]/reflect-config.json, resource-config.json - for native-image builds.
+ *
+ * The native-image directory defaults to 'gab-manager' and may be set with -Agabmanager.nativeImageDir=[dir].
+ * </pre>
+ *
+ * @author Gregory Brown (sysdevone)
+ */
+public class ManagedTypeProcessor extends AbstractProcessor
+{
+	/**
+	 * The simple name of the generated registry classes.
+	 */
+	public static final String	REGISTRY_CLASS_NAME		= "GeneratedManagedTypeRegistry";
+
+	/**
+	 * The option that sets the directory under META-INF/native-image for the native-image configuration.
+	 */
+	public static final String	NATIVE_IMAGE_DIR_OPTION	= "gabmanager.nativeImageDir";
+
+	/*
+	 * Aliases already registered and the class bound to each.
+	 */
+	private final Map<String, String>	_aliases		= new HashMap<>();
+
+	/*
+	 * The binary names of all the classes registered.
+	 */
+	private final List<String>			_classNames		= new ArrayList<>();
+
+	/*
+	 * The fully qualified names of the registries generated.
+	 */
+	private final List<String>			_registries		= new ArrayList<>();
+
+	/*
+	 * The current round of processing.
+	 */
+	private int							_round;
+
+	/*
+	 * Escapes a value for a Java or JSON string literal.
+	 */
+	private static String escape(final String value)
+	{
+		return (value.replace("\\", "\\\\").replace("\"", "\\\""));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see javax.annotation.processing.AbstractProcessor#getSupportedAnnotationTypes()
+	 */
+	@Override
+	public Set<String> getSupportedAnnotationTypes()
+	{
+		return (Collections.singleton(ManagedType.class.getName()));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see javax.annotation.processing.AbstractProcessor#getSupportedOptions()
+	 */
+	@Override
+	public Set<String> getSupportedOptions()
+	{
+		return (Collections.singleton(ManagedTypeProcessor.NATIVE_IMAGE_DIR_OPTION));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see javax.annotation.processing.AbstractProcessor#getSupportedSourceVersion()
+	 */
+	@Override
+	public SourceVersion getSupportedSourceVersion()
+	{
+		return (SourceVersion.latestSupported());
+	}
+
+	/*
+	 * Returns true if the class can be created through a constructor reference, otherwise an error is reported.
+	 */
+	private boolean isValid(final TypeElement type)
+	{
+		final TypeMirror manageable = this.processingEnv.getElementUtils()
+		        .getTypeElement("com.gabstudios.manager.Manageable").asType();
+
+		String error = null;
+		if (type.getKind() != ElementKind.CLASS)
+		{
+			error = "@ManagedType may only be used on a class.";
+		}
+		else if (!type.getModifiers().contains(Modifier.PUBLIC) || type.getModifiers().contains(Modifier.ABSTRACT))
+		{
+			error = "A @ManagedType class must be public and not abstract.";
+		}
+		else if ((type.getNestingKind().isNested()) && !type.getModifiers().contains(Modifier.STATIC))
+		{
+			error = "A nested @ManagedType class must be static.";
+		}
+		else if (!this.processingEnv.getTypeUtils().isAssignable(type.asType(),
+		        this.processingEnv.getTypeUtils().erasure(manageable)))
+		{
+			error = "A @ManagedType class must implement com.gabstudios.manager.Manageable.";
+		}
+		else
+		{
+			boolean hasConstructor = false;
+			for (final ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements()))
+			{
+				if (constructor.getParameters().isEmpty() && constructor.getModifiers().contains(Modifier.PUBLIC))
+				{
+					hasConstructor = true;
+				}
+			}
+			if (!hasConstructor)
+			{
+				error = "A @ManagedType class must have a public no argument constructor.";
+			}
+		}
+
+		if (error != null)
+		{
+			this.processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, error, type);
+		}
+		return (error == null);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see javax.annotation.processing.AbstractProcessor#process(java.util.Set,
+	 * javax.annotation.processing.RoundEnvironment)
+	 */
+	@Override
+	public boolean process(final Set<? extends TypeElement> annotations, final RoundEnvironment roundEnv)
+	{
+		this._round++;
+		if (roundEnv.processingOver())
+		{
+			if (!this._registries.isEmpty())
+			{
+				this.writeResources();
+			}
+			return (false);
+		}
+
+		// package name -> (name or alias -> source name of the class).
+		final Map<String, Map<String, String>> packages = new LinkedHashMap<>();
+		for (final Element element : roundEnv.getElementsAnnotatedWith(ManagedType.class))
+		{
+			final TypeElement type = (TypeElement) element;
+			if (this.isValid(type))
+			{
+				final String packageName = this.processingEnv.getElementUtils().getPackageOf(type).getQualifiedName()
+				        .toString();
+				final String className = this.processingEnv.getElementUtils().getBinaryName(type).toString();
+				final String sourceName = type.getQualifiedName().toString();
+
+				Map<String, String> types = packages.get(packageName);
+				if (types == null)
+				{
+					types = new LinkedHashMap<>();
+					packages.put(packageName, types);
+				}
+				types.put(className, sourceName);
+				this._classNames.add(className);
+
+				final String alias = type.getAnnotation(ManagedType.class).value();
+				if (!alias.isEmpty())
+				{
+					final String existing = this._aliases.put(alias, className);
+					if (existing != null)
+					{
+						this.processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+						        "The @ManagedType alias '" + alias + "' is already used by " + existing, type);
+					}
+					types.put(alias, sourceName);
+				}
+			}
+		}
+
+		for (final Map.Entry<String, Map<String, String>> entry : packages.entrySet())
+		{
+			this.writeRegistry(entry.getKey(), entry.getValue());
+		}
+		return (true);
+	}
+
+	/*
+	 * Writes the ServiceLoader file and the native-image configuration.
+	 */
+	private void writeResources()
+	{
+		String directory = this.processingEnv.getOptions().get(ManagedTypeProcessor.NATIVE_IMAGE_DIR_OPTION);
+		if ((directory == null) || directory.trim().isEmpty())
+		{
+			directory = "gab-manager";
+		}
+
+		try
+		{
+			final FileObject services = this.processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT,
+			        "", "META-INF/services/" + ManagedTypeRegistry.class.getName());
+			try (Writer writer = services.openWriter())
+			{
+				for (final String registry : this._registries)
+				{
+					writer.write(registry);
+					writer.write('\n');
+				}
+			}
+
+			// the reflection fallback needs the no argument constructors and ServiceLoader needs the registries.
+			final List<String> reflected = new ArrayList<>(this._classNames);
+			reflected.addAll(this._registries);
+			final FileObject reflectConfig = this.processingEnv.getFiler().createResource(
+			        StandardLocation.CLASS_OUTPUT, "", "META-INF/native-image/" + directory + "/reflect-config.json");
+			try (Writer writer = reflectConfig.openWriter())
+			{
+				writer.write("[\n");
+				for (int i = 0; i < reflected.size(); i++)
+				{
+					writer.write("  {\"name\": \"" + ManagedTypeProcessor.escape(reflected.get(i))
+					        + "\", \"methods\": [{\"name\": \"<init>\", \"parameterTypes\": []}]}");
+					writer.write((i < (reflected.size() - 1)) ? ",\n" : "\n");
+				}
+				writer.write("]\n");
+			}
+
+			final FileObject resourceConfig = this.processingEnv.getFiler().createResource(
+			        StandardLocation.CLASS_OUTPUT, "", "META-INF/native-image/" + directory + "/resource-config.json");
+			try (Writer writer = resourceConfig.openWriter())
+			{
+				writer.write("{\"resources\": {\"includes\": [{\"pattern\": \"\\\\QMETA-INF/services/"
+				        + ManagedTypeRegistry.class.getName() + "\\\\E\"}]}}\n");
+			}
+		}
+		catch (final IOException e)
+		{
+			this.processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+			        "Unable to write the managed type resources - " + e);
+		}
+	}
+
+	/*
+	 * Generates the registry class for one package.
+	 */
+	private void writeRegistry(final String packageName, final Map<String, String> types)
+	{
+		final String simpleName = ManagedTypeProcessor.REGISTRY_CLASS_NAME
+		        + ((this._round > 1) ? String.valueOf(this._round) : "");
+		final String className = packageName.isEmpty() ? simpleName : (packageName + "." + simpleName);
+
+		final List<Element> origins = new ArrayList<>();
+		for (final String sourceName : types.values())
+		{
+			origins.add(this.processingEnv.getElementUtils().getTypeElement(sourceName));
+		}
+		final PackageElement packageElement = this.processingEnv.getElementUtils().getPackageElement(packageName);
+		if (packageElement != null)
+		{
+			origins.add(packageElement);
+		}
+
+		try
+		{
+			final FileObject source = this.processingEnv.getFiler().createSourceFile(className,
+			        origins.toArray(new Element[origins.size()]));
+			try (Writer writer = source.openWriter())
+			{
+				if (!packageName.isEmpty())
+				{
+					writer.write("package " + packageName + ";\n\n");
+				}
+				writer.write("/**\n * Generated by " + ManagedTypeProcessor.class.getName() + ". Do not edit.\n */\n");
+				writer.write("public final class " + simpleName + " implements "
+				        + ManagedTypeRegistry.class.getName() + "\n{\n");
+				writer.write("    @Override\n");
+				writer.write("    public void registerTypes(final java.util.Map<String, "
+				        + "java.util.function.Supplier<? extends com.gabstudios.manager.Manageable>> types)\n    {\n");
+				for (final Map.Entry<String, String> type : types.entrySet())
+				{
+					writer.write("        types.put(\"" + ManagedTypeProcessor.escape(type.getKey()) + "\", "
+					        + type.getValue() + "::new);\n");
+				}
+				writer.write("    }\n}\n");
+			}
+			this._registries.add(className);
+		}
+		catch (final IOException e)
+		{
+			this.processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+			        "Unable to write the managed type registry " + className + " - " + e);
+		}
+	}
+
+}
@@ -0,0 +1,701 @@
+/*****************************************************************************************
+ *
+ * Copyright 2019 Gregory Brown. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ *****************************************************************************************
+ */
+
+package com.gabstudios.manager;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import org.junit.Assert;
+
+/**
+ * <pre>
+ * A stress harness for any <code>Manager</code> implementation.  Threads started together call create, get,
+ * containsChild and closeChild on a small set of keys in a random but seeded schedule, and every call is recorded
+ * with the time it was invoked and the time it returned.  The history is then checked for linearizability against
+ * a model where each key is either absent or bound to one child: there must be an order of the calls, consistent
+ * with the calls that did not overlap, in which every call returns what the model returns.
+ *
+ * Linearizability is checked per key, since the calls on different keys do not affect each other.  The check is the
+ * Wing and Gong search with the memoization of Lowe: at each step a call that was invoked before every remaining call
+ * returned is tried next, and a (calls done, state) pair that failed once is not searched again.
+ *
+ * runWithClose() also closes the manager while the calls are made and checks the close contract:
+ *
+ *   - the calls made before close() was called are linearizable, together with the creates and closes of a
+ *     child that overlapped close() and succeeded, since their effect may have been seen before it.
+ *   - the calls made after close() returned throw ManagerClosedException.
+ *   - every child that was created is closed, so none leak.
+ *   - closing the manager a second time throws ManagerClosedException.
+ *
+ * The harness fails with an AssertionError that holds the seed, so a failing schedule can be run again.
+ * </pre>
+ *
+ * @author Gregory Brown (sysdevone)
+ *
+ * @param <C>
+ *            The type of the children of the manager.
+ */
+public class ManagerStressHarness<C extends Manageable>
+{
+	/**
+	 * A call made on the manager and what it returned.
+	 */
+	public static final class Operation
+	{
+		/**
+		 * The result of a create that threw ManageableExistsException.
+		 */
+		public static final long	EXISTS	= -1;
+
+		/**
+		 * The result of a call that threw ManagerClosedException.
+		 */
+		public static final long	CLOSED	= -2;
+
+		/**
+		 * The calls that are made.
+		 */
+		public enum Type
+		{
+			CREATE, GET, CONTAINS, CLOSE_CHILD
+		}
+
+		private final Type		_type;
+		private final String	_key;
+		private final long		_invoke;
+		private final long		_response;
+		private final long		_result;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param type
+		 *            The call that was made.
+		 * @param key
+		 *            The key it was made with.
+		 * @param invoke
+		 *            The System.nanoTime() before the call.
+		 * @param response
+		 *            The System.nanoTime() after the call returned.
+		 * @param result
+		 *            The id of the child returned, 0 for null, 1 or 0 for containsChild, or EXISTS or CLOSED.
+		 */
+		public Operation(final Type type, final String key, final long invoke, final long response, final long result)
+		{
+			this._type = type;
+			this._key = key;
+			this._invoke = invoke;
+			this._response = response;
+			this._result = result;
+		}
+
+		/**
+		 * @return The System.nanoTime() before the call.
+		 */
+		public long getInvoke()
+		{
+			return (this._invoke);
+		}
+
+		/**
+		 * @return The key the call was made with.
+		 */
+		public String getKey()
+		{
+			return (this._key);
+		}
+
+		/**
+		 * @return The System.nanoTime() after the call returned.
+		 */
+		public long getResponse()
+		{
+			return (this._response);
+		}
+
+		/**
+		 * @return The result of the call.
+		 */
+		public long getResult()
+		{
+			return (this._result);
+		}
+
+		/**
+		 * @return The call that was made.
+		 */
+		public Type getType()
+		{
+			return (this._type);
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see java.lang.Object#toString()
+		 */
+		@Override
+		public String toString()
+		{
+			return (this._type + "(" + this._key + ")=" + this._result + " [" + this._invoke + ", " + this._response
+			        + "]");
+		}
+	}
+
+	/*
+	 * A state of the model that is not reachable.
+	 */
+	private static final long			INVALID	= Long.MIN_VALUE;
+
+	/*
+	 * Returns the state of a key after the call, or INVALID if the call could not have returned its result.
+	 */
+	private static long apply(final Operation operation, final long state)
+	{
+		final long result = operation.getResult();
+		switch (operation.getType())
+		{
+			case CREATE:
+				if (result == Operation.EXISTS)
+				{
+					return ((state != 0) ? state : ManagerStressHarness.INVALID);
+				}
+				return ((state == 0) ? result : ManagerStressHarness.INVALID);
+			case GET:
+				return ((result == state) ? state : ManagerStressHarness.INVALID);
+			case CONTAINS:
+				return ((result == ((state != 0) ? 1 : 0)) ? state : ManagerStressHarness.INVALID);
+			case CLOSE_CHILD:
+				return ((result == state) ? 0 : ManagerStressHarness.INVALID);
+			default:
+				throw (new IllegalArgumentException("Unknown operation - " + operation));
+		}
+	}
+
+	/**
+	 * Checks that a history of calls is linearizable. Calls that threw ManagerClosedException are ignored.
+	 *
+	 * @param history
+	 *            The calls made on a manager, on any number of keys, that started with no children.
+	 *
+	 * @return True if the history is linearizable.
+	 */
+	public static boolean isLinearizable(final Collection<Operation> history)
+	{
+		final Map<String, List<Operation>> keys = new HashMap<>();
+		for (final Operation operation : history)
+		{
+			if (operation.getResult() != Operation.CLOSED)
+			{
+				keys.computeIfAbsent(operation.getKey(), key -> new ArrayList<>()).add(operation);
+			}
+		}
+		for (final List<Operation> operations : keys.values())
+		{
+			if (!ManagerStressHarness.isLinearizableKey(operations))
+			{
+				return (false);
+			}
+		}
+		return (true);
+	}
+
+	/*
+	 * Searches for an order of the calls on one key, depth first, with a stack instead of recursion since the
+	 * histories are long.
+	 */
+	private static boolean isLinearizableKey(final List<Operation> history)
+	{
+		final Operation[] operations = history.toArray(new Operation[history.size()]);
+		Arrays.sort(operations, Comparator.comparingLong(Operation::getInvoke));
+
+		final Set<Map.Entry<BitSet, Long>> failed = new HashSet<>();
+		final List<Frame> stack = new ArrayList<>();
+		stack.add(new Frame(new BitSet(operations.length), 0, operations));
+		while (!stack.isEmpty())
+		{
+			final Frame frame = stack.get(stack.size() - 1);
+			if (frame._done.cardinality() == operations.length)
+			{
+				return (true);
+			}
+
+			boolean advanced = false;
+			while (frame._next < frame._candidates.length)
+			{
+				final int candidate = frame._candidates[frame._next++];
+				final long state = ManagerStressHarness.apply(operations[candidate], frame._state);
+				if (state != ManagerStressHarness.INVALID)
+				{
+					final BitSet done = (BitSet) frame._done.clone();
+					done.set(candidate);
+					if (!failed.contains(new AbstractMap.SimpleImmutableEntry<>(done, state)))
+					{
+						stack.add(new Frame(done, state, operations));
+						advanced = true;
+						break;
+					}
+				}
+			}
+			if (!advanced)
+			{
+				failed.add(new AbstractMap.SimpleImmutableEntry<>(frame._done, frame._state));
+				stack.remove(stack.size() - 1);
+			}
+		}
+		return (false);
+	}
+
+	/*
+	 * A step of the search: the calls done, the state they leave the key in and the calls that may come next.
+	 */
+	private static final class Frame
+	{
+		final BitSet	_done;
+		final long		_state;
+		final int[]		_candidates;
+		int				_next;
+
+		Frame(final BitSet done, final long state, final Operation[] operations)
+		{
+			this._done = done;
+			this._state = state;
+
+			// a call may come next if it was invoked before every call left returned.
+			final int[] candidates = new int[operations.length];
+			int count = 0;
+			long minResponse = Long.MAX_VALUE;
+			for (int i = done.nextClearBit(0); i < operations.length; i = done.nextClearBit(i + 1))
+			{
+				if (operations[i].getInvoke() > minResponse)
+				{
+					break;
+				}
+				minResponse = Math.min(minResponse, operations[i].getResponse());
+				candidates[count++] = i;
+			}
+			int kept = 0;
+			for (int i = 0; i < count; i++)
+			{
+				if (operations[candidates[i]].getInvoke() <= minResponse)
+				{
+					candidates[kept++] = candidates[i];
+				}
+			}
+			this._candidates = Arrays.copyOf(candidates, kept);
+		}
+	}
+
+	private final Supplier<? extends Manager<C>>	_factory;
+	private final String							_className;
+	private Predicate<? super C>					_isClosed	= ManagerStressHarness::isClosedChild;
+	private int										_threads	= 4;
+	private int										_operations	= 2000;
+	private int										_keys		= 8;
+	private long									_seed		= System.nanoTime();
+
+	/*
+	 * The ids given to the children, by identity.
+	 */
+	private final Map<C, Long>						_ids		= new IdentityHashMap<>();
+	private final AtomicLong						_nextId		= new AtomicLong();
+
+	/**
+	 * Constructor.
+	 *
+	 * @param factory
+	 *            Creates a new, empty manager for each run.
+	 * @param className
+	 *            The class name of the children to create.
+	 */
+	public ManagerStressHarness(final Supplier<? extends Manager<C>> factory, final String className)
+	{
+		this._factory = factory;
+		this._className = className;
+	}
+
+	/*
+	 * Returns true if getParent() of the child throws ManagerClosedException, as the children of ManageableImpl do.
+	 */
+	private static boolean isClosedChild(final Manageable child)
+	{
+		try
+		{
+			child.getParent();
+			return (false);
+		}
+		catch (final ManagerClosedException e)
+		{
+			return (true);
+		}
+	}
+
+	/*
+	 * Returns the id of the child, 0 for null.
+	 */
+	private long idOf(final C child)
+	{
+		if (child == null)
+		{
+			return (0);
+		}
+		synchronized (this._ids)
+		{
+			Long id = this._ids.get(child);
+			if (id == null)
+			{
+				id = this._nextId.incrementAndGet();
+				this._ids.put(child, id);
+			}
+			return (id);
+		}
+	}
+
+	/**
+	 * Sets the check for a closed child.
+	 *
+	 * @param isClosed
+	 *            Returns true if the child has been closed.
+	 *
+	 * @return This harness.
+	 */
+	public ManagerStressHarness<C> isClosed(final Predicate<? super C> isClosed)
+	{
+		this._isClosed = isClosed;
+		return (this);
+	}
+
+	/**
+	 * Sets the number of keys the calls are made on.
+	 *
+	 * @param keys
+	 *            The number of keys, fewer keys means more calls race on each.
+	 *
+	 * @return This harness.
+	 */
+	public ManagerStressHarness<C> keys(final int keys)
+	{
+		this._keys = keys;
+		return (this);
+	}
+
+	/**
+	 * Sets the number of calls each thread makes.
+	 *
+	 * @param operations
+	 *            The number of calls per thread.
+	 *
+	 * @return This harness.
+	 */
+	public ManagerStressHarness<C> operations(final int operations)
+	{
+		this._operations = operations;
+		return (this);
+	}
+
+	/**
+	 * Sets the seed of the schedules.
+	 *
+	 * @param seed
+	 *            The seed, each thread uses a <code>Random</code> seeded from it.
+	 *
+	 * @return This harness.
+	 */
+	public ManagerStressHarness<C> seed(final long seed)
+	{
+		this._seed = seed;
+		return (this);
+	}
+
+	/**
+	 * Sets the number of threads making calls.
+	 *
+	 * @param threads
+	 *            The number of threads.
+	 *
+	 * @return This harness.
+	 */
+	public ManagerStressHarness<C> threads(final int threads)
+	{
+		this._threads = threads;
+		return (this);
+	}
+
+	/*
+	 * Makes one random call and records it.
+	 */
+	private Operation call(final Manager<C> manager, final Random random)
+	{
+		final String key = "key" + random.nextInt(this._keys);
+		final int choice = random.nextInt(10);
+		final Operation.Type type = (choice < 3) ? Operation.Type.CREATE
+		        : (choice < 6) ? Operation.Type.GET
+		                : (choice < 8) ? Operation.Type.CONTAINS : Operation.Type.CLOSE_CHILD;
+
+		final long invoke = System.nanoTime();
+		long result;
+		try
+		{
+			switch (type)
+			{
+				case CREATE:
+					result = this.idOf(manager.create(key, this._className));
+					break;
+				case GET:
+					result = this.idOf(manager.get(key));
+					break;
+				case CONTAINS:
+					result = manager.containsChild(key) ? 1 : 0;
+					break;
+				default:
+					result = this.idOf(manager.closeChild(key));
+					break;
+			}
+		}
+		catch (final ManageableExistsException e)
+		{
+			result = Operation.EXISTS;
+		}
+		catch (final ManagerClosedException e)
+		{
+			result = Operation.CLOSED;
+		}
+		return (new Operation(type, key, invoke, System.nanoTime(), result));
+	}
+
+	/*
+	 * Runs the threads and returns the history of all their calls. The action, if any, runs on its own thread.
+	 */
+	private List<Operation> execute(final Manager<C> manager, final Runnable action)
+	{
+		final int parties = this._threads + ((action != null) ? 1 : 0);
+		final CyclicBarrier barrier = new CyclicBarrier(parties);
+		final List<List<Operation>> histories = Collections.synchronizedList(new ArrayList<>());
+		final List<Throwable> errors = Collections.synchronizedList(new ArrayList<>());
+		final List<Thread> threads = new ArrayList<>();
+
+		for (int i = 0; i < this._threads; i++)
+		{
+			final Random random = new Random(this._seed + i);
+			threads.add(new Thread(() -> {
+				final List<Operation> history = new ArrayList<>(this._operations);
+				try
+				{
+					barrier.await();
+					for (int j = 0; j < this._operations; j++)
+					{
+						history.add(this.call(manager, random));
+
+						// vary the interleaving.
+						final int pause = random.nextInt(64);
+						if (pause == 0)
+						{
+							LockSupport.parkNanos(random.nextInt(50_000));
+						}
+						else if (pause < 4)
+						{
+							Thread.yield();
+						}
+					}
+				}
+				catch (final Throwable e)
+				{
+					errors.add(e);
+				}
+				histories.add(history);
+			}, "stress-" + i));
+		}
+		if (action != null)
+		{
+			threads.add(new Thread(() -> {
+				try
+				{
+					barrier.await();
+					action.run();
+				}
+				catch (final Throwable e)
+				{
+					errors.add(e);
+				}
+			}, "stress-action"));
+		}
+
+		for (final Thread thread : threads)
+		{
+			thread.start();
+		}
+		for (final Thread thread : threads)
+		{
+			try
+			{
+				thread.join(TimeUnit.MINUTES.toMillis(1));
+			}
+			catch (final InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				throw (new AssertionError("Interrupted waiting for the stress threads."));
+			}
+			Assert.assertFalse(this.describe("A stress thread did not finish."), thread.isAlive());
+		}
+		if (!errors.isEmpty())
+		{
+			final AssertionError error = new AssertionError(this.describe("A call failed - " + errors.get(0)));
+			error.initCause(errors.get(0));
+			throw (error);
+		}
+
+		final List<Operation> history = new ArrayList<>();
+		for (final List<Operation> operations : histories)
+		{
+			history.addAll(operations);
+		}
+		return (history);
+	}
+
+	/*
+	 * Adds the seed to a failure message.
+	 */
+	private String describe(final String message)
+	{
+		return (message + " (seed=" + this._seed + ", threads=" + this._threads + ", operations=" + this._operations
+		        + ", keys=" + this._keys + ")");
+	}
+
+	/**
+	 * Makes the calls on a new manager and checks that they are linearizable. The manager is closed afterwards and
+	 * every child that was created must be closed.
+	 *
+	 * @return The history of the calls.
+	 */
+	public List<Operation> run()
+	{
+		this.reset();
+		final Manager<C> manager = this._factory.get();
+		final List<Operation> history = this.execute(manager, null);
+
+		for (final Operation operation : history)
+		{
+			Assert.assertNotEquals(this.describe("A call threw ManagerClosedException - " + operation), Operation.CLOSED,
+			        operation.getResult());
+		}
+		Assert.assertTrue(this.describe("The history is not linearizable."),
+		        ManagerStressHarness.isLinearizable(history));
+
+		manager.close();
+		this.assertAllClosed();
+		return (history);
+	}
+
+	/**
+	 * Makes the calls on a new manager while it is closed on another thread, and checks the close contract.
+	 *
+	 * @return The history of the calls.
+	 */
+	public List<Operation> runWithClose()
+	{
+		this.reset();
+		final Manager<C> manager = this._factory.get();
+		final long[] close = new long[2];
+		final Random random = new Random(this._seed - 1);
+		final List<Operation> history = this.execute(manager, () -> {
+			LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(random.nextInt(2000)));
+			close[0] = System.nanoTime();
+			manager.close();
+			close[1] = System.nanoTime();
+		});
+
+		final List<Operation> before = new ArrayList<>();
+		for (final Operation operation : history)
+		{
+			if (operation.getResponse() < close[0])
+			{
+				before.add(operation);
+			}
+			else if (operation.getInvoke() > close[1])
+			{
+				Assert.assertEquals(this.describe("A call after close() did not throw - " + operation), Operation.CLOSED,
+				        operation.getResult());
+			}
+			else if ((operation.getType() != Operation.Type.GET) && (operation.getType() != Operation.Type.CONTAINS)
+			        && (operation.getResult() > 0))
+			{
+				// overlapped close() but bound or unbound a child, which a call before close() may have seen.
+				before.add(operation);
+			}
+		}
+		Assert.assertTrue(this.describe("The history before close() is not linearizable."),
+		        ManagerStressHarness.isLinearizable(before));
+		Assert.assertTrue(this.describe("The manager is not closed."), manager.isClosed());
+
+		try
+		{
+			manager.close();
+			Assert.fail(this.describe("Closing the manager again did not throw."));
+		}
+		catch (final ManagerClosedException e)
+		{
+			// expected.
+		}
+		this.assertAllClosed();
+		return (history);
+	}
+
+	/*
+	 * Fails if a child that was seen is not closed.
+	 */
+	private void assertAllClosed()
+	{
+		synchronized (this._ids)
+		{
+			for (final Map.Entry<C, Long> entry : this._ids.entrySet())
+			{
+				Assert.assertTrue(this.describe("The child " + entry.getValue() + " was not closed."),
+				        this._isClosed.test(entry.getKey()));
+			}
+		}
+	}
+
+	/*
+	 * Forgets the children of the last run.
+	 */
+	private void reset()
+	{
+		synchronized (this._ids)
+		{
+			this._ids.clear();
+		}
+	}
+
+}
@@ -0,0 +1,137 @@
+/*****************************************************************************************
+ * 
+ * Copyright 2019 Gregory Brown. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ * 
+ ***************************************************************************************** 
+ */
+
+package com.gabstudios.manager.impl;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * 
+ * Test class for the <code>CompactBitmap</code>, checked against a <code>BitSet</code>.
+ * 
+ * @author Gregory Brown (sysdevone)
+ */
+public class CompactBitmapTest
+{
+
+	/*
+	 * Fills a bitmap and a bit set with the same random values.  A dense range makes bitmap containers and the rest
+	 * array containers.
+	 */
+	static CompactBitmap fill(final Random random, final BitSet expected, final int denseStart, final int denseLength)
+	{
+		final CompactBitmap bitmap = new CompactBitmap();
+		for (int i = 0; i < denseLength; i++)
+		{
+			if (random.nextInt(4) != 0)
+			{
+				bitmap.add(denseStart + i);
+				expected.set(denseStart + i);
+			}
+		}
+		for (int i = 0; i < 3000; i++)
+		{
+			final int value = random.nextInt(1 << 20);
+			bitmap.add(value);
+			expected.set(value);
+		}
+		return (bitmap);
+	}
+
+	/*
+	 * Asserts that the bitmap holds exactly the values of the bit set.
+	 */
+	static void assertSame(final BitSet expected, final CompactBitmap actual)
+	{
+		Assert.assertEquals(expected.cardinality(), actual.getCardinality());
+		final BitSet seen = new BitSet();
+		actual.forEach(value -> {
+			Assert.assertTrue("unexpected " + value, expected.get(value));
+			seen.set(value);
+		});
+		Assert.assertEquals(expected, seen);
+	}
+
+	@Test
+	public void testAddContainsRemove()
+	{
+		final CompactBitmap bitmap = new CompactBitmap();
+		Assert.assertTrue(bitmap.isEmpty());
+		Assert.assertTrue(bitmap.add(70000));
+		Assert.assertFalse(bitmap.add(70000));
+		Assert.assertTrue(bitmap.add(3));
+		Assert.assertTrue(bitmap.contains(3));
+		Assert.assertTrue(bitmap.contains(70000));
+		Assert.assertFalse(bitmap.contains(4));
+		Assert.assertTrue(bitmap.remove(3));
+		Assert.assertFalse(bitmap.remove(3));
+		Assert.assertTrue(bitmap.remove(70000));
+		Assert.assertTrue(bitmap.isEmpty());
+	}
+
+	@Test
+	public void testContainerConversion()
+	{
+		final CompactBitmap bitmap = new CompactBitmap();
+		final BitSet expected = new BitSet();
+		for (int i = 0; i < 10000; i++)
+		{
+			bitmap.add(i * 3);
+			expected.set(i * 3);
+		}
+		CompactBitmapTest.assertSame(expected, bitmap);
+		for (int i = 0; i < 9000; i++)
+		{
+			bitmap.remove(i * 3);
+			expected.clear(i * 3);
+		}
+		CompactBitmapTest.assertSame(expected, bitmap);
+	}
+
+	@Test
+	public void testOperations()
+	{
+		final Random random = new Random(42);
+		for (int round = 0; round < 20; round++)
+		{
+			final BitSet left = new BitSet();
+			final BitSet right = new BitSet();
+			final CompactBitmap a = CompactBitmapTest.fill(random, left, random.nextInt(1 << 18), 20000);
+			final CompactBitmap b = CompactBitmapTest.fill(random, right, random.nextInt(1 << 18), 20000);
+
+			final BitSet and = (BitSet) left.clone();
+			and.and(right);
+			CompactBitmapTest.assertSame(and, CompactBitmap.and(a, b));
+
+			final BitSet or = (BitSet) left.clone();
+			or.or(right);
+			CompactBitmapTest.assertSame(or, CompactBitmap.or(a, b));
+
+			final BitSet andNot = (BitSet) left.clone();
+			andNot.andNot(right);
+			CompactBitmapTest.assertSame(andNot, CompactBitmap.andNot(a, b));
+
+			// the operands are unchanged.
+			CompactBitmapTest.assertSame(left, a);
+			CompactBitmapTest.assertSame(right, b);
+		}
+	}
+
+}
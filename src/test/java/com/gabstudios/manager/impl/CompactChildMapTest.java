@@ -0,0 +1,301 @@
+/*****************************************************************************************
+ * 
+ * Copyright 2019 Gregory Brown. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ * 
+ ***************************************************************************************** 
+ */
+
+package com.gabstudios.manager.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.gabstudios.manager.Manageable;
+import com.gabstudios.manager.ManageableExistsException;
+import com.gabstudios.manager.ManagerStressHarness;
+
+/**
+ * 
+ * Test class for the compact child table.
+ * 
+ * @author Gregory Brown (sysdevone)
+ */
+public class CompactChildMapTest
+{
+
+	static final String	MOCK	= MockManageableImpl.class.getName();
+
+	@Test
+	public void testMapOperations()
+	{
+		final CompactChildMap<String> map = new CompactChildMap<>();
+		Assert.assertNull(map.putIfAbsent("key", "value"));
+		Assert.assertEquals("value", map.putIfAbsent("key", "other"));
+		Assert.assertEquals("value", map.get("key"));
+		Assert.assertTrue(map.containsKey("key"));
+		Assert.assertFalse(map.containsKey("missing"));
+		Assert.assertNull(map.get(Integer.valueOf(1)));
+		Assert.assertEquals(1, map.size());
+
+		Assert.assertFalse(map.replace("key", "other", "value"));
+		Assert.assertTrue(map.replace("key", "value", "other"));
+		Assert.assertEquals("other", map.replace("key", "value"));
+		Assert.assertNull(map.replace("missing", "value"));
+
+		Assert.assertEquals("value", map.computeIfPresent("key", (key, value) -> value));
+		Assert.assertNull(map.computeIfPresent("key", (key, value) -> null));
+		Assert.assertTrue(map.isEmpty());
+
+		map.put("a", "1");
+		Assert.assertFalse(map.remove("a", "2"));
+		Assert.assertTrue(map.remove("a", "1"));
+		map.put("b", "2");
+		Assert.assertEquals("2", map.remove("b"));
+		Assert.assertNull(map.remove("b"));
+
+		map.put("c", "3");
+		map.clear();
+		Assert.assertTrue(map.isEmpty());
+		Assert.assertNull(map.get("c"));
+	}
+
+	@Test
+	public void testUnicodeKeys()
+	{
+		final CompactChildMap<String> map = new CompactChildMap<>();
+		final String[] keys = { "plain", "caf\u00e9", "\u65e5\u672c\u8a9e", "emoji \ud83d\ude00", "lone \ud800 high",
+		        "lone \udc00 low", "\u0000nul", "" + (char) 0x7ff + (char) 0x800 + (char) 0xffff };
+		for (final String key : keys)
+		{
+			map.put(key, key);
+		}
+		for (final String key : keys)
+		{
+			Assert.assertEquals(key, map.get(key));
+		}
+		Assert.assertNull(map.get("caf\u00e8"));
+		Assert.assertNull(map.get("emoji \ud83d"));
+		Assert.assertNull(map.get("plai"));
+		Assert.assertNull(map.get("plainer"));
+
+		// the keys decode back to the same strings.
+		final Map<String, String> decoded = new HashMap<>();
+		map.forEach(decoded::put);
+		Assert.assertEquals(keys.length, decoded.size());
+		for (final Map.Entry<String, String> entry : decoded.entrySet())
+		{
+			Assert.assertEquals(entry.getKey(), entry.getValue());
+		}
+	}
+
+	@Test
+	public void testAgainstHashMap()
+	{
+		// removals shift keys back and many removals compact the slabs; the table must agree with a HashMap.
+		final CompactChildMap<Integer> map = new CompactChildMap<>();
+		final Map<String, Integer> model = new HashMap<>();
+		final Random random = new Random(42);
+		for (int i = 0; i < 200000; i++)
+		{
+			final String key = "key-" + random.nextInt(5000);
+			final int choice = random.nextInt(3);
+			if (choice == 0)
+			{
+				Assert.assertEquals(model.putIfAbsent(key, i), map.putIfAbsent(key, i));
+			}
+			else if (choice == 1)
+			{
+				Assert.assertEquals(model.remove(key), map.remove(key));
+			}
+			else
+			{
+				Assert.assertEquals(model.get(key), map.get(key));
+			}
+		}
+		Assert.assertEquals(model.size(), map.size());
+		Assert.assertEquals(model, new HashMap<>(map));
+	}
+
+	@Test
+	public void testTypes()
+	{
+		final CompactChildMap<Object> map = new CompactChildMap<>();
+		final TypeIndex types = map.typeIndex();
+		map.put("a", "string");
+		map.put("b", Integer.valueOf(1));
+		map.put("c", Long.valueOf(2));
+
+		Assert.assertEquals(1, types.count(String.class));
+		Assert.assertEquals(2, types.count(Number.class));
+		Assert.assertEquals(3, types.count(Object.class));
+		final List<String> numbers = new ArrayList<>(types.keys(Number.class));
+		numbers.sort(null);
+		Assert.assertEquals(Arrays.asList("b", "c"), numbers);
+
+		map.replace("a", Integer.valueOf(3));
+		Assert.assertEquals(0, types.count(String.class));
+		Assert.assertEquals(2, types.count(Integer.class));
+		map.remove("b");
+		Assert.assertEquals(1, types.count(Integer.class));
+
+		// the class ids follow the keys as removals shift them back and the table is rebuilt.
+		for (int i = 0; i < 20000; i++)
+		{
+			map.put("key-" + i, ((i % 2) == 0) ? (Object) ("value" + i) : (Object) Integer.valueOf(i));
+		}
+		for (int i = 0; i < 20000; i += 3)
+		{
+			map.remove("key-" + i);
+		}
+		int strings = 0;
+		for (final Object value : map.values())
+		{
+			strings += (value instanceof String) ? 1 : 0;
+		}
+		Assert.assertEquals(strings, types.count(String.class));
+		Assert.assertEquals(map.size() - strings, types.count(Number.class));
+		Assert.assertEquals(strings, types.keys(CharSequence.class).size());
+	}
+
+	@Test
+	public void testReadersDuringWrites() throws InterruptedException
+	{
+		final CompactChildMap<String> map = new CompactChildMap<>();
+		for (int i = 0; i < 1000; i++)
+		{
+			map.put("stable" + i, "stable" + i);
+		}
+
+		final AtomicReference<Throwable> failure = new AtomicReference<>();
+		final Thread writer = new Thread(() -> {
+			for (int i = 0; i < 50000; i++)
+			{
+				map.put("churn" + i, "churn");
+				map.remove("churn" + (i - 100));
+			}
+		});
+		final Thread reader = new Thread(() -> {
+			try
+			{
+				while (writer.isAlive())
+				{
+					for (int i = 0; i < 1000; i++)
+					{
+						Assert.assertEquals("stable" + i, map.get("stable" + i));
+					}
+				}
+			}
+			catch (final Throwable t)
+			{
+				failure.set(t);
+			}
+		});
+		writer.start();
+		reader.start();
+		writer.join();
+		reader.join();
+		Assert.assertNull(String.valueOf(failure.get()), failure.get());
+	}
+
+	@Test
+	public void testBytesPerEntry()
+	{
+		final CompactChildMap<Object> map = new CompactChildMap<>();
+		final Object value = new Object();
+		for (int i = 0; i < 100000; i++)
+		{
+			map.put("tenant-" + i, value);
+		}
+
+		// a String of 12 ASCII characters and a hash map node alone take over 80 bytes.
+		final double bytes = map.bytesPerEntry();
+		Assert.assertTrue(String.valueOf(bytes), (bytes > 14) && (bytes < 60));
+	}
+
+	@Test
+	public void testManager() throws ManageableExistsException
+	{
+		final ManagerImpl<Manageable> manager = new ManagerImpl<Manageable>(KeyStorage.COMPACT);
+		final Manageable child = manager.create("key", CompactChildMapTest.MOCK);
+		Assert.assertSame(child, manager.get("key"));
+		Assert.assertTrue(manager.getBytesPerChild() > 0);
+		Assert.assertEquals(1, manager.countOfType(Manageable.class));
+		Assert.assertEquals(Arrays.asList(child), manager.getAllOfType(MockManageableImpl.class));
+		Assert.assertSame(child, manager.closeChild("key"));
+		Assert.assertEquals(0, manager.countOfType(Manageable.class));
+		Assert.assertNull(manager.get("key"));
+		Assert.assertEquals(-1, new ManagerImpl<Manageable>().getBytesPerChild(), 0);
+	}
+
+	@Test
+	public void testManagerToString() throws ManageableExistsException
+	{
+		final ManagerImpl<Manageable> manager = new ManagerImpl<Manageable>(KeyStorage.COMPACT);
+		for (int i = 0; i < 1000; i++)
+		{
+			manager.create("key" + i, CompactChildMapTest.MOCK);
+		}
+
+		// the first children are listed, read a pass at a time.
+		final String string = manager.toString();
+		Assert.assertTrue(string, string.startsWith("Manager [childCount=1000, children={key"));
+		Assert.assertTrue(string, string.endsWith(", ...}, isClosed=false]"));
+		Assert.assertEquals(string, 16, string.split(CompactChildMapTest.MOCK, -1).length - 1);
+
+		final Iterator<Map.Entry<String, Manageable>> entries = new CompactChildMap<Manageable>().entrySet()
+		        .iterator();
+		Assert.assertFalse(entries.hasNext());
+		try
+		{
+			entries.next();
+			Assert.fail("next() past the last entry should throw.");
+		}
+		catch (final NoSuchElementException e)
+		{
+			// expected.
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testCompactNeedsStrongChildren()
+	{
+		new ManagerImpl<Manageable>(null, java.util.concurrent.ForkJoinPool.commonPool(), ReferenceType.WEAK, null, KeyStorage.COMPACT);
+	}
+
+	@Test
+	public void testLinearizable()
+	{
+		new ManagerStressHarness<Manageable>(() -> new ManagerImpl<Manageable>(KeyStorage.COMPACT),
+		        CompactChildMapTest.MOCK).threads(8).operations(500).seed(42).run();
+	}
+
+	@Test
+	public void testCloseWhileInUse()
+	{
+		for (long seed = 0; seed < 5; seed++)
+		{
+			new ManagerStressHarness<Manageable>(() -> new ManagerImpl<Manageable>(KeyStorage.COMPACT),
+			        CompactChildMapTest.MOCK).threads(4).operations(500).seed(seed).runWithClose();
+		}
+	}
+
+}
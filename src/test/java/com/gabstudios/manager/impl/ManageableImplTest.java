@@ -26,6 +26,7 @@ import org.junit.Test;
 import com.gabstudios.manager.Manageable;
 import com.gabstudios.manager.ManageableExistsException;
 import com.gabstudios.manager.Manager;
+import com.gabstudios.manager.ManagerClosedException;
 
 
 /**
@@ -167,4 +168,54 @@ public class ManageableImplTest
         }
     }
     
+    @Test
+    public void testCloseAfterRebind()
+    {
+        try
+        {
+            final Manageable stale = this._manager.create("key",
+                    ManageableImpl.class);
+            this._manager.closeChild("key");
+            final Manageable current = this._manager.create("key",
+                    ManageableImpl.class);
+            
+            // a stale child detaching itself must not unbind the new child.
+            Assert.assertFalse(((ManagerImpl<ManageableImpl>) this._manager)
+                    .detach("key", stale));
+            Assert.assertTrue(this._manager.get("key") == current);
+            
+            current.close();
+            Assert.assertFalse(this._manager.containsChild("key"));
+        }
+        catch (final ManageableExistsException e)
+        {
+            Assert.fail(e.toString());
+        }
+    }
+    
+    @Test
+    public void testCloseChildClosesOnce()
+    {
+        try
+        {
+            final Manageable child = this._manager.create("key",
+                    ManageableImpl.class);
+            Assert.assertTrue(this._manager.closeChild("key") == child);
+            Assert.assertTrue(this._manager.getChildCount() == 0);
+            try
+            {
+                child.close();
+                Assert.fail("Expected the child to be closed.");
+            }
+            catch (final ManagerClosedException e)
+            {
+                // expected.
+            }
+        }
+        catch (final ManageableExistsException e)
+        {
+            Assert.fail(e.toString());
+        }
+    }
+    
 }
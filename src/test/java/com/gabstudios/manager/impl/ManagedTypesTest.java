@@ -0,0 +1,85 @@
+/*****************************************************************************************
+ * 
+ * Copyright 2019 Gregory Brown. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ * 
+ ***************************************************************************************** 
+ */
+
+package com.gabstudios.manager.impl;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.gabstudios.manager.Manageable;
+import com.gabstudios.manager.ManageableExistsException;
+import com.gabstudios.manager.Manager;
+
+/**
+ * 
+ * Test class for creating children through a <code>ManagedTypeRegistry</code>
+ * 
+ * @author Gregory Brown (sysdevone)
+ */
+public class ManagedTypesTest
+{
+
+	Manager<Manageable> _manager;
+
+	@Before
+	public void setup()
+	{
+		this._manager = new ManagerImpl<Manageable>();
+	}
+
+	@Test
+	public void testLookup()
+	{
+		Assert.assertTrue(ManagedTypes.lookup("mock-snapshotable") != null);
+		Assert.assertTrue(ManagedTypes.lookup(MockSnapshotableImpl.class.getName()) != null);
+		Assert.assertTrue(ManagedTypes.lookup(MockManageableImpl.class.getName()) == null);
+	}
+
+	@Test
+	public void testCreateWithAlias()
+	{
+		try
+		{
+			final Manageable child = this._manager.create("mock-snapshotable");
+			Assert.assertTrue(child instanceof MockSnapshotableImpl);
+			Assert.assertTrue("mock-snapshotable".equals(child.getKey()));
+
+			final Manageable other = this._manager.create("c1", "mock-snapshotable");
+			Assert.assertTrue(other instanceof MockSnapshotableImpl);
+			Assert.assertTrue(this._manager.getChildCount() == 2);
+		}
+		catch (final ManageableExistsException e)
+		{
+			Assert.fail(e.toString());
+		}
+	}
+
+	@Test
+	public void testReflectionFallback()
+	{
+		try
+		{
+			final Manageable child = this._manager.create("c1", MockManageableImpl.class.getName());
+			Assert.assertTrue(child instanceof MockManageableImpl);
+		}
+		catch (final ManageableExistsException e)
+		{
+			Assert.fail(e.toString());
+		}
+	}
+
+}
@@ -0,0 +1,239 @@
+/*****************************************************************************************
+ * 
+ * Copyright 2019 Gregory Brown. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ * 
+ ***************************************************************************************** 
+ */
+
+
+package com.gabstudios.manager.impl;
+
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.gabstudios.manager.Manageable;
+import com.gabstudios.manager.ManageableExistsException;
+import com.gabstudios.manager.ManagerException;
+
+/**
+ * 
+ * Test class for the <code>ManagerBuilder</code>
+ * 
+ * @author Gregory Brown (sysdevone)
+ */
+public class ManagerBuilderTest
+{
+
+	/*
+	 * Counts the metrics it is given.
+	 */
+	static final class CountingSink implements MetricsSink
+	{
+		final AtomicInteger	_created	= new AtomicInteger();
+
+		final AtomicInteger	_hits		= new AtomicInteger();
+
+		final AtomicInteger	_misses		= new AtomicInteger();
+
+		final AtomicInteger	_unbound	= new AtomicInteger();
+
+		@Override
+		public void created(final String key, final Class<?> type)
+		{
+			this._created.incrementAndGet();
+		}
+
+		@Override
+		public void lookup(final String key, final boolean hit)
+		{
+			(hit ? this._hits : this._misses).incrementAndGet();
+		}
+
+		@Override
+		public void unbound(final String key)
+		{
+			this._unbound.incrementAndGet();
+		}
+	}
+
+	@Test
+	public void testAccessStatistics() throws ManageableExistsException
+	{
+		final ManagerImpl<Manageable> manager = new ManagerBuilder<Manageable>().accessStatistics(1).build();
+		manager.create("mock", MockManageableImpl.class.getName());
+		manager.get("mock");
+		manager.get("mock");
+		Assert.assertEquals(2, manager.getAccessStatistics("mock").getAccessCount());
+		manager.close();
+	}
+
+	@Test
+	public void testChildTable() throws ManageableExistsException
+	{
+		final ConcurrentSkipListMap<String, Manageable> table = new ConcurrentSkipListMap<>();
+		final ManagerImpl<Manageable> manager = new ManagerBuilder<Manageable>().childTable(() -> table).build();
+		manager.create("b", MockManageableImpl.class.getName());
+		manager.create("a", MockManageableImpl.class.getName());
+		Assert.assertEquals("a", table.firstKey());
+		Assert.assertEquals(2, manager.getChildCount());
+		manager.closeChild("a");
+		Assert.assertEquals(1, table.size());
+		manager.close();
+		Assert.assertTrue(table.isEmpty());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testChildTableNotEmpty()
+	{
+		final ConcurrentSkipListMap<String, Manageable> table = new ConcurrentSkipListMap<>();
+		table.put("mock", new MockManageableImpl());
+		new ManagerBuilder<Manageable>().childTable(() -> table).build();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testChildTableWithCompactKeys()
+	{
+		new ManagerBuilder<Manageable>().childTable(ConcurrentSkipListMap::new).keyStorage(KeyStorage.COMPACT)
+		        .build();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testChildTableWithWeakChildren()
+	{
+		new ManagerBuilder<Manageable>().childTable(ConcurrentSkipListMap::new)
+		        .referenceType(ReferenceType.WEAK, null).build();
+	}
+
+	@Test
+	public void testComposedWhenAskedFor()
+	{
+		final ManagerImpl<Manageable> manager = new ManagerBuilder<Manageable>().maxChildren(10).build();
+		Assert.assertEquals(ComposedManager.class, manager.getClass());
+		manager.close();
+	}
+
+	@Test
+	public void testInstantiator() throws ManageableExistsException
+	{
+		final MockManageableImpl made = new MockManageableImpl();
+		final ManagerImpl<Manageable> manager = new ManagerBuilder<Manageable>()
+		        .instantiator(className -> "made".equals(className) ? made : null).build();
+		Assert.assertSame(made, manager.create("a", "made"));
+		Assert.assertEquals(MockManageableImpl.class,
+		        manager.create("b", MockManageableImpl.class.getName()).getClass());
+		Assert.assertNotSame(made, manager.get("b"));
+		manager.close();
+	}
+
+	@Test
+	public void testMaxChildren() throws ManageableExistsException
+	{
+		final ManagerImpl<Manageable> manager = new ManagerBuilder<Manageable>().maxChildren(2).build();
+		manager.create("a", MockManageableImpl.class.getName());
+		manager.create("b", MockManageableImpl.class.getName());
+		try
+		{
+			manager.create("c", MockManageableImpl.class.getName());
+			Assert.fail("The manager should be full.");
+		}
+		catch (final ManagerException e)
+		{
+			Assert.assertTrue(e.getMessage(), e.getMessage().contains("maxChildren=2"));
+		}
+		Assert.assertFalse(manager.containsChild("c"));
+
+		// a create of a bound key does not take any room.
+		Assert.assertNotNull(manager.getOrCreate("a", MockManageableImpl.class.getName()));
+
+		// a create of a bound key in a full manager reports the key as bound.
+		try
+		{
+			manager.create("a", MockManageableImpl.class.getName());
+			Assert.fail("The key should be bound.");
+		}
+		catch (final ManageableExistsException e)
+		{
+			Assert.assertTrue(true);
+		}
+
+		manager.closeChild("a");
+		manager.create("c", MockManageableImpl.class.getName());
+
+		// a child closing itself gives back its room as well.
+		manager.get("b").close();
+		manager.create("d", MockManageableImpl.class.getName());
+		Assert.assertEquals(2, manager.getChildCount());
+		manager.close();
+	}
+
+	@Test(expected = ManagerException.class)
+	public void testMaxChildrenOffHeap() throws ManageableExistsException
+	{
+		final ManagerImpl<Manageable> manager = new ManagerBuilder<Manageable>().keyStorage(KeyStorage.OFF_HEAP)
+		        .maxChildren(1).build();
+		manager.create("a", MockManageableImpl.class.getName());
+		manager.tryCreate("b", MockManageableImpl.class.getName());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testMaxChildrenNotPositive()
+	{
+		new ManagerBuilder<Manageable>().maxChildren(0);
+	}
+
+	@Test
+	public void testMetrics() throws ManageableExistsException
+	{
+		final CountingSink sink = new CountingSink();
+		final ManagerImpl<Manageable> manager = new ManagerBuilder<Manageable>().metrics(sink).build();
+		manager.create("a", MockManageableImpl.class.getName());
+		manager.create("b", MockManageableImpl.class.getName());
+		manager.getOrCreate("a", MockManageableImpl.class.getName());
+		Assert.assertEquals(2, sink._created.get());
+
+		// getOrCreate(key, className) looked up "a" as well.
+		manager.get("a");
+		manager.get("missing");
+		Assert.assertEquals(2, sink._hits.get());
+		Assert.assertEquals(1, sink._misses.get());
+
+		// containsChild(key) is a lookup too.
+		Assert.assertTrue(manager.containsChild("b"));
+		Assert.assertFalse(manager.containsChild("missing"));
+		Assert.assertEquals(3, sink._hits.get());
+		Assert.assertEquals(2, sink._misses.get());
+
+		manager.closeChild("a");
+		Assert.assertEquals(1, sink._unbound.get());
+		manager.close();
+		Assert.assertEquals(2, sink._unbound.get());
+	}
+
+	@Test
+	public void testPlainWhenNothingAskedFor()
+	{
+		final ManagerImpl<Manageable> manager = new ManagerBuilder<Manageable>().keyStorage(KeyStorage.COMPACT)
+		        .executor(Runnable::run).build();
+		Assert.assertEquals(ManagerImpl.class, manager.getClass());
+		manager.close();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testSampleRateNotPowerOfTwo()
+	{
+		new ManagerBuilder<Manageable>().accessStatistics(3);
+	}
+
+}
@@ -0,0 +1,257 @@
+/*****************************************************************************************
+ * 
+ * Copyright 2019 Gregory Brown. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ * 
+ ***************************************************************************************** 
+ */
+
+package com.gabstudios.manager.impl;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.gabstudios.manager.Manageable;
+import com.gabstudios.manager.ManageableExistsException;
+import com.gabstudios.manager.Manager;
+import com.gabstudios.manager.partition.InProcessTransport;
+import com.gabstudios.manager.partition.PartitionedManager;
+
+/**
+ * 
+ * Measures the heap retained per child by each manager and child table, and splits it into the child objects, their
+ * keys, the type index and the table with the rest of the manager's bookkeeping. Every figure is in bytes per child.
+ * Run with 'mvn test -P benchmark', which runs the benchmarks with a heap large enough for ten million children. The
+ * sizes can be set with -Dbenchmark.sizes=1000,100000.
+ * 
+ * Each benchmark fails if the table and index of its manager take more than a budget per child at the largest size,
+ * so a change that makes the children more expensive to hold is caught like a failing test.
+ * 
+ * @author Gregory Brown (sysdevone)
+ */
+public class ManagerFootprintBenchmark
+{
+
+	static final String	SIZES_PROPERTY	= "gabmanager.footprint.sizes";
+
+	static final String	DEFAULT_SIZES	= "1000,10000,100000,1000000,10000000";
+
+	/*
+	 * Sizes below this are reported but not held to the budget, since the fixed costs of a manager dominate them.
+	 */
+	static final int	BUDGET_SIZE		= 100000;
+
+	/*
+	 * A rough upper bound of the heap used per child while a size is measured, to skip sizes that do not fit.
+	 */
+	static final int	BYTES_PER_CHILD	= 1024;
+
+	@Test
+	public void testStringKeys() throws ManageableExistsException
+	{
+		ManagerFootprintBenchmark.measure("ManagerImpl STRING", () -> new ManagerImpl<Manageable>(), true, 128);
+	}
+
+	@Test
+	public void testCompactKeys() throws ManageableExistsException
+	{
+		ManagerFootprintBenchmark.measure("ManagerImpl COMPACT", () -> new ManagerImpl<Manageable>(KeyStorage.COMPACT),
+		        false, 80);
+	}
+
+	@Test
+	public void testOffHeapKeys() throws ManageableExistsException
+	{
+		ManagerFootprintBenchmark.measure("ManagerImpl OFF_HEAP",
+		        () -> new ManagerImpl<Manageable>(KeyStorage.OFF_HEAP), false, 16);
+	}
+
+	@Test
+	public void testWeakChildren() throws ManageableExistsException
+	{
+		ManagerFootprintBenchmark.measure("ManagerImpl WEAK",
+		        () -> new ManagerImpl<Manageable>(ReferenceType.WEAK, null), true, 176);
+	}
+
+	@Test
+	public void testSoftChildren() throws ManageableExistsException
+	{
+		ManagerFootprintBenchmark.measure("ManagerImpl SOFT",
+		        () -> new ManagerImpl<Manageable>(ReferenceType.SOFT, null), true, 176);
+	}
+
+	@Test
+	public void testPartitioned() throws ManageableExistsException
+	{
+		ManagerFootprintBenchmark.measure("PartitionedManager x4", () -> {
+			final PartitionedManager<Manageable> manager = new PartitionedManager<>(
+			        new InProcessTransport<Manageable>());
+			for (int i = 0; i < 4; i++)
+			{
+				manager.addNode("node" + i);
+			}
+			return (manager);
+		}, false, 128);
+	}
+
+	/*
+	 * Measures a manager at every size and checks the budget at the largest size measured.
+	 *
+	 * @param indexed True if the manager is a ManagerImpl that keeps a TypeIndex of its own once it is looked up by
+	 * type.
+	 *
+	 * @param budget The most bytes per child the table and index may take at BUDGET_SIZE children or more.
+	 */
+	static void measure(final String name, final Supplier<Manager<Manageable>> factory, final boolean indexed,
+	        final int budget) throws ManageableExistsException
+	{
+		System.out.println(String.format("%-24s %10s %10s %10s %10s %10s %10s", name, "children", "total",
+		        "child", "key", "index", "table"));
+		double largest = -1;
+		for (final int size : ManagerFootprintBenchmark.sizes())
+		{
+			if ((((long) size) * ManagerFootprintBenchmark.BYTES_PER_CHILD) > Runtime.getRuntime().maxMemory())
+			{
+				System.out.println(String.format("%-24s %10d skipped, the heap is too small", "", size));
+				continue;
+			}
+			final double[] footprint = ManagerFootprintBenchmark.footprint(factory, size, indexed);
+			System.out.println(String.format("%-24s %10d %10.1f %10.1f %10.1f %10.1f %10.1f", "", size, footprint[0],
+			        footprint[1], footprint[2], footprint[3], footprint[4]));
+			if (size >= ManagerFootprintBenchmark.BUDGET_SIZE)
+			{
+				largest = footprint[3] + footprint[4];
+			}
+		}
+		if (largest >= 0)
+		{
+			Assert.assertTrue(name + " takes " + largest + " bytes per child for the table and index, over the budget of "
+			        + budget, largest <= budget);
+		}
+	}
+
+	/*
+	 * Measures the heap of a manager with the number of children, per child: the total, then the child objects,
+	 * the keys, the type index and the rest, which is the table and the manager's other bookkeeping.
+	 */
+	static double[] footprint(final Supplier<Manager<Manageable>> factory, final int size, final boolean indexed)
+	        throws ManageableExistsException
+	{
+		// holds the children, so weak and soft tables are measured with live children.  Allocated before the base.
+		final Manageable[] held = new Manageable[size];
+		long base = ManagerFootprintBenchmark.usedHeap();
+		final Manager<Manageable> manager = factory.get();
+		for (int i = 0; i < size; i++)
+		{
+			held[i] = manager.create(ManagerFootprintBenchmark.key(i), MockManageableImpl.class.getName());
+		}
+		if (indexed)
+		{
+			// the index is built on the first lookup by type.
+			Assert.assertEquals(size, ((ManagerImpl<Manageable>) manager).countOfType(Manageable.class));
+		}
+		final long total = ManagerFootprintBenchmark.usedHeap() - base;
+		Assert.assertEquals(size, manager.getChildCount());
+		manager.close();
+		Arrays.fill(held, null);
+
+		// the parts, measured on their own.  The child keeps its key, so every manager retains the keys.
+		base = ManagerFootprintBenchmark.usedHeap();
+		for (int i = 0; i < size; i++)
+		{
+			held[i] = new MockManageableImpl();
+		}
+		final long child = ManagerFootprintBenchmark.usedHeap() - base;
+		Assert.assertNotNull(held[size - 1]);
+		Arrays.fill(held, null);
+
+		final String[] keys = new String[size];
+		base = ManagerFootprintBenchmark.usedHeap();
+		for (int i = 0; i < size; i++)
+		{
+			keys[i] = ManagerFootprintBenchmark.key(i);
+		}
+		final long key = ManagerFootprintBenchmark.usedHeap() - base;
+
+		long index = 0;
+		if (indexed)
+		{
+			base = ManagerFootprintBenchmark.usedHeap();
+			final TypeIndex types = new TypeIndex();
+			types.build(Collections.emptyMap());
+			for (final String each : keys)
+			{
+				types.add(each, MockManageableImpl.class);
+			}
+			index = ManagerFootprintBenchmark.usedHeap() - base;
+			Assert.assertEquals(size, types.count(MockManageableImpl.class));
+		}
+		Assert.assertNotNull(keys[size - 1]);
+
+		final double perChild = size;
+		return (new double[] { total / perChild, child / perChild, key / perChild, index / perChild,
+		        (total - child - key - index) / perChild });
+	}
+
+	/*
+	 * Returns the key of a child.
+	 */
+	static String key(final int i)
+	{
+		return ("tenant-" + (i % 1000) + "/child-" + i);
+	}
+
+	/*
+	 * Returns the sizes to measure.
+	 */
+	static List<Integer> sizes()
+	{
+		final List<Integer> sizes = new ArrayList<>();
+		for (final String size : System.getProperty(ManagerFootprintBenchmark.SIZES_PROPERTY,
+		        ManagerFootprintBenchmark.DEFAULT_SIZES).split(","))
+		{
+			sizes.add(Integer.valueOf(size.trim()));
+		}
+		return (sizes);
+	}
+
+	/*
+	 * Returns the heap in use once the collector has settled, the least of a few collections.
+	 */
+	static long usedHeap()
+	{
+		final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+		long used = Long.MAX_VALUE;
+		for (int i = 0; i < 4; i++)
+		{
+			System.gc();
+			try
+			{
+				Thread.sleep(20);
+			}
+			catch (final InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+			used = Math.min(used, memory.getHeapMemoryUsage().getUsed());
+		}
+		return (used);
+	}
+
+}
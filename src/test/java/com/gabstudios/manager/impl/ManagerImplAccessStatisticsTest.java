@@ -0,0 +1,208 @@
+/*****************************************************************************************
+ * 
+ * Copyright 2019 Gregory Brown. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ * 
+ ***************************************************************************************** 
+ */
+
+package com.gabstudios.manager.impl;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.gabstudios.manager.Manageable;
+import com.gabstudios.manager.ManageableExistsException;
+import com.gabstudios.manager.ManagerClosedException;
+
+/**
+ * 
+ * Test class for the access statistics of the <code>ManagerImpl</code>
+ * 
+ * @author Gregory Brown (sysdevone)
+ */
+public class ManagerImplAccessStatisticsTest
+{
+
+	static final String		MOCK	= MockManageableImpl.class.getName();
+
+	ManagerImpl<Manageable>	_manager;
+
+	@Before
+	public void setup()
+	{
+		this._manager = new ManagerImpl<Manageable>();
+	}
+
+	@Test
+	public void testDisabledByDefault() throws ManageableExistsException
+	{
+		this._manager.create("key", ManagerImplAccessStatisticsTest.MOCK);
+		this._manager.get("key");
+		Assert.assertNull(this._manager.getAccessStatistics("key"));
+		Assert.assertTrue(this._manager.getHottest(10).isEmpty());
+	}
+
+	@Test
+	public void testCounts() throws ManageableExistsException
+	{
+		this._manager.enableAccessStatistics(1);
+		final long before = System.currentTimeMillis();
+		this._manager.create("key", ManagerImplAccessStatisticsTest.MOCK);
+		for (int i = 0; i < 5; i++)
+		{
+			this._manager.get("key");
+		}
+		this._manager.containsChild("key");
+
+		// lookups of unbound keys are not counted.
+		Assert.assertNull(this._manager.get("missing"));
+		Assert.assertFalse(this._manager.containsChild("missing"));
+		Assert.assertNull(this._manager.getAccessStatistics("missing"));
+
+		final AccessStatistics statistics = this._manager.getAccessStatistics("key");
+		Assert.assertEquals("key", statistics.getKey());
+		Assert.assertEquals(6, statistics.getAccessCount());
+		Assert.assertTrue(statistics.getCreateTime() >= before);
+		Assert.assertTrue(statistics.getLastAccessTime() >= statistics.getCreateTime());
+	}
+
+	@Test
+	public void testExistenceChecksNotCounted() throws ManageableExistsException
+	{
+		this._manager.enableAccessStatistics(1);
+		this._manager.create("key", ManagerImplAccessStatisticsTest.MOCK);
+		try
+		{
+			this._manager.create("key", ManagerImplAccessStatisticsTest.MOCK);
+			Assert.fail("The key should be bound.");
+		}
+		catch (final ManageableExistsException e)
+		{
+			// expected.
+		}
+		Assert.assertFalse(this._manager.tryCreate("key", ManagerImplAccessStatisticsTest.MOCK).isPresent());
+
+		// the checks made on the way to a create are not lookups.
+		Assert.assertEquals(0, this._manager.getAccessStatistics("key").getAccessCount());
+	}
+
+	@Test
+	public void testExistingChildren() throws ManageableExistsException
+	{
+		this._manager.create("key", ManagerImplAccessStatisticsTest.MOCK);
+		this._manager.enableAccessStatistics(1);
+		this._manager.get("key");
+		Assert.assertEquals(1, this._manager.getAccessStatistics("key").getAccessCount());
+	}
+
+	@Test
+	public void testSampled() throws ManageableExistsException
+	{
+		this._manager.enableAccessStatistics(8);
+		this._manager.create("key", ManagerImplAccessStatisticsTest.MOCK);
+		for (int i = 0; i < 80000; i++)
+		{
+			this._manager.get("key");
+		}
+
+		// each sample counts for eight lookups; the estimate is well within a tenth of the true count.
+		final long count = this._manager.getAccessStatistics("key").getAccessCount();
+		Assert.assertEquals(0, count % 8);
+		Assert.assertTrue(String.valueOf(count), Math.abs(count - 80000) < 8000);
+	}
+
+	@Test
+	public void testHottestAndColdest() throws ManageableExistsException
+	{
+		this._manager.enableAccessStatistics(1);
+		for (int i = 0; i < 10; i++)
+		{
+			this._manager.create("key" + i, ManagerImplAccessStatisticsTest.MOCK);
+			for (int j = 0; j < i; j++)
+			{
+				this._manager.get("key" + i);
+			}
+		}
+
+		final List<AccessStatistics> hottest = this._manager.getHottest(3);
+		Assert.assertEquals(3, hottest.size());
+		Assert.assertEquals("key9", hottest.get(0).getKey());
+		Assert.assertEquals("key8", hottest.get(1).getKey());
+		Assert.assertEquals("key7", hottest.get(2).getKey());
+
+		final List<AccessStatistics> coldest = this._manager.getColdest(2);
+		Assert.assertEquals(2, coldest.size());
+		Assert.assertEquals("key0", coldest.get(0).getKey());
+		Assert.assertEquals(0, coldest.get(0).getAccessCount());
+		Assert.assertEquals("key1", coldest.get(1).getKey());
+
+		Assert.assertEquals(10, this._manager.getHottest(100).size());
+		Assert.assertTrue(this._manager.getColdest(0).isEmpty());
+	}
+
+	@Test
+	public void testClosedChildIsDropped() throws ManageableExistsException
+	{
+		this._manager.enableAccessStatistics(1);
+		this._manager.create("key", ManagerImplAccessStatisticsTest.MOCK);
+		this._manager.get("key");
+		this._manager.closeChild("key");
+		Assert.assertNull(this._manager.getAccessStatistics("key"));
+
+		// a new child bound to the key starts from zero.
+		this._manager.create("key", ManagerImplAccessStatisticsTest.MOCK);
+		Assert.assertEquals(0, this._manager.getAccessStatistics("key").getAccessCount());
+	}
+
+	@Test
+	public void testReplaceKeepsStatistics() throws ManageableExistsException
+	{
+		this._manager.enableAccessStatistics(1);
+		this._manager.create("key", ManagerImplAccessStatisticsTest.MOCK);
+		this._manager.get("key");
+		this._manager.replace("key", ManagerImplAccessStatisticsTest.MOCK);
+		Assert.assertEquals(1, this._manager.getAccessStatistics("key").getAccessCount());
+	}
+
+	@Test
+	public void testDisable() throws ManageableExistsException
+	{
+		this._manager.enableAccessStatistics(1);
+		this._manager.create("key", ManagerImplAccessStatisticsTest.MOCK);
+		this._manager.disableAccessStatistics();
+		this._manager.get("key");
+		Assert.assertNull(this._manager.getAccessStatistics("key"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testSampleRateNotPowerOfTwo()
+	{
+		this._manager.enableAccessStatistics(3);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeCount()
+	{
+		this._manager.getHottest(-1);
+	}
+
+	@Test(expected = ManagerClosedException.class)
+	public void testClosed()
+	{
+		this._manager.close();
+		this._manager.getHottest(1);
+	}
+
+}
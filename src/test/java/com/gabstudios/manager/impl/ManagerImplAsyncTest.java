@@ -0,0 +1,158 @@
+/*****************************************************************************************
+ * 
+ * Copyright 2019 Gregory Brown. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ * 
+ ***************************************************************************************** 
+ */
+
+package com.gabstudios.manager.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.gabstudios.manager.Manageable;
+import com.gabstudios.manager.ManageableExistsException;
+import com.gabstudios.manager.ManagerException;
+
+/**
+ * 
+ * Test class for the asynchronous creates of the <code>ManagerImpl</code>
+ * 
+ * @author Gregory Brown (sysdevone)
+ */
+public class ManagerImplAsyncTest
+{
+
+	static final String		SLOW	= MockSlowImpl.class.getName();
+
+	ExecutorService			_executor;
+
+	ManagerImpl<Manageable>	_manager;
+
+	@After
+	public void cleanup()
+	{
+		MockSlowImpl.GATE = null;
+		this._executor.shutdownNow();
+	}
+
+	@Before
+	public void setup()
+	{
+		this._executor = Executors.newFixedThreadPool(4);
+		this._manager = new ManagerImpl<Manageable>(this._executor);
+	}
+
+	@Test
+	public void testConcurrentRequestsShareOneCreate() throws InterruptedException
+	{
+		MockSlowImpl.GATE = new CountDownLatch(1);
+		final int instances = MockSlowImpl.INSTANCES.get();
+
+		final int threads = 32;
+		final List<CompletableFuture<Manageable>> futures = new ArrayList<>();
+		final Thread[] callers = new Thread[threads];
+		for (int i = 0; i < threads; i++)
+		{
+			final boolean create = (i % 2) == 0;
+			callers[i] = new Thread(() -> {
+				final CompletableFuture<Manageable> future = create ? this._manager.createAsync("cold", ManagerImplAsyncTest.SLOW)
+				        : this._manager.getOrCreateAsync("cold", ManagerImplAsyncTest.SLOW);
+				synchronized (futures)
+				{
+					futures.add(future);
+				}
+			});
+			callers[i].start();
+		}
+		for (final Thread caller : callers)
+		{
+			caller.join();
+		}
+		MockSlowImpl.GATE.countDown();
+
+		final Manageable child = this._manager.getOrCreateAsync("cold", ManagerImplAsyncTest.SLOW).join();
+		for (final CompletableFuture<Manageable> future : futures)
+		{
+			try
+			{
+				Assert.assertTrue(future.join() == child);
+			}
+			catch (final CompletionException e)
+			{
+				// a createAsync that arrived after the child was created.
+				Assert.assertTrue(e.getCause() instanceof ManageableExistsException);
+			}
+		}
+		Assert.assertTrue(MockSlowImpl.INSTANCES.get() == (instances + 1));
+		Assert.assertTrue(this._manager.getChildCount() == 1);
+	}
+
+	@Test
+	public void testInitializeOffCallerThread()
+	{
+		final MockSlowImpl child = (MockSlowImpl) this._manager.createAsync("c1", ManagerImplAsyncTest.SLOW).join();
+		Assert.assertTrue(child.getInitializeThread() != Thread.currentThread());
+		Assert.assertTrue(this._manager.get("c1") == child);
+		Assert.assertTrue(this._manager.getOrCreateAsync("c1", ManagerImplAsyncTest.SLOW).isDone());
+	}
+
+	@Test
+	public void testCreateExisting()
+	{
+		try
+		{
+			this._manager.create("c1", ManagerImplAsyncTest.SLOW);
+			this._manager.createAsync("c1", ManagerImplAsyncTest.SLOW).join();
+			Assert.fail();
+		}
+		catch (final ManageableExistsException e)
+		{
+			Assert.fail(e.toString());
+		}
+		catch (final CompletionException e)
+		{
+			Assert.assertTrue(e.getCause() instanceof ManageableExistsException);
+		}
+	}
+
+	@Test
+	public void testFailureDoesNotPoisonKey()
+	{
+		final CompletableFuture<Manageable> first = this._manager.createAsync("c1",
+		        "com.gabstudios.manager.impl.DoesNotExist");
+		try
+		{
+			first.join();
+			Assert.fail();
+		}
+		catch (final CompletionException e)
+		{
+			Assert.assertTrue(e.getCause() instanceof ManagerException);
+		}
+		Assert.assertTrue(!this._manager.containsChild("c1"));
+
+		final Manageable child = this._manager.getOrCreateAsync("c1", ManagerImplAsyncTest.SLOW).join();
+		Assert.assertTrue(child instanceof MockSlowImpl);
+	}
+
+}
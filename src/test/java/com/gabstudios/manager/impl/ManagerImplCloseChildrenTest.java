@@ -0,0 +1,227 @@
+/*****************************************************************************************
+ * 
+ * Copyright 2019 Gregory Brown. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ * 
+ ***************************************************************************************** 
+ */
+
+
+package com.gabstudios.manager.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.gabstudios.manager.Manageable;
+import com.gabstudios.manager.ManageableDefinition;
+import com.gabstudios.manager.ManageableExistsException;
+import com.gabstudios.manager.ManagerClosedException;
+
+/**
+ * 
+ * Test class for closing many children at once with the <code>ManagerImpl</code>
+ * 
+ * @author Gregory Brown (sysdevone)
+ */
+public class ManagerImplCloseChildrenTest
+{
+
+	static final String		MOCK	= MockDependentImpl.class.getName();
+
+	ExecutorService			_executor;
+
+	ManagerImpl<Manageable>	_manager;
+
+	@After
+	public void cleanup()
+	{
+		if (!this._manager.isClosed())
+		{
+			this._manager.close();
+		}
+		this._executor.shutdownNow();
+	}
+
+	/*
+	 * Creates the children of two tenants, a and b.
+	 */
+	private void createTenants(final ManagerImpl<Manageable> manager) throws ManageableExistsException
+	{
+		for (int i = 0; i < 100; i++)
+		{
+			manager.create("a/" + i, ManagerImplCloseChildrenTest.MOCK);
+			manager.create("b/" + i, ManagerImplCloseChildrenTest.MOCK);
+		}
+	}
+
+	/*
+	 * Returns the position of an event, failing if it did not happen.
+	 */
+	private int indexOf(final String event)
+	{
+		final List<String> events = new ArrayList<>(MockDependentImpl.EVENTS);
+		final int index = events.indexOf(event);
+		Assert.assertTrue(event + " in " + events, index >= 0);
+		return (index);
+	}
+
+	@Before
+	public void setup()
+	{
+		MockDependentImpl.EVENTS.clear();
+		this._executor = Executors.newFixedThreadPool(4);
+		this._manager = new ManagerImpl<Manageable>(this._executor);
+	}
+
+	@Test
+	public void testCloseByKeys() throws ManageableExistsException
+	{
+		this.createTenants(this._manager);
+		final List<String> keys = new ArrayList<>();
+		for (int i = 0; i < 100; i++)
+		{
+			keys.add("a/" + i);
+		}
+		keys.add("missing");
+
+		Assert.assertEquals(100, this._manager.closeChildren(keys));
+		Assert.assertEquals(100, this._manager.getChildCount());
+		Assert.assertFalse(this._manager.containsChild("a/0"));
+		Assert.assertTrue(this._manager.containsChild("b/0"));
+		this.indexOf("close:a/99");
+		Assert.assertFalse(MockDependentImpl.EVENTS.contains("close:b/0"));
+	}
+
+	@Test
+	public void testCloseByMatcher() throws ManageableExistsException
+	{
+		this.createTenants(this._manager);
+		Assert.assertEquals(100, this._manager.closeChildren(key -> key.startsWith("b/")));
+		Assert.assertEquals(100, this._manager.getChildCount());
+		Assert.assertEquals(100, this._manager.countOfType(MockDependentImpl.class));
+		Assert.assertNull(this._manager.get("b/50"));
+		Assert.assertEquals(0, this._manager.closeChildren(key -> key.startsWith("b/")));
+	}
+
+	@Test
+	public void testCloseInParallel() throws ManageableExistsException
+	{
+		this.createTenants(this._manager);
+		Assert.assertEquals(200, this._manager.closeChildren(key -> true, true));
+		Assert.assertEquals(0, this._manager.getChildCount());
+		this.indexOf("close:a/0");
+		this.indexOf("close:b/99");
+	}
+
+	@Test
+	public void testEveryCloseFailureReported()
+	{
+		for (final boolean parallel : new boolean[] { false, true })
+		{
+			for (final String key : Arrays.asList("a", "b", "c"))
+			{
+				this._manager.getOrCreate(key, () -> new MockManageableImpl()
+				{
+					@Override
+					public void close()
+					{
+						super.close();
+						throw (new IllegalStateException("Unable to close " + this.getKey()));
+					}
+				});
+			}
+			try
+			{
+				this._manager.closeChildren(Arrays.asList("a", "b", "c"), parallel);
+				Assert.fail("The failed closes should throw.");
+			}
+			catch (final IllegalStateException e)
+			{
+				// the first failure is thrown and the others are kept with it.
+				Assert.assertEquals(2, e.getSuppressed().length);
+			}
+			Assert.assertEquals(0, this._manager.getChildCount());
+		}
+	}
+
+	@Test
+	public void testCompactAndOffHeapTables() throws ManageableExistsException
+	{
+		for (final KeyStorage storage : KeyStorage.values())
+		{
+			final ManagerImpl<Manageable> manager = new ManagerImpl<Manageable>(storage);
+			this.createTenants(manager);
+			Assert.assertEquals(100, manager.closeChildren(key -> key.startsWith("a/")));
+			Assert.assertEquals(100, manager.getChildCount());
+			Assert.assertEquals(100, manager.countOfType(MockDependentImpl.class));
+			Assert.assertNotNull(manager.get("b/0"));
+
+			// the bound children are still found after the keys around them are removed.
+			for (int i = 0; i < 100; i++)
+			{
+				Assert.assertNotNull(manager.get("b/" + i));
+			}
+			manager.close();
+		}
+	}
+
+	@Test
+	public void testDependencyOrder() throws ManageableExistsException
+	{
+		for (final boolean parallel : new boolean[] { false, true })
+		{
+			MockDependentImpl.EVENTS.clear();
+			this._manager.createAll(Arrays.asList(
+			        new ManageableDefinition("service", ManagerImplCloseChildrenTest.MOCK, "pool", "config"),
+			        new ManageableDefinition("pool", ManagerImplCloseChildrenTest.MOCK, "config"),
+			        new ManageableDefinition("config", ManagerImplCloseChildrenTest.MOCK)));
+
+			Assert.assertEquals(3, this._manager.closeChildren(Arrays.asList("config", "pool", "service"), parallel));
+			Assert.assertEquals(0, this._manager.getChildCount());
+			Assert.assertTrue(this.indexOf("close:service") < this.indexOf("close:pool"));
+			Assert.assertTrue(this.indexOf("close:pool") < this.indexOf("close:config"));
+		}
+	}
+
+	@Test
+	public void testInvalidKeyClosesNothing() throws ManageableExistsException
+	{
+		this.createTenants(this._manager);
+		try
+		{
+			this._manager.closeChildren(Arrays.asList("a/0", "", "a/1"));
+			Assert.fail("An empty key should not be accepted.");
+		}
+		catch (final RuntimeException e)
+		{
+			Assert.assertTrue(true);
+		}
+		Assert.assertEquals(200, this._manager.getChildCount());
+		Assert.assertTrue(this._manager.containsChild("a/0"));
+	}
+
+	@Test(expected = ManagerClosedException.class)
+	public void testClosed()
+	{
+		this._manager.close();
+		this._manager.closeChildren(Collections.singletonList("a/0"));
+	}
+
+}
@@ -0,0 +1,115 @@
+/*****************************************************************************************
+ * 
+ * Copyright 2019 Gregory Brown. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ * 
+ ***************************************************************************************** 
+ */
+
+package com.gabstudios.manager.impl;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.gabstudios.manager.Manageable;
+import com.gabstudios.manager.ManageableDefinition;
+import com.gabstudios.manager.ManageableExistsException;
+
+/**
+ * 
+ * Test class for the closes with a deadline of the <code>ManagerImpl</code>
+ * 
+ * @author Gregory Brown (sysdevone)
+ */
+public class ManagerImplDeadlineTest
+{
+
+	static final String		HANGING	= MockHangingImpl.class.getName();
+
+	ExecutorService			_executor;
+
+	ManagerImpl<Manageable>	_manager;
+
+	@After
+	public void cleanup()
+	{
+		MockHangingImpl.GATE.countDown();
+		this._executor.shutdownNow();
+	}
+
+	@Before
+	public void setup()
+	{
+		MockHangingImpl.GATE = new CountDownLatch(1);
+		this._executor = Executors.newCachedThreadPool();
+		this._manager = new ManagerImpl<Manageable>(this._executor);
+	}
+
+	@Test
+	public void testCloseChildOverruns() throws ManageableExistsException
+	{
+		this._manager.create("hang", ManagerImplDeadlineTest.HANGING);
+		final CloseReport report = this._manager.closeChild("hang", Duration.ofMillis(50));
+		Assert.assertEquals(Collections.singletonList("hang"), report.getOverran());
+		Assert.assertFalse(this._manager.containsChild("hang"));
+		Assert.assertFalse(this._manager.isClosed());
+	}
+
+	@Test
+	public void testCloseChildMissing()
+	{
+		final CloseReport report = this._manager.closeChild("missing", Duration.ofMillis(50));
+		Assert.assertTrue(report.isClean());
+		Assert.assertTrue(report.getClosed().isEmpty());
+	}
+
+	@Test
+	public void testCloseIsBounded() throws ManageableExistsException
+	{
+		this._manager.create("one", ManagerImplDeadlineTest.HANGING);
+		this._manager.create("two", ManagerImplDeadlineTest.HANGING);
+		this._manager.create("hang", ManagerImplDeadlineTest.HANGING);
+		this._manager.create("fail", ManagerImplDeadlineTest.HANGING);
+
+		final long start = System.nanoTime();
+		final CloseReport report = this._manager.close(Duration.ofMillis(100));
+		Assert.assertTrue((System.nanoTime() - start) < Duration.ofSeconds(5).toNanos());
+
+		Assert.assertTrue(this._manager.isClosed());
+		Assert.assertFalse(report.isClean());
+		Assert.assertEquals(Collections.singletonList("hang"), report.getOverran());
+		Assert.assertEquals(Collections.singleton("fail"), report.getFailed().keySet());
+		Assert.assertTrue(report.getFailed().get("fail") instanceof IllegalStateException);
+		Assert.assertEquals(2, report.getClosed().size());
+		Assert.assertTrue(report.getClosed().containsAll(Arrays.asList("one", "two")));
+	}
+
+	@Test
+	public void testCloseOverrunBlocksDependents() throws ManageableExistsException
+	{
+		this._manager.createAll(Arrays.asList(new ManageableDefinition("base", ManagerImplDeadlineTest.HANGING),
+		        new ManageableDefinition("hang", ManagerImplDeadlineTest.HANGING, "base")));
+
+		final CloseReport report = this._manager.close(Duration.ofMillis(50));
+		Assert.assertTrue(this._manager.isClosed());
+		Assert.assertEquals(Arrays.asList("hang", "base"), report.getOverran());
+	}
+
+}
@@ -0,0 +1,220 @@
+/*****************************************************************************************
+ * 
+ * Copyright 2019 Gregory Brown. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ * 
+ ***************************************************************************************** 
+ */
+
+package com.gabstudios.manager.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.gabstudios.manager.DependencyCycleException;
+import com.gabstudios.manager.Manageable;
+import com.gabstudios.manager.ManageableDefinition;
+import com.gabstudios.manager.ManageableExistsException;
+import com.gabstudios.manager.ManagerException;
+
+/**
+ * 
+ * Test class for children with dependencies in the <code>ManagerImpl</code>
+ * 
+ * @author Gregory Brown (sysdevone)
+ */
+public class ManagerImplDependencyTest
+{
+
+	static final String		MOCK	= MockDependentImpl.class.getName();
+
+	ExecutorService			_executor;
+
+	ManagerImpl<Manageable>	_manager;
+
+	@After
+	public void cleanup()
+	{
+		MockDependentImpl.BARRIER = null;
+		this._executor.shutdownNow();
+	}
+
+	/*
+	 * Returns the position of an event, failing if it did not happen.
+	 */
+	private int indexOf(final String event)
+	{
+		final List<String> events = new ArrayList<>(MockDependentImpl.EVENTS);
+		final int index = events.indexOf(event);
+		Assert.assertTrue(event + " in " + events, index >= 0);
+		return (index);
+	}
+
+	@Before
+	public void setup()
+	{
+		MockDependentImpl.EVENTS.clear();
+		this._executor = Executors.newFixedThreadPool(4);
+		this._manager = new ManagerImpl<Manageable>(this._executor);
+	}
+
+	@Test
+	public void testDependencyOrder()
+	{
+		try
+		{
+			final Map<String, Manageable> children = this._manager.createAll(Arrays.asList(
+			        new ManageableDefinition("service", ManagerImplDependencyTest.MOCK, "pool", "config"),
+			        new ManageableDefinition("pool", ManagerImplDependencyTest.MOCK, "config"),
+			        new ManageableDefinition("config", ManagerImplDependencyTest.MOCK)));
+
+			Assert.assertTrue(children.size() == 3);
+			Assert.assertTrue("service".equals(children.keySet().iterator().next()));
+			Assert.assertTrue(this._manager.getChildCount() == 3);
+			Assert.assertTrue(this.indexOf("init:config") < this.indexOf("init:pool"));
+			Assert.assertTrue(this.indexOf("init:pool") < this.indexOf("init:service"));
+
+			this._manager.close();
+			Assert.assertTrue(this._manager.isClosed());
+			Assert.assertTrue(this.indexOf("close:service") < this.indexOf("close:pool"));
+			Assert.assertTrue(this.indexOf("close:pool") < this.indexOf("close:config"));
+		}
+		catch (final ManageableExistsException e)
+		{
+			Assert.fail(e.toString());
+		}
+	}
+
+	@Test
+	public void testDependencyOnExistingChild()
+	{
+		try
+		{
+			this._manager.create("pool", ManagerImplDependencyTest.MOCK);
+			this._manager.createAll(Arrays.asList(new ManageableDefinition("service", ManagerImplDependencyTest.MOCK, "pool")));
+			Assert.assertTrue(this._manager.getChildCount() == 2);
+
+			this._manager.close();
+			Assert.assertTrue(this.indexOf("close:service") < this.indexOf("close:pool"));
+		}
+		catch (final ManageableExistsException e)
+		{
+			Assert.fail(e.toString());
+		}
+	}
+
+	@Test
+	public void testIndependentChildrenInParallel()
+	{
+		// each initialize waits until the other has started, which only works in parallel.
+		MockDependentImpl.BARRIER = new CyclicBarrier(2);
+		try
+		{
+			this._manager.createAll(Arrays.asList(new ManageableDefinition("a", ManagerImplDependencyTest.MOCK),
+			        new ManageableDefinition("b", ManagerImplDependencyTest.MOCK)));
+			Assert.assertTrue(this._manager.getChildCount() == 2);
+		}
+		catch (final ManageableExistsException e)
+		{
+			Assert.fail(e.toString());
+		}
+	}
+
+	@Test
+	public void testCycle()
+	{
+		try
+		{
+			this._manager.createAll(Arrays.asList(new ManageableDefinition("a", ManagerImplDependencyTest.MOCK, "b"),
+			        new ManageableDefinition("b", ManagerImplDependencyTest.MOCK, "c"),
+			        new ManageableDefinition("c", ManagerImplDependencyTest.MOCK, "a"),
+			        new ManageableDefinition("d", ManagerImplDependencyTest.MOCK)));
+			Assert.fail();
+		}
+		catch (final ManageableExistsException e)
+		{
+			Assert.fail(e.toString());
+		}
+		catch (final DependencyCycleException e)
+		{
+			Assert.assertTrue(e.getMessage(), e.getMessage().contains("a -> b -> c -> a")
+			        || e.getMessage().contains("b -> c -> a -> b") || e.getMessage().contains("c -> a -> b -> c"));
+			Assert.assertTrue(this._manager.getChildCount() == 0);
+			Assert.assertTrue(MockDependentImpl.EVENTS.isEmpty());
+		}
+	}
+
+	@Test
+	public void testMissingDependency()
+	{
+		try
+		{
+			this._manager.createAll(Arrays.asList(new ManageableDefinition("a", ManagerImplDependencyTest.MOCK, "missing")));
+			Assert.fail();
+		}
+		catch (final ManageableExistsException e)
+		{
+			Assert.fail(e.toString());
+		}
+		catch (final ManagerException e)
+		{
+			Assert.assertTrue(this._manager.getChildCount() == 0);
+		}
+	}
+
+	@Test
+	public void testDuplicateKey()
+	{
+		try
+		{
+			this._manager.createAll(Arrays.asList(new ManageableDefinition("a", ManagerImplDependencyTest.MOCK),
+			        new ManageableDefinition("a", ManagerImplDependencyTest.MOCK)));
+			Assert.fail();
+		}
+		catch (final ManageableExistsException e)
+		{
+			Assert.assertTrue(this._manager.getChildCount() == 0);
+		}
+	}
+
+	@Test
+	public void testFailureRollsBack()
+	{
+		try
+		{
+			this._manager.createAll(Arrays.asList(new ManageableDefinition("pool", ManagerImplDependencyTest.MOCK),
+			        new ManageableDefinition("service", "com.gabstudios.manager.impl.DoesNotExist", "pool"),
+			        new ManageableDefinition("client", ManagerImplDependencyTest.MOCK, "service")));
+			Assert.fail();
+		}
+		catch (final ManageableExistsException e)
+		{
+			Assert.fail(e.toString());
+		}
+		catch (final ManagerException e)
+		{
+			Assert.assertTrue(this._manager.getChildCount() == 0);
+			Assert.assertTrue(this.indexOf("close:pool") > this.indexOf("init:pool"));
+			Assert.assertTrue(!MockDependentImpl.EVENTS.contains("init:client"));
+		}
+	}
+
+}
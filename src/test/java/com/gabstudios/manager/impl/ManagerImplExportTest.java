@@ -0,0 +1,254 @@
+/*****************************************************************************************
+ * 
+ * Copyright 2019 Gregory Brown. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ * 
+ ***************************************************************************************** 
+ */
+
+package com.gabstudios.manager.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.gabstudios.manager.Manageable;
+import com.gabstudios.manager.ManageableExistsException;
+import com.gabstudios.manager.ManagerClosedException;
+import com.gabstudios.manager.ManagerException;
+
+/**
+ * 
+ * Test class for the streaming export of the <code>ManagerImpl</code>
+ * 
+ * @author Gregory Brown (sysdevone)
+ */
+public class ManagerImplExportTest
+{
+
+	static final String		MOCK	= MockManageableImpl.class.getName();
+
+	ManagerImpl<Manageable>	_manager;
+
+	Path					_directory;
+
+	@Before
+	public void setup() throws IOException
+	{
+		this._manager = new ManagerImpl<Manageable>();
+		this._directory = Files.createTempDirectory("export");
+	}
+
+	@After
+	public void teardown() throws IOException
+	{
+		Files.deleteIfExists(this._directory.resolve("snapshot"));
+		Files.deleteIfExists(this._directory);
+	}
+
+	/*
+	 * Reads a length prefixed UTF-8 string.
+	 */
+	static String string(final ByteBuffer buffer)
+	{
+		final byte[] bytes = new byte[buffer.getInt()];
+		buffer.get(bytes);
+		return (new String(bytes, StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testBinary() throws ManageableExistsException
+	{
+		this._manager.create("a", ManagerImplExportTest.MOCK);
+		this._manager.create("b", ManagerImplExportTest.MOCK);
+
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		Assert.assertEquals(2, this._manager.export(out, ExportFormat.BINARY, false));
+
+		final ByteBuffer buffer = ByteBuffer.wrap(out.toByteArray());
+		Assert.assertEquals(RegistryExporter.MAGIC, buffer.getInt());
+		Assert.assertEquals(RegistryExporter.VERSION, buffer.getInt());
+		Assert.assertEquals(0, buffer.get());
+
+		final Map<String, String> classes = new HashMap<>();
+		for (int i = 0; i < 2; i++)
+		{
+			final String key = ManagerImplExportTest.string(buffer);
+			classes.put(key, ManagerImplExportTest.string(buffer));
+			Assert.assertEquals(RegistryExporter.ACTIVE, buffer.get());
+		}
+		Assert.assertEquals(0, buffer.getInt());
+		Assert.assertEquals(2, buffer.getInt());
+		Assert.assertFalse(buffer.hasRemaining());
+
+		Assert.assertEquals(ManagerImplExportTest.MOCK, classes.get("a"));
+		Assert.assertEquals(ManagerImplExportTest.MOCK, classes.get("b"));
+	}
+
+	@Test
+	public void testBinaryDetails() throws ManageableExistsException
+	{
+		this._manager.enableAccessStatistics(1);
+		this._manager.create("a", ManagerImplExportTest.MOCK, Collections.singletonMap("tenant", "x"));
+		this._manager.get("a");
+
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		Assert.assertEquals(1, this._manager.export(out, ExportFormat.BINARY, true));
+
+		final ByteBuffer buffer = ByteBuffer.wrap(out.toByteArray());
+		buffer.getInt();
+		buffer.getInt();
+		Assert.assertEquals(1, buffer.get());
+		Assert.assertEquals("a", ManagerImplExportTest.string(buffer));
+		Assert.assertEquals(ManagerImplExportTest.MOCK, ManagerImplExportTest.string(buffer));
+		Assert.assertEquals(RegistryExporter.ACTIVE, buffer.get());
+		Assert.assertEquals(HealthStatus.UNKNOWN.ordinal(), buffer.get());
+		Assert.assertEquals(1, buffer.getInt());
+		Assert.assertEquals("tenant", ManagerImplExportTest.string(buffer));
+		Assert.assertEquals("x", ManagerImplExportTest.string(buffer));
+		Assert.assertEquals(1, buffer.getLong());
+		Assert.assertTrue(buffer.getLong() > 0);
+		Assert.assertEquals(0, buffer.getInt());
+		Assert.assertEquals(0, buffer.getInt());
+		Assert.assertEquals(1, buffer.getInt());
+	}
+
+	@Test
+	public void testJson() throws ManageableExistsException
+	{
+		this._manager.create("a\"b", ManagerImplExportTest.MOCK);
+
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		Assert.assertEquals(1, this._manager.export(out, ExportFormat.JSON, false));
+		Assert.assertEquals("{\"version\":1,\"children\":[{\"key\":\"a\\\"b\",\"class\":\"" + ManagerImplExportTest.MOCK
+		        + "\",\"state\":\"ACTIVE\"}],\"count\":1}\n", new String(out.toByteArray(), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testJsonDetails() throws ManageableExistsException
+	{
+		this._manager.create("a", ManagerImplExportTest.MOCK, Collections.singletonMap("tenant", "x"));
+
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		this._manager.export(out, ExportFormat.JSON, true);
+		Assert.assertEquals("{\"version\":1,\"children\":[{\"key\":\"a\",\"class\":\"" + ManagerImplExportTest.MOCK
+		        + "\",\"state\":\"ACTIVE\",\"health\":\"UNKNOWN\",\"tags\":{\"tenant\":\"x\"},\"accessCount\":-1,"
+		        + "\"lastAccessTime\":0,\"dependsOn\":[]}],\"count\":1}\n",
+		        new String(out.toByteArray(), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testPending() throws ManageableExistsException
+	{
+		this._manager.create("a", ManagerImplExportTest.MOCK);
+		final Path file = this._directory.resolve("snapshot");
+		this._manager.saveSnapshot(file);
+
+		final ManagerImpl<Manageable> restored = new ManagerImpl<Manageable>();
+		restored.restoreSnapshot(file);
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		Assert.assertEquals(1, restored.export(out, ExportFormat.JSON, false));
+		Assert.assertTrue(new String(out.toByteArray(), StandardCharsets.UTF_8).contains("\"state\":\"PENDING\""));
+
+		// once used, it is active.
+		restored.get("a");
+		out.reset();
+		Assert.assertEquals(1, restored.export(out, ExportFormat.JSON, false));
+		Assert.assertTrue(new String(out.toByteArray(), StandardCharsets.UTF_8).contains("\"state\":\"ACTIVE\""));
+	}
+
+	@Test
+	public void testManyChildren() throws ManageableExistsException
+	{
+		for (int i = 0; i < 5000; i++)
+		{
+			this._manager.create("key" + i, ManagerImplExportTest.MOCK);
+		}
+
+		// larger than the buffer, so it is written in several pieces.
+		final int[] writes = new int[1];
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final OutputStream out = new OutputStream()
+		{
+			@Override
+			public void write(final int b)
+			{
+				bytes.write(b);
+			}
+
+			@Override
+			public void write(final byte[] b, final int off, final int len)
+			{
+				writes[0]++;
+				bytes.write(b, off, len);
+			}
+		};
+		Assert.assertEquals(5000, this._manager.export(out, ExportFormat.JSON, true));
+		Assert.assertTrue(writes[0] > 1);
+		Assert.assertTrue(new String(bytes.toByteArray(), StandardCharsets.UTF_8).endsWith(",\"count\":5000}\n"));
+	}
+
+	@Test
+	public void testToStringIsBounded() throws ManageableExistsException
+	{
+		for (int i = 0; i < 1000; i++)
+		{
+			this._manager.create("key" + i, ManagerImplExportTest.MOCK);
+		}
+		final String value = this._manager.toString();
+		Assert.assertTrue(value, value.startsWith("Manager [childCount=1000, children={"));
+		Assert.assertTrue(value, value.contains(", ...}"));
+		Assert.assertTrue(value, value.length() < 2000);
+	}
+
+	@Test
+	public void testWriteFails() throws ManageableExistsException
+	{
+		this._manager.create("a", ManagerImplExportTest.MOCK);
+		final OutputStream out = new OutputStream()
+		{
+			@Override
+			public void write(final int b) throws IOException
+			{
+				throw (new IOException("full"));
+			}
+		};
+		try
+		{
+			this._manager.export(out, ExportFormat.BINARY, false);
+			Assert.fail("The export should have failed.");
+		}
+		catch (final ManagerException e)
+		{
+			Assert.assertEquals("Unable to export the registry.", e.getMessage());
+		}
+	}
+
+	@Test(expected = ManagerClosedException.class)
+	public void testClosed()
+	{
+		this._manager.close();
+		this._manager.export(new ByteArrayOutputStream(), ExportFormat.JSON, false);
+	}
+
+}
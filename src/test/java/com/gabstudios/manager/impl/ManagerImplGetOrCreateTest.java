@@ -0,0 +1,277 @@
+/*****************************************************************************************
+ * 
+ * Copyright 2019 Gregory Brown. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ * 
+ ***************************************************************************************** 
+ */
+
+package com.gabstudios.manager.impl;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.gabstudios.manager.Manageable;
+import com.gabstudios.manager.ManageableExistsException;
+import com.gabstudios.manager.Manager;
+import com.gabstudios.manager.ManagerClosedException;
+
+/**
+ * 
+ * Test class for the non-throwing creates of the <code>ManagerImpl</code>
+ * 
+ * @author Gregory Brown (sysdevone)
+ */
+public class ManagerImplGetOrCreateTest
+{
+
+	static final String		MOCK	= MockManageableImpl.class.getName();
+
+	ManagerImpl<Manageable>	_manager;
+
+	@After
+	public void cleanup()
+	{
+		System.clearProperty(ManagerImpl.STACKLESS_EXCEPTIONS_PROPERTY);
+	}
+
+	@Before
+	public void setup()
+	{
+		this._manager = new ManagerImpl<Manageable>();
+	}
+
+	@Test
+	public void testGetOrCreateConcurrent() throws InterruptedException
+	{
+		final int threads = 16;
+		final CountDownLatch start = new CountDownLatch(1);
+		final Set<Manageable> children = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+		final Thread[] callers = new Thread[threads];
+		for (int i = 0; i < threads; i++)
+		{
+			callers[i] = new Thread(() -> {
+				try
+				{
+					start.await();
+				}
+				catch (final InterruptedException e)
+				{
+					return;
+				}
+				children.add(this._manager.getOrCreate("race", MockManageableImpl.class));
+			});
+			callers[i].start();
+		}
+		start.countDown();
+		for (final Thread caller : callers)
+		{
+			caller.join();
+		}
+
+		Assert.assertEquals(1, children.size());
+		Assert.assertSame(children.iterator().next(), this._manager.get("race"));
+		Assert.assertSame(this._manager, children.iterator().next().getParent());
+		Assert.assertEquals(1, this._manager.getChildCount());
+	}
+
+	@Test
+	public void testGetOrCreateWaitsForInitialize() throws Exception
+	{
+		final CountDownLatch initializing = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final CompletableFuture<Manageable> first = CompletableFuture
+		        .supplyAsync(() -> this._manager.getOrCreate("slow", () -> new MockManageableImpl()
+		        {
+			        @Override
+			        public <P extends Manager> void initialize(final P parent, final String key)
+			        {
+				        initializing.countDown();
+				        ManagerImplGetOrCreateTest.await(release);
+				        super.initialize(parent, key);
+			        }
+		        }));
+		Assert.assertTrue(initializing.await(10, TimeUnit.SECONDS));
+
+		// a second caller finds the child bound but not initialized, and waits for it.
+		final CompletableFuture<Manageable> second = CompletableFuture
+		        .supplyAsync(() -> this._manager.getOrCreate("slow", MockManageableImpl.class));
+		Thread.sleep(100);
+		Assert.assertFalse(second.isDone());
+
+		release.countDown();
+		final Manageable child = first.get(10, TimeUnit.SECONDS);
+		Assert.assertSame(child, second.get(10, TimeUnit.SECONDS));
+		Assert.assertEquals("slow", child.getKey());
+	}
+
+	@Test
+	public void testGetOrCreateAfterInitializeFails() throws Exception
+	{
+		final CountDownLatch initializing = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final CompletableFuture<Manageable> first = CompletableFuture
+		        .supplyAsync(() -> this._manager.getOrCreate("failing", () -> new MockManageableImpl()
+		        {
+			        @Override
+			        public <P extends Manager> void initialize(final P parent, final String key)
+			        {
+				        initializing.countDown();
+				        ManagerImplGetOrCreateTest.await(release);
+				        throw (new IllegalStateException("The child failed to initialize."));
+			        }
+		        }));
+		Assert.assertTrue(initializing.await(10, TimeUnit.SECONDS));
+
+		final CompletableFuture<Manageable> second = CompletableFuture
+		        .supplyAsync(() -> this._manager.getOrCreate("failing", MockManageableImpl.class));
+		Thread.sleep(100);
+		Assert.assertFalse(second.isDone());
+
+		// the failed child is not handed out; the second caller creates its own.
+		release.countDown();
+		try
+		{
+			first.get(10, TimeUnit.SECONDS);
+			Assert.fail("The first child should have failed to initialize.");
+		}
+		catch (final ExecutionException e)
+		{
+			Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+		}
+		final Manageable child = second.get(10, TimeUnit.SECONDS);
+		Assert.assertEquals(MockManageableImpl.class, child.getClass());
+		Assert.assertEquals("failing", child.getKey());
+		Assert.assertSame(child, this._manager.get("failing"));
+	}
+
+	/*
+	 * Waits for the latch, for a child's initialize that may not throw InterruptedException.
+	 */
+	static void await(final CountDownLatch latch)
+	{
+		try
+		{
+			latch.await(10, TimeUnit.SECONDS);
+		}
+		catch (final InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Test
+	public void testGetOrCreateReturnsExisting()
+	{
+		try
+		{
+			final Manageable created = this._manager.create("key", ManagerImplGetOrCreateTest.MOCK);
+			Assert.assertSame(created, this._manager.getOrCreate("key", ManagerImplGetOrCreateTest.MOCK));
+			Assert.assertSame(created, this._manager.getOrCreate("key", MockManageableImpl.class));
+			Assert.assertSame(created, this._manager.getOrCreate("key", MockManageableImpl::new));
+			Assert.assertEquals(1, this._manager.getChildCount());
+		}
+		catch (final Exception e)
+		{
+			Assert.fail(e.toString());
+		}
+	}
+
+	@Test
+	public void testGetOrCreateSupplier()
+	{
+		try
+		{
+			final Manageable child = this._manager.getOrCreate("key", MockManageableImpl::new);
+			Assert.assertSame(this._manager, child.getParent());
+			Assert.assertEquals("key", child.getKey());
+			Assert.assertSame(child, this._manager.get("key"));
+		}
+		catch (final Exception e)
+		{
+			Assert.fail(e.toString());
+		}
+	}
+
+	@Test
+	public void testStacklessExceptions() throws ManageableExistsException
+	{
+		System.setProperty(ManagerImpl.STACKLESS_EXCEPTIONS_PROPERTY, "true");
+		final ManagerImpl<Manageable> manager = new ManagerImpl<Manageable>();
+		manager.create("key", ManagerImplGetOrCreateTest.MOCK);
+		try
+		{
+			manager.create("key", ManagerImplGetOrCreateTest.MOCK);
+			Assert.fail("Expected a ManageableExistsException.");
+		}
+		catch (final ManageableExistsException e)
+		{
+			Assert.assertEquals(0, e.getStackTrace().length);
+		}
+
+		manager.close();
+		try
+		{
+			manager.get("key");
+			Assert.fail("Expected a ManagerClosedException.");
+		}
+		catch (final ManagerClosedException e)
+		{
+			Assert.assertEquals(0, e.getStackTrace().length);
+		}
+	}
+
+	@Test
+	public void testStackTraceByDefault() throws ManageableExistsException
+	{
+		this._manager.create("key", ManagerImplGetOrCreateTest.MOCK);
+		try
+		{
+			this._manager.create("key", ManagerImplGetOrCreateTest.MOCK);
+			Assert.fail("Expected a ManageableExistsException.");
+		}
+		catch (final ManageableExistsException e)
+		{
+			Assert.assertTrue(e.getStackTrace().length > 0);
+		}
+	}
+
+	@Test
+	public void testTryCreate()
+	{
+		try
+		{
+			final Optional<Manageable> created = this._manager.tryCreate("key", ManagerImplGetOrCreateTest.MOCK);
+			Assert.assertTrue(created.isPresent());
+			Assert.assertEquals("key", created.get().getKey());
+
+			Assert.assertFalse(this._manager.tryCreate("key", ManagerImplGetOrCreateTest.MOCK).isPresent());
+			Assert.assertFalse(this._manager.tryCreate("key", MockManageableImpl.class).isPresent());
+			Assert.assertSame(created.get(), this._manager.get("key"));
+		}
+		catch (final Exception e)
+		{
+			Assert.fail(e.toString());
+		}
+	}
+
+}
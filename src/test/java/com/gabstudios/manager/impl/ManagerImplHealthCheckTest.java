@@ -0,0 +1,226 @@
+/*****************************************************************************************
+ * 
+ * Copyright 2019 Gregory Brown. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ * 
+ ***************************************************************************************** 
+ */
+
+package com.gabstudios.manager.impl;
+
+import java.time.Duration;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.gabstudios.manager.Manageable;
+import com.gabstudios.manager.ManageableExistsException;
+import com.gabstudios.manager.ManagerClosedException;
+
+/**
+ * 
+ * Test class for the health checks of the <code>ManagerImpl</code>
+ * 
+ * @author Gregory Brown (sysdevone)
+ */
+public class ManagerImplHealthCheckTest
+{
+
+	static final String		HEALTH		= MockHealthImpl.class.getName();
+
+	static final Duration	INTERVAL	= Duration.ofMillis(20);
+
+	/*
+	 * Waits up to ten seconds for the condition.
+	 */
+	static boolean eventually(final BooleanSupplier condition) throws InterruptedException
+	{
+		final long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+		while (!condition.getAsBoolean())
+		{
+			if (System.nanoTime() > deadline)
+			{
+				return (false);
+			}
+			Thread.sleep(5);
+		}
+		return (true);
+	}
+
+	ManagerImpl<Manageable>	_manager;
+
+	@Before
+	public void setup()
+	{
+		this._manager = new ManagerImpl<Manageable>();
+	}
+
+	@After
+	public void tearDown()
+	{
+		if (!this._manager.isClosed())
+		{
+			this._manager.close();
+		}
+	}
+
+	@Test
+	public void testHealthy() throws ManageableExistsException, InterruptedException
+	{
+		for (int i = 0; i < 50; i++)
+		{
+			this._manager.create("key" + i, ManagerImplHealthCheckTest.HEALTH);
+		}
+		this._manager.create("plain", ManagerImplLeaseTest.MOCK);
+		Assert.assertEquals(HealthStatus.UNKNOWN, this._manager.getHealth("key0"));
+
+		this._manager.startHealthChecks(ManagerImplHealthCheckTest.INTERVAL, 8, UnhealthyAction.NONE);
+		for (int i = 0; i < 50; i++)
+		{
+			final String key = "key" + i;
+			Assert.assertTrue(key, ManagerImplHealthCheckTest
+			        .eventually(() -> this._manager.getHealth(key) == HealthStatus.HEALTHY));
+		}
+
+		// a child that is not HealthCheckable is never checked.
+		Assert.assertEquals(HealthStatus.UNKNOWN, this._manager.getHealth("plain"));
+
+		// children are checked again every interval.
+		final MockHealthImpl child = (MockHealthImpl) this._manager.get("key0");
+		final int checks = child._checks;
+		Assert.assertTrue(ManagerImplHealthCheckTest.eventually(() -> child._checks > checks + 2));
+	}
+
+	@Test
+	public void testUnhealthyMarked() throws ManageableExistsException, InterruptedException
+	{
+		final Manageable sick = this._manager.create("sick", ManagerImplHealthCheckTest.HEALTH);
+		this._manager.create("broken", ManagerImplHealthCheckTest.HEALTH);
+		this._manager.startHealthChecks(ManagerImplHealthCheckTest.INTERVAL, 8, UnhealthyAction.NONE);
+
+		Assert.assertTrue(ManagerImplHealthCheckTest
+		        .eventually(() -> this._manager.getHealth("sick") == HealthStatus.UNHEALTHY));
+		Assert.assertTrue(ManagerImplHealthCheckTest
+		        .eventually(() -> this._manager.getHealth("broken") == HealthStatus.UNHEALTHY));
+		Assert.assertSame(sick, this._manager.get("sick"));
+	}
+
+	@Test
+	public void testUnhealthyClosed() throws ManageableExistsException, InterruptedException
+	{
+		final Manageable sick = this._manager.create("sick", ManagerImplHealthCheckTest.HEALTH);
+		this._manager.create("well", ManagerImplHealthCheckTest.HEALTH);
+		this._manager.startHealthChecks(ManagerImplHealthCheckTest.INTERVAL, 8, UnhealthyAction.CLOSE);
+
+		Assert.assertTrue(ManagerImplHealthCheckTest.eventually(() -> !this._manager.containsChild("sick")));
+		Assert.assertTrue(ManagerImplLeaseTest.isClosed(sick));
+		Assert.assertEquals(HealthStatus.UNKNOWN, this._manager.getHealth("sick"));
+		Assert.assertTrue(this._manager.containsChild("well"));
+	}
+
+	@Test
+	public void testUnhealthyRecreated() throws ManageableExistsException, InterruptedException
+	{
+		final Manageable sick = this._manager.create("sick", ManagerImplHealthCheckTest.HEALTH);
+		this._manager.startHealthChecks(ManagerImplHealthCheckTest.INTERVAL, 8, UnhealthyAction.RECREATE);
+
+		Assert.assertTrue(ManagerImplHealthCheckTest.eventually(() -> ManagerImplLeaseTest.isClosed(sick)));
+		Assert.assertTrue(ManagerImplHealthCheckTest.eventually(() -> {
+			final Manageable child = this._manager.get("sick");
+			return ((child != null) && (child != sick));
+		}));
+		Assert.assertTrue(this._manager.get("sick") instanceof MockHealthImpl);
+	}
+
+	@Test
+	public void testChecksRunOnLifecycleExecutor() throws ManageableExistsException, InterruptedException
+	{
+		final AtomicInteger tasks = new AtomicInteger();
+		final ManagerImpl<Manageable> manager = new ManagerImpl<Manageable>(task -> {
+			tasks.incrementAndGet();
+			ForkJoinPool.commonPool().execute(task);
+		});
+		try
+		{
+			manager.create("key", ManagerImplHealthCheckTest.HEALTH);
+			final int created = tasks.get();
+			manager.startHealthChecks(ManagerImplHealthCheckTest.INTERVAL, 8, UnhealthyAction.NONE);
+			Assert.assertTrue(
+			        ManagerImplHealthCheckTest.eventually(() -> manager.getHealth("key") == HealthStatus.HEALTHY));
+			Assert.assertTrue(tasks.get() > created);
+		}
+		finally
+		{
+			manager.close();
+		}
+	}
+
+	@Test
+	public void testStop() throws ManageableExistsException, InterruptedException
+	{
+		final MockHealthImpl child = (MockHealthImpl) this._manager.create("key", ManagerImplHealthCheckTest.HEALTH);
+		this._manager.startHealthChecks(ManagerImplHealthCheckTest.INTERVAL, 8, UnhealthyAction.NONE);
+		Assert.assertTrue(ManagerImplHealthCheckTest
+		        .eventually(() -> this._manager.getHealth("key") == HealthStatus.HEALTHY));
+
+		this._manager.stopHealthChecks();
+		Assert.assertEquals(HealthStatus.UNKNOWN, this._manager.getHealth("key"));
+		Thread.sleep(ManagerImplHealthCheckTest.INTERVAL.toMillis() * 3);
+		final int checks = child._checks;
+		Thread.sleep(ManagerImplHealthCheckTest.INTERVAL.toMillis() * 5);
+		Assert.assertEquals(checks, child._checks);
+	}
+
+	@Test
+	public void testInvalidArguments()
+	{
+		try
+		{
+			this._manager.startHealthChecks(Duration.ZERO, 8, UnhealthyAction.NONE);
+			Assert.fail("A zero interval should throw.");
+		}
+		catch (final IllegalArgumentException e)
+		{
+			// expected.
+		}
+		try
+		{
+			this._manager.startHealthChecks(ManagerImplHealthCheckTest.INTERVAL, 0, UnhealthyAction.NONE);
+			Assert.fail("A zero batch size should throw.");
+		}
+		catch (final IllegalArgumentException e)
+		{
+			// expected.
+		}
+	}
+
+	@Test
+	public void testClosedManager()
+	{
+		this._manager.startHealthChecks(ManagerImplHealthCheckTest.INTERVAL, 8, UnhealthyAction.NONE);
+		this._manager.close();
+		try
+		{
+			this._manager.getHealth("key");
+			Assert.fail("A closed manager should throw.");
+		}
+		catch (final ManagerClosedException e)
+		{
+			// expected.
+		}
+	}
+
+}
@@ -0,0 +1,215 @@
+/*****************************************************************************************
+ * 
+ * Copyright 2019 Gregory Brown. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ * 
+ ***************************************************************************************** 
+ */
+
+package com.gabstudios.manager.impl;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.gabstudios.manager.Manageable;
+import com.gabstudios.manager.ManageableExistsException;
+import com.gabstudios.manager.Manager;
+import com.gabstudios.manager.ManagerClosedException;
+
+/**
+ * 
+ * Test class for the leases of the <code>ManagerImpl</code>
+ * 
+ * @author Gregory Brown (sysdevone)
+ */
+public class ManagerImplLeaseTest
+{
+
+	static final String		MOCK	= MockManageableImpl.class.getName();
+
+	/*
+	 * Returns true if the child has been closed.
+	 */
+	static boolean isClosed(final Manageable child)
+	{
+		try
+		{
+			child.getParent();
+			return (false);
+		}
+		catch (final ManagerClosedException e)
+		{
+			return (true);
+		}
+	}
+
+	ManagerImpl<Manageable>	_manager;
+
+	@Before
+	public void setup()
+	{
+		this._manager = new ManagerImpl<Manageable>();
+	}
+
+	@Test
+	public void testAcquireMissing()
+	{
+		Assert.assertNull(this._manager.acquire("missing"));
+	}
+
+	@Test
+	public void testCloseChildWaitsForLastLease() throws ManageableExistsException
+	{
+		final Manageable child = this._manager.create("key", ManagerImplLeaseTest.MOCK);
+		final Lease<Manageable> first = this._manager.acquire("key");
+		final Lease<Manageable> second = this._manager.acquire("key");
+		Assert.assertSame(child, first.get());
+
+		Assert.assertSame(child, this._manager.closeChild("key"));
+		Assert.assertFalse(this._manager.containsChild("key"));
+		Assert.assertNull(this._manager.acquire("key"));
+		Assert.assertFalse(ManagerImplLeaseTest.isClosed(child));
+
+		first.close();
+		first.close();
+		Assert.assertTrue(first.isReleased());
+		Assert.assertFalse(ManagerImplLeaseTest.isClosed(child));
+
+		second.close();
+		Assert.assertTrue(ManagerImplLeaseTest.isClosed(child));
+	}
+
+	@Test
+	public void testCloseChildWithoutLeases() throws ManageableExistsException
+	{
+		final Manageable child = this._manager.create("key", ManagerImplLeaseTest.MOCK);
+		try (Lease<Manageable> lease = this._manager.acquire("key"))
+		{
+			Assert.assertSame(child, lease.get());
+		}
+		this._manager.closeChild("key");
+		Assert.assertTrue(ManagerImplLeaseTest.isClosed(child));
+	}
+
+	@Test
+	public void testConcurrentAcquireAndClose() throws InterruptedException, ManageableExistsException
+	{
+		final int threads = 8;
+		final AtomicBoolean usedClosed = new AtomicBoolean();
+		final AtomicInteger acquired = new AtomicInteger();
+		final CountDownLatch running = new CountDownLatch(threads);
+		final AtomicBoolean stop = new AtomicBoolean();
+
+		final Manageable child = this._manager.create("key", ManagerImplLeaseTest.MOCK);
+		final Thread[] workers = new Thread[threads];
+		for (int i = 0; i < threads; i++)
+		{
+			workers[i] = new Thread(() -> {
+				running.countDown();
+				while (!stop.get())
+				{
+					try (Lease<Manageable> lease = this._manager.acquire("key"))
+					{
+						if (lease == null)
+						{
+							break;
+						}
+						acquired.incrementAndGet();
+						if (ManagerImplLeaseTest.isClosed(lease.get()))
+						{
+							usedClosed.set(true);
+						}
+					}
+				}
+			});
+			workers[i].start();
+		}
+
+		running.await();
+		Thread.sleep(20);
+		this._manager.closeChild("key");
+		stop.set(true);
+		for (final Thread worker : workers)
+		{
+			worker.join();
+		}
+
+		Assert.assertTrue(acquired.get() > 0);
+		Assert.assertFalse(usedClosed.get());
+		Assert.assertTrue(ManagerImplLeaseTest.isClosed(child));
+	}
+
+	@Test
+	public void testLeaseOfChildThatFailedToInitialize() throws Exception
+	{
+		final CountDownLatch initializing = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final CompletableFuture<Manageable> failing = CompletableFuture
+		        .supplyAsync(() -> this._manager.getOrCreate("key", () -> new MockManageableImpl()
+		        {
+			        @Override
+			        public <P extends Manager> void initialize(final P parent, final String key)
+			        {
+				        initializing.countDown();
+				        ManagerImplGetOrCreateTest.await(release);
+				        throw (new IllegalStateException("The child failed to initialize."));
+			        }
+		        }));
+		Assert.assertTrue(initializing.await(10, TimeUnit.SECONDS));
+
+		// leases the child while it is being initialized.
+		final Lease<Manageable> lease = this._manager.acquire("key");
+		Assert.assertNotNull(lease);
+		release.countDown();
+		try
+		{
+			failing.get(10, TimeUnit.SECONDS);
+			Assert.fail("The child should have failed to initialize.");
+		}
+		catch (final ExecutionException e)
+		{
+			Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+		}
+
+		// the count of the failed child does not hold up the leases of the next child bound to the key.
+		final Manageable child = this._manager.create("key", ManagerImplLeaseTest.MOCK);
+		final CompletableFuture<Lease<Manageable>> next = CompletableFuture
+		        .supplyAsync(() -> this._manager.acquire("key"));
+		try (Lease<Manageable> acquired = next.get(10, TimeUnit.SECONDS))
+		{
+			Assert.assertSame(child, acquired.get());
+		}
+
+		lease.close();
+		Assert.assertTrue(lease.isReleased());
+		Assert.assertFalse(ManagerImplLeaseTest.isClosed(child));
+	}
+
+	@Test
+	public void testManagerCloseWaitsForLease() throws ManageableExistsException
+	{
+		final Manageable child = this._manager.create("key", ManagerImplLeaseTest.MOCK);
+		final Lease<Manageable> lease = this._manager.acquire("key");
+		this._manager.close();
+		Assert.assertFalse(ManagerImplLeaseTest.isClosed(child));
+		lease.close();
+		Assert.assertTrue(ManagerImplLeaseTest.isClosed(child));
+	}
+
+}
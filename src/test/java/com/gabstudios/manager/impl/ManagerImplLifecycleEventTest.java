@@ -0,0 +1,352 @@
+/*****************************************************************************************
+ * 
+ * Copyright 2019 Gregory Brown. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ * 
+ ***************************************************************************************** 
+ */
+
+package com.gabstudios.manager.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.gabstudios.manager.Manageable;
+import com.gabstudios.manager.ManageableExistsException;
+import com.gabstudios.manager.ManagerClosedException;
+import com.gabstudios.manager.ManagerException;
+
+/**
+ * 
+ * Test class for the lifecycle events of the <code>ManagerImpl</code>
+ * 
+ * @author Gregory Brown (sysdevone)
+ */
+public class ManagerImplLifecycleEventTest
+{
+
+	static final String	MOCK	= MockManageableImpl.class.getName();
+
+	/*
+	 * Records the signals it receives.
+	 */
+	static class RecordingSubscriber implements Flow.Subscriber<LifecycleEvent>
+	{
+		final List<LifecycleEvent>	_events		= new ArrayList<>();
+		final CountDownLatch		_done		= new CountDownLatch(1);
+		volatile Flow.Subscription	_subscription;
+		volatile Throwable			_error;
+		volatile boolean			_isComplete;
+
+		@Override
+		public void onComplete()
+		{
+			this._isComplete = true;
+			this._done.countDown();
+		}
+
+		@Override
+		public void onError(final Throwable throwable)
+		{
+			this._error = throwable;
+			this._done.countDown();
+		}
+
+		@Override
+		public void onNext(final LifecycleEvent item)
+		{
+			synchronized (this._events)
+			{
+				this._events.add(item);
+			}
+		}
+
+		@Override
+		public void onSubscribe(final Flow.Subscription subscription)
+		{
+			this._subscription = subscription;
+		}
+
+		String describe()
+		{
+			final StringBuilder builder = new StringBuilder();
+			synchronized (this._events)
+			{
+				for (final LifecycleEvent event : this._events)
+				{
+					builder.append(event.getType()).append(' ').append(event.getKey()).append(';');
+				}
+			}
+			return (builder.toString());
+		}
+	}
+
+	ManagerImpl<Manageable>	_manager;
+
+	@Before
+	public void setup()
+	{
+		// subscribers are called on the calling thread.
+		this._manager = new ManagerImpl<Manageable>(Runnable::run);
+	}
+
+	@Test
+	public void testEventsInOrder() throws ManageableExistsException
+	{
+		final RecordingSubscriber subscriber = new RecordingSubscriber();
+		this._manager.getLifecycleEvents().subscribe(subscriber);
+		subscriber._subscription.request(Long.MAX_VALUE);
+
+		this._manager.create("a", ManagerImplLifecycleEventTest.MOCK);
+		this._manager.create("b", ManagerImplLifecycleEventTest.MOCK);
+		this._manager.closeChild("a");
+		this._manager.get("b").close();
+
+		Assert.assertEquals("CREATED a;CREATED b;CLOSED a;CLOSED b;", subscriber.describe());
+		Assert.assertEquals(ManagerImplLifecycleEventTest.MOCK, subscriber._events.get(0).getClassName());
+		for (int i = 1; i < subscriber._events.size(); i++)
+		{
+			Assert.assertTrue(subscriber._events.get(i - 1).getSequence() < subscriber._events.get(i).getSequence());
+		}
+	}
+
+	@Test
+	public void testDemand() throws ManageableExistsException
+	{
+		final RecordingSubscriber subscriber = new RecordingSubscriber();
+		this._manager.getLifecycleEvents().subscribe(subscriber);
+		this._manager.create("a", ManagerImplLifecycleEventTest.MOCK);
+		this._manager.create("b", ManagerImplLifecycleEventTest.MOCK);
+		this._manager.create("c", ManagerImplLifecycleEventTest.MOCK);
+		Assert.assertEquals("", subscriber.describe());
+
+		subscriber._subscription.request(1);
+		Assert.assertEquals("CREATED a;", subscriber.describe());
+		subscriber._subscription.request(5);
+		Assert.assertEquals("CREATED a;CREATED b;CREATED c;", subscriber.describe());
+		this._manager.create("d", ManagerImplLifecycleEventTest.MOCK);
+		Assert.assertEquals("CREATED a;CREATED b;CREATED c;CREATED d;", subscriber.describe());
+	}
+
+	@Test
+	public void testDropOldest() throws ManageableExistsException
+	{
+		final RecordingSubscriber subscriber = new RecordingSubscriber();
+		this._manager.getLifecycleEvents(2, OverflowPolicy.DROP_OLDEST).subscribe(subscriber);
+		for (int i = 0; i < 5; i++)
+		{
+			this._manager.create("key" + i, ManagerImplLifecycleEventTest.MOCK);
+		}
+		subscriber._subscription.request(10);
+		Assert.assertEquals("CREATED key3;CREATED key4;", subscriber.describe());
+		Assert.assertEquals(4, subscriber._events.get(0).getSequence());
+	}
+
+	@Test
+	public void testCoalesce() throws ManageableExistsException
+	{
+		final RecordingSubscriber subscriber = new RecordingSubscriber();
+		this._manager.getLifecycleEvents(2, OverflowPolicy.COALESCE).subscribe(subscriber);
+		this._manager.create("a", ManagerImplLifecycleEventTest.MOCK);
+		this._manager.create("b", ManagerImplLifecycleEventTest.MOCK);
+		this._manager.create("c", ManagerImplLifecycleEventTest.MOCK);
+		this._manager.closeChild("c");
+		this._manager.closeChild("a");
+
+		// the buffer holds the first events and the rest keep the latest event of each key.
+		subscriber._subscription.request(10);
+		final String events = subscriber.describe();
+		Assert.assertTrue(events, events.startsWith("CREATED a;CREATED b;"));
+		Assert.assertTrue(events, events.contains("CLOSED a;"));
+		Assert.assertTrue(events, events.contains("CLOSED c;"));
+		Assert.assertFalse(events, events.contains("CREATED c;"));
+		Assert.assertEquals(4, subscriber._events.size());
+
+		// caught up, so events are buffered again.
+		this._manager.create("c", ManagerImplLifecycleEventTest.MOCK);
+		Assert.assertTrue(subscriber.describe().endsWith("CREATED c;"));
+	}
+
+	@Test
+	public void testCoalesceMoreKeysThanCapacity() throws ManageableExistsException
+	{
+		final RecordingSubscriber subscriber = new RecordingSubscriber();
+		this._manager.getLifecycleEvents(2, OverflowPolicy.COALESCE).subscribe(subscriber);
+		for (int i = 0; i < 10; i++)
+		{
+			this._manager.create("key" + i, ManagerImplLifecycleEventTest.MOCK);
+		}
+
+		// the buffer holds the first two events, and the latest two keys are kept in place of the older ones.
+		subscriber._subscription.request(10);
+		final String events = subscriber.describe();
+		Assert.assertTrue(events, events.startsWith("CREATED key0;CREATED key1;"));
+		Assert.assertTrue(events, events.contains("CREATED key8;"));
+		Assert.assertTrue(events, events.contains("CREATED key9;"));
+		Assert.assertEquals(events, 4, subscriber._events.size());
+	}
+
+	@Test
+	public void testFail() throws ManageableExistsException
+	{
+		final RecordingSubscriber subscriber = new RecordingSubscriber();
+		this._manager.getLifecycleEvents(1, OverflowPolicy.FAIL).subscribe(subscriber);
+		this._manager.create("a", ManagerImplLifecycleEventTest.MOCK);
+		Assert.assertNull(subscriber._error);
+		this._manager.create("b", ManagerImplLifecycleEventTest.MOCK);
+		Assert.assertTrue(subscriber._error instanceof ManagerException);
+
+		// the failed subscription receives nothing more.
+		subscriber._subscription.request(10);
+		this._manager.create("c", ManagerImplLifecycleEventTest.MOCK);
+		Assert.assertEquals("", subscriber.describe());
+	}
+
+	@Test
+	public void testSubscriberThrows() throws ManageableExistsException
+	{
+		final IllegalStateException failure = new IllegalStateException("The subscriber failed.");
+		final RecordingSubscriber subscriber = new RecordingSubscriber()
+		{
+			@Override
+			public void onNext(final LifecycleEvent item)
+			{
+				super.onNext(item);
+				throw (failure);
+			}
+		};
+		this._manager.getLifecycleEvents().subscribe(subscriber);
+		subscriber._subscription.request(10);
+
+		// the failure is signalled to the subscriber and does not reach the manager.
+		this._manager.create("a", ManagerImplLifecycleEventTest.MOCK);
+		Assert.assertSame(failure, subscriber._error);
+
+		// the subscription is cancelled, and the other subscribers still receive their events.
+		final RecordingSubscriber other = new RecordingSubscriber();
+		this._manager.getLifecycleEvents().subscribe(other);
+		other._subscription.request(10);
+		this._manager.create("b", ManagerImplLifecycleEventTest.MOCK);
+		Assert.assertEquals("CREATED a;", subscriber.describe());
+		Assert.assertEquals("CREATED b;", other.describe());
+	}
+
+	@Test
+	public void testInvalidRequest()
+	{
+		final RecordingSubscriber subscriber = new RecordingSubscriber();
+		this._manager.getLifecycleEvents().subscribe(subscriber);
+		subscriber._subscription.request(0);
+		Assert.assertTrue(subscriber._error instanceof IllegalArgumentException);
+	}
+
+	@Test
+	public void testCancel() throws ManageableExistsException
+	{
+		final RecordingSubscriber subscriber = new RecordingSubscriber();
+		this._manager.getLifecycleEvents().subscribe(subscriber);
+		subscriber._subscription.request(10);
+		this._manager.create("a", ManagerImplLifecycleEventTest.MOCK);
+		subscriber._subscription.cancel();
+		this._manager.create("b", ManagerImplLifecycleEventTest.MOCK);
+		Assert.assertEquals("CREATED a;", subscriber.describe());
+	}
+
+	@Test
+	public void testCompleteOnClose() throws ManageableExistsException
+	{
+		final RecordingSubscriber subscriber = new RecordingSubscriber();
+		this._manager.getLifecycleEvents().subscribe(subscriber);
+		this._manager.create("a", ManagerImplLifecycleEventTest.MOCK);
+		this._manager.close();
+
+		// the buffered events are delivered before the completion.
+		Assert.assertFalse(subscriber._isComplete);
+		subscriber._subscription.request(10);
+		Assert.assertEquals("CREATED a;CLOSED a;", subscriber.describe());
+		Assert.assertTrue(subscriber._isComplete);
+
+		try
+		{
+			this._manager.getLifecycleEvents();
+			Assert.fail("Getting the events of a closed manager should throw.");
+		}
+		catch (final ManagerClosedException e)
+		{
+			// expected.
+		}
+	}
+
+	@Test
+	public void testSlowSubscriberDoesNotBlock() throws Exception
+	{
+		final ExecutorService executor = Executors.newFixedThreadPool(2);
+		try
+		{
+			final ManagerImpl<Manageable> manager = new ManagerImpl<Manageable>(executor);
+			final CountDownLatch gate = new CountDownLatch(1);
+			final RecordingSubscriber subscriber = new RecordingSubscriber()
+			{
+				@Override
+				public void onNext(final LifecycleEvent item)
+				{
+					try
+					{
+						gate.await();
+					}
+					catch (final InterruptedException e)
+					{
+						Thread.currentThread().interrupt();
+					}
+					super.onNext(item);
+				}
+			};
+			manager.getLifecycleEvents(16, OverflowPolicy.COALESCE).subscribe(subscriber);
+			while (subscriber._subscription == null)
+			{
+				Thread.yield();
+			}
+			subscriber._subscription.request(Long.MAX_VALUE);
+
+			// the subscriber is stuck on the first event, and the creates do not wait for it.
+			for (int i = 0; i < 1000; i++)
+			{
+				manager.create("key" + i, ManagerImplLifecycleEventTest.MOCK);
+			}
+			gate.countDown();
+			manager.close();
+			Assert.assertTrue(subscriber._done.await(10, TimeUnit.SECONDS));
+			Assert.assertTrue(subscriber._isComplete);
+
+			// events of the older keys were dropped while the subscriber was stuck, but the latest is delivered.
+			long latest = 0;
+			for (final LifecycleEvent event : subscriber._events)
+			{
+				latest = Math.max(latest, event.getSequence());
+			}
+			Assert.assertEquals(2000, latest);
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+	}
+
+}
@@ -0,0 +1,204 @@
+/*****************************************************************************************
+ * 
+ * Copyright 2019 Gregory Brown. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ * 
+ ***************************************************************************************** 
+ */
+
+package com.gabstudios.manager.impl;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Stream;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.gabstudios.manager.Manageable;
+import com.gabstudios.manager.ManageableExistsException;
+import com.gabstudios.manager.ManagerException;
+
+/**
+ * 
+ * Test class for the reload of child implementations of the <code>ManagerImpl</code>
+ * 
+ * @author Gregory Brown (sysdevone)
+ */
+public class ManagerImplReloadTest
+{
+
+	static final String		WIDGET	= "reload.Widget";
+
+	Path					_directory;
+
+	ManagerImpl<Manageable>	_manager;
+
+	/*
+	 * Returns the VERSION field of a child.
+	 */
+	static String versionOf(final Manageable child) throws ReflectiveOperationException
+	{
+		return ((String) child.getClass().getField("VERSION").get(null));
+	}
+
+	@After
+	public void cleanup() throws IOException
+	{
+		if (!this._manager.isClosed())
+		{
+			this._manager.close();
+		}
+		try (Stream<Path> files = Files.walk(this._directory))
+		{
+			files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+		}
+	}
+
+	/*
+	 * Compiles a version of reload.Widget into a jar.
+	 */
+	Path jar(final String version) throws Exception
+	{
+		final Path sources = Files.createDirectories(this._directory.resolve(version).resolve("reload"));
+		final Path source = sources.resolve("Widget.java");
+		Files.write(source,
+		        ("package reload;\n" + "public class Widget extends com.gabstudios.manager.impl.ManageableImpl {\n"
+		                + "    public static final String VERSION = new String(\"" + version + "\");\n" + "}\n")
+		                        .getBytes(StandardCharsets.UTF_8));
+
+		final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		Assert.assertNotNull("The tests need a JDK.", compiler);
+		final String classPath = Paths
+		        .get(ManageableImpl.class.getProtectionDomain().getCodeSource().getLocation().toURI()).toString();
+		Assert.assertEquals(0, compiler.run(null, null, null, "-classpath", classPath, source.toString()));
+
+		final Path jar = this._directory.resolve("widget-" + version + ".jar");
+		try (JarOutputStream output = new JarOutputStream(Files.newOutputStream(jar)))
+		{
+			output.putNextEntry(new JarEntry("reload/Widget.class"));
+			output.write(Files.readAllBytes(sources.resolve("Widget.class")));
+			output.closeEntry();
+		}
+		return (jar);
+	}
+
+	@Before
+	public void setup() throws IOException
+	{
+		this._directory = Files.createTempDirectory("gab-manager-reload");
+		this._manager = new ManagerImpl<Manageable>();
+	}
+
+	@Test
+	public void testReload() throws Exception
+	{
+		// the class is only in the jars.
+		try
+		{
+			this._manager.create("a", ManagerImplReloadTest.WIDGET);
+			Assert.fail("The class should not be on the class path.");
+		}
+		catch (final ManagerException e)
+		{
+			// expected.
+		}
+
+		Assert.assertEquals(0, this._manager.reload(this.jar("v1"), 2));
+		for (final String key : Arrays.asList("a", "b", "c"))
+		{
+			this._manager.create(key, ManagerImplReloadTest.WIDGET);
+		}
+		this._manager.create("plain", MockManageableImpl.class.getName());
+		final Manageable old = this._manager.get("a");
+		Assert.assertEquals("v1", ManagerImplReloadTest.versionOf(old));
+
+		Assert.assertEquals(3, this._manager.reload(this.jar("v2"), 2));
+		for (final String key : Arrays.asList("a", "b", "c"))
+		{
+			final Manageable child = this._manager.get(key);
+			Assert.assertEquals("v2", ManagerImplReloadTest.versionOf(child));
+			Assert.assertEquals(key, child.getKey());
+		}
+		Assert.assertTrue(ManagerImplLeaseTest.isClosed(old));
+		Assert.assertEquals(4, this._manager.getAllOfType(ManageableImpl.class).size());
+
+		// new children are created from the new version.
+		final Manageable created = this._manager.create("d", ManagerImplReloadTest.WIDGET);
+		Assert.assertEquals("v2", ManagerImplReloadTest.versionOf(created));
+	}
+
+	@Test
+	public void testPreviousVersionReleased() throws Exception
+	{
+		this._manager.reload(this.jar("v1"), 16);
+		this._manager.create("a", ManagerImplReloadTest.WIDGET);
+		final WeakReference<ClassLoader> previous = new WeakReference<>(
+		        this._manager.get("a").getClass().getClassLoader());
+
+		this._manager.reload(this.jar("v2"), 16);
+		for (int i = 0; (i < 50) && (previous.get() != null); i++)
+		{
+			System.gc();
+			Thread.sleep(10);
+		}
+		Assert.assertNull("The previous version should be unloadable.", previous.get());
+	}
+
+	@Test
+	public void testLeasedChildKeepsPreviousVersion() throws Exception
+	{
+		this._manager.reload(this.jar("v1"), 16);
+		this._manager.create("a", ManagerImplReloadTest.WIDGET);
+		final Lease<Manageable> lease = this._manager.acquire("a");
+		final Manageable old = lease.get();
+		final ClassLoader previous = old.getClass().getClassLoader();
+
+		// the leased child is swapped, and its version stays open while it is in use.
+		Assert.assertEquals(1, this._manager.reload(this.jar("v2"), 16));
+		Assert.assertEquals("v2", ManagerImplReloadTest.versionOf(this._manager.get("a")));
+		Assert.assertFalse(ManagerImplLeaseTest.isClosed(old));
+		Assert.assertNotNull(previous.getResource("reload/Widget.class"));
+
+		// released with the last lease.
+		lease.close();
+		Assert.assertTrue(ManagerImplLeaseTest.isClosed(old));
+		Assert.assertNull(previous.getResource("reload/Widget.class"));
+	}
+
+	@Test
+	public void testMissingJar() throws ManageableExistsException
+	{
+		try
+		{
+			this._manager.reload(this._directory.resolve("missing.jar"), 16);
+			Assert.fail("A missing jar should throw.");
+		}
+		catch (final ManagerException e)
+		{
+			// expected.
+		}
+	}
+
+}
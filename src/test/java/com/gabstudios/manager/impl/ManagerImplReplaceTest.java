@@ -0,0 +1,177 @@
+/*****************************************************************************************
+ * 
+ * Copyright 2019 Gregory Brown. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ * 
+ ***************************************************************************************** 
+ */
+
+package com.gabstudios.manager.impl;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.gabstudios.manager.Manageable;
+import com.gabstudios.manager.ManageableExistsException;
+import com.gabstudios.manager.ManagerException;
+
+/**
+ * 
+ * Test class for the replacement of children of the <code>ManagerImpl</code>
+ * 
+ * @author Gregory Brown (sysdevone)
+ */
+public class ManagerImplReplaceTest
+{
+
+	static final String		MOCK	= MockManageableImpl.class.getName();
+
+	static final String		HEALTH	= MockHealthImpl.class.getName();
+
+	ManagerImpl<Manageable>	_manager;
+
+	@Before
+	public void setup()
+	{
+		this._manager = new ManagerImpl<Manageable>();
+	}
+
+	@Test
+	public void testReplace() throws ManageableExistsException
+	{
+		final Manageable old = this._manager.create("key", ManagerImplReplaceTest.MOCK);
+		Assert.assertSame(old, this._manager.replace("key", ManagerImplReplaceTest.HEALTH));
+
+		final Manageable child = this._manager.get("key");
+		Assert.assertTrue(child instanceof MockHealthImpl);
+		Assert.assertEquals("key", child.getKey());
+		Assert.assertSame(this._manager, child.getParent());
+		Assert.assertTrue(ManagerImplLeaseTest.isClosed(old));
+		Assert.assertEquals(1, this._manager.getChildCount());
+		Assert.assertEquals(1, this._manager.countOfType(MockHealthImpl.class));
+		Assert.assertEquals(0, this._manager.countOfType(MockManageableImpl.class));
+
+		// the new child closes like any other.
+		Assert.assertSame(child, this._manager.closeChild("key"));
+		Assert.assertTrue(ManagerImplLeaseTest.isClosed(child));
+		Assert.assertFalse(this._manager.containsChild("key"));
+	}
+
+	@Test
+	public void testReplaceMissing()
+	{
+		Assert.assertNull(this._manager.replace("key", ManagerImplReplaceTest.MOCK));
+		Assert.assertFalse(this._manager.containsChild("key"));
+	}
+
+	@Test
+	public void testReplaceFailure() throws ManageableExistsException
+	{
+		final Manageable old = this._manager.create("key", ManagerImplReplaceTest.MOCK);
+		try
+		{
+			this._manager.replace("key", "com.gabstudios.NoSuchClass");
+			Assert.fail("Replacing with a missing class should throw.");
+		}
+		catch (final ManagerException e)
+		{
+			// expected.
+		}
+		Assert.assertSame(old, this._manager.get("key"));
+		Assert.assertFalse(ManagerImplLeaseTest.isClosed(old));
+	}
+
+	@Test
+	public void testReplaceWaitsForLeases() throws ManageableExistsException
+	{
+		final Manageable old = this._manager.create("key", ManagerImplReplaceTest.MOCK);
+		final Lease<Manageable> lease = this._manager.acquire("key");
+		this._manager.replace("key", ManagerImplReplaceTest.MOCK);
+
+		// the old child stays usable by the lease holder.
+		Assert.assertFalse(ManagerImplLeaseTest.isClosed(old));
+		Assert.assertNotSame(old, this._manager.get("key"));
+		lease.close();
+		Assert.assertTrue(ManagerImplLeaseTest.isClosed(old));
+
+		// the new child can be leased.
+		final Lease<Manageable> next = this._manager.acquire("key");
+		Assert.assertSame(this._manager.get("key"), next.get());
+		next.close();
+	}
+
+	@Test
+	public void testReplaceKeepsTags() throws ManageableExistsException
+	{
+		this._manager.create("key", ManagerImplReplaceTest.MOCK, Collections.singletonMap("tier", "web"));
+		this._manager.replace("key", ManagerImplReplaceTest.HEALTH);
+		Assert.assertEquals(Collections.singletonList(this._manager.get("key")),
+		        this._manager.find(TagQuery.tag("tier", "web")));
+		Assert.assertEquals("web", this._manager.getTags("key").get("tier"));
+	}
+
+	@Test
+	public void testCompareAndReplace() throws ManageableExistsException
+	{
+		final Manageable old = this._manager.create("key", ManagerImplReplaceTest.MOCK);
+		final Manageable other = new MockManageableImpl();
+		Assert.assertFalse(this._manager.compareAndReplace("key", other, new MockManageableImpl()));
+		Assert.assertSame(old, this._manager.get("key"));
+
+		final Manageable replacement = new MockHealthImpl();
+		Assert.assertTrue(this._manager.compareAndReplace("key", old, replacement));
+		Assert.assertSame(replacement, this._manager.get("key"));
+		Assert.assertTrue(ManagerImplLeaseTest.isClosed(old));
+
+		// the old child is no longer bound.
+		Assert.assertFalse(this._manager.compareAndReplace("key", old, new MockManageableImpl()));
+		Assert.assertSame(replacement, this._manager.get("key"));
+	}
+
+	@Test
+	public void testNoGap() throws Exception
+	{
+		this._manager.create("key", ManagerImplReplaceTest.MOCK);
+		final AtomicBoolean done = new AtomicBoolean();
+		final AtomicInteger gaps = new AtomicInteger();
+		final Thread reader = new Thread(() -> {
+			while (!done.get())
+			{
+				if (this._manager.get("key") == null)
+				{
+					gaps.incrementAndGet();
+				}
+			}
+		});
+		reader.start();
+		try
+		{
+			for (int i = 0; i < 2000; i++)
+			{
+				Assert.assertNotNull(this._manager.replace("key",
+				        ((i % 2) == 0) ? ManagerImplReplaceTest.HEALTH : ManagerImplReplaceTest.MOCK));
+			}
+		}
+		finally
+		{
+			done.set(true);
+			reader.join();
+		}
+		Assert.assertEquals(0, gaps.get());
+		Assert.assertEquals(1, this._manager.getChildCount());
+	}
+
+}
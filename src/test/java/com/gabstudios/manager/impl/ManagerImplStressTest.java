@@ -0,0 +1,109 @@
+/*****************************************************************************************
+ * 
+ * Copyright 2019 Gregory Brown. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ * 
+ ***************************************************************************************** 
+ */
+
+package com.gabstudios.manager.impl;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.gabstudios.manager.Manageable;
+import com.gabstudios.manager.ManagerStressHarness;
+import com.gabstudios.manager.ManagerStressHarness.Operation;
+
+/**
+ * 
+ * Stress test class for the <code>ManagerImpl</code>, run through the <code>ManagerStressHarness</code>.
+ * 
+ * @author Gregory Brown (sysdevone)
+ */
+public class ManagerImplStressTest
+{
+
+	static final String	MOCK	= MockManageableImpl.class.getName();
+
+	/*
+	 * Returns a harness for a new ManagerImpl.
+	 */
+	static ManagerStressHarness<Manageable> harness()
+	{
+		return (new ManagerStressHarness<Manageable>(ManagerImpl::new, ManagerImplStressTest.MOCK));
+	}
+
+	@Test
+	public void testLinearizable()
+	{
+		for (long seed = 0; seed < 5; seed++)
+		{
+			final List<Operation> history = ManagerImplStressTest.harness().seed(seed).run();
+			Assert.assertEquals(4 * 2000, history.size());
+		}
+	}
+
+	@Test
+	public void testLinearizableOneKey()
+	{
+		ManagerImplStressTest.harness().threads(8).operations(500).keys(1).seed(42).run();
+	}
+
+	@Test
+	public void testCloseWhileInUse()
+	{
+		for (long seed = 0; seed < 20; seed++)
+		{
+			ManagerImplStressTest.harness().threads(4).operations(500).seed(seed).runWithClose();
+		}
+	}
+
+	@Test
+	public void testCheckerAcceptsOverlappingCalls()
+	{
+		// the get overlaps the create, so it may come first.
+		final List<Operation> history = Arrays.asList(new Operation(Operation.Type.CREATE, "key", 0, 10, 1),
+		        new Operation(Operation.Type.GET, "key", 1, 5, 0), new Operation(Operation.Type.GET, "key", 11, 12, 1));
+		Assert.assertTrue(ManagerStressHarness.isLinearizable(history));
+	}
+
+	@Test
+	public void testCheckerRejectsStaleRead()
+	{
+		// the get starts after the create returned, so it must see the child.
+		final List<Operation> history = Arrays.asList(new Operation(Operation.Type.CREATE, "key", 0, 10, 1),
+		        new Operation(Operation.Type.GET, "key", 11, 12, 0));
+		Assert.assertFalse(ManagerStressHarness.isLinearizable(history));
+	}
+
+	@Test
+	public void testCheckerRejectsDoubleCreate()
+	{
+		// two overlapping creates of the same key can not both succeed.
+		final List<Operation> history = Arrays.asList(new Operation(Operation.Type.CREATE, "key", 0, 10, 1),
+		        new Operation(Operation.Type.CREATE, "key", 1, 9, 2));
+		Assert.assertFalse(ManagerStressHarness.isLinearizable(history));
+	}
+
+	@Test
+	public void testCheckerRejectsDoubleClose()
+	{
+		final List<Operation> history = Arrays.asList(new Operation(Operation.Type.CREATE, "key", 0, 1, 1),
+		        new Operation(Operation.Type.CLOSE_CHILD, "key", 2, 10, 1),
+		        new Operation(Operation.Type.CLOSE_CHILD, "key", 3, 9, 1));
+		Assert.assertFalse(ManagerStressHarness.isLinearizable(history));
+	}
+
+}
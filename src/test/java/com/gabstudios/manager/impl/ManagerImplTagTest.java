@@ -0,0 +1,111 @@
+/*****************************************************************************************
+ * 
+ * Copyright 2019 Gregory Brown. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ * 
+ ***************************************************************************************** 
+ */
+
+package com.gabstudios.manager.impl;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.gabstudios.manager.Manageable;
+import com.gabstudios.manager.ManageableExistsException;
+
+/**
+ * 
+ * Test class for the tags of the <code>ManagerImpl</code>
+ * 
+ * @author Gregory Brown (sysdevone)
+ */
+public class ManagerImplTagTest
+{
+
+	static final String		MOCK	= MockManageableImpl.class.getName();
+
+	/*
+	 * Creates a tag map.
+	 */
+	static Map<String, String> tags(final String tenant, final String region)
+	{
+		final Map<String, String> tags = new HashMap<>();
+		tags.put("tenant", tenant);
+		tags.put("region", region);
+		return (tags);
+	}
+
+	ManagerImpl<Manageable>	_manager;
+
+	@Before
+	public void setup() throws ManageableExistsException
+	{
+		this._manager = new ManagerImpl<Manageable>();
+		for (int i = 0; i < 1000; i++)
+		{
+			this._manager.create("child" + i, ManagerImplTagTest.MOCK,
+			        ManagerImplTagTest.tags(((i % 2) == 0) ? "a" : "b", ((i % 5) == 0) ? "eu" : "us"));
+		}
+		this._manager.create("untagged", ManagerImplTagTest.MOCK);
+	}
+
+	@Test
+	public void testCloseRemovesTags()
+	{
+		this._manager.closeChild("child0");
+		this._manager.get("child10").close();
+		Assert.assertEquals(98,
+		        this._manager.find(TagQuery.tag("tenant", "a").and(TagQuery.tag("region", "eu"))).size());
+		Assert.assertTrue(this._manager.getTags("child0").isEmpty());
+	}
+
+	@Test
+	public void testFind()
+	{
+		final List<Manageable> found = this._manager
+		        .find(TagQuery.tag("tenant", "a").and(TagQuery.tag("region", "eu")));
+		Assert.assertEquals(100, found.size());
+		for (final Manageable child : found)
+		{
+			final int i = Integer.parseInt(child.getKey().substring("child".length()));
+			Assert.assertEquals(0, i % 10);
+		}
+
+		Assert.assertEquals(600,
+		        this._manager.find(TagQuery.tag("tenant", "a").or(TagQuery.tag("region", "eu"))).size());
+		Assert.assertEquals(400,
+		        this._manager.find(TagQuery.tag("tenant", "a").andNot(TagQuery.tag("region", "eu"))).size());
+		Assert.assertTrue(this._manager.find(TagQuery.tag("tenant", "c")).isEmpty());
+	}
+
+	@Test
+	public void testGetTags()
+	{
+		Assert.assertEquals(ManagerImplTagTest.tags("b", "us"), this._manager.getTags("child1"));
+		Assert.assertTrue(this._manager.getTags("untagged").isEmpty());
+	}
+
+	@Test
+	public void testIdsAreReused() throws ManageableExistsException
+	{
+		this._manager.closeChild("child1");
+		this._manager.create("child1", ManagerImplTagTest.MOCK, ManagerImplTagTest.tags("c", "eu"));
+		Assert.assertEquals(1, this._manager.find(TagQuery.tag("tenant", "c")).size());
+		Assert.assertEquals(499, this._manager.find(TagQuery.tag("tenant", "b")).size());
+	}
+
+}
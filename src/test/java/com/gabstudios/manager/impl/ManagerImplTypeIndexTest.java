@@ -0,0 +1,152 @@
+/*****************************************************************************************
+ * 
+ * Copyright 2019 Gregory Brown. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ * 
+ ***************************************************************************************** 
+ */
+
+package com.gabstudios.manager.impl;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.gabstudios.manager.Manageable;
+import com.gabstudios.manager.ManageableExistsException;
+
+/**
+ * 
+ * Test class for the type index of the <code>ManagerImpl</code>
+ * 
+ * @author Gregory Brown (sysdevone)
+ */
+public class ManagerImplTypeIndexTest
+{
+
+	ManagerImpl<Manageable>	_manager;
+
+	@Before
+	public void setup() throws ManageableExistsException
+	{
+		this._manager = new ManagerImpl<Manageable>();
+		for (int i = 0; i < 10; i++)
+		{
+			this._manager.create("mock" + i, MockManageableImpl.class.getName());
+		}
+		for (int i = 0; i < 3; i++)
+		{
+			this._manager.create("hanging" + i, MockHangingImpl.class.getName());
+		}
+	}
+
+	@Test
+	public void testCloseAllOfType()
+	{
+		Assert.assertEquals(3, this._manager.closeAllOfType(MockHangingImpl.class));
+		Assert.assertEquals(0, this._manager.countOfType(MockHangingImpl.class));
+		Assert.assertEquals(10, this._manager.getChildCount());
+		Assert.assertFalse(this._manager.containsChild("hanging0"));
+	}
+
+	@Test
+	public void testCountOfType()
+	{
+		Assert.assertEquals(10, this._manager.countOfType(MockManageableImpl.class));
+		Assert.assertEquals(3, this._manager.countOfType(MockHangingImpl.class));
+		Assert.assertEquals(13, this._manager.countOfType(ManageableImpl.class));
+		Assert.assertEquals(13, this._manager.countOfType(Manageable.class));
+		Assert.assertEquals(0, this._manager.countOfType(MockSlowImpl.class));
+	}
+
+	@Test
+	public void testGetAllOfType()
+	{
+		final List<MockHangingImpl> hanging = this._manager.getAllOfType(MockHangingImpl.class);
+		Assert.assertEquals(3, hanging.size());
+		for (final MockHangingImpl child : hanging)
+		{
+			Assert.assertTrue(child.getKey().startsWith("hanging"));
+		}
+		Assert.assertEquals(13, this._manager.getAllOfType(Manageable.class).size());
+	}
+
+	@Test
+	public void testIndexFollowsClose()
+	{
+		this._manager.closeChild("mock0");
+		this._manager.get("mock1").close();
+		Assert.assertEquals(8, this._manager.countOfType(MockManageableImpl.class));
+		Assert.assertEquals(8, this._manager.getAllOfType(MockManageableImpl.class).size());
+	}
+
+	@Test
+	public void testIndexBuiltOnFirstLookup() throws ManageableExistsException
+	{
+		// changes before the first lookup are read from the child table.
+		this._manager.closeChild("mock0");
+		this._manager.create("late0", MockManageableImpl.class.getName());
+		Assert.assertEquals(10, this._manager.countOfType(MockManageableImpl.class));
+
+		// and changes after it are applied to the index.
+		this._manager.closeChild("mock1");
+		this._manager.create("late1", MockManageableImpl.class.getName());
+		this._manager.create("late2", MockManageableImpl.class.getName());
+		Assert.assertEquals(11, this._manager.countOfType(MockManageableImpl.class));
+		Assert.assertEquals(11, this._manager.getAllOfType(MockManageableImpl.class).size());
+		Assert.assertEquals(14, this._manager.countOfType(Manageable.class));
+	}
+
+	@Test
+	public void testIndexKeepsNoKeysUntilBuilt()
+	{
+		final TypeIndex types = new TypeIndex();
+		types.add("a", String.class);
+		Assert.assertFalse(types.isInUse());
+		Assert.assertEquals(0, types.count(String.class));
+
+		types.build(Collections.singletonMap("b", "b"));
+		Assert.assertTrue(types.isInUse());
+		types.add("a", String.class);
+		Assert.assertEquals(2, types.count(CharSequence.class));
+		types.remove("a", String.class);
+		types.remove("b");
+		Assert.assertEquals(0, types.count(String.class));
+		Assert.assertTrue(types.keys(String.class).isEmpty());
+	}
+
+	@Test
+	public void testRestoredChildren() throws IOException, ManageableExistsException
+	{
+		final Path file = Files.createTempFile("types", ".snapshot");
+		try
+		{
+			this._manager.saveSnapshot(file);
+			final ManagerImpl<Manageable> restored = new ManagerImpl<Manageable>();
+			restored.restoreSnapshot(file);
+
+			Assert.assertEquals(3, restored.countOfType(MockHangingImpl.class));
+			Assert.assertEquals(3, restored.getAllOfType(MockHangingImpl.class).size());
+			Assert.assertEquals(13, restored.getChildCount());
+		}
+		finally
+		{
+			Files.deleteIfExists(file);
+		}
+	}
+
+}
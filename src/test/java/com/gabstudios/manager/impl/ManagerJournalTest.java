@@ -0,0 +1,349 @@
+/*****************************************************************************************
+ * 
+ * Copyright 2019 Gregory Brown. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ * 
+ ***************************************************************************************** 
+ */
+
+package com.gabstudios.manager.impl;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.gabstudios.manager.Manageable;
+import com.gabstudios.manager.ManageableExistsException;
+import com.gabstudios.manager.ManagerException;
+
+/**
+ * 
+ * Test class for the <code>ManagerJournal</code>
+ * 
+ * @author Gregory Brown (sysdevone)
+ */
+public class ManagerJournalTest
+{
+
+	Path _directory;
+
+	@After
+	public void cleanup() throws IOException
+	{
+		MockSnapshotableImpl.ON_SAVE = null;
+		MockSlowImpl.GATE = null;
+		try (Stream<Path> files = Files.walk(this._directory))
+		{
+			files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+		}
+	}
+
+	@Before
+	public void setup() throws IOException
+	{
+		this._directory = Files.createTempDirectory("gab-manager-journal");
+	}
+
+	@Test
+	public void testReplayAfterCrash()
+	{
+		try
+		{
+			// the manager is never closed, as if the process crashed.
+			final ManagerImpl<Manageable> manager = new ManagerImpl<Manageable>(new ManagerJournal(this._directory));
+			manager.create("c1", MockManageableImpl.class.getName());
+			manager.create("c2", MockManageableImpl.class.getName());
+			manager.create("c3", ManageableImpl.class.getName());
+			manager.closeChild("c2");
+			manager.get("c3").close();
+
+			final ManagerImpl<Manageable> recovered = new ManagerImpl<Manageable>(
+			        new ManagerJournal(this._directory));
+			Assert.assertTrue(recovered.getChildCount() == 1);
+			Assert.assertTrue(recovered.get("c1") instanceof MockManageableImpl);
+			Assert.assertTrue(!recovered.containsChild("c2"));
+			Assert.assertTrue(!recovered.containsChild("c3"));
+		}
+		catch (final ManageableExistsException e)
+		{
+			Assert.fail(e.toString());
+		}
+	}
+
+	@Test
+	public void testCloseKeepsChildren()
+	{
+		try
+		{
+			final ManagerImpl<Manageable> manager = new ManagerImpl<Manageable>(new ManagerJournal(this._directory));
+			manager.create("c1", MockManageableImpl.class.getName());
+			manager.close();
+
+			final ManagerImpl<Manageable> recovered = new ManagerImpl<Manageable>(
+			        new ManagerJournal(this._directory));
+			Assert.assertTrue(recovered.containsChild("c1"));
+			recovered.close();
+		}
+		catch (final ManageableExistsException e)
+		{
+			Assert.fail(e.toString());
+		}
+	}
+
+	@Test
+	public void testCompaction() throws IOException
+	{
+		try
+		{
+			final ManagerImpl<Manageable> manager = new ManagerImpl<Manageable>(
+			        new ManagerJournal(this._directory, 4));
+			for (int i = 0; i < 10; i++)
+			{
+				manager.create("c" + i, MockManageableImpl.class.getName());
+			}
+			manager.closeChild("c0");
+
+			Assert.assertTrue(Files.exists(this._directory.resolve(ManagerJournal.SNAPSHOT_FILE_NAME)));
+			Assert.assertTrue(Files.size(this._directory.resolve(ManagerJournal.JOURNAL_FILE_NAME)) < 200);
+
+			final ManagerImpl<Manageable> recovered = new ManagerImpl<Manageable>(
+			        new ManagerJournal(this._directory, 4));
+			Assert.assertTrue(recovered.getChildCount() == 9);
+			Assert.assertTrue(!recovered.containsChild("c0"));
+			Assert.assertTrue(recovered.get("c9") instanceof MockManageableImpl);
+		}
+		catch (final ManageableExistsException e)
+		{
+			Assert.fail(e.toString());
+		}
+	}
+
+	@Test
+	public void testCreateDuringCompaction() throws Exception
+	{
+		final ManagerImpl<Manageable> manager = new ManagerImpl<Manageable>(new ManagerJournal(this._directory, 4));
+		((MockSnapshotableImpl) manager.create("s1", MockSnapshotableImpl.class.getName())).setState("kept");
+		manager.create("c2", MockManageableImpl.class.getName());
+		manager.create("c3", MockManageableImpl.class.getName());
+
+		final CountDownLatch saving = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		MockSnapshotableImpl.ON_SAVE = () -> {
+			saving.countDown();
+			try
+			{
+				release.await(10, TimeUnit.SECONDS);
+			}
+			catch (final InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+		};
+
+		// the fourth record starts a compaction, which is held in saveState().
+		final CompletableFuture<Manageable> compacting = CompletableFuture
+		        .supplyAsync(() -> manager.getOrCreate("c4", MockManageableImpl.class.getName()));
+		Assert.assertTrue(saving.await(10, TimeUnit.SECONDS));
+
+		// creates and closes are not held up by the compaction.
+		CompletableFuture.runAsync(() -> {
+			manager.getOrCreate("c5", MockManageableImpl.class.getName());
+			manager.closeChild("c2");
+		}).get(5, TimeUnit.SECONDS);
+
+		release.countDown();
+		compacting.get(10, TimeUnit.SECONDS);
+		MockSnapshotableImpl.ON_SAVE = null;
+		Assert.assertTrue(Files.exists(this._directory.resolve(ManagerJournal.SNAPSHOT_FILE_NAME)));
+
+		// the records appended while the snapshot was written were kept in the journal.
+		final ManagerImpl<Manageable> recovered = new ManagerImpl<Manageable>(new ManagerJournal(this._directory, 4));
+		Assert.assertEquals(4, recovered.getChildCount());
+		Assert.assertFalse(recovered.containsChild("c2"));
+		Assert.assertTrue(recovered.containsChild("c5"));
+		Assert.assertEquals("kept", ((MockSnapshotableImpl) recovered.get("s1")).getState());
+	}
+
+	@Test
+	public void testTornRecordIsDiscarded() throws IOException
+	{
+		try
+		{
+			final ManagerImpl<Manageable> manager = new ManagerImpl<Manageable>(new ManagerJournal(this._directory));
+			manager.create("c1", MockManageableImpl.class.getName());
+
+			// half of a record, as if the process crashed while writing.
+			Files.write(this._directory.resolve(ManagerJournal.JOURNAL_FILE_NAME), new byte[] { 0, 0, 0, 40, 1, 0 },
+			        StandardOpenOption.APPEND);
+
+			final ManagerImpl<Manageable> recovered = new ManagerImpl<Manageable>(
+			        new ManagerJournal(this._directory));
+			Assert.assertTrue(recovered.getChildCount() == 1);
+			recovered.create("c2", MockManageableImpl.class.getName());
+
+			final ManagerImpl<Manageable> again = new ManagerImpl<Manageable>(new ManagerJournal(this._directory));
+			Assert.assertTrue(again.getChildCount() == 2);
+		}
+		catch (final ManageableExistsException e)
+		{
+			Assert.fail(e.toString());
+		}
+	}
+
+	@Test
+	public void testConcurrentCreateAndClose() throws Exception
+	{
+		// a direct executor delivers the events on the thread that creates or closes the child.
+		final ManagerImpl<Manageable> manager = new ManagerImpl<Manageable>(new ManagerJournal(this._directory),
+		        Runnable::run);
+		final CountDownLatch created = new CountDownLatch(1);
+		final ManagerImplLifecycleEventTest.RecordingSubscriber subscriber;
+		subscriber = new ManagerImplLifecycleEventTest.RecordingSubscriber()
+		{
+			@Override
+			public void onNext(final LifecycleEvent item)
+			{
+				super.onNext(item);
+				if (item.getType() == LifecycleEvent.Type.CLOSED)
+				{
+					// the close is past the journal; the create finishes before the close goes on.
+					MockSlowImpl.GATE.countDown();
+					try
+					{
+						created.await(10, TimeUnit.SECONDS);
+					}
+					catch (final InterruptedException e)
+					{
+						Thread.currentThread().interrupt();
+					}
+				}
+			}
+		};
+		manager.getLifecycleEvents().subscribe(subscriber);
+		subscriber._subscription.request(Long.MAX_VALUE);
+
+		MockSlowImpl.GATE = new CountDownLatch(1);
+		final Thread creator = new Thread(() -> {
+			manager.tryCreate("c1", MockSlowImpl.class.getName());
+			created.countDown();
+		});
+		creator.start();
+		while (!manager.containsChild("c1"))
+		{
+			Thread.yield();
+		}
+		Assert.assertNotNull(manager.closeChild("c1"));
+		creator.join();
+		Assert.assertFalse(manager.containsChild("c1"));
+
+		// the create is not replayed after the close.
+		final ManagerImpl<Manageable> recovered = new ManagerImpl<Manageable>(new ManagerJournal(this._directory));
+		Assert.assertFalse(recovered.containsChild("c1"));
+	}
+
+	@Test
+	public void testFailedWriteFailsJournal()
+	{
+		final ManagerJournal journal = new ManagerJournal(this._directory);
+		journal.sync(journal.append(ManagerJournal.CREATE, "c1", MockManageableImpl.class.getName()));
+		final long failed = journal.append(ManagerJournal.CREATE, "c2", MockManageableImpl.class.getName());
+
+		// an interrupt closes the file under the write.
+		Thread.currentThread().interrupt();
+		try
+		{
+			journal.sync(failed);
+			Assert.fail("The write should have failed.");
+		}
+		catch (final ManagerException e)
+		{
+			Assert.assertTrue(true);
+		}
+		finally
+		{
+			Thread.interrupted();
+		}
+
+		// a later record is not taken as durable, and neither is the one that failed.
+		final long later = journal.append(ManagerJournal.CREATE, "c3", MockManageableImpl.class.getName());
+		for (final long sequence : new long[] { later, failed })
+		{
+			try
+			{
+				journal.sync(sequence);
+				Assert.fail("The journal should have failed.");
+			}
+			catch (final ManagerException e)
+			{
+				Assert.assertTrue(true);
+			}
+		}
+
+		final ManagerJournal reopened = new ManagerJournal(this._directory);
+		final Map<String, RegistrySnapshot.Entry> entries = reopened.recover();
+		Assert.assertEquals(1, entries.size());
+		Assert.assertTrue(entries.containsKey("c1"));
+		reopened.close();
+	}
+
+	@Test
+	public void testGroupCommit() throws InterruptedException
+	{
+		final ManagerJournal journal = new ManagerJournal(this._directory);
+		final int threads = 8;
+		final int appends = 200;
+		final CountDownLatch start = new CountDownLatch(1);
+		final Thread[] workers = new Thread[threads];
+		for (int i = 0; i < threads; i++)
+		{
+			final int id = i;
+			workers[i] = new Thread(() -> {
+				try
+				{
+					start.await();
+				}
+				catch (final InterruptedException e)
+				{
+					return;
+				}
+				for (int j = 0; j < appends; j++)
+				{
+					journal.sync(journal.append(ManagerJournal.CREATE, "t" + id + "-" + j,
+					        MockManageableImpl.class.getName()));
+				}
+			});
+			workers[i].start();
+		}
+		start.countDown();
+		for (final Thread worker : workers)
+		{
+			worker.join();
+		}
+
+		Assert.assertTrue(journal.getSyncCount() < (threads * appends));
+		Assert.assertTrue(journal.recover().size() == (threads * appends));
+		journal.close();
+		Assert.assertTrue(journal.isClosed());
+	}
+
+}
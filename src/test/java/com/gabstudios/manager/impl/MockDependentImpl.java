@@ -0,0 +1,72 @@
+/*****************************************************************************************
+ * 
+ * Copyright 2019 Gregory Brown. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ ***************************************************************************************** 
+ */
+
+package com.gabstudios.manager.impl;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+
+import com.gabstudios.manager.Manager;
+
+/**
+ * 
+ * A Mock object that records when it is initialized and closed.
+ * 
+ * @author Gregory Brown (sysdevone)
+ */
+public class MockDependentImpl extends ManageableImpl
+{
+    /*
+     * The initialize and close events, in the order they happened.
+     */
+    static final Queue<String>     EVENTS = new ConcurrentLinkedQueue<>();
+    
+    /*
+     * When set, initialize waits at the barrier.
+     */
+    static volatile CyclicBarrier  BARRIER;
+    
+    @Override
+    public void close()
+    {
+        MockDependentImpl.EVENTS.add("close:" + this.getKey());
+        super.close();
+    }
+    
+    @Override
+    public <P extends Manager> void initialize(final P parent, final String key)
+    {
+        super.initialize(parent, key);
+        final CyclicBarrier barrier = MockDependentImpl.BARRIER;
+        if (barrier != null)
+        {
+            try
+            {
+                barrier.await(10, TimeUnit.SECONDS);
+            }
+            catch (final Exception e)
+            {
+                throw (new IllegalStateException("The barrier was not reached.", e));
+            }
+        }
+        MockDependentImpl.EVENTS.add("init:" + key);
+    }
+}
@@ -0,0 +1,60 @@
+/*****************************************************************************************
+ * 
+ * Copyright 2019 Gregory Brown. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ ***************************************************************************************** 
+ */
+
+package com.gabstudios.manager.impl;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 
+ * A Mock object whose close hangs until a gate opens when its key starts with
+ * 'hang', and fails when its key starts with 'fail'.
+ * 
+ * @author Gregory Brown (sysdevone)
+ */
+public class MockHangingImpl extends ManageableImpl
+{
+    /*
+     * The gate a hanging close waits on.
+     */
+    static volatile CountDownLatch GATE = new CountDownLatch(1);
+    
+    @Override
+    public void close()
+    {
+        final String key = this.getKey();
+        if (key.startsWith("hang"))
+        {
+            try
+            {
+                MockHangingImpl.GATE.await(10, TimeUnit.SECONDS);
+            }
+            catch (final InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+        else if (key.startsWith("fail"))
+        {
+            throw (new IllegalStateException("Unable to close " + key));
+        }
+        super.close();
+    }
+}
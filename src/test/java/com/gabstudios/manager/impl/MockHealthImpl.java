@@ -0,0 +1,49 @@
+/*****************************************************************************************
+ * 
+ * Copyright 2019 Gregory Brown. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ ***************************************************************************************** 
+ */
+
+package com.gabstudios.manager.impl;
+
+import com.gabstudios.manager.HealthCheckable;
+
+/**
+ * 
+ * A Mock object whose health check fails when its key starts with 'sick',
+ * and throws when its key starts with 'broken'.
+ * 
+ * @author Gregory Brown (sysdevone)
+ */
+public class MockHealthImpl extends ManageableImpl implements HealthCheckable
+{
+    /*
+     * The number of checks made on this instance.
+     */
+    volatile int _checks;
+
+    @Override
+    public boolean checkHealth()
+    {
+        this._checks++;
+        final String key = this.getKey();
+        if (key.startsWith("broken"))
+        {
+            throw (new IllegalStateException("Unable to check " + key));
+        }
+        return (!key.startsWith("sick"));
+    }
+}
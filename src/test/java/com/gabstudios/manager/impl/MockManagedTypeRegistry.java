@@ -0,0 +1,42 @@
+/*****************************************************************************************
+ * 
+ * Copyright 2019 Gregory Brown. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ ***************************************************************************************** 
+ */
+
+package com.gabstudios.manager.impl;
+
+import java.util.Map;
+import java.util.function.Supplier;
+
+import com.gabstudios.manager.Manageable;
+import com.gabstudios.manager.ManagedTypeRegistry;
+
+/**
+ * 
+ * A Mock registry, written the way the ManagedTypeProcessor generates one.
+ * 
+ * @author Gregory Brown (sysdevone)
+ */
+public class MockManagedTypeRegistry implements ManagedTypeRegistry
+{
+    @Override
+    public void registerTypes(final Map<String, Supplier<? extends Manageable>> types)
+    {
+        types.put("com.gabstudios.manager.impl.MockSnapshotableImpl", MockSnapshotableImpl::new);
+        types.put("mock-snapshotable", MockSnapshotableImpl::new);
+    }
+}
@@ -0,0 +1,79 @@
+/*****************************************************************************************
+ * 
+ * Copyright 2019 Gregory Brown. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ ***************************************************************************************** 
+ */
+
+package com.gabstudios.manager.impl;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.gabstudios.manager.Manager;
+
+/**
+ * 
+ * A Mock object with an initialize that waits for a gate to open.
+ * 
+ * @author Gregory Brown (sysdevone)
+ */
+public class MockSlowImpl extends ManageableImpl
+{
+    /*
+     * Counts the number of instances created.
+     */
+    static final AtomicInteger     INSTANCES = new AtomicInteger();
+    
+    /*
+     * When set, initialize waits until the gate is open.
+     */
+    static volatile CountDownLatch GATE;
+    
+    /*
+     * The thread initialize was called on.
+     */
+    private volatile Thread        _initializeThread;
+    
+    public MockSlowImpl()
+    {
+        MockSlowImpl.INSTANCES.incrementAndGet();
+    }
+    
+    public Thread getInitializeThread()
+    {
+        return (this._initializeThread);
+    }
+    
+    @Override
+    public <P extends Manager> void initialize(final P parent, final String key)
+    {
+        this._initializeThread = Thread.currentThread();
+        final CountDownLatch gate = MockSlowImpl.GATE;
+        if (gate != null)
+        {
+            try
+            {
+                gate.await(10, TimeUnit.SECONDS);
+            }
+            catch (final InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+        super.initialize(parent, key);
+    }
+}
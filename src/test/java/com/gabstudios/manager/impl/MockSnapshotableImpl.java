@@ -0,0 +1,105 @@
+/*****************************************************************************************
+ * 
+ * Copyright 2019 Gregory Brown. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ ***************************************************************************************** 
+ */
+
+package com.gabstudios.manager.impl;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.gabstudios.manager.Manager;
+import com.gabstudios.manager.Snapshotable;
+
+/**
+ * 
+ * A Mock object for testing registry snapshots.
+ * 
+ * @author Gregory Brown (sysdevone)
+ */
+public class MockSnapshotableImpl extends ManageableImpl implements Snapshotable
+{
+    /*
+     * Counts the number of instances created.
+     */
+    static final AtomicInteger INSTANCES = new AtomicInteger();
+    
+    /*
+     * When set, initialize throws.
+     */
+    static volatile boolean    FAIL_INITIALIZE;
+    
+    /*
+     * When set, run by restoreState.
+     */
+    static volatile Runnable   ON_RESTORE;
+    
+    /*
+     * When set, run by saveState.
+     */
+    static volatile Runnable   ON_SAVE;
+    
+    private String _state;
+    
+    public MockSnapshotableImpl()
+    {
+        MockSnapshotableImpl.INSTANCES.incrementAndGet();
+    }
+    
+    public String getState()
+    {
+        return (this._state);
+    }
+    
+    @Override
+    public <P extends Manager> void initialize(final P parent, final String key)
+    {
+        if (MockSnapshotableImpl.FAIL_INITIALIZE)
+        {
+            throw (new IllegalStateException("The child failed to initialize."));
+        }
+        super.initialize(parent, key);
+    }
+    
+    @Override
+    public void restoreState(final ByteBuffer state)
+    {
+        final Runnable onRestore = MockSnapshotableImpl.ON_RESTORE;
+        if (onRestore != null)
+        {
+            onRestore.run();
+        }
+        this._state = StandardCharsets.UTF_8.decode(state).toString();
+    }
+    
+    @Override
+    public byte[] saveState()
+    {
+        final Runnable onSave = MockSnapshotableImpl.ON_SAVE;
+        if (onSave != null)
+        {
+            onSave.run();
+        }
+        return ((this._state == null) ? null : this._state.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    public void setState(final String state)
+    {
+        this._state = state;
+    }
+}
@@ -0,0 +1,310 @@
+/*****************************************************************************************
+ * 
+ * Copyright 2019 Gregory Brown. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ * 
+ ***************************************************************************************** 
+ */
+
+package com.gabstudios.manager.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.gabstudios.manager.HealthCheckable;
+import com.gabstudios.manager.Manageable;
+import com.gabstudios.manager.ManageableExistsException;
+import com.gabstudios.manager.ManagerStressHarness;
+
+/**
+ * 
+ * Test class for the off-heap child table.
+ * 
+ * @author Gregory Brown (sysdevone)
+ */
+public class OffHeapChildMapTest
+{
+
+	static final String	MOCK	= MockManageableImpl.class.getName();
+
+	@Test
+	public void testMapOperations()
+	{
+		final OffHeapChildMap<String> map = new OffHeapChildMap<>();
+		Assert.assertNull(map.putIfAbsent("key", "value"));
+		Assert.assertEquals("value", map.putIfAbsent("key", "other"));
+		Assert.assertEquals("value", map.get("key"));
+		Assert.assertTrue(map.containsKey("key"));
+		Assert.assertFalse(map.containsKey("missing"));
+		Assert.assertNull(map.get(Integer.valueOf(1)));
+		Assert.assertEquals(1, map.size());
+
+		Assert.assertFalse(map.replace("key", "other", "value"));
+		Assert.assertTrue(map.replace("key", "value", "other"));
+		Assert.assertEquals("other", map.replace("key", "value"));
+		Assert.assertNull(map.replace("missing", "value"));
+
+		Assert.assertEquals("value", map.computeIfPresent("key", (key, value) -> value));
+		Assert.assertNull(map.computeIfPresent("key", (key, value) -> null));
+		Assert.assertTrue(map.isEmpty());
+
+		map.put("a", "1");
+		Assert.assertFalse(map.remove("a", "2"));
+		Assert.assertTrue(map.remove("a", "1"));
+		map.put("b", "2");
+		Assert.assertEquals("2", map.remove("b"));
+		Assert.assertNull(map.remove("b"));
+
+		map.put("c", "3");
+		map.clear();
+		Assert.assertTrue(map.isEmpty());
+		Assert.assertNull(map.get("c"));
+	}
+
+	@Test
+	public void testUnicodeKeys()
+	{
+		final OffHeapChildMap<String> map = new OffHeapChildMap<>();
+		final String[] keys = { "plain", "caf\u00e9", "\u65e5\u672c\u8a9e", "emoji \ud83d\ude00", "lone \ud800 high",
+		        "lone \udc00 low", "\u0000nul" };
+		for (final String key : keys)
+		{
+			map.put(key, key);
+		}
+		for (final String key : keys)
+		{
+			Assert.assertEquals(key, map.get(key));
+		}
+		Assert.assertNull(map.get("caf\u00e8"));
+		Assert.assertNull(map.get("plai"));
+
+		final Map<String, String> decoded = new HashMap<>();
+		map.forEach(decoded::put);
+		Assert.assertEquals(keys.length, decoded.size());
+		for (final Map.Entry<String, String> entry : decoded.entrySet())
+		{
+			Assert.assertEquals(entry.getKey(), entry.getValue());
+		}
+	}
+
+	@Test
+	public void testAgainstHashMap()
+	{
+		// removals free records for reuse, shift the index back and compact the keys; the table must agree with a
+		// HashMap throughout.
+		final OffHeapChildMap<Object> map = new OffHeapChildMap<>();
+		final Map<String, Object> model = new HashMap<>();
+		final Random random = new Random(42);
+		for (int i = 0; i < 200000; i++)
+		{
+			final String key = "key-" + random.nextInt(5000);
+			final int choice = random.nextInt(4);
+			if (choice == 0)
+			{
+				final Object value = ((i & 1) == 0) ? Integer.valueOf(i) : Long.valueOf(i);
+				Assert.assertEquals(model.putIfAbsent(key, value), map.putIfAbsent(key, value));
+			}
+			else if (choice == 1)
+			{
+				Assert.assertEquals(model.remove(key), map.remove(key));
+			}
+			else if (choice == 2)
+			{
+				Assert.assertEquals(model.replace(key, "replaced"), map.replace(key, "replaced"));
+			}
+			else
+			{
+				Assert.assertEquals(model.get(key), map.get(key));
+			}
+		}
+		Assert.assertEquals(model.size(), map.size());
+		Assert.assertEquals(model, new HashMap<>(map));
+
+		int strings = 0;
+		for (final Object value : model.values())
+		{
+			strings += (value instanceof String) ? 1 : 0;
+		}
+		Assert.assertEquals(strings, map.countOf(String.class));
+		Assert.assertEquals(model.size() - strings, map.countOf(Number.class));
+	}
+
+	@Test
+	public void testReadersDuringWrites() throws InterruptedException
+	{
+		final OffHeapChildMap<String> map = new OffHeapChildMap<>();
+		for (int i = 0; i < 1000; i++)
+		{
+			map.put("stable" + i, "stable" + i);
+		}
+
+		final AtomicReference<Throwable> failure = new AtomicReference<>();
+		final Thread writer = new Thread(() -> {
+			for (int i = 0; i < 50000; i++)
+			{
+				map.put("churn" + i, "churn");
+				map.remove("churn" + (i - 100));
+			}
+		});
+		final Thread reader = new Thread(() -> {
+			try
+			{
+				while (writer.isAlive())
+				{
+					for (int i = 0; i < 1000; i++)
+					{
+						Assert.assertEquals("stable" + i, map.get("stable" + i));
+					}
+				}
+			}
+			catch (final Throwable t)
+			{
+				failure.set(t);
+			}
+		});
+		writer.start();
+		reader.start();
+		writer.join();
+		reader.join();
+		Assert.assertNull(String.valueOf(failure.get()), failure.get());
+	}
+
+	@Test
+	public void testHeapBytesPerEntry()
+	{
+		final OffHeapChildMap<Object> map = new OffHeapChildMap<>();
+		final Object value = new Object();
+		for (int i = 0; i < 100000; i++)
+		{
+			map.put("tenant-" + i, value);
+		}
+
+		// one reference per record stays on the heap; the index, records and keys are direct.
+		final double heap = map.heapBytesPerEntry();
+		Assert.assertTrue(String.valueOf(heap), (heap > 0) && (heap < 20));
+		Assert.assertTrue(map.bytesPerEntry() > (heap + 32));
+	}
+
+	@Test
+	public void testTypes()
+	{
+		final OffHeapChildMap<Object> map = new OffHeapChildMap<>();
+		final TypeIndex types = map.typeIndex();
+		map.put("a", "string");
+		map.put("b", Integer.valueOf(1));
+		map.put("c", Long.valueOf(2));
+		types.add("a", String.class);
+
+		Assert.assertEquals(1, types.count(String.class));
+		Assert.assertEquals(2, types.count(Number.class));
+		Assert.assertEquals(3, types.count(Object.class));
+		final List<String> numbers = new ArrayList<>(types.keys(Number.class));
+		numbers.sort(null);
+		Assert.assertEquals(Arrays.asList("b", "c"), numbers);
+
+		map.replace("a", Integer.valueOf(3));
+		Assert.assertEquals(0, types.count(String.class));
+		Assert.assertEquals(3, types.count(Integer.class) + types.count(Long.class));
+		map.remove("b");
+		types.remove("b");
+		Assert.assertEquals(Integer.valueOf(3), map.get("a"));
+		Assert.assertEquals(1, types.count(Integer.class));
+	}
+
+	@Test
+	public void testStatistics()
+	{
+		final OffHeapChildMap<Object> map = new OffHeapChildMap<>();
+		final long start = System.currentTimeMillis();
+		map.put("a", "a");
+		map.put("b", "b");
+		map.recordAccess("a", 4, start + 10);
+		map.recordAccess("a", 4, start + 20);
+		map.recordAccess("missing", 4, start + 20);
+
+		final AccessStatistics a = map.statistics("a");
+		Assert.assertEquals(8, a.getAccessCount());
+		Assert.assertEquals(start + 20, a.getLastAccessTime());
+		Assert.assertTrue(a.getCreateTime() >= start);
+		Assert.assertEquals(0, map.statistics("b").getAccessCount());
+		Assert.assertNull(map.statistics("missing"));
+
+		final Map<String, Long> counts = new HashMap<>();
+		map.forEachStatistics(statistics -> counts.put(statistics.getKey(), statistics.getAccessCount()));
+		Assert.assertEquals(2, counts.size());
+		Assert.assertEquals(Long.valueOf(8), counts.get("a"));
+
+		map.resetStatistics(start + 100);
+		Assert.assertEquals(0, map.statistics("a").getAccessCount());
+		Assert.assertEquals(start + 100, map.statistics("a").getCreateTime());
+	}
+
+	@Test
+	public void testManager() throws ManageableExistsException
+	{
+		final ManagerImpl<Manageable> manager = new ManagerImpl<Manageable>(KeyStorage.OFF_HEAP);
+		final Manageable child = manager.create("key", OffHeapChildMapTest.MOCK);
+		manager.create("health", MockHealthImpl.class.getName());
+		Assert.assertSame(child, manager.get("key"));
+		Assert.assertEquals(1, manager.countOfType(HealthCheckable.class));
+		Assert.assertEquals(2, manager.getAllOfType(Manageable.class).size());
+		Assert.assertTrue(manager.getBytesPerChild() > manager.getHeapBytesPerChild());
+
+		manager.enableAccessStatistics(1);
+		manager.get("key");
+		manager.get("key");
+		Assert.assertEquals(2, manager.getAccessStatistics("key").getAccessCount());
+		Assert.assertEquals("key", manager.getHottest(1).get(0).getKey());
+		Assert.assertEquals("health", manager.getColdest(1).get(0).getKey());
+		manager.disableAccessStatistics();
+		Assert.assertNull(manager.getAccessStatistics("key"));
+		Assert.assertTrue(manager.getHottest(1).isEmpty());
+
+		Assert.assertSame(child, manager.closeChild("key"));
+		Assert.assertNull(manager.get("key"));
+		Assert.assertEquals(0, manager.countOfType(MockManageableImpl.class));
+		Assert.assertEquals(-1, new ManagerImpl<Manageable>().getHeapBytesPerChild(), 0);
+		manager.close();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testOffHeapNeedsStrongChildren()
+	{
+		new ManagerImpl<Manageable>(null, ForkJoinPool.commonPool(), ReferenceType.SOFT, null, KeyStorage.OFF_HEAP);
+	}
+
+	@Test
+	public void testLinearizable()
+	{
+		new ManagerStressHarness<Manageable>(() -> new ManagerImpl<Manageable>(KeyStorage.OFF_HEAP),
+		        OffHeapChildMapTest.MOCK).threads(8).operations(500).seed(42).run();
+	}
+
+	@Test
+	public void testCloseWhileInUse()
+	{
+		for (long seed = 0; seed < 5; seed++)
+		{
+			new ManagerStressHarness<Manageable>(() -> new ManagerImpl<Manageable>(KeyStorage.OFF_HEAP),
+			        OffHeapChildMapTest.MOCK).threads(4).operations(500).seed(seed).runWithClose();
+		}
+	}
+
+}
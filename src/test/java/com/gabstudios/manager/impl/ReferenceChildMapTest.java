@@ -0,0 +1,147 @@
+/*****************************************************************************************
+ * 
+ * Copyright 2019 Gregory Brown. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ * 
+ ***************************************************************************************** 
+ */
+
+package com.gabstudios.manager.impl;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.gabstudios.manager.Manageable;
+import com.gabstudios.manager.ManageableExistsException;
+
+/**
+ * 
+ * Test class for the weak and soft child tables.
+ * 
+ * @author Gregory Brown (sysdevone)
+ */
+public class ReferenceChildMapTest
+{
+
+	/*
+	 * Runs the garbage collector until the condition holds, or fails.
+	 */
+	static void collectUntil(final BooleanSupplier condition) throws InterruptedException
+	{
+		for (int i = 0; i < 50; i++)
+		{
+			System.gc();
+			if (condition.getAsBoolean())
+			{
+				return;
+			}
+			Thread.sleep(20);
+		}
+		Assert.fail("The garbage collector did not reclaim the child.");
+	}
+
+	@Test
+	public void testConcurrentMapOperations()
+	{
+		final ReferenceChildMap<String> map = new ReferenceChildMap<>(true, key -> {
+			// void
+		});
+		final String value = new String("value");
+		final String other = new String("other");
+
+		Assert.assertNull(map.putIfAbsent("key", value));
+		Assert.assertSame(value, map.putIfAbsent("key", other));
+		Assert.assertSame(value, map.get("key"));
+		Assert.assertTrue(map.containsKey("key"));
+		Assert.assertEquals(1, map.size());
+		Assert.assertEquals(1, map.entrySet().size());
+
+		Assert.assertFalse(map.replace("key", other, value));
+		Assert.assertTrue(map.replace("key", value, other));
+		Assert.assertSame(other, map.get("key"));
+
+		Assert.assertFalse(map.remove("key", value));
+		Assert.assertTrue(map.remove("key", other));
+		Assert.assertTrue(map.isEmpty());
+	}
+
+	@Test
+	public void testForEach()
+	{
+		final ReferenceChildMap<String> map = new ReferenceChildMap<>(false, key -> {
+			// void
+		});
+		final String value = new String("value");
+		final String other = new String("other");
+		map.put("a", value);
+		map.put("b", other);
+
+		final List<String> seen = new CopyOnWriteArrayList<>();
+		map.forEach((key, child) -> seen.add(key + "=" + child));
+		Assert.assertEquals(2, seen.size());
+		Assert.assertTrue(seen.contains("a=value"));
+		Assert.assertTrue(seen.contains("b=other"));
+	}
+
+	@Test
+	public void testStrongReferenceKeepsChild() throws ManageableExistsException
+	{
+		final ManagerImpl<Manageable> manager = new ManagerImpl<Manageable>(ReferenceType.WEAK, null);
+		final Manageable child = manager.create("held", MockManageableImpl.class.getName());
+		System.gc();
+		Assert.assertSame(child, manager.get("held"));
+	}
+
+	@Test
+	public void testWeakChildIsReclaimed() throws ManageableExistsException, InterruptedException
+	{
+		final List<String> reclaimed = new CopyOnWriteArrayList<>();
+		final ManagerImpl<Manageable> manager = new ManagerImpl<Manageable>(ReferenceType.WEAK, reclaimed::add);
+		manager.create("cache", MockManageableImpl.class.getName());
+
+		ReferenceChildMapTest.collectUntil(() -> !manager.containsChild("cache"));
+		Assert.assertEquals(0, manager.getChildCount());
+		Assert.assertEquals(1, reclaimed.size());
+		Assert.assertEquals("cache", reclaimed.get(0));
+
+		// the key is free again.
+		manager.create("cache", MockManageableImpl.class.getName());
+		Assert.assertTrue(manager.containsChild("cache"));
+	}
+
+	@Test
+	public void testManyChildrenReclaimed() throws ManageableExistsException, InterruptedException
+	{
+		// the manager reads the table from the listener; reclaiming many children at once must not nest a call per
+		// child.
+		final List<String> reclaimed = new CopyOnWriteArrayList<>();
+		final ManagerImpl<Manageable> manager = new ManagerImpl<Manageable>(ReferenceType.WEAK, reclaimed::add);
+		for (int i = 0; i < 200000; i++)
+		{
+			manager.create("cache" + i, MockManageableImpl.class.getName());
+		}
+
+		ReferenceChildMapTest.collectUntil(() -> {
+			manager.containsChild("probe");
+			return (reclaimed.size() > 100000);
+		});
+		while (manager.getChildCount() > 0)
+		{
+			manager.containsChild("probe");
+		}
+		Assert.assertEquals(200000, reclaimed.size());
+	}
+
+}
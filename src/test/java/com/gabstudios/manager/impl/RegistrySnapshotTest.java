@@ -0,0 +1,269 @@
+/*****************************************************************************************
+ * 
+ * Copyright 2019 Gregory Brown. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ * 
+ ***************************************************************************************** 
+ */
+
+package com.gabstudios.manager.impl;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.gabstudios.manager.Manageable;
+import com.gabstudios.manager.ManageableExistsException;
+import com.gabstudios.manager.ManagerException;
+
+/**
+ * 
+ * Test class for the registry snapshot of the <code>ManagerImpl</code>
+ * 
+ * @author Gregory Brown (sysdevone)
+ */
+public class RegistrySnapshotTest
+{
+
+	Path					_file;
+
+	ManagerImpl<Manageable>	_manager;
+
+	@After
+	public void cleanup() throws IOException
+	{
+		MockSnapshotableImpl.FAIL_INITIALIZE = false;
+		MockSnapshotableImpl.ON_RESTORE = null;
+		Files.deleteIfExists(this._file);
+		Files.deleteIfExists(this._file.getParent());
+	}
+
+	@Before
+	public void setup() throws IOException
+	{
+		this._manager = new ManagerImpl<Manageable>();
+		this._file = Files.createTempDirectory("gab-manager").resolve("registry.snapshot");
+	}
+
+	@Test
+	public void testSaveAndRestore()
+	{
+		try
+		{
+			this._manager.create("c1", MockManageableImpl.class.getName());
+			final MockSnapshotableImpl stateful = (MockSnapshotableImpl) this._manager.create("c2",
+			        MockSnapshotableImpl.class.getName());
+			stateful.setState("warm-state");
+			this._manager.create("c3", MockSnapshotableImpl.class.getName());
+
+			Assert.assertTrue(this._manager.saveSnapshot(this._file) == 3);
+
+			final ManagerImpl<Manageable> restored = new ManagerImpl<Manageable>();
+			final int instances = MockSnapshotableImpl.INSTANCES.get();
+			Assert.assertTrue(restored.restoreSnapshot(this._file) == 3);
+
+			// nothing is instantiated until it is used.
+			Assert.assertTrue(MockSnapshotableImpl.INSTANCES.get() == instances);
+			Assert.assertTrue(restored.getChildCount() == 3);
+			Assert.assertTrue(restored.containsChild("c2"));
+			Assert.assertTrue(restored.getKeys().contains("c3"));
+
+			final Manageable child = restored.get("c2");
+			Assert.assertTrue(child instanceof MockSnapshotableImpl);
+			Assert.assertTrue("c2".equals(child.getKey()));
+			Assert.assertTrue(child.getParent() == restored);
+			Assert.assertTrue("warm-state".equals(((MockSnapshotableImpl) child).getState()));
+			Assert.assertTrue(MockSnapshotableImpl.INSTANCES.get() == (instances + 1));
+			Assert.assertTrue(((MockSnapshotableImpl) restored.get("c3")).getState() == null);
+
+			Assert.assertTrue(restored.get("c1") instanceof MockManageableImpl);
+			Assert.assertTrue(restored.getChildCount() == 3);
+		}
+		catch (final ManageableExistsException e)
+		{
+			Assert.fail(e.toString());
+		}
+	}
+
+	@Test
+	public void testSaveUnusedRestoredChildren()
+	{
+		try
+		{
+			((MockSnapshotableImpl) this._manager.create("c1", MockSnapshotableImpl.class.getName()))
+			        .setState("kept");
+			this._manager.saveSnapshot(this._file);
+
+			final ManagerImpl<Manageable> restored = new ManagerImpl<Manageable>();
+			restored.restoreSnapshot(this._file);
+			restored.saveSnapshot(this._file);
+
+			final ManagerImpl<Manageable> again = new ManagerImpl<Manageable>();
+			again.restoreSnapshot(this._file);
+			Assert.assertTrue("kept".equals(((MockSnapshotableImpl) again.get("c1")).getState()));
+		}
+		catch (final ManageableExistsException e)
+		{
+			Assert.fail(e.toString());
+		}
+	}
+
+	@Test
+	public void testCloseRestoredChildren()
+	{
+		try
+		{
+			this._manager.create("c1", MockSnapshotableImpl.class.getName());
+			this._manager.create("c2", MockSnapshotableImpl.class.getName());
+			this._manager.create("c3", MockSnapshotableImpl.class.getName());
+			this._manager.saveSnapshot(this._file);
+
+			final ManagerImpl<Manageable> restored = new ManagerImpl<Manageable>();
+			restored.restoreSnapshot(this._file);
+			final int instances = MockSnapshotableImpl.INSTANCES.get();
+
+			// a restored child that was never used is dropped without being instantiated.
+			Assert.assertNull(restored.closeChild("c1"));
+			Assert.assertTrue(!restored.containsChild("c1"));
+			Assert.assertTrue(restored.getChildCount() == 2);
+			Assert.assertTrue(MockSnapshotableImpl.INSTANCES.get() == instances);
+
+			// a used one is closed like any other.
+			Assert.assertNotNull(restored.get("c2"));
+			Assert.assertNotNull(restored.closeChild("c2"));
+			Assert.assertTrue(restored.getChildCount() == 1);
+
+			restored.close();
+			Assert.assertTrue(restored.isClosed());
+		}
+		catch (final ManageableExistsException e)
+		{
+			Assert.fail(e.toString());
+		}
+	}
+
+	@Test
+	public void testRestoredChildFailsToInitialize() throws ManageableExistsException
+	{
+		((MockSnapshotableImpl) this._manager.create("c1", MockSnapshotableImpl.class.getName())).setState("s");
+		this._manager.saveSnapshot(this._file);
+
+		final ManagerImpl<Manageable> restored = new ManagerImpl<Manageable>();
+		restored.restoreSnapshot(this._file);
+		MockSnapshotableImpl.FAIL_INITIALIZE = true;
+		try
+		{
+			restored.get("c1");
+			Assert.fail("The child should have failed to initialize.");
+		}
+		catch (final IllegalStateException e)
+		{
+			Assert.assertTrue(true);
+		}
+
+		// the half initialized child is not left bound to the key.
+		MockSnapshotableImpl.FAIL_INITIALIZE = false;
+		Assert.assertNull(restored.get("c1"));
+		Assert.assertEquals(0, restored.getChildCount());
+		restored.create("c1", MockSnapshotableImpl.class.getName());
+		Assert.assertEquals(1, restored.getChildCount());
+	}
+
+	@Test
+	public void testRestoredChildInFullManager() throws ManageableExistsException
+	{
+		this._manager.create("c1", MockSnapshotableImpl.class.getName());
+		this._manager.create("c2", MockSnapshotableImpl.class.getName());
+		this._manager.saveSnapshot(this._file);
+
+		final ManagerImpl<Manageable> restored = new ManagerBuilder<Manageable>().maxChildren(1).build();
+		restored.restoreSnapshot(this._file);
+		Assert.assertNotNull(restored.get("c1"));
+		try
+		{
+			restored.get("c2");
+			Assert.fail("The manager should be full.");
+		}
+		catch (final ManagerException e)
+		{
+			Assert.assertTrue(true);
+		}
+
+		// the restored child is kept until there is room for it.
+		Assert.assertTrue(restored.containsChild("c2"));
+		restored.closeChild("c1");
+		Assert.assertNotNull(restored.get("c2"));
+		Assert.assertEquals(1, restored.getChildCount());
+	}
+
+	@Test
+	public void testRestoreLooksUpSibling() throws ManageableExistsException
+	{
+		// "c1" and "cA" have hashes 16 apart, so they share a bin of a small table.
+		((MockSnapshotableImpl) this._manager.create("c1", MockSnapshotableImpl.class.getName())).setState("one");
+		((MockSnapshotableImpl) this._manager.create("cA", MockSnapshotableImpl.class.getName())).setState("two");
+		this._manager.saveSnapshot(this._file);
+
+		final ManagerImpl<Manageable> restored = new ManagerImpl<Manageable>();
+		restored.restoreSnapshot(this._file);
+		final Manageable[] sibling = new Manageable[1];
+		MockSnapshotableImpl.ON_RESTORE = () -> {
+			MockSnapshotableImpl.ON_RESTORE = null;
+			sibling[0] = restored.get("cA");
+		};
+
+		Assert.assertEquals("one", ((MockSnapshotableImpl) restored.get("c1")).getState());
+		Assert.assertEquals("two", ((MockSnapshotableImpl) sibling[0]).getState());
+		Assert.assertSame(sibling[0], restored.get("cA"));
+		Assert.assertEquals(2, restored.getChildCount());
+	}
+
+	@Test
+	public void testRestoreExistingKey()
+	{
+		try
+		{
+			this._manager.create("c1", MockManageableImpl.class.getName());
+			this._manager.saveSnapshot(this._file);
+			this._manager.restoreSnapshot(this._file);
+			Assert.fail();
+		}
+		catch (final ManageableExistsException e)
+		{
+			Assert.assertTrue(this._manager.getChildCount() == 1);
+		}
+	}
+
+	@Test
+	public void testRestoreInvalidFile() throws IOException
+	{
+		Files.write(this._file, new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 });
+		try
+		{
+			this._manager.restoreSnapshot(this._file);
+			Assert.fail();
+		}
+		catch (final ManageableExistsException e)
+		{
+			Assert.fail(e.toString());
+		}
+		catch (final ManagerException e)
+		{
+			Assert.assertTrue(this._manager.getChildCount() == 0);
+		}
+	}
+
+}
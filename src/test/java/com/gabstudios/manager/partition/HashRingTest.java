@@ -0,0 +1,107 @@
+/*****************************************************************************************
+ * 
+ * Copyright 2019 Gregory Brown. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ * 
+ ***************************************************************************************** 
+ */
+
+package com.gabstudios.manager.partition;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * 
+ * Test class for the consistent hash ring.
+ * 
+ * @author Gregory Brown (sysdevone)
+ */
+public class HashRingTest
+{
+
+	static final int	KEYS	= 10000;
+
+	@Test
+	public void testEmpty()
+	{
+		final HashRing ring = new HashRing(8);
+		Assert.assertTrue(ring.isEmpty());
+		Assert.assertNull(ring.owner("key"));
+	}
+
+	@Test
+	public void testSpread()
+	{
+		final HashRing ring = new HashRing(64).with("a").with("b").with("c").with("d");
+		final Map<String, Integer> counts = new HashMap<>();
+		for (int i = 0; i < HashRingTest.KEYS; i++)
+		{
+			counts.merge(ring.owner("key" + i), 1, Integer::sum);
+		}
+		Assert.assertEquals(4, counts.size());
+		for (final int count : counts.values())
+		{
+			// within half of an even share.
+			Assert.assertTrue(String.valueOf(counts), Math.abs(count - (HashRingTest.KEYS / 4)) < (HashRingTest.KEYS / 8));
+		}
+	}
+
+	@Test
+	public void testAddMovesOnlyToTheNewNode()
+	{
+		final HashRing before = new HashRing(64).with("a").with("b").with("c");
+		final HashRing after = before.with("d");
+		int moved = 0;
+		for (int i = 0; i < HashRingTest.KEYS; i++)
+		{
+			final String key = "key" + i;
+			if (!before.owner(key).equals(after.owner(key)))
+			{
+				Assert.assertEquals("d", after.owner(key));
+				moved++;
+			}
+		}
+		Assert.assertTrue(String.valueOf(moved), (moved > (HashRingTest.KEYS / 8)) && (moved < (HashRingTest.KEYS / 3)));
+	}
+
+	@Test
+	public void testRemoveMovesOnlyTheNodesKeys()
+	{
+		final HashRing before = new HashRing(64).with("a").with("b").with("c");
+		final HashRing after = before.without("b");
+		Assert.assertFalse(after.contains("b"));
+		for (int i = 0; i < HashRingTest.KEYS; i++)
+		{
+			final String key = "key" + i;
+			if (!before.owner(key).equals("b"))
+			{
+				Assert.assertEquals(before.owner(key), after.owner(key));
+			}
+		}
+	}
+
+	@Test
+	public void testOrderDoesNotMatter()
+	{
+		final HashRing one = new HashRing(16).with("a").with("b").with("c");
+		final HashRing two = new HashRing(16).with("c").with("a").with("b");
+		for (int i = 0; i < 1000; i++)
+		{
+			Assert.assertEquals(one.owner("key" + i), two.owner("key" + i));
+		}
+		Assert.assertEquals(one.without("b").owner("key"), new HashRing(16).with("a").with("c").owner("key"));
+	}
+
+}
@@ -0,0 +1,123 @@
+/*****************************************************************************************
+ * 
+ * Copyright 2019 Gregory Brown. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ * 
+ ***************************************************************************************** 
+ */
+
+package com.gabstudios.manager.partition;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.gabstudios.manager.Manageable;
+import com.gabstudios.manager.ManageableExistsException;
+import com.gabstudios.manager.ManagerException;
+import com.gabstudios.manager.impl.MockManageableImpl;
+
+/**
+ * 
+ * Test class for the <code>PartitionedManager</code> over the loopback socket transport.
+ * 
+ * @author Gregory Brown (sysdevone)
+ */
+public class LoopbackTransportTest
+{
+
+	static final String					MOCK	= MockManageableImpl.class.getName();
+
+	LoopbackTransport<Manageable>		_transport;
+
+	PartitionedManager<Manageable>		_manager;
+
+	@Before
+	public void setup()
+	{
+		this._transport = new LoopbackTransport<Manageable>();
+		this._manager = new PartitionedManager<Manageable>(this._transport, 16);
+		this._manager.addNode("a");
+		this._manager.addNode("b");
+	}
+
+	@After
+	public void teardown()
+	{
+		if (!this._manager.isClosed())
+		{
+			this._manager.close();
+		}
+	}
+
+	@Test
+	public void testCalls() throws ManageableExistsException
+	{
+		final Manageable child = this._manager.create("key", LoopbackTransportTest.MOCK);
+		Assert.assertEquals("key", child.getKey());
+		Assert.assertSame(child, this._manager.get("key"));
+		Assert.assertTrue(this._manager.containsChild("key"));
+		Assert.assertFalse(this._manager.containsChild("other"));
+		Assert.assertNull(this._manager.get("other"));
+		Assert.assertEquals(1, this._manager.getChildCount());
+		Assert.assertTrue(this._manager.getKeys().contains("key"));
+		Assert.assertSame(child, this._manager.closeChild("key"));
+		Assert.assertEquals(0, this._manager.getChildCount());
+	}
+
+	@Test(expected = ManageableExistsException.class)
+	public void testExists() throws ManageableExistsException
+	{
+		this._manager.create("key", LoopbackTransportTest.MOCK);
+		this._manager.create("key", LoopbackTransportTest.MOCK);
+	}
+
+	@Test(expected = ManagerException.class)
+	public void testErrorIsCarried() throws ManageableExistsException
+	{
+		this._manager.create("key", "com.gabstudios.NoSuchClass");
+	}
+
+	@Test
+	public void testRebalance() throws ManageableExistsException
+	{
+		for (int i = 0; i < 100; i++)
+		{
+			this._manager.create("key" + i, LoopbackTransportTest.MOCK);
+		}
+		final int moved = this._manager.addNode("c");
+		Assert.assertTrue(String.valueOf(moved), (moved > 0) && (moved < 100));
+
+		int onA = 0;
+		for (int i = 0; i < 100; i++)
+		{
+			if ("a".equals(this._manager.getNode("key" + i)))
+			{
+				onA++;
+			}
+		}
+		Assert.assertEquals(onA, this._manager.removeNode("a"));
+		Assert.assertEquals(100, this._manager.getChildCount());
+		for (int i = 0; i < 100; i++)
+		{
+			Assert.assertNotNull(this._manager.get("key" + i));
+		}
+	}
+
+	@Test(expected = ManagerException.class)
+	public void testStoppedNode()
+	{
+		this._transport.close("a");
+		this._transport.get("a", "key");
+	}
+
+}
@@ -0,0 +1,316 @@
+/*****************************************************************************************
+ * 
+ * Copyright 2019 Gregory Brown. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ * 
+ ***************************************************************************************** 
+ */
+
+package com.gabstudios.manager.partition;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.gabstudios.manager.Manageable;
+import com.gabstudios.manager.ManageableExistsException;
+import com.gabstudios.manager.ManagerClosedException;
+import com.gabstudios.manager.ManagerException;
+import com.gabstudios.manager.ManagerStressHarness;
+import com.gabstudios.manager.impl.MockManageableImpl;
+import com.gabstudios.manager.impl.MockSnapshotableImpl;
+
+/**
+ * 
+ * Test class for the <code>PartitionedManager</code> over the in-process transport.
+ * 
+ * @author Gregory Brown (sysdevone)
+ */
+public class PartitionedManagerTest
+{
+
+	static final String					MOCK	= MockManageableImpl.class.getName();
+
+	PartitionedManager<Manageable>		_manager;
+
+	@Before
+	public void setup()
+	{
+		this._manager = new PartitionedManager<Manageable>(new InProcessTransport<Manageable>());
+		this._manager.addNode("a");
+		this._manager.addNode("b");
+		this._manager.addNode("c");
+	}
+
+	@After
+	public void teardown()
+	{
+		if (!this._manager.isClosed())
+		{
+			this._manager.close();
+		}
+	}
+
+	@Test
+	public void testRouting() throws ManageableExistsException
+	{
+		final Manageable child = this._manager.create("key", PartitionedManagerTest.MOCK);
+		Assert.assertEquals("key", child.getKey());
+		Assert.assertSame(child, this._manager.get("key"));
+		Assert.assertTrue(this._manager.containsChild("key"));
+		Assert.assertEquals(1, this._manager.getChildCount());
+		Assert.assertTrue(this._manager.getKeys().contains("key"));
+
+		Assert.assertSame(child, this._manager.closeChild("key"));
+		Assert.assertFalse(this._manager.containsChild("key"));
+		Assert.assertNull(this._manager.get("key"));
+		Assert.assertNull(this._manager.closeChild("key"));
+	}
+
+	@Test(expected = ManageableExistsException.class)
+	public void testExists() throws ManageableExistsException
+	{
+		this._manager.create("key", PartitionedManagerTest.MOCK);
+		this._manager.create("key", PartitionedManagerTest.MOCK);
+	}
+
+	@Test
+	public void testKeysAreSpread() throws ManageableExistsException
+	{
+		final Map<String, Integer> counts = new HashMap<>();
+		for (int i = 0; i < 300; i++)
+		{
+			this._manager.create("key" + i, PartitionedManagerTest.MOCK);
+			counts.merge(this._manager.getNode("key" + i), 1, Integer::sum);
+		}
+		Assert.assertEquals(3, counts.size());
+		Assert.assertEquals(300, this._manager.getChildCount());
+		Assert.assertEquals(300, this._manager.getKeys().size());
+	}
+
+	@Test
+	public void testAddNodeMovesOnlyAffectedKeys() throws ManageableExistsException
+	{
+		final Map<String, Manageable> children = new HashMap<>();
+		final Map<String, String> owners = new HashMap<>();
+		for (int i = 0; i < 300; i++)
+		{
+			final String key = "key" + i;
+			children.put(key, this._manager.create(key, PartitionedManagerTest.MOCK));
+			owners.put(key, this._manager.getNode(key));
+		}
+
+		final int moved = this._manager.addNode("d");
+		Assert.assertTrue(String.valueOf(moved), (moved > 0) && (moved < 150));
+
+		int changed = 0;
+		for (final Map.Entry<String, Manageable> entry : children.entrySet())
+		{
+			final String key = entry.getKey();
+			final Manageable child = this._manager.get(key);
+			Assert.assertNotNull(key, child);
+			if (owners.get(key).equals(this._manager.getNode(key)))
+			{
+				// not moved; still the same child.
+				Assert.assertSame(entry.getValue(), child);
+			}
+			else
+			{
+				Assert.assertEquals("d", this._manager.getNode(key));
+				Assert.assertNotSame(entry.getValue(), child);
+				changed++;
+			}
+		}
+		Assert.assertEquals(moved, changed);
+		Assert.assertEquals(300, this._manager.getChildCount());
+	}
+
+	@Test
+	public void testMoveCarriesState() throws ManageableExistsException
+	{
+		for (int i = 0; i < 100; i++)
+		{
+			final MockSnapshotableImpl child = (MockSnapshotableImpl) this._manager.create("key" + i,
+			        MockSnapshotableImpl.class.getName());
+			child.setState("state" + i);
+		}
+
+		this._manager.addNode("d");
+		this._manager.removeNode("a");
+		for (int i = 0; i < 100; i++)
+		{
+			Assert.assertEquals("state" + i, ((MockSnapshotableImpl) this._manager.get("key" + i)).getState());
+		}
+	}
+
+	@Test
+	public void testFailedMoveKeepsChildren() throws ManageableExistsException
+	{
+		// creates fail on node d once a few children have been moved to it.
+		final int[] creates = new int[1];
+		final PartitionedManager<Manageable> manager = new PartitionedManager<Manageable>(
+		        new InProcessTransport<Manageable>()
+		        {
+			        @Override
+			        public Manageable create(final String node, final String key, final String className)
+			                throws ManageableExistsException
+			        {
+				        if ("d".equals(node) && (++creates[0] > 5))
+				        {
+					        throw (new ManagerException("The node is unable to create children."));
+				        }
+				        return (super.create(node, key, className));
+			        }
+		        });
+		try
+		{
+			manager.addNode("a");
+			manager.addNode("b");
+			final Map<String, Manageable> children = new HashMap<>();
+			for (int i = 0; i < 300; i++)
+			{
+				children.put("key" + i, manager.create("key" + i, PartitionedManagerTest.MOCK));
+			}
+
+			try
+			{
+				manager.addNode("d");
+				Assert.fail("Adding a node that can not create the children should throw.");
+			}
+			catch (final ManagerException e)
+			{
+				// expected.
+			}
+			Assert.assertFalse(manager.getNodes().contains("d"));
+			Assert.assertEquals(300, manager.getChildCount());
+
+			// the children moved before the failure were moved back, as new instances.
+			int replaced = 0;
+			for (final Map.Entry<String, Manageable> entry : children.entrySet())
+			{
+				final Manageable child = manager.get(entry.getKey());
+				Assert.assertNotNull(entry.getKey(), child);
+				Assert.assertEquals(entry.getKey(), child.getKey());
+				if (child != entry.getValue())
+				{
+					replaced++;
+				}
+			}
+			Assert.assertEquals(5, replaced);
+		}
+		finally
+		{
+			manager.close();
+		}
+	}
+
+	@Test
+	public void testRemoveNode() throws ManageableExistsException
+	{
+		for (int i = 0; i < 300; i++)
+		{
+			this._manager.create("key" + i, PartitionedManagerTest.MOCK);
+		}
+		int onB = 0;
+		for (int i = 0; i < 300; i++)
+		{
+			if ("b".equals(this._manager.getNode("key" + i)))
+			{
+				onB++;
+			}
+		}
+
+		Assert.assertEquals(onB, this._manager.removeNode("b"));
+		Assert.assertFalse(this._manager.getNodes().contains("b"));
+		Assert.assertEquals(300, this._manager.getChildCount());
+		for (int i = 0; i < 300; i++)
+		{
+			Assert.assertTrue(this._manager.containsChild("key" + i));
+		}
+	}
+
+	@Test
+	public void testRemoveLastNode() throws ManageableExistsException
+	{
+		this._manager.removeNode("a");
+		this._manager.removeNode("b");
+		this._manager.create("key", PartitionedManagerTest.MOCK);
+		try
+		{
+			this._manager.removeNode("c");
+			Assert.fail("The last node should not be removed while it holds children.");
+		}
+		catch (final ManagerException e)
+		{
+			// expected.
+		}
+		this._manager.closeChild("key");
+		Assert.assertEquals(0, this._manager.removeNode("c"));
+		Assert.assertNull(this._manager.get("key"));
+	}
+
+	@Test(expected = ManagerException.class)
+	public void testNoNodes() throws ManageableExistsException
+	{
+		final PartitionedManager<Manageable> empty = new PartitionedManager<Manageable>(
+		        new InProcessTransport<Manageable>());
+		empty.create("key", PartitionedManagerTest.MOCK);
+	}
+
+	@Test(expected = ManagerException.class)
+	public void testAddNodeTwice()
+	{
+		this._manager.addNode("a");
+	}
+
+	@Test
+	public void testClose() throws ManageableExistsException
+	{
+		final Manageable child = this._manager.create("key", PartitionedManagerTest.MOCK);
+		this._manager.close();
+		Assert.assertTrue(this._manager.isClosed());
+		try
+		{
+			child.getParent();
+			Assert.fail("The child should be closed.");
+		}
+		catch (final ManagerClosedException e)
+		{
+			// expected.
+		}
+		try
+		{
+			this._manager.get("key");
+			Assert.fail("The manager should be closed.");
+		}
+		catch (final ManagerClosedException e)
+		{
+			// expected.
+		}
+	}
+
+	@Test
+	public void testLinearizable()
+	{
+		new ManagerStressHarness<Manageable>(() -> {
+			final PartitionedManager<Manageable> manager = new PartitionedManager<Manageable>(
+			        new InProcessTransport<Manageable>());
+			manager.addNode("a");
+			manager.addNode("b");
+			return (manager);
+		}, PartitionedManagerTest.MOCK).threads(4).operations(300).seed(7).run();
+	}
+
+}
@@ -0,0 +1,155 @@
+/*****************************************************************************************
+ * 
+ * Copyright 2019 Gregory Brown. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ * 
+ ***************************************************************************************** 
+ */
+
+package com.gabstudios.manager.processor;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.gabstudios.manager.Manageable;
+import com.gabstudios.manager.ManagedTypeRegistry;
+
+/**
+ * 
+ * Test class for the <code>ManagedTypeProcessor</code>
+ * 
+ * @author Gregory Brown (sysdevone)
+ */
+public class ManagedTypeProcessorTest
+{
+
+	Path _directory;
+
+	@After
+	public void cleanup() throws IOException
+	{
+		try (Stream<Path> files = Files.walk(this._directory))
+		{
+			files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+		}
+	}
+
+	/*
+	 * Compiles one source file with the processor and returns the compiler output, or null on success.
+	 */
+	private String compile(final String className, final String source) throws IOException
+	{
+		final Path sources = this._directory.resolve("src");
+		final Path file = sources.resolve(className.replace('.', '/') + ".java");
+		Files.createDirectories(file.getParent());
+		Files.write(file, source.getBytes(StandardCharsets.UTF_8));
+		Files.createDirectories(this._directory.resolve("classes"));
+
+		final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		final StringWriter output = new StringWriter();
+		try (StandardJavaFileManager files = compiler.getStandardFileManager(null, null, StandardCharsets.UTF_8))
+		{
+			final boolean success = compiler.getTask(output, files, null,
+			        Arrays.asList("-classpath", System.getProperty("java.class.path"), "-d",
+			                this._directory.resolve("classes").toString(), "-processor",
+			                ManagedTypeProcessor.class.getName(), "-Agabmanager.nativeImageDir=test/types"),
+			        null, files.getJavaFileObjects(file.toFile())).call();
+			return (success ? null : output.toString());
+		}
+	}
+
+	@Before
+	public void setup() throws IOException
+	{
+		this._directory = Files.createTempDirectory("gab-manager-processor");
+	}
+
+	@Test
+	public void testGeneratedRegistry() throws Exception
+	{
+		final String errors = this.compile("sample.Cache",
+		        "package sample;\n" + "@com.gabstudios.manager.ManagedType(\"cache\")\n"
+		                + "public class Cache extends com.gabstudios.manager.impl.ManageableImpl {\n"
+		                + "  @com.gabstudios.manager.ManagedType\n"
+		                + "  public static class Entry extends com.gabstudios.manager.impl.ManageableImpl {}\n" + "}\n");
+		Assert.assertTrue(errors, errors == null);
+
+		final Path classes = this._directory.resolve("classes");
+		Assert.assertTrue(Files.exists(classes.resolve("sample/GeneratedManagedTypeRegistry.class")));
+
+		final String services = new String(
+		        Files.readAllBytes(classes.resolve("META-INF/services/" + ManagedTypeRegistry.class.getName())),
+		        StandardCharsets.UTF_8);
+		Assert.assertTrue(services.contains("sample.GeneratedManagedTypeRegistry"));
+
+		final String reflectConfig = new String(
+		        Files.readAllBytes(classes.resolve("META-INF/native-image/test/types/reflect-config.json")),
+		        StandardCharsets.UTF_8);
+		Assert.assertTrue(reflectConfig.contains("\"sample.Cache\""));
+		Assert.assertTrue(reflectConfig.contains("\"sample.Cache$Entry\""));
+		Assert.assertTrue(Files.exists(classes.resolve("META-INF/native-image/test/types/resource-config.json")));
+
+		try (URLClassLoader loader = new URLClassLoader(new URL[] { classes.toUri().toURL() },
+		        this.getClass().getClassLoader()))
+		{
+			final ManagedTypeRegistry registry = (ManagedTypeRegistry) loader
+			        .loadClass("sample.GeneratedManagedTypeRegistry").getDeclaredConstructor().newInstance();
+			final Map<String, Supplier<? extends Manageable>> types = new HashMap<>();
+			registry.registerTypes(types);
+
+			Assert.assertTrue(types.size() == 3);
+			Assert.assertTrue("sample.Cache".equals(types.get("cache").get().getClass().getName()));
+			Assert.assertTrue("sample.Cache".equals(types.get("sample.Cache").get().getClass().getName()));
+			Assert.assertTrue("sample.Cache$Entry".equals(types.get("sample.Cache$Entry").get().getClass().getName()));
+		}
+	}
+
+	@Test
+	public void testInvalidType() throws IOException
+	{
+		final String errors = this.compile("sample.Hidden",
+		        "package sample;\n" + "@com.gabstudios.manager.ManagedType\n"
+		                + "public class Hidden extends com.gabstudios.manager.impl.ManageableImpl {\n"
+		                + "  private Hidden() {}\n" + "}\n");
+		Assert.assertTrue(errors != null);
+		Assert.assertTrue(errors.contains("public no argument constructor"));
+	}
+
+	@Test
+	public void testNotManageable() throws IOException
+	{
+		final String errors = this.compile("sample.Plain",
+		        "package sample;\n" + "@com.gabstudios.manager.ManagedType\n" + "public class Plain {}\n");
+		Assert.assertTrue(errors != null);
+		Assert.assertTrue(errors.contains("com.gabstudios.manager.Manageable"));
+	}
+
+}